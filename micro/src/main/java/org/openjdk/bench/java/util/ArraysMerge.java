@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.openjdk.bench.java.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark for Arrays.sort() and Arrays.parallelSort()
+ * of arrays, which consist of sorted runs: two sorted halves,
+ * which interleave randomly, element by element or by long runs,
+ * or the short runs of the sawtooth, which are interleaved
+ * regularly, so that the time is spent on merging of the runs.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 4, time = 3, timeUnit = TimeUnit.SECONDS)
+public class ArraysMerge {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    int size;
+
+    @Param
+    Builder builder;
+
+    int[] b;
+
+    @Setup
+    public void init() {
+        b = new int[size];
+        builder.build(b);
+    }
+
+    public enum Builder {
+
+        RANDOM {
+            @Override
+            void build(int[] b) {
+                Random random = new Random(0x777);
+
+                for (int i = 0; i < b.length; ++i) {
+                    b[i] = random.nextInt();
+                }
+                sortHalves(b);
+            }
+        },
+
+        BLOCKS {
+            @Override
+            void build(int[] b) {
+                Random random = new Random(0x777);
+
+                for (int i = 0, j = 0, k = 1; i < b.length; ++i) {
+                    b[i] = random.nextInt(64) > 0 ? j : (j += k);
+                }
+                sortHalves(b);
+            }
+        },
+
+        REPEATED {
+            @Override
+            void build(int[] b) {
+                for (int i = 0; i < b.length; ++i) {
+                    b[i] = i % 11;
+                }
+                sortHalves(b);
+            }
+        },
+
+        INTERLEAVED {
+            @Override
+            void build(int[] b) {
+                for (int i = 0, half = b.length / 2; i < b.length; ++i) {
+                    b[i] = i < half ? 2 * i : 2 * (i - half) + 1;
+                }
+            }
+        },
+
+        RUNS {
+            @Override
+            void build(int[] b) {
+                for (int i = 0, half = b.length / 2; i < b.length; ++i) {
+                    int j = i < half ? i : i - half;
+                    b[i] = (j / 512) * 1024 + j % 512 + (i < half ? 0 : 512);
+                }
+            }
+        },
+
+        SAWTOOTH {
+            @Override
+            void build(int[] b) {
+                for (int i = 0; i < b.length; ++i) {
+                    b[i] = i % 1000;
+                }
+            }
+        };
+
+        abstract void build(int[] b);
+
+        private static void sortHalves(int[] b) {
+            Arrays.sort(b, 0, b.length / 2);
+            Arrays.sort(b, b.length / 2, b.length);
+        }
+    }
+
+    public static class Int extends ArraysMerge {
+
+        int[] a;
+
+        @Setup
+        public void setup() {
+            a = new int[size];
+        }
+
+        @Setup(Level.Invocation)
+        public void build() {
+            System.arraycopy(b, 0, a, 0, size);
+        }
+
+        @Benchmark
+        public void testSort() {
+            Arrays.sort(a);
+        }
+
+        @Benchmark
+        public void testParallelSort() {
+            Arrays.parallelSort(a);
+        }
+    }
+
+    public static class Long extends ArraysMerge {
+
+        long[] a;
+
+        @Setup
+        public void setup() {
+            a = new long[size];
+        }
+
+        @Setup(Level.Invocation)
+        public void build() {
+            for (int i = 0; i < size; ++i) {
+                a[i] = b[i];
+            }
+        }
+
+        @Benchmark
+        public void testSort() {
+            Arrays.sort(a);
+        }
+
+        @Benchmark
+        public void testParallelSort() {
+            Arrays.parallelSort(a);
+        }
+    }
+
+    public static class Float extends ArraysMerge {
+
+        float[] a;
+
+        @Setup
+        public void setup() {
+            a = new float[size];
+        }
+
+        @Setup(Level.Invocation)
+        public void build() {
+            for (int i = 0; i < size; ++i) {
+                a[i] = b[i];
+            }
+        }
+
+        @Benchmark
+        public void testSort() {
+            Arrays.sort(a);
+        }
+
+        @Benchmark
+        public void testParallelSort() {
+            Arrays.parallelSort(a);
+        }
+    }
+
+    public static class Double extends ArraysMerge {
+
+        double[] a;
+
+        @Setup
+        public void setup() {
+            a = new double[size];
+        }
+
+        @Setup(Level.Invocation)
+        public void build() {
+            for (int i = 0; i < size; ++i) {
+                a[i] = b[i];
+            }
+        }
+
+        @Benchmark
+        public void testSort() {
+            Arrays.sort(a);
+        }
+
+        @Benchmark
+        public void testParallelSort() {
+            Arrays.parallelSort(a);
+        }
+    }
+}
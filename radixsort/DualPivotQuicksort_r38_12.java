@@ -25,8 +25,31 @@
 
 package java.util;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import jdk.internal.misc.Unsafe;
+import jdk.internal.vm.annotation.DontInline;
 import jdk.internal.vm.annotation.ForceInline;
 import jdk.internal.vm.annotation.IntrinsicCandidate;
 
@@ -63,7 +86,13 @@ final class DualPivotQuicksort_r38_12 {
     /**
      * Max array size to use insertion sort.
      */
-    private static final int MAX_INSERTION_SORT_SIZE = 51;
+    private static final int MAX_INSERTION_SORT_SIZE =
+        Tuning.value("MAX_INSERTION_SORT_SIZE", 51, 17, 1 << 8);
+
+    /**
+     * Max array size to use sorting network.
+     */
+    private static final int MAX_NETWORK_SORT_SIZE = 16;
 
     /* ----------------- Merging sort section ----------------- */
 
@@ -85,44 +114,235 @@ final class DualPivotQuicksort_r38_12 {
     /**
      * Min array size to start merging of parts.
      */
-    private static final int MIN_MERGE_PART_SIZE = 4 << 10;
+    private static final int MIN_MERGE_PART_SIZE =
+        Tuning.value("MIN_MERGE_PART_SIZE", 4 << 10, 1 << 8, Integer.MAX_VALUE);
+
+    /**
+     * Number of elements merged without branches at once,
+     * one per bit of the pattern of the block.
+     */
+    private static final int MERGE_BLOCK_SIZE = 32;
+
+    /**
+     * Min number of turns between the parts within the block
+     * to continue merging without branches.
+     */
+    private static final int MIN_IRREGULAR_TURNS = 8;
+
+    /**
+     * Min number of elements taken by galloping
+     * to measure the next block right after them.
+     */
+    private static final int MIN_GALLOP_RUN = 8 * MERGE_BLOCK_SIZE;
+
+    /**
+     * Max number of elements merged by the simple loop
+     * before the next block is merged without branches.
+     */
+    private static final int MAX_MERGE_PROBE_STEP = 256 * MERGE_BLOCK_SIZE;
+
+    /**
+     * Max number of blocks sorted with bounded buffer and merged in place.
+     */
+    private static final int MAX_BOUNDED_BLOCK_COUNT = 8;
+
+    /* ---------------- Partitioning section ------------------ */
+
+    /**
+     * Min array size to use branch-free block partitioning.
+     */
+    private static final int MIN_BLOCK_PARTITION_SIZE = 1 << 10;
+
+    /**
+     * Size of the block of elements in block partitioning,
+     * not greater than the number of bits in long mask.
+     */
+    private static final int PARTITION_BLOCK_SIZE = 64;
 
     /* ------------------ Radix sort section ------------------ */
 
     /**
-     * Min array size to use Radix sort.
+     * Min size of an int array to use Radix sort.
+     */
+    private static final int MIN_INT_RADIX_SORT_SIZE =
+        Tuning.value("MIN_INT_RADIX_SORT_SIZE", 640, 1 << 8, Integer.MAX_VALUE);
+
+    /**
+     * Min size of a long array to use Radix sort.
+     */
+    private static final int MIN_LONG_RADIX_SORT_SIZE =
+        Tuning.value("MIN_LONG_RADIX_SORT_SIZE", 640, 1 << 8, Integer.MAX_VALUE);
+
+    /**
+     * Min size of a float array to use Radix sort.
+     */
+    private static final int MIN_FLOAT_RADIX_SORT_SIZE =
+        Tuning.value("MIN_FLOAT_RADIX_SORT_SIZE", 640, 1 << 8, Integer.MAX_VALUE);
+
+    /**
+     * Min size of a double array to use Radix sort.
+     */
+    private static final int MIN_DOUBLE_RADIX_SORT_SIZE =
+        Tuning.value("MIN_DOUBLE_RADIX_SORT_SIZE", 640, 1 << 8, Integer.MAX_VALUE);
+
+    /**
+     * Min size of a part to perform Radix sort in parallel.
+     */
+    private static final int MIN_RADIX_PART_SIZE = 32 << 10;
+
+    /**
+     * Min array size to sort long and double elements as int keys.
+     */
+    private static final int MIN_COMPRESSED_SORT_SIZE = 64 << 10;
+
+    /**
+     * Number of elements sampled by the cost model of Radix sort.
+     */
+    private static final int RADIX_SAMPLE_SIZE = 64;
+
+    /**
+     * Number of bits in the hash set of the sampled elements.
+     */
+    private static final int SAMPLE_HASH_SIZE = 1 << 12;
+
+    /**
+     * Relative cost of one level of partitioning of the elements.
+     */
+    private static final int PARTITION_LEVEL_COST = 12;
+
+    /**
+     * Relative cost of one pass of Radix sort over int elements.
+     */
+    private static final int INT_RADIX_PASS_COST =
+        Tuning.value("INT_RADIX_PASS_COST", 8, 1, 1 << 10);
+
+    /**
+     * Relative cost of one pass of Radix sort over long elements.
+     */
+    private static final int LONG_RADIX_PASS_COST =
+        Tuning.value("LONG_RADIX_PASS_COST", 8, 1, 1 << 10);
+
+    /**
+     * Relative cost of one pass of Radix sort over float elements.
+     */
+    private static final int FLOAT_RADIX_PASS_COST =
+        Tuning.value("FLOAT_RADIX_PASS_COST", 8, 1, 1 << 10);
+
+    /**
+     * Relative cost of one pass of Radix sort over double elements.
+     */
+    private static final int DOUBLE_RADIX_PASS_COST =
+        Tuning.value("DOUBLE_RADIX_PASS_COST", 8, 1, 1 << 10);
+
+    /* ------------------ Bucket sort section ----------------- */
+
+    /**
+     * Min array size to use parallel bucket sort instead of merging.
      */
-    private static final int MIN_RADIX_SORT_SIZE = 640;
+    private static final int MIN_BUCKET_SORT_SIZE = 8 << 20;
 
     /* ------------------ Counting sort section --------------- */
 
     /**
      * Min size of a byte array to use counting sort.
      */
-    private static final int MIN_BYTE_COUNTING_SORT_SIZE = 32;
+    private static final int MIN_BYTE_COUNTING_SORT_SIZE =
+        Tuning.value("MIN_BYTE_COUNTING_SORT_SIZE", 32, 0, Integer.MAX_VALUE);
 
     /**
      * Min size of a char array to use counting sort.
      */
-    private static final int MIN_CHAR_COUNTING_SORT_SIZE = 2300;
+    private static final int MIN_CHAR_COUNTING_SORT_SIZE =
+        Tuning.value("MIN_CHAR_COUNTING_SORT_SIZE", 2300, 0, Integer.MAX_VALUE);
 
     /**
      * Min size of a short array to use counting sort.
      */
-    private static final int MIN_SHORT_COUNTING_SORT_SIZE = 2300;
+    private static final int MIN_SHORT_COUNTING_SORT_SIZE =
+        Tuning.value("MIN_SHORT_COUNTING_SORT_SIZE", 2300, 0, Integer.MAX_VALUE);
+
+    /**
+     * Min size of a part to perform counting sort in parallel.
+     */
+    private static final int MIN_COUNTING_PART_SIZE = 128 << 10;
+
+    /* ----------------- External sort section ---------------- */
+
+    /**
+     * Min size of the memory in bytes to sort the records externally.
+     */
+    private static final int MIN_EXTERNAL_MEMORY = 64 << 10;
+
+    /**
+     * Max size of the buffer in bytes to read the chunks and write the runs.
+     */
+    private static final int IO_BUFFER_SIZE = 4 << 20;
+
+    /**
+     * Min size of the buffer in bytes to read the run, which limits
+     * the number of the runs merged at once, unless only two runs
+     * are merged.
+     */
+    private static final int MIN_MERGE_BUFFER_SIZE = 256 << 10;
+
+    /**
+     * Max size of the buffer in bytes to read the run while merging.
+     */
+    private static final int MAX_MERGE_BUFFER_SIZE = 64 << 20;
+
+    /**
+     * Max number of the runs merged at once.
+     */
+    private static final int MAX_MERGE_FAN_IN = 1 << 10;
+
+    /* ------------------ Calibration section ----------------- */
+
+    /**
+     * Number of random elements sorted in one round of calibration.
+     */
+    private static final int CALIBRATION_LENGTH = 1 << 17;
+
+    /**
+     * Number of rounds of calibration, the fastest one is taken.
+     */
+    private static final int CALIBRATION_ROUNDS = 7;
+
+    /**
+     * Max ratio of the time of one pass of Radix sort to the time of
+     * one level of partitioning, or vice versa, taken by calibration.
+     */
+    private static final int MAX_RADIX_PASS_RATIO = 4;
 
     /* -------------------- Common section -------------------- */
 
     /**
      * Min array size to perform sorting in parallel.
      */
-    private static final int MIN_PARALLEL_SORT_SIZE = 4 << 10;
+    private static final int MIN_PARALLEL_SORT_SIZE =
+        Tuning.value("MIN_PARALLEL_SORT_SIZE", 4 << 10, 1 << 10, Integer.MAX_VALUE);
+
+    /**
+     * Min size of a part to be processed in parallel.
+     */
+    private static final int MIN_PROCESS_PART_SIZE = 16 << 10;
 
     /**
      * Max recursive depth before switching to heap sort.
      */
     private static final int MAX_RECURSION_DEPTH = 64 << 1;
 
+    /**
+     * Max size of a buffer in bytes kept in thread-confined workspace.
+     */
+    private static final int MAX_WORKSPACE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Indicates whether temporary arrays are kept in thread-confined
+     * workspaces and reused by subsequent sorts in the same thread.
+     */
+    private static final boolean REUSE_WORKSPACE =
+        Boolean.getBoolean("java.util.DualPivotQuicksort.reuseWorkspace");
+
     /**
      * Max size of additional buffer in bytes,
      *      limited by max_heap / 16 or 2 GB max.
@@ -232,66 +452,183 @@ final class DualPivotQuicksort_r38_12 {
      * @param high the index of the last element, exclusive, to be sorted
      */
     static void sort(int[] a, int parallelism, int low, int high) {
-        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
-            new Sorter<>(a, parallelism, low, high - low).invoke();
+        sort(a, parallelism, null, low, high);
+    }
+
+    /**
+     * Sorts the specified range of the array, so that additional
+     * buffer doesn't exceed the given budget.<p>
+     *
+     * If the budget is less than the size of the range, but not less
+     * than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel sorting
+     * uses the largest buffer within the budget to sort blocks, which
+     * are then merged in place. Otherwise the range is sorted without
+     * additional buffer.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param budget the max size of additional buffer in bytes
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(int[] a, int parallelism, long budget, int low, int high) {
+        int size = high - low;
+        int length = (int) Math.max(0, Math.min(budget >> 2, size));
+
+        if (length == size) {
+            sort(a, parallelism, null, low, high);
         } else {
-            sort(null, a, 0, low, high);
+            int[] b = parallelism > 1 && size > MIN_PARALLEL_SORT_SIZE
+                && (long) length * MAX_BOUNDED_BLOCK_COUNT >= size
+                    ? tryAllocate(int[].class, length) : null;
+
+            sort(a, parallelism, b != null ? b : new int[0], low, high);
         }
     }
 
     /**
-     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     * Sorts the specified range of the array using the given
+     * workspace as additional buffer.<p>
+     *
+     * If the workspace is supplied, no buffer is allocated during
+     * sorting. If the workspace is shorter than the range, but not
+     * shorter than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel
+     * sorting sorts the blocks, which fit the workspace, and merges
+     * them in place. Otherwise the range is sorted without additional
+     * buffer: runs are not merged, and neither Radix sort nor parallel
+     * merge sort is used.
      *
-     * @param sorter parallel context
      * @param a the array to be sorted
-     * @param bits the combination of recursion depth and bit flag, where
-     *        the right bit "0" indicates that range is the leftmost part
+     * @param parallelism the parallelism level
+     * @param workspace the additional buffer of at least {@code high - low}
+     *        elements, or {@code null} to allocate the buffer, if required
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void sort(Sorter<int[]> sorter, int[] a, int bits, int low, int high) {
-        while (true) {
-            int size = high - low;
+    static void sort(int[] a, int parallelism, int[] workspace, int low, int high) {
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            int[] b = workspace != null ? workspace : tryAllocateBounded(int[].class, high - low);
 
-            /*
-             * Run adaptive mixed insertion sort on small non-leftmost parts.
-             */
-            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
-                sort(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
-                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
-                return;
+            if (b != null && b.length < high - low
+                    && (long) b.length * MAX_BOUNDED_BLOCK_COUNT >= high - low) {
+                boundedSort(a, parallelism, b, low, high);
+            } else {
+                new Sorter<>(a, b, workspace == null, parallelism, low, high - low).invoke();
+            }
+        } else if (workspace == null) {
+            sort(null, a, 0, low, high);
+        } else {
+            Workspace.lend(workspace, workspace.length);
+
+            try {
+                sort(null, a, 0, low, high);
+            } finally {
+                Workspace.lend(null, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the indices of the elements from the specified range
+     * of the array, arranged in ascending numerical order of the
+     * elements, the array itself is not modified. Indices of equal
+     * elements are in ascending order.<p>
+     *
+     * Each element is packed with its index into a long value, so
+     * that the indices are moved together with the keys by parallel
+     * merge sort, Radix sort and/or Dual-Pivot Quicksort.
+     *
+     * @param a the array of the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return the indices of the elements in sorted order
+     */
+    static int[] indexSort(int[] a, int parallelism, int low, int high) {
+        long[] p = new long[high - low];
+
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                p[i - low] = (long) a[i] << 32 | i;
             }
+        });
+        sort(p, parallelism, 0, p.length);
+        return unpackIndices(p, parallelism, 0);
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position,
+     * see the selection of several ranks.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(int[] a, int rank, int low, int high) {
+        select(a, new int[] { rank }, low, high);
+    }
+
+    /**
+     * Places the elements of the given ranks at their sorted positions
+     * in the specified range of the array, so that all elements before
+     * each of them are less than or equal to it, and all elements after
+     * it are greater than or equal to it.<p>
+     *
+     * The ranks are selected by the same partitioning as sorting,
+     * which recurses only into the parts with the ranks. If the
+     * recursion is too deep, the ranks are selected using the
+     * median of medians in linear worst-case time.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(int[] a, int[] ranks, int low, int high) {
+        select(a, ranks, 0, ranks.length, 0, low, high);
+    }
+
+    /**
+     * Selects the elements of the given ranks from the specified
+     * range of the array using Dual-Pivot Quicksort partitioning.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param from the index of the first rank, inclusive, to be selected
+     * @param to the index of the last rank, exclusive, to be selected
+     * @param bits the recursion depth
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    private static void select(int[] a, int[] ranks, int from, int to, int bits, int low, int high) {
+        while (from < to) {
+            int size = high - low;
 
             /*
-             * Invoke insertion sort on small leftmost part.
+             * Invoke insertion sort on small part.
              */
             if (size < MAX_INSERTION_SORT_SIZE) {
-                sort(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
-                    low, high, DualPivotQuicksort_r38_12::insertionSort);
+                insertionSort(a, low, high);
                 return;
             }
 
             /*
-             * Try merging sort on large part.
+             * Switch to the median of medians, if execution time is quadratic.
              */
-            if (size > MIN_MERGING_SORT_SIZE * bits
-                    && tryMergingSort(sorter, a, low, high)) {
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                for (; from < to; low = ranks[from++]) {
+                    medianSelect(a, ranks[from], low, high);
+                }
                 return;
             }
 
             /*
-             * Divide the given array into the golden ratio using
-             * an inexpensive approximation to select five sample
-             * elements and determine pivots.
+             * Use the same five sample elements
+             * to determine pivots as sorting.
              */
             int step = (size >> 2) + (size >> 3) + (size >> 7);
 
-            /*
-             * Five elements around (and including) the central element
-             * will be used for pivot selection as described below. The
-             * unequal choice of spacing these elements was empirically
-             * determined to work well on a wide variety of inputs.
-             */
             int e1 = low + step;
             int e5 = high - step;
             int e3 = (e1 + e5) >>> 1;
@@ -299,26 +636,9 @@ final class DualPivotQuicksort_r38_12 {
             int e4 = (e3 + e5) >>> 1;
             int a3 = a[e3];
 
-            /*
-             * Check if part is large and contains random
-             * data, taking into account parallel context.
-             */
-            boolean isLargeRandom =
-                size > MIN_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
-//              size > MIN_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
-                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
-
             /*
              * Sort these elements in-place by the combination
              * of 4-element sorting network and insertion sort.
-             *
-             *   1 ---------o---------------o-----------------
-             *              |               |
-             *   2 ---------|-------o-------o-------o---------
-             *              |       |               |
-             *   4 ---------o-------|-------o-------o---------
-             *                      |       |
-             *   5 -----------------o-------o-----------------
              */
             if (a[e1] > a[e4]) { int t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
             if (a[e2] > a[e5]) { int t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
@@ -344,1331 +664,1180 @@ final class DualPivotQuicksort_r38_12 {
             }
 
             /*
-             * Try Radix sort on large fully random data.
-             */
-            if (isLargeRandom
-                    && a[e2] < a[e3] && a[e3] < a[e4]
-                    && tryRadixSort(sorter, a, low, high)) {
-                return;
-            }
-
-            /*
-             * Switch to heap sort, if execution time is quadratic.
-             */
-            if ((bits += 2) > MAX_RECURSION_DEPTH) {
-                heapSort(a, low, high);
-                return;
-            }
-
-            /*
-             * indices[0] - the index of the last element of the left part
-             * indices[1] - the index of the first element of the right part
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
              */
-            int[] indices;
+            int lower, upper;
 
             /*
              * Partitioning with two pivots on array of fully random elements.
              */
             if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
 
-                indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
-                    low, high, e1, e5, DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                int[] indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
 
                 /*
-                 * Sort non-left parts recursively (possibly in parallel),
-                 * excluding known pivots.
+                 * Select the ranks of the left and central parts
+                 * recursively, excluding known pivots, and iterate
+                 * along the right part.
                  */
-                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[0] + 1, indices[1]);
-                    sorter.fork(bits | 1, indices[1] + 1, high);
-                } else {
-                    sort(sorter, a, bits | 1, indices[0] + 1, indices[1]);
-                    sort(sorter, a, bits | 1, indices[1] + 1, high);
-                }
+                int r1 = rankIndex(ranks, from, to, lower);
+                int r2 = rankIndex(ranks, r1, to, lower + 1);
+                int r3 = rankIndex(ranks, r2, to, upper);
+
+                select(a, ranks, from, r1, bits, low, lower);
+                select(a, ranks, r2, r3, bits, lower + 1, upper);
+
+                from = rankIndex(ranks, r3, to, upper + 1);
+                low = upper + 1;
 
             } else { // Partitioning with one pivot
 
-                indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                int[] indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
                     low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
 
                 /*
-                 * Sort the right part (possibly in parallel), excluding
-                 * known pivot. All elements from the central part are
-                 * equal and therefore already sorted.
+                 * Select the ranks of the left part recursively and
+                 * iterate along the right part. All elements from
+                 * the central part are equal and therefore selected.
                  */
-                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[1], high);
-                } else {
-                    sort(sorter, a, bits | 1, indices[1], high);
-                }
+                int r1 = rankIndex(ranks, from, to, lower);
+
+                select(a, ranks, from, r1, bits, low, lower);
+
+                from = rankIndex(ranks, r1, to, upper);
+                low = upper;
             }
-            high = indices[0]; // Iterate along the left part
         }
     }
 
     /**
-     * Partitions the specified range of the array using two given pivots.
+     * Places the element of the given rank at its sorted position in the
+     * specified range of the array in linear worst-case time, using the
+     * median of medians of five elements as the pivot.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of pivot1, the first pivot
-     * @param pivotIndex2 the index of pivot2, the second pivot
-     * @return indices of parts after partitioning
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
      */
-    private static int[] partitionWithTwoPivots(
-            int[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+    private static void medianSelect(int[] a, int rank, int low, int high) {
+        while (high - low >= MAX_INSERTION_SORT_SIZE) {
+            /*
+             * Move the medians of the groups of five
+             * elements to the beginning of the range.
+             */
+            int m = low;
 
-        /*
-         * Pointers to the right and left parts.
-         */
-        int upper = --high;
-        int lower = low;
+            for (int i = low; i + 5 <= high; i += 5, ++m) {
+                insertionSort(a, i, i + 5);
+                int t = a[m]; a[m] = a[i + 2]; a[i + 2] = t;
+            }
 
-        /*
-         * Use the first and fifth of the five sorted elements as
-         * the pivots. These values are inexpensive approximation
-         * of tertiles. Note, that pivot1 < pivot2.
-         */
-        final int pivot1 = a[pivotIndex1]; // todo final
-        final int pivot2 = a[pivotIndex2];
-
-        /*
-         * The first and the last elements to be sorted are moved
-         * to the locations formerly occupied by the pivots. When
-         * partitioning is completed, the pivots are swapped back
-         * into their final positions, and excluded from the next
-         * subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
-        a[pivotIndex2] = a[upper];
-
-        /*
-         * Skip elements, which are less or greater than the pivots.
-         */
-        while (a[++lower] < pivot1);
-        while (a[--upper] > pivot2);
-
-        /*
-         * Backward 3-interval partitioning
-         *
-         *     left part                     central part          right part
-         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
-         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
-         * +--------------+----------+--------------------------+--------------+
-         *               ^          ^                            ^
-         *               |          |                            |
-         *             lower        k                          upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
-         */
-        for (int unused = --lower, k = ++upper; --k > lower; ) {
-            int ak = a[k];
-
-            if (ak < pivot1) { // Move a[k] to the left part
-                while (a[++lower] < pivot1);
-
-                if (lower > k) {
-                    lower = k;
-                    break;
-                }
-                if (a[lower] > pivot2) {
-                    a[k] = a[--upper];
-                    a[upper] = a[lower];
-                } else {
-                    a[k] = a[lower];
-                }
-                a[lower] = ak;
-            } else if (ak > pivot2) { // Move a[k] to the right part
-                a[k] = a[--upper];
-                a[upper] = ak;
+            /*
+             * Partition the range around the median of medians.
+             */
+            int middle = (low + m) >>> 1;
+            medianSelect(a, middle, low, m);
+            int[] indices = partitionWithOnePivot(a, low, high, middle, middle);
+
+            if (rank < indices[0]) {
+                high = indices[0];
+            } else if (rank >= indices[1]) {
+                low = indices[1];
+            } else {
+                return;
             }
         }
-
-        /*
-         * Swap the pivots into their final positions.
-         */
-        a[low]  = a[lower]; a[lower] = pivot1;
-        a[high] = a[upper]; a[upper] = pivot2;
-
-        return new int[] { lower, upper };
+        insertionSort(a, low, high);
     }
 
     /**
-     * Partitions the specified range of the array using one given pivot.
+     * Sorts the first k positions of the specified range of the array:
+     * the k least elements are moved to the beginning of the range in
+     * ascending numerical order, and the other elements follow them
+     * in unspecified order.<p>
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of single pivot
-     * @param pivotIndex2 the index of single pivot
-     * @return indices of parts after partitioning
+     * Only the parts after partitioning, which overlap the first k
+     * positions, are processed, therefore the expected running time
+     * is O(n + k log(k)).
+     *
+     * @param a the array to be partially sorted
+     * @param parallelism the parallelism level
+     * @param k the number of the least elements to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
      */
-    private static int[] partitionWithOnePivot(
-            int[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
-
-        /*
-         * Pointers to the right and left parts.
-         */
-        int upper = high;
-        int lower = low;
-
-        /*
-         * Use the third of the five sorted elements as the pivot.
-         * This value is inexpensive approximation of the median.
-         */
-        final int pivot = a[pivotIndex1];
-
-        /*
-         * The first element to be sorted is moved to the
-         * location formerly occupied by the pivot. After
-         * completion of partitioning the pivot is swapped
-         * back into its final position, and excluded from
-         * the next subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
-
-        /*
-         * Dutch National Flag partitioning
-         *
-         *     left part               central part    right part
-         * +------------------------------------------------------+ // todo ---+----
-         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
-         * +------------------------------------------------------+
-         *               ^          ^                ^
-         *               |          |                |
-         *             lower        k              upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
-         */
-        for (int k = upper; --k > lower; ) {
-            int ak = a[k];
-
-            if (ak == pivot) {
-                continue;
-            }
-            a[k] = pivot;
-
-            if (ak < pivot) { // Move a[k] to the left part
-                while (a[++lower] < pivot);
-
-                if (a[lower] > pivot) {
-                    a[--upper] = a[lower];
-                }
-                a[lower] = ak;
-            } else { // ak > pivot - Move a[k] to the right part
-                a[--upper] = ak;
-            }
+    static void partialSort(int[] a, int parallelism, int k, int low, int high) {
+        if (k >= high - low) {
+            sort(a, parallelism, low, high);
+            return;
         }
+        int limit = low + Math.max(k, 0);
 
-        /*
-         * Swap the pivot into its final position.
-         */
-        a[low] = a[lower]; a[lower] = pivot;
-
-        return new int[] { lower, upper };
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            new Sorter<>(a, null, false, parallelism, low, high - low, limit).invoke();
+        } else {
+            partialSort(null, a, limit, low, high);
+        }
     }
 
     /**
-     * Sorts the specified range of the array using mixed insertion sort.<p>
-     *
-     * Mixed insertion sort is combination of pin insertion sort,
-     * simple insertion sort and pair insertion sort.<p>
-     *
-     * In the context of Dual-Pivot Quicksort, the pivot element
-     * from the left part plays the role of sentinel, because it
-     * is less than any elements from the given part. Therefore,
-     * expensive check of the left range can be skipped on each
-     * iteration unless it is the leftmost call.
+     * Sorts the leading part of the specified range of the array up to
+     * the given limit using Dual-Pivot Quicksort. The parts, which are
+     * before the limit, are sorted completely (possibly in parallel),
+     * the part with the limit is partitioned again, and the parts
+     * after the limit are skipped.
      *
-     * @param a the array to be sorted
+     * @param sorter parallel context
+     * @param a the array to be partially sorted
+     * @param limit the index of the last element, exclusive, to be sorted
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void mixedInsertionSort(int[] a, int low, int high) {
-
-        /*
-         * Split part for pin and pair insertion sorts.
-         */
-        int end = high - 3 * ((high - low) >> 3 << 1);
-
-        /*
-         * Invoke simple insertion sort on small part.
-         */
-        if (end == high) {
-            for (int i; ++low < high; ) {
-                int ai = a[i = low];
+    static void partialSort(Sorter<int[]> sorter, int[] a, int limit, int low, int high) {
+        for (int bits = 0; limit > low; ) {
+            int size = high - low;
 
-                while (ai < a[i - 1]) {
-                    a[i] = a[--i];
-                }
-                a[i] = ai;
+            /*
+             * Sort the part completely, if it is before
+             * the limit, or it is small.
+             */
+            if (high <= limit || size < MAX_INSERTION_SORT_SIZE) {
+                sort(sorter, a, bits, low, high);
+                return;
             }
-            return;
-        }
-
-        /*
-         * Start with pin insertion sort.
-         */
-        for (int i, p = high; ++low < end; ) {
-            int ai = a[i = low], pin = a[--p];
 
             /*
-             * Swap larger element with pin.
+             * Switch to heap sort, if execution time is quadratic.
              */
-            if (ai > pin) {
-                ai = pin;
-                a[p] = a[i];
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, low, high);
+                return;
             }
 
             /*
-             * Insert element into sorted part.
+             * Use the same five sample elements
+             * to determine pivots as sorting.
              */
-            while (ai < a[i - 1]) {
-                a[i] = a[--i];
-            }
-            a[i] = ai;
-        }
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
 
-        /*
-         * Finish with pair insertion sort.
-         */
-        for (int i; low < high; ++low) {
-            int a1 = a[i = low], a2 = a[++low];
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            int a3 = a[e3];
 
             /*
-             * Insert two elements per iteration: at first, insert the
-             * larger element and then insert the smaller element, but
-             * from the position where the larger element was inserted.
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
              */
-            if (a1 > a2) {
+            if (a[e1] > a[e4]) { int t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { int t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { int t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { int t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { int t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
 
-                while (a1 < a[--i]) {
-                    a[i + 2] = a[i];
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
                 }
-                a[++i + 1] = a1;
-
-                while (a2 < a[--i]) {
-                    a[i + 1] = a[i];
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
                 }
-                a[i + 1] = a2;
+            }
 
-            } else if (a1 < a[i - 1]) {
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
 
-                while (a2 < a[--i]) {
-                    a[i + 2] = a[i];
-                }
-                a[++i + 1] = a2;
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
 
-                while (a1 < a[--i]) {
-                    a[i + 1] = a[i];
+                int[] indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
                 }
-                a[i + 1] = a1;
-            }
-        }
-    }
 
-    /**
-     * Sorts the specified range of the array using insertion sort.
-     *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     */
-    static void insertionSort(int[] a, int low, int high) {
-        for (int i, k = low; ++k < high; ) {
-            int ai = a[i = k];
+                /*
+                 * Sort the left part and the central part, if it is
+                 * before the limit, (possibly in parallel), excluding
+                 * known pivots, and iterate along the part with the limit.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits, low, lower);
 
-            if (ai < a[i - 1]) {
-                do {
-                    a[i] = a[--i];
-                } while (i > low && ai < a[i - 1]);
+                    if (limit > upper) {
+                        sorter.fork(bits | 1, lower + 1, upper);
+                    }
+                } else {
+                    sort(sorter, a, bits, low, lower);
 
-                a[i] = ai;
+                    if (limit > upper) {
+                        sort(sorter, a, bits | 1, lower + 1, upper);
+                    }
+                }
+                low = limit > upper ? upper + 1 : lower + 1;
+                high = limit > upper ? high : upper;
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
+                }
+
+                /*
+                 * Sort the left part (possibly in parallel) and iterate
+                 * along the right part, if it overlaps the limit. All
+                 * elements from the central part are equal and
+                 * therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits, low, lower);
+                } else {
+                    sort(sorter, a, bits, low, lower);
+                }
+                low = upper;
             }
+            bits |= 1;
         }
     }
 
     /**
-     * Tries to sort the specified range of the array using merging sort.
+     * Sorts the specified range of the array using Dual-Pivot Quicksort.
      *
      * @param sorter parallel context
      * @param a the array to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
-     * @return {@code true} if the array is finally sorted, otherwise {@code false}
      */
-    static boolean tryMergingSort(Sorter<int[]> sorter, int[] a, int low, int high) {
+    static void sort(Sorter<int[]> sorter, int[] a, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
 
-        /*
-         * The element run[i] holds the start index
-         * of i-th sequence in non-descending order.
-         */
-        int count = 1;
-        int[] run = null;
+            /*
+             * Run branch-free sorting network on tiny part.
+             */
+            if (size <= MAX_NETWORK_SORT_SIZE) {
+                sort(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::networkSort);
+                return;
+            }
 
-        /*
-         * Identify all possible runs.
-         */
-        for (int k = low + 1, last = low; k < high; ) {
+            /*
+             * Run adaptive mixed insertion sort on small non-leftmost parts.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
+                sort(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
+                return;
+            }
 
             /*
-             * Find the next run.
+             * Invoke insertion sort on small leftmost part.
              */
-            if (a[k - 1] < a[k]) {
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                sort(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::insertionSort);
+                return;
+            }
 
-                // Identify ascending sequence
-                while (++k < high && a[k - 1] <= a[k]);
+            /*
+             * Try merging sort on large part.
+             */
+            if (size > MIN_MERGING_SORT_SIZE * bits
+                    && tryMergingSort(sorter, a, low, high)) {
+                return;
+            }
 
-            } else if (a[k - 1] > a[k]) {
+            /*
+             * Try bucket sort on huge part in parallel context.
+             */
+            if (size > MIN_BUCKET_SORT_SIZE && bits == 0 && sorter != null
+                    && tryBucketSort(sorter, a, low, high)) {
+                return;
+            }
 
-                // Identify descending sequence
-                while (++k < high && a[k - 1] >= a[k]);
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
 
-                // Reverse into ascending order
-                for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
-                    int ai = a[i]; a[i] = a[j]; a[j] = ai;
-                }
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            int a3 = a[e3];
 
-                // todo javadoc
-                if (k < high && a[k - 1] < a[k]) {
-                    continue;
-                }
+            /*
+             * Check if part is large and contains random
+             * data, taking into account parallel context.
+             */
+            boolean isLargeRandom =
+                size > MIN_INT_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
+//              size > MIN_INT_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
+                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
 
-            } else { // Identify constant sequence
-                for (int ak = a[k]; ++k < high && ak == a[k]; );
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             *
+             *   1 ---------o---------------o-----------------
+             *              |               |
+             *   2 ---------|-------o-------o-------o---------
+             *              |       |               |
+             *   4 ---------o-------|-------o-------o---------
+             *                      |       |
+             *   5 -----------------o-------o-----------------
+             */
+            if (a[e1] > a[e4]) { int t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { int t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { int t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { int t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { int t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
 
-                // todo javadoc
-                if (k < high) {
-                    continue;
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
                 }
             }
 
             /*
-             * Process the current run.
+             * Try Radix sort on large random data,
+             * if the sampled cost model prefers it.
              */
-            if (run == null) {
+            if (isLargeRandom
+                    && a[e2] < a[e3] && a[e3] < a[e4]
+                    && preferRadixSort(a, low, high)
+                    && tryRadixSort(sorter, a, low, high)) {
+                return;
+            }
 
-                if (k == high) {
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, low, high);
+                return;
+            }
 
-                    /*
-                     * Array is monotonous sequence
-                     * and therefore already sorted.
-                     */
-                    return true;
-                }
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
 
-                /*
-                 * Terminate scanning, if the runs are too small.
-                 */
-                if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
-                }
-                run = new int[ Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8];
-                run[0] = low;
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
 
-            } else if (a[last - 1] > a[last]) { // Start the new run
+                int[] indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
 
                 /*
-                 * Terminate scanning, if the runs are too small.
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
                  */
-                if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
-                }
-
-                if (++count == run.length) {
-
-                    /*
-                     * Array is not highly structured.
-                     */
-                    return false;
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, lower + 1, upper);
+                    sorter.fork(bits | 1, upper + 1, high);
+                } else {
+                    sort(sorter, a, bits | 1, lower + 1, upper);
+                    sort(sorter, a, bits | 1, upper + 1, high);
                 }
-            }
 
-            /*
-             * Save the current run.
-             */
-            run[count] = (last = k);
-
-            /*
-             * Check single-element run at the end.
-             */
-            if (++k == high) {
-                --k;
-            }
-        }
+            } else { // Partitioning with one pivot
 
-        /*
-         * Merge all runs.
-         */
-        if (count > 1) {
-            int[] b; int offset = low;
+                int[] indices = partition(int.class, a, Unsafe.ARRAY_INT_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
 
-            if (sorter != null && (b = sorter.b) != null) {
-                offset = sorter.offset;
-            } else if ((b = tryAllocate(int[].class, high - low)) == null) {
-                return false;
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, upper, high);
+                } else {
+                    sort(sorter, a, bits | 1, upper, high);
+                }
             }
-            mergeRuns(sorter, a, b, offset, true, run, 0, count);
+            high = lower; // Iterate along the left part
         }
-        return true;
     }
 
     /**
-     * Merges the specified runs.
+     * Partitions the specified range of the array using two given pivots.
      *
-     * @param sorter parallel context
-     * @param a the source array
-     * @param b the temporary buffer used in merging
-     * @param offset the start index in the source, inclusive
-     * @param aim specifies merging: to source (+1), buffer (-1) or any (0) // todo javadoc update
-     * @param run the start indexes of the runs, inclusive
-     * @param lo the start index of the first run, inclusive
-     * @param hi the start index of the last run, inclusive
-     * @return the destination where the runs are merged // todo r
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
      */
-    private static void mergeRuns(Sorter<int[]> sorter, int[] a, int[] b, int offset,
-            boolean aim, int[] run, int lo, int hi) {
-
-        if (hi - lo == 1) {
-            if (!aim) {
-                System.arraycopy(a, run[lo], b, run[lo] - offset, run[hi] - run[lo]);
-            }
-            return;
-        }
+    private static int[] partitionWithTwoPivots(
+            int[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
 
         /*
-         * Split the array into two approximately equal parts.
+         * Pointers to the right and left parts.
          */
-        int mi = lo, rmi = (run[lo] + run[hi]) >>> 1;
-        while (run[++mi + 1] <= rmi);
+        int upper = --high;
+        int lower = low;
 
         /*
-         * Merge the runs of all parts.
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
          */
-        mergeRuns(sorter, a, b, offset, !aim, run, lo, mi);
-        mergeRuns(sorter, a, b, offset, !aim, run, mi, hi);
+        final int pivot1 = a[pivotIndex1]; // todo final
+        final int pivot2 = a[pivotIndex2];
 
-        int k  = !aim ? run[lo] - offset : run[lo];
-        int lo1 = aim ? run[lo] - offset : run[lo];
-        int hi1 = aim ? run[mi] - offset : run[mi];
-        int lo2 = aim ? run[mi] - offset : run[mi];
-        int hi2 = aim ? run[hi] - offset : run[hi];
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+        a[pivotIndex2] = a[upper];
 
-        int[] dst = aim ? a : b;
-        int[] src = aim ? b : a;
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
 
         /*
-         * Merge the left and right parts.
+         * Backward 3-interval partitioning
+         *
+         *     left part                     central part          right part
+         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
+         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
+         * +--------------+----------+--------------------------+--------------+
+         *               ^          ^                            ^
+         *               |          |                            |
+         *             lower        k                          upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
          */
-        if (hi1 - lo1 > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-            new Merger<>(null, dst, k, src, lo1, hi1, lo2, hi2).invoke();
-        } else {
-            mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            int ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper];
+                    a[upper] = a[lower];
+                } else {
+                    a[k] = a[lower];
+                }
+                a[lower] = ak;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                a[k] = a[--upper];
+                a[upper] = ak;
+            }
         }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; a[lower] = pivot1;
+        a[high] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
     }
 
     /**
-     * Merges the sorted parts.
+     * Partitions the specified range of the array using two given
+     * pivots by two passes of branch-free block partitioning: at
+     * first by pivot1 and then the rest of the range by pivot2.<p>
      *
-     * @param merger parallel context
-     * @param dst the destination where parts are merged
-     * @param k the start index of the destination, inclusive
-     * @param a1 the first part // todo r
-     * @param src the first part // todo a
-     * @param lo1 the start index of the first part, inclusive
-     * @param hi1 the end index of the first part, exclusive
-     * @param a2 the second part // todo r
-     * @param lo2 the start index of the second part, inclusive
-     * @param hi2 the end index of the second part, exclusive
+     * The parts are the same as after partitioning with two pivots,
+     * but the elements are classified by blocks without branches,
+     * therefore mispredictions on random data are avoided.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
      */
-    private static void mergeParts(Merger<int[]> merger, int[] dst, int k,
-            int[] src, int lo1, int hi1, int lo2, int hi2) {
+    private static int[] partitionWithBlocks(
+            int[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        int end = --high;
 
         /*
-         * Merge the parts in parallel.
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. Note, that pivot1 < pivot2.
          */
-        if (merger != null) {
-
-            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
-
-                /*
-                 * The first part must be larger.
-                 */
-                if (hi1 - lo1 < hi2 - lo2) {
-                    int lo = lo1; lo1 = lo2; lo2 = lo;
-                    int hi = hi1; hi1 = hi2; hi2 = hi;
-                }
-
-                /*
-                 * Find the median of the larger part.
-                 */
-                int mi1 = (lo1 + hi1) >>> 1;
-                int key = src[mi1];
-                int mi2 = hi2;
+        int pivot1 = a[pivotIndex1];
+        int pivot2 = a[pivotIndex2];
 
-                /*
-                 * Split the smaller part.
-                 */
-                for (int mid = lo2; mid < mi2; ) {
-                    int d = (mid + mi2) >>> 1; // todo rename int m = ...
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots.
+         */
+        a[pivotIndex1] = a[low];
+        a[pivotIndex2] = a[end];
 
-                    if (key > src[d]) {
-                        mid = d + 1;
-                    } else {
-                        mi2 = d;
-                    }
-                }
+        /*
+         * Split the range by pivot1, and then by pivot2
+         * using the nearest greater value as the bound.
+         */
+        int lower = partitionByBlocks(a, low + 1, end, pivot1) - 1;
+        int upper = pivot2 == Integer.MAX_VALUE ? end :
+            partitionByBlocks(a, lower + 1, end, pivot2 + 1);
 
-                /*
-                 * Merge other parts in parallel.
-                 */
-                merger.fork(k, lo1, mi1, lo2, mi2);
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low] = a[lower]; a[lower] = pivot1;
+        a[end] = a[upper]; a[upper] = pivot2;
 
-                /*
-                 * Reserve space for the second parts.
-                 */
-                k += mi2 - lo2 + mi1 - lo1;
+        return Workspace.indices(lower, upper);
+    }
 
-                /*
-                 * Iterate along the second parts.
-                 */
-                lo1 = mi1;
-                lo2 = mi2;
-            }
-        }
+    /**
+     * Partitions the specified range of the array, so that
+     * the elements less than the bound precede other elements,
+     * using branch-free classification of blocks of elements.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param bound the value to compare the elements with
+     * @return the index of the first element, which is not less than the bound
+     */
+    private static int partitionByBlocks(int[] a, int low, int high, int bound) {
+        long maskL = 0L, maskR = 0L;
 
         /*
-         * Merge small parts sequentially.
+         * Process the blocks from both sides, while they don't overlap.
          */
-        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+        while (high - low >= PARTITION_BLOCK_SIZE << 1) {
 
-            if (src[hi1 - 1] < src[hi2 - 1]) {
-                while (lo1 < hi1) {
-                    int slo1 = src[lo1]; // todo rename: first, or key, or curr
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
-                    }
-                }
-            } else if (src[hi1 - 1] > src[hi2 - 1]) {
-                while (lo2 < hi2) {
-                    int slo1 = src[lo1];
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
-                    }
+            /*
+             * Mark the elements, which are not less
+             * than the bound, in the left block.
+             */
+            if (maskL == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskL |= (a[low + i] < bound ? 0L : 1L) << i;
                 }
-            } else {
-                while (lo1 < hi1 && lo2 < hi2) {
-                    int slo1 = src[lo1];
+            }
 
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
-                    }
+            /*
+             * Mark the elements, which are less
+             * than the bound, in the right block.
+             */
+            if (maskR == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskR |= (a[high - 1 - i] < bound ? 1L : 0L) << i;
                 }
             }
-        }
 
-        /*
-         * Copy the tail of the left part.
-         */
-        if (lo1 < hi1) {
-            System.arraycopy(src, lo1, dst, k, hi1 - lo1);
+            /*
+             * Swap the misplaced elements of the blocks
+             * and clear their marks.
+             */
+            while (maskL != 0L && maskR != 0L) {
+                int i = low + Long.numberOfTrailingZeros(maskL);
+                int j = high - 1 - Long.numberOfTrailingZeros(maskR);
+                int ai = a[i]; a[i] = a[j]; a[j] = ai;
+                maskL &= maskL - 1;
+                maskR &= maskR - 1;
+            }
+
+            /*
+             * Move to the next blocks, if done.
+             */
+            if (maskL == 0L) {
+                low += PARTITION_BLOCK_SIZE;
+            }
+            if (maskR == 0L) {
+                high -= PARTITION_BLOCK_SIZE;
+            }
         }
 
         /*
-         * Copy the tail of the right part.
+         * Partition the rest of the range, including
+         * the unfinished block, by simple scanning.
          */
-        if (lo2 < hi2) {
-            System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+        while (true) {
+            while (low < high && a[low] < bound) {
+                ++low;
+            }
+            while (low < high && a[high - 1] >= bound) {
+                --high;
+            }
+            if (low == high) {
+                return low;
+            }
+            int al = a[low]; a[low++] = a[--high]; a[high] = al;
         }
     }
 
     /**
-     * Tries to sort the specified range of the array
-     * using LSD (The Least Significant Digit) Radix sort.
+     * Partitions the specified range of the array using one given pivot.
      *
-     * @param sorter // todo
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of single pivot
+     * @param pivotIndex2 the index of single pivot
+     * @return indices of parts after partitioning
      */
-    static boolean tryRadixSort(Sorter<int[]> sorter, int[] a, int low, int high) {
-        int[] b; int offset = low, size = high - low;
+    private static int[] partitionWithOnePivot(
+            int[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
 
         /*
-         * Allocate additional buffer.
+         * Pointers to the right and left parts.
          */
-        if (sorter != null && (b = sorter.b) != null) {
-            offset = sorter.offset;
-        } else if ((b = tryAllocate(int[].class, size)) == null) {
-            return false;
-        }
-
-        int start = low - offset;
-        int last = high - offset;
+        int upper = high;
+        int lower = low;
 
         /*
-         * Count the number of all digits.
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
          */
-        int[] count1 = new int[1024];
-        int[] count2 = new int[2048];
-        int[] count3 = new int[2048];
-
-        for (int i = low; i < high; ++i) {
-            ++count1[ a[i]         & 0x3FF];
-            ++count2[(a[i] >>> 10) & 0x7FF];
-            ++count3[(a[i] >>> 21) ^ 0x400]; // Reverse the sign bit
-        }
+        final int pivot = a[pivotIndex1];
 
         /*
-         * Detect digits to be processed.
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
          */
-        boolean processDigit1 = processDigit(count1, size, low);
-        boolean processDigit2 = processDigit(count2, size, low);
-        boolean processDigit3 = processDigit(count3, size, low);
+        a[pivotIndex1] = a[lower];
 
         /*
-         * Process the 1-st digit.
+         * Dutch National Flag partitioning
+         *
+         *     left part               central part    right part
+         * +------------------------------------------------------+ // todo ---+----
+         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
+         * +------------------------------------------------------+
+         *               ^          ^                ^
+         *               |          |                |
+         *             lower        k              upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
          */
-        if (processDigit1) {
-            for (int i = high; i > low; ) {
-                b[--count1[a[--i] & 0x3FF] - offset] = a[i];
-            }
-        }
+        for (int k = upper; --k > lower; ) {
+            int ak = a[k];
 
-        /*
-         * Process the 2-nd digit.
-         */
-        if (processDigit2) {
-            if (processDigit1) {
-                for (int i = last; i > start; ) {
-                    a[--count2[(b[--i] >>> 10) & 0x7FF]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count2[(a[--i] >>> 10) & 0x7FF] - offset] = a[i];
-                }
+            if (ak == pivot) {
+                continue;
             }
-        }
+            a[k] = pivot;
 
-        /*
-         * Process the 3-rd digit.
-         */
-        if (processDigit3) {
-            if (processDigit1 ^ processDigit2) {
-                for (int i = last; i > start; ) {
-                    a[--count3[(b[--i] >>> 21) ^ 0x400]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count3[(a[--i] >>> 21) ^ 0x400] - offset] = a[i];
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[--upper] = a[lower];
                 }
+                a[lower] = ak;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[--upper] = ak;
             }
         }
 
         /*
-         * Copy the buffer to original array, if we process ood number of digits.
+         * Swap the pivot into its final position.
          */
-        if (processDigit1 ^ processDigit2 ^ processDigit3) {
-            System.arraycopy(b, low - offset, a, low, size);
-        }
-        return true;
+        a[low] = a[lower]; a[lower] = pivot;
+
+        return Workspace.indices(lower, upper);
     }
 
     /**
-     * Checks the count array and then computes the histogram.
+     * Sorts the specified range of the array using mixed insertion sort.<p>
      *
-     * @param count the count array
-     * @param total the total number of elements
-     * @param low the index of the first element, inclusive
-     * @return {@code true} if the digit must be processed, otherwise {@code false}
+     * Mixed insertion sort is combination of pin insertion sort,
+     * simple insertion sort and pair insertion sort.<p>
+     *
+     * In the context of Dual-Pivot Quicksort, the pivot element
+     * from the left part plays the role of sentinel, because it
+     * is less than any elements from the given part. Therefore,
+     * expensive check of the left range can be skipped on each
+     * iteration unless it is the leftmost call.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
      */
-    private static boolean processDigit(int[] count, int total, int low) {
+    static void mixedInsertionSort(int[] a, int low, int high) {
 
         /*
-         * Check if we can skip the given digit.
+         * Split part for pin and pair insertion sorts.
          */
-        for (int c : count) {
-            if (c == total) {
-                return false;
+        int end = high - 3 * ((high - low) >> 3 << 1);
+
+        /*
+         * Invoke simple insertion sort on small part.
+         */
+        if (end == high) {
+            for (int i; ++low < high; ) {
+                int ai = a[i = low];
+
+                while (ai < a[i - 1]) {
+                    a[i] = a[--i];
+                }
+                a[i] = ai;
             }
-            if (c > 0) {
-                break;
+            return;
+        }
+
+        /*
+         * Start with pin insertion sort.
+         */
+        for (int i, p = high; ++low < end; ) {
+            int ai = a[i = low], pin = a[--p];
+
+            /*
+             * Swap larger element with pin.
+             */
+            if (ai > pin) {
+                ai = pin;
+                a[p] = a[i];
+            }
+
+            /*
+             * Insert element into sorted part.
+             */
+            while (ai < a[i - 1]) {
+                a[i] = a[--i];
             }
+            a[i] = ai;
         }
 
         /*
-         * Compute the histogram.
+         * Finish with pair insertion sort.
          */
-        count[0] += low;
+        for (int i; low < high; ++low) {
+            int a1 = a[i = low], a2 = a[++low];
 
-        for (int i = 0; ++i < count.length; ) { // todo
-            count[i] += count[i - 1];
+            /*
+             * Insert two elements per iteration: at first, insert the
+             * larger element and then insert the smaller element, but
+             * from the position where the larger element was inserted.
+             */
+            if (a1 > a2) {
+
+                while (a1 < a[--i]) {
+                    a[i + 2] = a[i];
+                }
+                a[++i + 1] = a1;
+
+                while (a2 < a[--i]) {
+                    a[i + 1] = a[i];
+                }
+                a[i + 1] = a2;
+
+            } else if (a1 < a[i - 1]) {
+
+                while (a2 < a[--i]) {
+                    a[i + 2] = a[i];
+                }
+                a[++i + 1] = a2;
+
+                while (a1 < a[--i]) {
+                    a[i + 1] = a[i];
+                }
+                a[i + 1] = a1;
+            }
         }
-        return true;
     }
 
     /**
-     * Sorts the specified range of the array using heap sort.
+     * Sorts the specified range of the array using insertion sort.
      *
      * @param a the array to be sorted
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void heapSort(int[] a, int low, int high) {
-        for (int k = (low + high) >>> 1; k > low; ) { // todo
-            pushDown(a, --k, a[k], low, high);
-        }
-        while (--high > low) {
-            int max = a[low];
-            pushDown(a, low, a[high], low, high);
-            a[high] = max;
-        }
-    }
+    static void insertionSort(int[] a, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            int ai = a[i = k];
 
-    /**
-     * Pushes specified element down during heap sort.
-     *
-     * @param a the given array
-     * @param p the start index
-     * @param value the given element
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     */
-    private static void pushDown(int[] a, int p, int value, int low, int high) {
-        for (int k ;; a[p] = a[p = k]) {
-            k = (p << 1) - low + 2; // Index of the right child
+            if (ai < a[i - 1]) {
+                do {
+                    a[i] = a[--i];
+                } while (i > low && ai < a[i - 1]);
 
-            if (k > high) {
-                break;
-            }
-            if (k == high || a[k] < a[k - 1]) {
-                --k;
-            }
-            if (a[k] <= value) {
-                break;
+                a[i] = ai;
             }
         }
-        a[p] = value;
     }
 
-// #[long]
-
     /**
-     * Sorts the specified range of the array using parallel merge
-     * sort and/or Dual-Pivot Quicksort.<p>
+     * Sorts the specified range of the array using branch-free
+     * sorting networks.<p>
      *
-     * To balance the faster splitting and parallelism of merge sort
-     * with the faster element partitioning of Quicksort, ranges are
-     * subdivided in tiers such that, if there is enough parallelism,
-     * the four-way parallel merge is started, still ensuring enough
-     * parallelism to process the partitions.
+     * The elements are loaded into local variables, padded with
+     * the max value up to 8 or 16 inputs of the network, put
+     * in order by min/max comparators and stored back, therefore
+     * there are no data-dependent branches.
      *
      * @param a the array to be sorted
-     * @param parallelism the parallelism level
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void sort(long[] a, int parallelism, int low, int high) {
-        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
-            new Sorter<>(a, parallelism, low, high - low).invoke();
-        } else {
-            sort(null, a, 0, low, high);
+    static void networkSort(int[] a, int low, int high) {
+        int size = high - low;
+
+        if (size > 8) {
+            networkSort16(a, low, high);
+        } else if (size > 1) {
+            networkSort8(a, low, high);
         }
     }
 
     /**
-     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     * Sorts the specified range of the array of at most 8 elements
+     * using the sorting network of 8 inputs and 19 comparators.
      *
-     * @param sorter parallel context
      * @param a the array to be sorted
-     * @param bits the combination of recursion depth and bit flag, where
-     *        the right bit "0" indicates that range is the leftmost part
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void sort(Sorter<long[]> sorter, long[] a, int bits, int low, int high) {
-        while (true) {
-            int size = high - low;
-
-            /*
-             * Run adaptive mixed insertion sort on small non-leftmost parts.
-             */
-            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
-                sort(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
-                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
-                return;
-            }
-
-            /*
-             * Invoke insertion sort on small leftmost part.
-             */
-            if (size < MAX_INSERTION_SORT_SIZE) {
-                sort(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
-                    low, high, DualPivotQuicksort_r38_12::insertionSort);
-                return;
-            }
-
-            /*
-             * Try merging sort on large part.
-             */
-            if (size > MIN_MERGING_SORT_SIZE * bits
-                    && tryMergingSort(sorter, a, low, high)) {
-                return;
-            }
-
-            /*
-             * Divide the given array into the golden ratio using
-             * an inexpensive approximation to select five sample
-             * elements and determine pivots.
-             */
-            int step = (size >> 2) + (size >> 3) + (size >> 7);
-
-            /*
-             * Five elements around (and including) the central element
-             * will be used for pivot selection as described below. The
-             * unequal choice of spacing these elements was empirically
-             * determined to work well on a wide variety of inputs.
-             */
-            int e1 = low + step;
-            int e5 = high - step;
-            int e3 = (e1 + e5) >>> 1;
-            int e2 = (e1 + e3) >>> 1;
-            int e4 = (e3 + e5) >>> 1;
-            long a3 = a[e3];
-
-            /*
-             * Check if part is large and contains random
-             * data, taking into account parallel context.
-             */
-            boolean isLargeRandom =
-                size > MIN_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
-//              size > MIN_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
-                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
-
-            /*
-             * Sort these elements in-place by the combination
-             * of 4-element sorting network and insertion sort.
-             *
-             *   1 ---------o---------------o-----------------
-             *              |               |
-             *   2 ---------|-------o-------o-------o---------
-             *              |       |               |
-             *   4 ---------o-------|-------o-------o---------
-             *                      |       |
-             *   5 -----------------o-------o-----------------
-             */
-            if (a[e1] > a[e4]) { long t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
-            if (a[e2] > a[e5]) { long t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
-            if (a[e4] > a[e5]) { long t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
-            if (a[e1] > a[e2]) { long t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
-            if (a[e2] > a[e4]) { long t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
-
-            /*
-             * Insert the third element.
-             */
-            if (a3 < a[e2]) {
-                if (a3 < a[e1]) {
-                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
-                } else {
-                    a[e3] = a[e2]; a[e2] = a3;
-                }
-            } else if (a3 > a[e4]) {
-                if (a3 > a[e5]) {
-                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
-                } else {
-                    a[e3] = a[e4]; a[e4] = a3;
-                }
-            }
-
-            /*
-             * Try Radix sort on large fully random data.
-             */
-            if (isLargeRandom
-                    && a[e2] < a[e3] && a[e3] < a[e4]
-                    && tryRadixSort(sorter, a, low, high)) {
-                return;
-            }
+    private static void networkSort8(int[] a, int low, int high) {
+        int size = high - low, last = high - 1;
 
-            /*
-             * Switch to heap sort, if execution time is quadratic.
-             */
-            if ((bits += 2) > MAX_RECURSION_DEPTH) {
-                heapSort(a, low, high);
-                return;
-            }
+        /*
+         * Load the elements, the inputs beyond the range
+         * get the max value and stay at the end.
+         */
+        int a0 = a[low];
+        int a1 = a[Math.min(low + 1, last)];
+        int a2 = a[Math.min(low + 2, last)];
+        int a3 = a[Math.min(low + 3, last)];
+        int a4 = a[Math.min(low + 4, last)];
+        int a5 = a[Math.min(low + 5, last)];
+        int a6 = a[Math.min(low + 6, last)];
+        int a7 = a[Math.min(low + 7, last)];
+
+        a2 = 2 < size ? a2 : Integer.MAX_VALUE;
+        a3 = 3 < size ? a3 : Integer.MAX_VALUE;
+        a4 = 4 < size ? a4 : Integer.MAX_VALUE;
+        a5 = 5 < size ? a5 : Integer.MAX_VALUE;
+        a6 = 6 < size ? a6 : Integer.MAX_VALUE;
+        a7 = 7 < size ? a7 : Integer.MAX_VALUE;
 
-            /*
-             * indices[0] - the index of the last element of the left part
-             * indices[1] - the index of the first element of the right part
-             */
-            int[] indices;
+        /*
+         * Apply the comparators layer by layer.
+         */
+        int t;
+        t = Math.min(a0, a2); a2 = Math.max(a0, a2); a0 = t;
+        t = Math.min(a1, a3); a3 = Math.max(a1, a3); a1 = t;
+        t = Math.min(a4, a6); a6 = Math.max(a4, a6); a4 = t;
+        t = Math.min(a5, a7); a7 = Math.max(a5, a7); a5 = t;
 
-            /*
-             * Partitioning with two pivots on array of fully random elements.
-             */
-            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+        t = Math.min(a0, a4); a4 = Math.max(a0, a4); a0 = t;
+        t = Math.min(a1, a5); a5 = Math.max(a1, a5); a1 = t;
+        t = Math.min(a2, a6); a6 = Math.max(a2, a6); a2 = t;
+        t = Math.min(a3, a7); a7 = Math.max(a3, a7); a3 = t;
 
-                indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
-                    low, high, e1, e5, DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+        t = Math.min(a0, a1); a1 = Math.max(a0, a1); a0 = t;
+        t = Math.min(a2, a3); a3 = Math.max(a2, a3); a2 = t;
+        t = Math.min(a4, a5); a5 = Math.max(a4, a5); a4 = t;
+        t = Math.min(a6, a7); a7 = Math.max(a6, a7); a6 = t;
 
-                /*
-                 * Sort non-left parts recursively (possibly in parallel),
-                 * excluding known pivots.
-                 */
-                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[0] + 1, indices[1]);
-                    sorter.fork(bits | 1, indices[1] + 1, high);
-                } else {
-                    sort(sorter, a, bits | 1, indices[0] + 1, indices[1]);
-                    sort(sorter, a, bits | 1, indices[1] + 1, high);
-                }
+        t = Math.min(a2, a4); a4 = Math.max(a2, a4); a2 = t;
+        t = Math.min(a3, a5); a5 = Math.max(a3, a5); a3 = t;
 
-            } else { // Partitioning with one pivot
+        t = Math.min(a1, a4); a4 = Math.max(a1, a4); a1 = t;
+        t = Math.min(a3, a6); a6 = Math.max(a3, a6); a3 = t;
 
-                indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
-                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+        t = Math.min(a1, a2); a2 = Math.max(a1, a2); a1 = t;
+        t = Math.min(a3, a4); a4 = Math.max(a3, a4); a3 = t;
+        t = Math.min(a5, a6); a6 = Math.max(a5, a6); a5 = t;
 
-                /*
-                 * Sort the right part (possibly in parallel), excluding
-                 * known pivot. All elements from the central part are
-                 * equal and therefore already sorted.
-                 */
-                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[1], high);
-                } else {
-                    sort(sorter, a, bits | 1, indices[1], high);
-                }
-            }
-            high = indices[0]; // Iterate along the left part
-        }
+        /*
+         * Store the elements in reverse order, so that
+         * the last element of the range is written last.
+         */
+        a[Math.min(low + 7, last)] = a7;
+        a[Math.min(low + 6, last)] = a6;
+        a[Math.min(low + 5, last)] = a5;
+        a[Math.min(low + 4, last)] = a4;
+        a[Math.min(low + 3, last)] = a3;
+        a[Math.min(low + 2, last)] = a2;
+        a[Math.min(low + 1, last)] = a1;
+        a[low] = a0;
     }
 
     /**
-     * Partitions the specified range of the array using two given pivots.
+     * Sorts the specified range of the array of at most 16 elements
+     * using the sorting network of 16 inputs and 60 comparators.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of pivot1, the first pivot
-     * @param pivotIndex2 the index of pivot2, the second pivot
-     * @return indices of parts after partitioning
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
      */
-    private static int[] partitionWithTwoPivots(
-            long[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+    private static void networkSort16(int[] a, int low, int high) {
+        int size = high - low, last = high - 1;
 
         /*
-         * Pointers to the right and left parts.
+         * Load the elements, the inputs beyond the range
+         * get the max value and stay at the end.
          */
-        int upper = --high;
-        int lower = low;
+        int a0 = a[low];
+        int a1 = a[Math.min(low + 1, last)];
+        int a2 = a[Math.min(low + 2, last)];
+        int a3 = a[Math.min(low + 3, last)];
+        int a4 = a[Math.min(low + 4, last)];
+        int a5 = a[Math.min(low + 5, last)];
+        int a6 = a[Math.min(low + 6, last)];
+        int a7 = a[Math.min(low + 7, last)];
+        int a8 = a[Math.min(low + 8, last)];
+        int a9 = a[Math.min(low + 9, last)];
+        int a10 = a[Math.min(low + 10, last)];
+        int a11 = a[Math.min(low + 11, last)];
+        int a12 = a[Math.min(low + 12, last)];
+        int a13 = a[Math.min(low + 13, last)];
+        int a14 = a[Math.min(low + 14, last)];
+        int a15 = a[Math.min(low + 15, last)];
+
+        a9 = 9 < size ? a9 : Integer.MAX_VALUE;
+        a10 = 10 < size ? a10 : Integer.MAX_VALUE;
+        a11 = 11 < size ? a11 : Integer.MAX_VALUE;
+        a12 = 12 < size ? a12 : Integer.MAX_VALUE;
+        a13 = 13 < size ? a13 : Integer.MAX_VALUE;
+        a14 = 14 < size ? a14 : Integer.MAX_VALUE;
+        a15 = 15 < size ? a15 : Integer.MAX_VALUE;
 
         /*
-         * Use the first and fifth of the five sorted elements as
-         * the pivots. These values are inexpensive approximation
-         * of tertiles. Note, that pivot1 < pivot2.
+         * Apply the comparators layer by layer.
          */
-        final long pivot1 = a[pivotIndex1]; // todo final
-        final long pivot2 = a[pivotIndex2];
+        int t;
+        t = Math.min(a0, a13); a13 = Math.max(a0, a13); a0 = t;
+        t = Math.min(a1, a12); a12 = Math.max(a1, a12); a1 = t;
+        t = Math.min(a2, a15); a15 = Math.max(a2, a15); a2 = t;
+        t = Math.min(a3, a14); a14 = Math.max(a3, a14); a3 = t;
+        t = Math.min(a4, a8); a8 = Math.max(a4, a8); a4 = t;
+        t = Math.min(a5, a6); a6 = Math.max(a5, a6); a5 = t;
+        t = Math.min(a7, a11); a11 = Math.max(a7, a11); a7 = t;
+        t = Math.min(a9, a10); a10 = Math.max(a9, a10); a9 = t;
+
+        t = Math.min(a0, a5); a5 = Math.max(a0, a5); a0 = t;
+        t = Math.min(a1, a7); a7 = Math.max(a1, a7); a1 = t;
+        t = Math.min(a2, a9); a9 = Math.max(a2, a9); a2 = t;
+        t = Math.min(a3, a4); a4 = Math.max(a3, a4); a3 = t;
+        t = Math.min(a6, a13); a13 = Math.max(a6, a13); a6 = t;
+        t = Math.min(a8, a14); a14 = Math.max(a8, a14); a8 = t;
+        t = Math.min(a10, a15); a15 = Math.max(a10, a15); a10 = t;
+        t = Math.min(a11, a12); a12 = Math.max(a11, a12); a11 = t;
+
+        t = Math.min(a0, a1); a1 = Math.max(a0, a1); a0 = t;
+        t = Math.min(a2, a3); a3 = Math.max(a2, a3); a2 = t;
+        t = Math.min(a4, a5); a5 = Math.max(a4, a5); a4 = t;
+        t = Math.min(a6, a8); a8 = Math.max(a6, a8); a6 = t;
+        t = Math.min(a7, a9); a9 = Math.max(a7, a9); a7 = t;
+        t = Math.min(a10, a11); a11 = Math.max(a10, a11); a10 = t;
+        t = Math.min(a12, a13); a13 = Math.max(a12, a13); a12 = t;
+        t = Math.min(a14, a15); a15 = Math.max(a14, a15); a14 = t;
+
+        t = Math.min(a0, a2); a2 = Math.max(a0, a2); a0 = t;
+        t = Math.min(a1, a3); a3 = Math.max(a1, a3); a1 = t;
+        t = Math.min(a4, a10); a10 = Math.max(a4, a10); a4 = t;
+        t = Math.min(a5, a11); a11 = Math.max(a5, a11); a5 = t;
+        t = Math.min(a6, a7); a7 = Math.max(a6, a7); a6 = t;
+        t = Math.min(a8, a9); a9 = Math.max(a8, a9); a8 = t;
+        t = Math.min(a12, a14); a14 = Math.max(a12, a14); a12 = t;
+        t = Math.min(a13, a15); a15 = Math.max(a13, a15); a13 = t;
+
+        t = Math.min(a1, a2); a2 = Math.max(a1, a2); a1 = t;
+        t = Math.min(a3, a12); a12 = Math.max(a3, a12); a3 = t;
+        t = Math.min(a4, a6); a6 = Math.max(a4, a6); a4 = t;
+        t = Math.min(a5, a7); a7 = Math.max(a5, a7); a5 = t;
+        t = Math.min(a8, a10); a10 = Math.max(a8, a10); a8 = t;
+        t = Math.min(a9, a11); a11 = Math.max(a9, a11); a9 = t;
+        t = Math.min(a13, a14); a14 = Math.max(a13, a14); a13 = t;
+
+        t = Math.min(a1, a4); a4 = Math.max(a1, a4); a1 = t;
+        t = Math.min(a2, a6); a6 = Math.max(a2, a6); a2 = t;
+        t = Math.min(a5, a8); a8 = Math.max(a5, a8); a5 = t;
+        t = Math.min(a7, a10); a10 = Math.max(a7, a10); a7 = t;
+        t = Math.min(a9, a13); a13 = Math.max(a9, a13); a9 = t;
+        t = Math.min(a11, a14); a14 = Math.max(a11, a14); a11 = t;
+
+        t = Math.min(a2, a4); a4 = Math.max(a2, a4); a2 = t;
+        t = Math.min(a3, a6); a6 = Math.max(a3, a6); a3 = t;
+        t = Math.min(a9, a12); a12 = Math.max(a9, a12); a9 = t;
+        t = Math.min(a11, a13); a13 = Math.max(a11, a13); a11 = t;
+
+        t = Math.min(a3, a5); a5 = Math.max(a3, a5); a3 = t;
+        t = Math.min(a6, a8); a8 = Math.max(a6, a8); a6 = t;
+        t = Math.min(a7, a9); a9 = Math.max(a7, a9); a7 = t;
+        t = Math.min(a10, a12); a12 = Math.max(a10, a12); a10 = t;
+
+        t = Math.min(a3, a4); a4 = Math.max(a3, a4); a3 = t;
+        t = Math.min(a5, a6); a6 = Math.max(a5, a6); a5 = t;
+        t = Math.min(a7, a8); a8 = Math.max(a7, a8); a7 = t;
+        t = Math.min(a9, a10); a10 = Math.max(a9, a10); a9 = t;
+        t = Math.min(a11, a12); a12 = Math.max(a11, a12); a11 = t;
+
+        t = Math.min(a6, a7); a7 = Math.max(a6, a7); a6 = t;
+        t = Math.min(a8, a9); a9 = Math.max(a8, a9); a8 = t;
 
         /*
-         * The first and the last elements to be sorted are moved
-         * to the locations formerly occupied by the pivots. When
-         * partitioning is completed, the pivots are swapped back
-         * into their final positions, and excluded from the next
-         * subsequent sorting.
+         * Store the elements in reverse order, so that
+         * the last element of the range is written last.
          */
-        a[pivotIndex1] = a[lower];
-        a[pivotIndex2] = a[upper];
+        a[Math.min(low + 15, last)] = a15;
+        a[Math.min(low + 14, last)] = a14;
+        a[Math.min(low + 13, last)] = a13;
+        a[Math.min(low + 12, last)] = a12;
+        a[Math.min(low + 11, last)] = a11;
+        a[Math.min(low + 10, last)] = a10;
+        a[Math.min(low + 9, last)] = a9;
+        a[Math.min(low + 8, last)] = a8;
+        a[Math.min(low + 7, last)] = a7;
+        a[Math.min(low + 6, last)] = a6;
+        a[Math.min(low + 5, last)] = a5;
+        a[Math.min(low + 4, last)] = a4;
+        a[Math.min(low + 3, last)] = a3;
+        a[Math.min(low + 2, last)] = a2;
+        a[Math.min(low + 1, last)] = a1;
+        a[low] = a0;
+    }
 
-        /*
-         * Skip elements, which are less or greater than the pivots.
-         */
-        while (a[++lower] < pivot1);
-        while (a[--upper] > pivot2);
+    /**
+     * Tries to sort the specified range of the array using merging sort.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryMergingSort(Sorter<int[]> sorter, int[] a, int low, int high) {
+        int parts = sorter == null ? 0 : Math.min((high - low) / MIN_PARALLEL_SORT_SIZE, sorter.parallelism << 2);
 
         /*
-         * Backward 3-interval partitioning
-         *
-         *     left part                     central part          right part
-         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
-         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
-         * +--------------+----------+--------------------------+--------------+
-         *               ^          ^                            ^
-         *               |          |                            |
-         *             lower        k                          upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
+         * The element run[i] holds the start index
+         * of i-th sequence in non-descending order,
+         * the element run[count] holds the end index.
          */
-        for (int unused = --lower, k = ++upper; --k > lower; ) {
-            long ak = a[k];
-
-            if (ak < pivot1) { // Move a[k] to the left part
-                while (a[++lower] < pivot1);
+        int[] run = parts > 1 ? parallelFindRuns(sorter, a, parts, low, high) :
+            findRuns(sorter, a, true, low, high);
 
-                if (lower > k) {
-                    lower = k;
-                    break;
-                }
-                if (a[lower] > pivot2) {
-                    a[k] = a[--upper];
-                    a[upper] = a[lower];
-                } else {
-                    a[k] = a[lower];
-                }
-                a[lower] = ak;
-            } else if (ak > pivot2) { // Move a[k] to the right part
-                a[k] = a[--upper];
-                a[upper] = ak;
-            }
+        if (run == null) {
+            return false;
         }
+        int count = 0;
+
+        while (run[++count] < high);
 
         /*
-         * Swap the pivots into their final positions.
+         * Merge all runs.
          */
-        a[low]  = a[lower]; a[lower] = pivot1;
-        a[high] = a[upper]; a[upper] = pivot2;
+        if (count > 1) {
+            int[] b; int offset = low;
 
-        return new int[] { lower, upper };
+            if (sorter != null && (b = sorter.b) != null) {
+                offset = sorter.offset;
+            } else if ((b = tryAllocate(sorter, int[].class, high - low)) == null) {
+                return false;
+            }
+            mergeRuns(sorter, a, b, offset, true, run, 0, count);
+        }
+        return true;
     }
 
     /**
-     * Partitions the specified range of the array using one given pivot.
+     * Identifies the runs of the specified range, reversing
+     * the descending sequences into ascending order.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of single pivot
-     * @param pivotIndex2 the index of single pivot
-     * @return indices of parts after partitioning
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param leftmost indicates that the first run can't be the tail
+     *        of the run of the previous part, therefore it must be large
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
      */
-    private static int[] partitionWithOnePivot(
-            long[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
-
-        /*
-         * Pointers to the right and left parts.
-         */
-        int upper = high;
-        int lower = low;
+    private static int[] findRuns(Sorter<int[]> sorter, int[] a, boolean leftmost, int low, int high) {
+        int count = 1, capacity = 0;
+        int[] run = null;
 
         /*
-         * Use the third of the five sorted elements as the pivot.
-         * This value is inexpensive approximation of the median.
+         * Identify all possible runs.
          */
-        final long pivot = a[pivotIndex1];
-
-        /*
-         * The first element to be sorted is moved to the
-         * location formerly occupied by the pivot. After
-         * completion of partitioning the pivot is swapped
-         * back into its final position, and excluded from
-         * the next subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
-
-        /*
-         * Dutch National Flag partitioning
-         *
-         *     left part               central part    right part
-         * +------------------------------------------------------+ // todo ---+----
-         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
-         * +------------------------------------------------------+
-         *               ^          ^                ^
-         *               |          |                |
-         *             lower        k              upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
-         */
-        for (int k = upper; --k > lower; ) {
-            long ak = a[k];
-
-            if (ak == pivot) {
-                continue;
-            }
-            a[k] = pivot;
-
-            if (ak < pivot) { // Move a[k] to the left part
-                while (a[++lower] < pivot);
-
-                if (a[lower] > pivot) {
-                    a[--upper] = a[lower];
-                }
-                a[lower] = ak;
-            } else { // ak > pivot - Move a[k] to the right part
-                a[--upper] = ak;
-            }
-        }
-
-        /*
-         * Swap the pivot into its final position.
-         */
-        a[low] = a[lower]; a[lower] = pivot;
-
-        return new int[] { lower, upper };
-    }
-
-    /**
-     * Sorts the specified range of the array using mixed insertion sort.<p>
-     *
-     * Mixed insertion sort is combination of pin insertion sort,
-     * simple insertion sort and pair insertion sort.<p>
-     *
-     * In the context of Dual-Pivot Quicksort, the pivot element
-     * from the left part plays the role of sentinel, because it
-     * is less than any elements from the given part. Therefore,
-     * expensive check of the left range can be skipped on each
-     * iteration unless it is the leftmost call.
-     *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     */
-    static void mixedInsertionSort(long[] a, int low, int high) {
-
-        /*
-         * Split part for pin and pair insertion sorts.
-         */
-        int end = high - 3 * ((high - low) >> 3 << 1);
-
-        /*
-         * Invoke simple insertion sort on small part.
-         */
-        if (end == high) {
-            for (int i; ++low < high; ) {
-                long ai = a[i = low];
-
-                while (ai < a[i - 1]) {
-                    a[i] = a[--i];
-                }
-                a[i] = ai;
-            }
-            return;
-        }
-
-        /*
-         * Start with pin insertion sort.
-         */
-        for (int i, p = high; ++low < end; ) {
-            long ai = a[i = low], pin = a[--p];
-
-            /*
-             * Swap larger element with pin.
-             */
-            if (ai > pin) {
-                ai = pin;
-                a[p] = a[i];
-            }
-
-            /*
-             * Insert element into sorted part.
-             */
-            while (ai < a[i - 1]) {
-                a[i] = a[--i];
-            }
-            a[i] = ai;
-        }
-
-        /*
-         * Finish with pair insertion sort.
-         */
-        for (int i; low < high; ++low) {
-            long a1 = a[i = low], a2 = a[++low];
-
-            /*
-             * Insert two elements per iteration: at first, insert the
-             * larger element and then insert the smaller element, but
-             * from the position where the larger element was inserted.
-             */
-            if (a1 > a2) {
-
-                while (a1 < a[--i]) {
-                    a[i + 2] = a[i];
-                }
-                a[++i + 1] = a1;
-
-                while (a2 < a[--i]) {
-                    a[i + 1] = a[i];
-                }
-                a[i + 1] = a2;
-
-            } else if (a1 < a[i - 1]) {
-
-                while (a2 < a[--i]) {
-                    a[i + 2] = a[i];
-                }
-                a[++i + 1] = a2;
-
-                while (a1 < a[--i]) {
-                    a[i + 1] = a[i];
-                }
-                a[i + 1] = a1;
-            }
-        }
-    }
-
-    /**
-     * Sorts the specified range of the array using insertion sort.
-     *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     */
-    static void insertionSort(long[] a, int low, int high) {
-        for (int i, k = low; ++k < high; ) {
-            long ai = a[i = k];
-
-            if (ai < a[i - 1]) {
-                do {
-                    a[i] = a[--i];
-                } while (i > low && ai < a[i - 1]);
-
-                a[i] = ai;
-            }
-        }
-    }
-
-    /**
-     * Tries to sort the specified range of the array using merging sort.
-     *
-     * @param sorter parallel context
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     * @return {@code true} if the array is finally sorted, otherwise {@code false}
-     */
-    static boolean tryMergingSort(Sorter<long[]> sorter, long[] a, int low, int high) {
-
-        /*
-         * The element run[i] holds the start index
-         * of i-th sequence in non-descending order.
-         */
-        int count = 1;
-        int[] run = null;
-
-        /*
-         * Identify all possible runs.
-         */
-        for (int k = low + 1, last = low; k < high; ) {
+        for (int k = low + 1, last = low; k < high; ) {
 
             /*
              * Find the next run.
@@ -1685,7 +1854,7 @@ final class DualPivotQuicksort_r38_12 {
 
                 // Reverse into ascending order
                 for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
-                    long ai = a[i]; a[i] = a[j]; a[j] = ai;
+                    int ai = a[i]; a[i] = a[j]; a[j] = ai;
                 }
 
                 // todo javadoc
@@ -1694,7 +1863,7 @@ final class DualPivotQuicksort_r38_12 {
                 }
 
             } else { // Identify constant sequence
-                for (long ak = a[k]; ++k < high && ak == a[k]; );
+                for (int ak = a[k]; ++k < high && ak == a[k]; );
 
                 // todo javadoc
                 if (k < high) {
@@ -1707,22 +1876,18 @@ final class DualPivotQuicksort_r38_12 {
              */
             if (run == null) {
 
-                if (k == high) {
-
-                    /*
-                     * Array is monotonous sequence
-                     * and therefore already sorted.
-                     */
-                    return true;
-                }
-
                 /*
                  * Terminate scanning, if the runs are too small.
                  */
-                if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
+                if (leftmost && k < high && k - low < count * MIN_RUN_SIZE) {
+                    return null;
                 }
-                run = new int[ Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8];
+
+                /*
+                 * Monotonous sequence is the single run.
+                 */
+                capacity = k == high ? 2 : Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+                run = sorter == null ? Workspace.run(capacity) : new int[capacity];
                 run[0] = low;
 
             } else if (a[last - 1] > a[last]) { // Start the new run
@@ -1731,15 +1896,15 @@ final class DualPivotQuicksort_r38_12 {
                  * Terminate scanning, if the runs are too small.
                  */
                 if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
+                    return null;
                 }
 
-                if (++count == run.length) {
+                if (++count == capacity) {
 
                     /*
                      * Array is not highly structured.
                      */
-                    return false;
+                    return null;
                 }
             }
 
@@ -1756,20 +1921,63 @@ final class DualPivotQuicksort_r38_12 {
             }
         }
 
-        /*
-         * Merge all runs.
-         */
-        if (count > 1) {
-            long[] b; int offset = low;
+        return run;
+    }
 
-            if (sorter != null && (b = sorter.b) != null) {
-                offset = sorter.offset;
-            } else if ((b = tryAllocate(long[].class, high - low)) == null) {
-                return false;
+    /**
+     * Identifies the runs of the parts of the specified range in
+     * parallel and joins the runs which cross the boundaries of
+     * the parts.
+     *
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param parts the number of the parts
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
+     */
+    private static int[] parallelFindRuns(Sorter<int[]> sorter, int[] a, int parts, int low, int high) {
+        int[][] runs = new int[parts][];
+        new RunScanner<>(sorter, a, runs, low, high, 0, parts).invoke();
+
+        int capacity = Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+        int[] run = new int[capacity];
+        int count = 0, step = (high - low) / parts;
+
+        for (int i = 0; i < parts; ++i) {
+            int[] part = runs[i];
+
+            /*
+             * Terminate, if the part is not highly structured.
+             */
+            if (part == null) {
+                return null;
+            }
+            int end = i == parts - 1 ? high : part[0] + step;
+
+            /*
+             * Skip the start of the first run of the part, if the
+             * last run of the previous part goes on with it.
+             */
+            for (int j = count > 0 && a[part[0] - 1] <= a[part[0]] ? 1 : 0; part[j] < end; ++j) {
+
+                if (count == capacity - 1) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return null;
+                }
+                run[count++] = part[j];
             }
-            mergeRuns(sorter, a, b, offset, true, run, 0, count);
         }
-        return true;
+        run[count] = high;
+
+        /*
+         * Check the size of the joined runs.
+         */
+        return high - low < count * MIN_RUN_SIZE ? null : run;
     }
 
     /**
@@ -1785,7 +1993,7 @@ final class DualPivotQuicksort_r38_12 {
      * @param hi the start index of the last run, inclusive
      * @return the destination where the runs are merged // todo r
      */
-    private static void mergeRuns(Sorter<long[]> sorter, long[] a, long[] b, int offset,
+    private static void mergeRuns(Sorter<int[]> sorter, int[] a, int[] b, int offset,
             boolean aim, int[] run, int lo, int hi) {
 
         if (hi - lo == 1) {
@@ -1795,6 +2003,14 @@ final class DualPivotQuicksort_r38_12 {
             return;
         }
 
+        /*
+         * Merge large parts in parallel.
+         */
+        if (sorter != null && run[hi] - run[lo] > MIN_PARALLEL_SORT_SIZE) {
+            new RunMerger<>(null, a, b, offset, aim, run, lo, hi).invoke();
+            return;
+        }
+
         /*
          * Split the array into two approximately equal parts.
          */
@@ -1813,17 +2029,13 @@ final class DualPivotQuicksort_r38_12 {
         int lo2 = aim ? run[mi] - offset : run[mi];
         int hi2 = aim ? run[hi] - offset : run[hi];
 
-        long[] dst = aim ? a : b;
-        long[] src = aim ? b : a;
+        int[] dst = aim ? a : b;
+        int[] src = aim ? b : a;
 
         /*
          * Merge the left and right parts.
          */
-        if (hi1 - lo1 > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-            new Merger<>(null, dst, k, src, lo1, hi1, lo2, hi2).invoke();
-        } else {
-            mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
-        }
+        mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
     }
 
     /**
@@ -1840,8 +2052,8 @@ final class DualPivotQuicksort_r38_12 {
      * @param lo2 the start index of the second part, inclusive
      * @param hi2 the end index of the second part, exclusive
      */
-    private static void mergeParts(Merger<long[]> merger, long[] dst, int k,
-            long[] src, int lo1, int hi1, int lo2, int hi2) {
+    private static void mergeParts(Merger<int[]> merger, int[] dst, int k,
+            int[] src, int lo1, int hi1, int lo2, int hi2) {
 
         /*
          * Merge the parts in parallel.
@@ -1862,7 +2074,7 @@ final class DualPivotQuicksort_r38_12 {
                  * Find the median of the larger part.
                  */
                 int mi1 = (lo1 + hi1) >>> 1;
-                long key = src[mi1];
+                int key = src[mi1];
                 int mi2 = hi2;
 
                 /*
@@ -1897,42 +2109,136 @@ final class DualPivotQuicksort_r38_12 {
         }
 
         /*
-         * Merge small parts sequentially.
+         * Merge small parts sequentially by the simple loop, which is
+         * fast while the branches are predicted well. From time to time
+         * the block is merged without branches to measure how the parts
+         * interleave: the parts taking turns by short irregular runs
+         * are merged by blocks, and the long run of one part is taken
+         * by galloping. Otherwise the next block is measured later.
          */
         if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
 
-            if (src[hi1 - 1] < src[hi2 - 1]) {
-                while (lo1 < hi1) {
-                    long slo1 = src[lo1]; // todo rename: first, or key, or curr
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+            for (int step = MAX_MERGE_PROBE_STEP / 2, probe = k + step; ; ) {
+                int size = Math.min(hi1 - lo1, hi2 - lo2);
+
+                /*
+                 * Merge the rest by the simple loop, if one of the parts
+                 * ends before the next block. The loop checks the bound of
+                 * the part, which ends first, if the last elements differ.
+                 */
+                if (size <= Math.max(probe - k, MERGE_BLOCK_SIZE)) {
+                    if (src[hi1 - 1] < src[hi2 - 1]) {
+                        while (lo1 < hi1) {
+                            int slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else if (src[hi1 - 1] > src[hi2 - 1]) {
+                        while (lo2 < hi2) {
+                            int slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else {
+                        while (lo1 < hi1 && lo2 < hi2) {
+                            int slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
                     }
+                    break;
                 }
-            } else if (src[hi1 - 1] > src[hi2 - 1]) {
-                while (lo2 < hi2) {
-                    long slo1 = src[lo1];
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+
+                /*
+                 * Merge the parts by the simple loop, which takes at most
+                 * one element from each part, until the next block.
+                 */
+                if (k < probe) {
+                    while (k < probe) {
+                        int slo1 = src[lo1];
+
+                        if (slo1 <= src[lo2]) {
+                            dst[k++] = src[lo1++];
+                        }
+                        if (slo1 >= src[lo2]) {
+                            dst[k++] = src[lo2++];
+                        }
                     }
+                    continue;
                 }
-            } else {
-                while (lo1 < hi1 && lo2 < hi2) {
-                    long slo1 = src[lo1];
 
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
+                /*
+                 * Merge the block and count the elements of the parts.
+                 */
+                int pattern = mergeBlock(dst, k, src, lo1, lo2);
+                int second = Integer.bitCount(pattern);
+                k += MERGE_BLOCK_SIZE;
+                lo1 += MERGE_BLOCK_SIZE - second;
+                lo2 += second;
+
+                if (pattern == 0 || pattern == -1) {
+
+                    /*
+                     * Gallop along the part, which has given
+                     * all elements of the block.
+                     */
+                    int from = k;
+
+                    if (pattern == 0) {
+                        int end = gallop(src[lo2], src, lo1, hi1, true);
+                        System.arraycopy(src, lo1, dst, k, end - lo1);
+                        k += end - lo1;
+                        lo1 = end;
+                    } else {
+                        int end = gallop(src[lo1], src, lo2, hi2, false);
+                        System.arraycopy(src, lo2, dst, k, end - lo2);
+                        k += end - lo2;
+                        lo2 = end;
                     }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+
+                    /*
+                     * Measure the next block right after the long run,
+                     * and merge longer by the simple loop otherwise.
+                     */
+                    if (k - from < MIN_GALLOP_RUN) {
+                        step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                        probe = k + step;
+                    } else {
+                        step = MERGE_BLOCK_SIZE;
+                        probe = k;
                     }
+                } else if (Integer.bitCount((pattern ^ pattern >>> 1) << 1) < MIN_IRREGULAR_TURNS
+                        || isRegular(pattern)) {
+
+                    /*
+                     * Merge longer by the simple loop, since
+                     * the parts give long or regular runs.
+                     */
+                    step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                    probe = k + step;
+                } else {
+
+                    /*
+                     * Continue by blocks, since the parts
+                     * give short runs irregularly.
+                     */
+                    step = MERGE_BLOCK_SIZE;
+                    probe = k;
                 }
             }
         }
@@ -1953,1184 +2259,1478 @@ final class DualPivotQuicksort_r38_12 {
     }
 
     /**
-     * Tries to sort the specified range of the array
-     * using LSD (The Least Significant Digit) Radix sort.
+     * Merges the block of the parts without branches, selecting
+     * the smaller head and advancing its part by conditional moves.
+     * The block is merged out of line, so that the simple loop
+     * of merging is compiled as tight as without the block.
      *
-     * @param sorter // todo
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     * @param dst the destination where the block is merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source of the parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @return the bits of the block, set for the elements given
+     *         by the second part, the last element is the lowest bit
      */
-    static boolean tryRadixSort(Sorter<long[]> sorter, long[] a, int low, int high) {
-        long[] b; int offset = low, size = high - low;
-
-        /*
-         * Allocate additional buffer.
-         */
-        if (sorter != null && (b = sorter.b) != null) {
-            offset = sorter.offset;
-        } else if ((b = tryAllocate(long[].class, size)) == null) {
-            return false;
+    @DontInline
+    private static int mergeBlock(int[] dst, int k, int[] src, int lo1, int lo2) {
+        int pattern = 0;
+
+        for (int end = k + MERGE_BLOCK_SIZE; k < end; ) {
+            int x = src[lo1], y = src[lo2];
+            boolean second = y < x;
+            dst[k++] = second ? y : x;
+            lo1 += second ? 0 : 1;
+            lo2 += second ? 1 : 0;
+            pattern = pattern << 1 | (second ? 1 : 0);
         }
+        return pattern;
+    }
 
-        int start = low - offset;
-        int last = high - offset;
+    /**
+     * Finds the end of the leading elements of the sorted part, which
+     * are less than the key, or not greater, if {@code inclusive} is
+     * set, by exponential search followed by binary search, so that
+     * the cost is logarithmic in the number of the found elements.
+     *
+     * @param key the key to be compared with
+     * @param a the sorted part
+     * @param low the start index of the part, inclusive
+     * @param high the end index of the part, exclusive
+     * @param inclusive specifies whether the elements equal to the key are taken
+     * @return the index of the first element which is not taken
+     */
+    private static int gallop(int key, int[] a, int low, int high, boolean inclusive) {
+        int step = 1;
 
         /*
-         * Count the number of all digits.
+         * Double the step while the elements are taken.
          */
-        int[] count1 = new int[1024];
-        int[] count2 = new int[2048];
-        int[] count3 = new int[2048];
-        int[] count4 = new int[2048];
-        int[] count5 = new int[2048];
-        int[] count6 = new int[1024];
-
-        for (int i = low; i < high; ++i) {
-            ++count1[(int)  (a[i]         & 0x3FF)];
-            ++count2[(int) ((a[i] >>> 10) & 0x7FF)];
-            ++count3[(int) ((a[i] >>> 21) & 0x7FF)];
-            ++count4[(int) ((a[i] >>> 32) & 0x7FF)];
-            ++count5[(int) ((a[i] >>> 43) & 0x7FF)];
-            ++count6[(int) ((a[i] >>> 54) ^ 0x200)]; // Reverse the sign bit
+        for (int i = low; i < high && (inclusive ? a[i] <= key : a[i] < key); i = low + step - 1) {
+            low = i + 1;
+            step <<= 1;
         }
+        high = Math.min(low + step - 1, high);
 
         /*
-         * Detect digits to be processed.
+         * Find the end within the last step.
          */
-        boolean processDigit1 = processDigit(count1, size, low);
-        boolean processDigit2 = processDigit(count2, size, low);
-        boolean processDigit3 = processDigit(count3, size, low);
-        boolean processDigit4 = processDigit(count4, size, low);
-        boolean processDigit5 = processDigit(count5, size, low);
-        boolean processDigit6 = processDigit(count6, size, low);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
 
-        /*
-         * Process the 1-st digit.
-         */
-        if (processDigit1) {
-            for (int i = high; i > low; ) {
-                b[--count1[(int) (a[--i] & 0x3FF)] - offset] = a[i];
+            if (inclusive ? a[mid] <= key : a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
+        return low;
+    }
 
-        /*
-         * Process the 2-nd digit.
-         */
-        if (processDigit2) {
-            if (processDigit1) {
-                for (int i = last; i > start; ) {
-                    a[--count2[(int) ((b[--i] >>> 10) & 0x7FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count2[(int) ((a[--i] >>> 10) & 0x7FF)] - offset] = a[i];
+    /**
+     * Finds the positions in the sorted parts, which split off the given
+     * number of the smallest elements, by narrowing the windows of the
+     * parts around the pivot taken in the middle of the largest window.
+     *
+     * @param a the array with the parts
+     * @param start the start indexes of the parts, inclusive
+     * @param end the end indexes of the parts, exclusive
+     * @param rank the number of the smallest elements
+     * @return the positions in the parts
+     */
+    private static int[] splitParts(int[] a, int[] start, int[] end, int rank) {
+        int[] lo = start.clone(), hi = end.clone();
+        int[] lower = new int[lo.length], upper = new int[lo.length];
+
+        while (true) {
+
+            /*
+             * Find the largest window.
+             */
+            int p = 0;
+
+            for (int i = 1; i < lo.length; ++i) {
+                if (hi[i] - lo[i] > hi[p] - lo[p]) {
+                    p = i;
                 }
             }
-        }
 
-        /*
-         * Process the 3-rd digit.
-         */
-        if (processDigit3) {
-            if (processDigit1 ^ processDigit2) {
-                for (int i = last; i > start; ) {
-                    a[--count3[(int) ((b[--i] >>> 21) & 0x7FF)]] = b[i];
-                }
+            /*
+             * All windows are empty, the positions are found.
+             */
+            if (lo[p] == hi[p]) {
+                return lo;
+            }
+            int pivot = a[(lo[p] + hi[p]) >>> 1];
+            int less = 0, notGreater = 0;
+
+            /*
+             * Count the elements less than the pivot and not greater.
+             */
+            for (int i = 0; i < lo.length; ++i) {
+                lower[i] = gallop(pivot, a, lo[i], hi[i], false);
+                upper[i] = gallop(pivot, a, lower[i], hi[i], true);
+                less += lower[i] - start[i];
+                notGreater += upper[i] - start[i];
+            }
+
+            if (rank < less) {
+                int[] t = hi; hi = lower; lower = t;
+            } else if (rank > notGreater) {
+                int[] t = lo; lo = upper; upper = t;
             } else {
-                for (int i = high; i > low; ) {
-                    b[--count3[(int) ((a[--i] >>> 21) & 0x7FF)] - offset] = a[i];
+
+                /*
+                 * Take the elements equal to the pivot up to the rank.
+                 */
+                for (int i = 0, rest = rank - less; i < lower.length; ++i) {
+                    int take = Math.min(rest, upper[i] - lower[i]);
+                    lower[i] += take;
+                    rest -= take;
                 }
+                return lower;
             }
         }
+    }
+
+    /**
+     * Merges the sorted parts by the tournament, where the internal
+     * nodes of the tree keep the losers of the matches, and the root
+     * keeps the winner, so that each element takes the logarithmic
+     * number of comparisons and is moved once. Four parts are merged
+     * with the heads kept in local variables, until a part is exhausted.
+     *
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     */
+    private static void multiMerge(int[] dst, int k, int[] src, int[] lo, int[] hi) {
 
         /*
-         * Process the 4-th digit.
+         * Merge four parts by two matches of the heads
+         * and the final, while no part is exhausted.
          */
-        if (processDigit4) {
-            if (processDigit1 ^ processDigit2 ^ processDigit3) {
-                for (int i = last; i > start; ) {
-                    a[--count4[(int) ((b[--i] >>> 32) & 0x7FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count4[(int) ((a[--i] >>> 32) & 0x7FF)] - offset] = a[i];
+        if (lo.length == 4) {
+            int i0 = lo[0], i1 = lo[1], i2 = lo[2], i3 = lo[3];
+            int h0 = hi[0], h1 = hi[1], h2 = hi[2], h3 = hi[3];
+
+            while (i0 < h0 && i1 < h1 && i2 < h2 && i3 < h3) {
+                int a0 = src[i0], a1 = src[i1], a2 = src[i2], a3 = src[i3];
+
+                if (a0 <= a1) {
+                    if (a2 <= a3) {
+                        if (a0 <= a2) { dst[k++] = a0; ++i0; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a0 <= a3) { dst[k++] = a0; ++i0; } else { dst[k++] = a3; ++i3; }
+                    }
+                } else {
+                    if (a2 <= a3) {
+                        if (a1 <= a2) { dst[k++] = a1; ++i1; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a1 <= a3) { dst[k++] = a1; ++i1; } else { dst[k++] = a3; ++i3; }
+                    }
                 }
             }
+            lo[0] = i0; lo[1] = i1; lo[2] = i2; lo[3] = i3;
         }
 
         /*
-         * Process the 5-th digit.
+         * Merge the rest by the tournament.
          */
-        if (processDigit5) {
-            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4) {
-                for (int i = last; i > start; ) {
-                    a[--count5[(int) ((b[--i] >>> 43) & 0x7FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count5[(int) ((a[--i] >>> 43) & 0x7FF)] - offset] = a[i];
-                }
-            }
-        }
+        int n = lo.length, size = 0;
+        int[] tree = new int[n];
 
         /*
-         * Process the 6-th digit.
+         * Start with the virtual part, which beats any other part.
          */
-        if (processDigit6) {
-            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5) {
-                for (int i = last; i > start; ) {
-                    a[--count6[(int) ((b[--i] >>> 54) ^ 0x200)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count6[(int) ((a[--i] >>> 54) ^ 0x200)] - offset] = a[i];
+        Arrays.fill(tree, n);
+
+        for (int i = n - 1; i >= 0; --i) {
+            size += hi[i] - lo[i];
+            int w = i;
+
+            for (int t = (i + n) >> 1; t > 0; t >>= 1) {
+                if (beats(src, lo, hi, tree[t], w)) {
+                    int loser = w; w = tree[t]; tree[t] = loser;
                 }
             }
+            tree[0] = w;
         }
 
         /*
-         * Copy the buffer to original array, if we process ood number of digits.
+         * Move the winner and replay its matches
+         * with the next element of the same part.
          */
-        if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5 ^ processDigit6) {
-            System.arraycopy(b, low - offset, a, low, size);
+        for (int end = k + size; k < end; ) {
+            int w = tree[0];
+            dst[k++] = src[lo[w]++];
+            boolean done = lo[w] == hi[w];
+            int key = done ? 0 : src[lo[w]];
+
+            for (int t = (w + n) >> 1; t > 0; t >>= 1) {
+                int c = tree[t];
+
+                if (lo[c] < hi[c] && (done || src[lo[c]] < key)) {
+                    tree[t] = w;
+                    w = c;
+                    key = src[lo[c]];
+                    done = false;
+                }
+            }
+            tree[0] = w;
         }
-        return true;
     }
 
     /**
-     * Sorts the specified range of the array using heap sort.
+     * Checks whether the head of the first part beats the head of
+     * the second part, the exhausted part is beaten by any other one.
      *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param a the array with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     * @param i the index of the first part, or the virtual part
+     * @param j the index of the second part, or the virtual part
+     * @return {@code true} if the first part wins the match
      */
-    static void heapSort(long[] a, int low, int high) {
-        for (int k = (low + high) >>> 1; k > low; ) {
-            pushDown(a, --k, a[k], low, high);
+    private static boolean beats(int[] a, int[] lo, int[] hi, int i, int j) {
+        if (i == lo.length) {
+            return true;
         }
-        while (--high > low) {
-            long max = a[low];
-            pushDown(a, low, a[high], low, high);
-            a[high] = max;
+        if (j == lo.length) {
+            return false;
         }
+        return lo[i] < hi[i] && (lo[j] == hi[j] || a[lo[i]] < a[lo[j]]);
     }
 
     /**
-     * Pushes specified element down during heap sort.
+     * Sorts the specified range of the array in parallel using
+     * the bounded buffer, which is smaller than the range. Blocks
+     * of the range, which fit the buffer, are sorted one by one,
+     * then the sorted blocks are merged in place.
      *
-     * @param a the given array
-     * @param p the start index
-     * @param value the given element
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param b the bounded buffer
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    private static void pushDown(long[] a, int p, long value, int low, int high) {
-        for (int k ;; a[p] = a[p = k]) {
-            k = (p << 1) - low + 2; // Index of the right child
+    private static void boundedSort(int[] a, int parallelism, int[] b, int low, int high) {
+        int size = high - low, step = b.length;
 
-            if (k > high) {
-                break;
-            }
-            if (k == high || a[k] < a[k - 1]) {
-                --k;
-            }
-            if (a[k] <= value) {
-                break;
+        /*
+         * Sort the blocks, which fit the buffer.
+         */
+        for (int k = low; k < high; ) {
+            int hi = high - k > step ? k + step : high;
+            new Sorter<>(a, b, false, parallelism, k, hi - k).invoke();
+            k = hi;
+        }
+
+        /*
+         * Merge the pairs of the sorted blocks in place,
+         * doubling the size of the blocks at each step.
+         */
+        for (; step < size; step = size - step > step ? step << 1 : size) {
+            for (int k = low; high - k > step; ) {
+                int mi = k + step;
+                int hi = high - mi > step ? mi + step : high;
+                new BoundedMerger<>(null, a, b, k, mi, hi, 0, b.length).invoke();
+                k = hi;
             }
         }
-        a[p] = value;
     }
 
-// #[byte]
-
     /**
-     * Sorts the specified range of the array using
-     * counting sort or insertion sort.
+     * Merges the adjacent sorted parts of the array in place using
+     * the bounded buffer. If the parts don't fit the buffer, the larger
+     * part is split by its median and the smaller part by the same value,
+     * the inner segments are swapped, and the left and the right pairs
+     * of the segments are merged independently.
      *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param merger parallel context
+     * @param a the array with the parts to be merged
+     * @param b the bounded buffer
+     * @param lo the start index of the first part, inclusive
+     * @param mi the start index of the second part, inclusive
+     * @param hi the end index of the second part, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
      */
-    static void sort(byte[] a, int low, int high) {
-        if (high - low > MIN_BYTE_COUNTING_SORT_SIZE) {
-            countingSort(a, low, high);
-        } else {
-            insertionSort(a, low, high);
-        }
-    }
+    private static void mergeInPlace(BoundedMerger<int[]> merger, int[] a, int[] b,
+            int lo, int mi, int hi, int offset, int size) {
 
-    /**
-     * The number of distinct byte values.
-     */
-    private static final int NUM_BYTE_VALUES = 1 << 8;
+        while (lo < mi && mi < hi && a[mi - 1] > a[mi]) {
 
-    /**
-     * Sorts the specified range of the array using counting sort.
-     *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     */
-    private static void countingSort(byte[] a, int low, int high) {
-        int[] count = new int[NUM_BYTE_VALUES];
+            /*
+             * Merge the parts forward, if the first part fits the buffer.
+             */
+            if (mi - lo <= size) {
+                System.arraycopy(a, lo, b, offset, mi - lo);
+                int i = offset, end = offset + mi - lo;
 
-        /*
-         * Compute the histogram.
-         */
-        for (int i = high; i > low; ++count[a[--i] & 0xFF]);
+                while (i < end && mi < hi) {
+                    a[lo++] = b[i] <= a[mi] ? b[i++] : a[mi++];
+                }
+                System.arraycopy(b, i, a, lo, end - i);
+                return;
+            }
 
-        /*
-         * Put values on their final positions.
-         */
-        if (high - low > NUM_BYTE_VALUES) {
-            for (int i = Byte.MIN_VALUE; high > low; ) {
-                for (int k = count[--i & 0xFF]; k > 0; --k) {
-                    a[--high] = (byte) i;
+            /*
+             * Merge the parts backward, if the second part fits the buffer.
+             */
+            if (hi - mi <= size) {
+                System.arraycopy(a, mi, b, offset, hi - mi);
+                int i = offset + hi - mi;
+
+                while (i > offset && mi > lo) {
+                    a[--hi] = b[i - 1] >= a[mi - 1] ? b[--i] : a[--mi];
                 }
+                System.arraycopy(b, offset, a, lo, i - offset);
+                return;
             }
-        } else {
-            for (int i = Byte.MIN_VALUE; high > low; ) {
-                while (count[--i & 0xFF] == 0);
 
-                int num = count[i & 0xFF];
+            /*
+             * Split the larger part by its median
+             * and the smaller part by the same value.
+             */
+            int m1, m2;
 
-                do {
-                    a[--high] = (byte) i;
-                } while (--num > 0);
+            if (mi - lo >= hi - mi) {
+                m1 = (lo + mi) >>> 1;
+                m2 = mi;
+                int key = a[m1];
+
+                for (int h = hi; m2 < h; ) {
+                    int m = (m2 + h) >>> 1;
+
+                    if (a[m] < key) {
+                        m2 = m + 1;
+                    } else {
+                        h = m;
+                    }
+                }
+            } else {
+                m2 = (mi + hi) >>> 1;
+                m1 = lo;
+                int key = a[m2];
+
+                for (int h = mi; m1 < h; ) {
+                    int m = (m1 + h) >>> 1;
+
+                    if (a[m] <= key) {
+                        m1 = m + 1;
+                    } else {
+                        h = m;
+                    }
+                }
+            }
+
+            /*
+             * Swap the inner segments.
+             */
+            rotate(a, b, m1, mi, m2, offset, size);
+            int m = m1 + m2 - mi;
+
+            /*
+             * Merge the left pair of the segments (possibly in parallel,
+             * giving half of the buffer) and iterate along the right pair.
+             */
+            if (merger != null && size > 1
+                    && m - lo > MIN_MERGE_PART_SIZE && hi - m > MIN_MERGE_PART_SIZE) {
+                merger.fork(lo, m1, m, offset, size >> 1);
+                offset += size >> 1;
+                size -= size >> 1;
+            } else {
+                mergeInPlace(merger, a, b, lo, m1, m, offset, size);
             }
+            lo = m;
+            mi = m2;
         }
     }
 
     /**
-     * Sorts the specified range of the array using insertion sort.
+     * Swaps the adjacent segments of the array using the bounded
+     * buffer, if the smaller segment fits it, otherwise by reversals.
      *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param a the array with the segments
+     * @param b the bounded buffer
+     * @param lo the start index of the first segment, inclusive
+     * @param mi the start index of the second segment, inclusive
+     * @param hi the end index of the second segment, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
      */
-    static void insertionSort(byte[] a, int low, int high) {
-        for (int i, k = low; ++k < high; ) {
-            byte ai = a[i = k];
-
-            if (ai < a[i - 1]) {
-                do {
-                    a[i] = a[--i];
-                } while (i > low && ai < a[i - 1]);
-
-                a[i] = ai;
+    private static void rotate(int[] a, int[] b, int lo, int mi, int hi, int offset, int size) {
+        if (mi - lo <= size && mi - lo <= hi - mi) {
+            System.arraycopy(a, lo, b, offset, mi - lo);
+            System.arraycopy(a, mi, a, lo, hi - mi);
+            System.arraycopy(b, offset, a, lo + hi - mi, mi - lo);
+        } else if (hi - mi <= size) {
+            System.arraycopy(a, mi, b, offset, hi - mi);
+            System.arraycopy(a, lo, a, lo + hi - mi, mi - lo);
+            System.arraycopy(b, offset, a, lo, hi - mi);
+        } else {
+            for (int i = lo, j = mi; i < --j; ++i) {
+                int ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = mi, j = hi; i < --j; ++i) {
+                int ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = lo, j = hi; i < --j; ++i) {
+                int ai = a[i]; a[i] = a[j]; a[j] = ai;
             }
         }
     }
 
-// #[char]
-
     /**
-     * Sorts the specified range of the array using
-     * counting sort or Dual-Pivot Quicksort.
+     * Estimates by the sample of elements, whether Radix sort is
+     * cheaper than Dual-Pivot Quicksort on the specified range of
+     * the array. The sample gives the key range, the run structure
+     * and the number of duplicates, see the cost model. The sample
+     * is hashed to count the duplicates only, if Radix sort may be
+     * cheaper at all.
      *
      * @param a the array to be sorted
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if Radix sort is expected to be cheaper
      */
-    static void sort(char[] a, int low, int high) {
-        if (high - low > MIN_CHAR_COUNTING_SORT_SIZE) {
-            countingSort(a, low, high);
-        } else {
-            sort(a, 0, low, high);
+    private static boolean preferRadixSort(int[] a, int low, int high) {
+        int step = (high - low) / RADIX_SAMPLE_SIZE;
+        int first = low + (step >> 1);
+        int last = first + RADIX_SAMPLE_SIZE * step;
+        int diff = 0;
+        int ascending = 0, descending = 0, distinct = 0;
+
+        for (int i = first; i < last; i += step) {
+            diff |= a[i] ^ a[first];
+
+            if (a[i] < a[i + 1]) {
+                ascending++;
+            } else if (a[i] > a[i + 1]) {
+                descending++;
+            }
         }
-    }
+        int size = high - low, bits = 32 - Integer.numberOfLeadingZeros(diff);
 
-    /**
-     * The number of distinct char values.
-     */
-    private static final int NUM_CHAR_VALUES = 1 << 16;
+        /*
+         * Hash the sample, unless Radix sort is more
+         * expensive even with all elements distinct.
+         */
+        if (!isRadixSortCheaper(size, bits, ascending, descending, RADIX_SAMPLE_SIZE, INT_RADIX_PASS_COST)) {
+            return false;
+        }
+        int[] hash = Workspace.count(7, SAMPLE_HASH_SIZE >> 5);
+
+        for (int i = first; i < last; i += step) {
+            int h = (a[i] * 0x9E3779B9) >>> 20;
+
+            if ((hash[h >>> 5] & (1 << h)) == 0) {
+                hash[h >>> 5] |= 1 << h;
+                distinct++;
+            }
+        }
+        return isRadixSortCheaper(size, bits, ascending, descending, distinct, INT_RADIX_PASS_COST);
+    }
 
     /**
-     * Sorts the specified range of the array using counting sort.
+     * Tries to sort the specified range of the array
+     * using LSD (The Least Significant Digit) Radix sort.
      *
+     * @param sorter // todo
      * @param a the array to be sorted
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
      */
-    private static void countingSort(char[] a, int low, int high) {
-        int[] count = new int[NUM_CHAR_VALUES];
+    static boolean tryRadixSort(Sorter<int[]> sorter, int[] a, int low, int high) {
+        int[] b; int offset = low, size = high - low;
 
         /*
-         * Compute the histogram.
+         * Allocate additional buffer.
          */
-        for (int i = high; i > low; ++count[a[--i]]);
+        if (sorter != null && (b = sorter.b) != null) {
+            offset = sorter.offset;
+        } else if ((b = tryAllocate(sorter, int[].class, size)) == null) {
+            return mayAllocate(sorter) && tryFlagSort(sorter, a, low, high);
+        }
 
         /*
-         * Put values on their final positions.
+         * Sort large part in parallel.
          */
-        if (high - low > NUM_CHAR_VALUES) {
-            for (int i = NUM_CHAR_VALUES; i > 0; ) {
-//              for (low = high - count[--i]; high > low; ) { // todo
-//                  a[--high] = (char) i;
-//              }
-                for (low = high - count[--i]; high > low;
-                    a[--high] = (char) i
-                );
+        if (sorter != null && size > MIN_RADIX_PART_SIZE << 1) {
+            parallelRadixSort(a, sorter.parallelism, b, low, high, offset);
+            return true;
+        }
+
+        int start = low - offset;
+        int last = high - offset;
+
+        /*
+         * Count the number of all digits.
+         */
+        int[] count1 = Workspace.count(0, 1024);
+        int[] count2 = Workspace.count(1, 2048);
+        int[] count3 = Workspace.count(2, 2048);
+        int min = a[low], max = min;
+
+        for (int i = low; i < high; ++i) {
+            ++count1[ a[i]         & 0x3FF];
+            ++count2[(a[i] >>> 10) & 0x7FF];
+            ++count3[(a[i] >>> 21) ^ 0x400]; // Reverse the sign bit
+            min = Math.min(min, a[i]);
+            max = Math.max(max, a[i]);
+        }
+
+        /*
+         * Sort the keys reduced by the min element, if their
+         * significant bits need less passes than the digits to
+         * be processed, taking into account the counting pass.
+         */
+        int bits = 32 - Integer.numberOfLeadingZeros(max - min);
+
+        if (bits + 11 < radixDigits(Integer.toUnsignedLong(min ^ max)) * 11) {
+            rangeRadixSort(a, b, low, high, offset, min, bits);
+            return true;
+        }
+
+        /*
+         * Detect digits to be processed.
+         */
+        boolean processDigit1 = processDigit(count1, size, low);
+        boolean processDigit2 = processDigit(count2, size, low);
+        boolean processDigit3 = processDigit(count3, size, low);
+
+        /*
+         * Process the 1-st digit.
+         */
+        if (processDigit1) {
+            for (int i = high; i > low; ) {
+                b[--count1[a[--i] & 0x3FF] - offset] = a[i];
             }
-        } else {
-            for (int i = NUM_CHAR_VALUES; high > low; ) {
-                while (count[--i] == 0);
+        }
 
-                int c = count[i]; // todo num
+        /*
+         * Process the 2-nd digit.
+         */
+        if (processDigit2) {
+            if (processDigit1) {
+                for (int i = last; i > start; ) {
+                    a[--count2[(b[--i] >>> 10) & 0x7FF]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count2[(a[--i] >>> 10) & 0x7FF] - offset] = a[i];
+                }
+            }
+        }
 
-                do {
-                    a[--high] = (char) i;
-                } while (--c > 0);
+        /*
+         * Process the 3-rd digit.
+         */
+        if (processDigit3) {
+            if (processDigit1 ^ processDigit2) {
+                for (int i = last; i > start; ) {
+                    a[--count3[(b[--i] >>> 21) ^ 0x400]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count3[(a[--i] >>> 21) ^ 0x400] - offset] = a[i];
+                }
             }
         }
+
+        /*
+         * Copy the buffer to original array, if we process ood number of digits.
+         */
+        if (processDigit1 ^ processDigit2 ^ processDigit3) {
+            System.arraycopy(b, low - offset, a, low, size);
+        }
+        return true;
     }
 
     /**
-     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     * Sorts the specified range of the array in place using MSD
+     * (The Most Significant Digit) Radix sort, also known as American
+     * flag sort, if additional buffer can't be allocated.<p>
      *
+     * The elements are swapped into the buckets of the highest digit
+     * which is not the same for all elements, then the buckets are
+     * sorted independently, in parallel, if there is parallel context.
+     * The buckets are much smaller than the range, therefore the buffer
+     * is usually allocated to sort them.
+     *
+     * @param sorter parallel context
      * @param a the array to be sorted
-     * @param bits the combination of recursion depth and bit flag, where
-     *        the right bit "0" indicates that range is the leftmost part
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} as the array is finally sorted
+     *         or the buckets are being sorted
      */
-    static void sort(char[] a, int bits, int low, int high) {
-        while (true) {
-            int size = high - low;
+    static boolean tryFlagSort(Sorter<int[]> sorter, int[] a, int low, int high) {
+        int[] start = new int[257];
+        int[] next = new int[256];
+
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int flip = shift == 24 ? 0x80 : 0; // Reverse the sign bit
 
             /*
-             * Invoke insertion sort on small part.
+             * Count the elements in the buckets.
              */
-            if (size < MAX_INSERTION_SORT_SIZE) {
-                insertionSort(a, low, high);
-                return;
+            Arrays.fill(next, 0);
+
+            for (int i = low; i < high; ++i) {
+                ++next[(a[i] >>> shift) & 0xFF ^ flip];
             }
 
             /*
-             * Switch to counting sort, if execution time is quadratic.
+             * Skip the digit which is the same for all elements.
              */
-            if ((bits += 2) > MAX_RECURSION_DEPTH) {
-                countingSort(a, low, high);
-                return;
+            if (next[(a[low] >>> shift) & 0xFF ^ flip] == high - low) {
+                continue;
             }
 
             /*
-             * Divide the given array into the golden ratio using
-             * an inexpensive approximation to select five sample
-             * elements and determine pivots.
+             * Compute the start of each bucket.
              */
-            int step = (size >> 2) + (size >> 3) + (size >> 7);
+            start[0] = low;
 
-            /*
-             * Five elements around (and including) the central element
-             * will be used for pivot selection as described below. The
-             * unequal choice of spacing these elements was empirically
-             * determined to work well on a wide variety of inputs.
-             */
-            int e1 = low + step;
-            int e5 = high - step;
-            int e3 = (e1 + e5) >>> 1;
-            int e2 = (e1 + e3) >>> 1;
-            int e4 = (e3 + e5) >>> 1;
-            char a3 = a[e3];
+            for (int d = 0; d < 256; ++d) {
+                start[d + 1] = start[d] + next[d];
+                next[d] = start[d];
+            }
 
             /*
-             * Sort these elements in-place by the combination
-             * of 4-element sorting network and insertion sort.
-             *
-             *   1 ---------o---------------o-----------------
-             *              |               |
-             *   2 ---------|-------o-------o-------o---------
-             *              |       |               |
-             *   4 ---------o-------|-------o-------o---------
-             *                      |       |
-             *   5 -----------------o-------o-----------------
+             * Swap the elements into their buckets, sweeping the buckets
+             * which are not filled yet. Unlike the cycles of swaps, the
+             * swaps of the sweep are independent and therefore faster.
              */
-            if (a[e1] > a[e4]) { char t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
-            if (a[e2] > a[e5]) { char t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
-            if (a[e4] > a[e5]) { char t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
-            if (a[e1] > a[e2]) { char t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
-            if (a[e2] > a[e4]) { char t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+            for (boolean moved = true; moved; ) {
+                moved = false;
+
+                for (int d = 0; d < 256; ++d) {
+                    int end = start[d + 1];
+
+                    if (next[d] < end) {
+                        moved = true;
+
+                        for (int i = next[d]; i < end; ++i) {
+                            int ai = a[i];
+                            int j = next[(ai >>> shift) & 0xFF ^ flip]++;
+                            a[i] = a[j];
+                            a[j] = ai;
+                        }
+                    }
+                }
+            }
 
             /*
-             * Insert the third element.
+             * Sort the buckets, forking the large ones in parallel context.
              */
-            if (a3 < a[e2]) {
-                if (a3 < a[e1]) {
-                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
-                } else {
-                    a[e3] = a[e2]; a[e2] = a3;
-                }
-            } else if (a3 > a[e4]) {
-                if (a3 > a[e5]) {
-                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
-                } else {
-                    a[e3] = a[e4]; a[e4] = a3;
-                }
-            }
-
-            /*
-             * indices[0] - the index of the last element of the left part
-             * indices[1] - the index of the first element of the right part
-             */
-            int[] indices;
-
-            /*
-             * Partitioning with two pivots on array of fully random elements.
-             */
-            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
-
-                indices = partitionWithTwoPivots(a, low, high, e1, e5);
-
-                /*
-                 * Sort non-left parts recursively (possibly in parallel),
-                 * excluding known pivots.
-                 */
-                sort(a, bits | 1, indices[0] + 1, indices[1]);
-                sort(a, bits | 1, indices[1] + 1, high);
-
-            } else { // Partitioning with one pivot
-
-                indices = partitionWithOnePivot(a, low, high, e3, e3);
+            for (int d = 0; d < 256; ++d) {
+                int lo = start[d], hi = start[d + 1];
 
-                /*
-                 * Sort the right part (possibly in parallel), excluding
-                 * known pivot. All elements from the central part are
-                 * equal and therefore already sorted.
-                 */
-                sort(a, bits | 1, indices[1], high);
+                if (sorter != null && hi - lo > MIN_PARALLEL_SORT_SIZE) {
+                    sorter.fork(0, lo, hi);
+                } else if (hi - lo > 1) {
+                    sort(sorter, a, 0, lo, hi);
+                }
             }
-            high = indices[0]; // Iterate along the left part
+            return true;
         }
+
+        /*
+         * All elements are equal and therefore already sorted.
+         */
+        return true;
     }
 
     /**
-     * Partitions the specified range of the array using two given pivots.
+     * Sorts the specified range of the array using LSD Radix sort
+     * of the keys reduced by the min element. The number of digits
+     * and their width are chosen by the number of significant bits
+     * of the keys, and the next digit is counted, while the elements
+     * are moved by the current digit.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of pivot1, the first pivot
-     * @param pivotIndex2 the index of pivot2, the second pivot
-     * @return indices of parts after partitioning
+     * @param a the array to be sorted
+     * @param b the buffer of the same size as the range
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @param offset the start index of the buffer in the array
+     * @param min the min element
+     * @param bits the number of significant bits of the keys
      */
-    private static int[] partitionWithTwoPivots(
-            char[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
-
-        /*
-         * Pointers to the right and left parts.
-         */
-        int upper = --high;
-        int lower = low;
-
-        /*
-         * Use the first and fifth of the five sorted elements as
-         * the pivots. These values are inexpensive approximation
-         * of tertiles. Note, that pivot1 < pivot2.
-         */
-        final char pivot1 = a[pivotIndex1]; // todo final
-        final char pivot2 = a[pivotIndex2];
+    private static void rangeRadixSort(int[] a, int[] b, int low, int high, int offset, int min, int bits) {
+        int digits = (bits + 10) / 11;
+        int width = (bits - 1) / digits + 1;
+        int mask = (1 << width) - 1;
+        int size = high - low;
 
-        /*
-         * The first and the last elements to be sorted are moved
-         * to the locations formerly occupied by the pivots. When
-         * partitioning is completed, the pivots are swapped back
-         * into their final positions, and excluded from the next
-         * subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
-        a[pivotIndex2] = a[upper];
+        int[] count = Workspace.count(1, 2048);
+        int[] next = Workspace.count(2, 2048);
+        int[] src = a, dst = b;
+        int from = low, to = low - offset;
 
         /*
-         * Skip elements, which are less or greater than the pivots.
+         * Count the lowest digit.
          */
-        while (a[++lower] < pivot1);
-        while (a[--upper] > pivot2);
+        for (int i = low; i < high; ++i) {
+            ++count[(a[i] - min) & mask];
+        }
 
-        /*
-         * Backward 3-interval partitioning
-         *
-         *     left part                     central part          right part
-         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
-         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
-         * +--------------+----------+--------------------------+--------------+
-         *               ^          ^                            ^
-         *               |          |                            |
-         *             lower        k                          upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
-         */
-        for (int unused = --lower, k = ++upper; --k > lower; ) {
-            char ak = a[k];
+        for (int shift = 0; shift < bits; shift += width) {
+            int nextShift = shift + width;
 
-            if (ak < pivot1) { // Move a[k] to the left part
-                while (a[++lower] < pivot1);
+            if (nextShift < bits) {
+                Arrays.fill(next, 0);
+            }
 
-                if (lower > k) {
-                    lower = k;
-                    break;
-                }
-                if (a[lower] > pivot2) {
-                    a[k] = a[--upper];
-                    a[upper] = a[lower];
+            /*
+             * Move the elements by the digit and count the next digit.
+             */
+            if (processDigit(count, size, to)) {
+                if (nextShift < bits) {
+                    for (int i = from + size; i > from; ) {
+                        int key = src[--i] - min;
+                        ++next[(key >>> nextShift) & mask];
+                        dst[--count[(key >>> shift) & mask]] = src[i];
+                    }
                 } else {
-                    a[k] = a[lower];
+                    for (int i = from + size; i > from; ) {
+                        dst[--count[((src[--i] - min) >>> shift) & mask]] = src[i];
+                    }
+                }
+                int[] t = src; src = dst; dst = t;
+                int k = from; from = to; to = k;
+
+            } else if (nextShift < bits) {
+                for (int i = from; i < from + size; ++i) {
+                    ++next[((src[i] - min) >>> nextShift) & mask];
                 }
-                a[lower] = ak;
-            } else if (ak > pivot2) { // Move a[k] to the right part
-                a[k] = a[--upper];
-                a[upper] = ak;
             }
+            int[] t = count; count = next; next = t;
         }
 
         /*
-         * Swap the pivots into their final positions.
+         * Copy the buffer to original array, if we process odd number of digits.
          */
-        a[low]  = a[lower]; a[lower] = pivot1;
-        a[high] = a[upper]; a[upper] = pivot2;
-
-        return new int[] { lower, upper };
+        if (src != a) {
+            System.arraycopy(src, from, a, low, size);
+        }
     }
 
     /**
-     * Partitions the specified range of the array using one given pivot.
+     * Returns the number of digits of LSD Radix sort, which are not
+     * the same for all elements, given the bits which differ in the
+     * min and max elements. The digits are of 10, 11, 11, ... bits.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of single pivot
-     * @param pivotIndex2 the index of single pivot
-     * @return indices of parts after partitioning
+     * @param diff the bits which differ in the min and max elements
+     * @return the number of digits to be processed
      */
-    private static int[] partitionWithOnePivot(
-            char[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
-
-        /*
-         * Pointers to the right and left parts.
-         */
-        int upper = high;
-        int lower = low;
-
-        /*
-         * Use the third of the five sorted elements as the pivot.
-         * This value is inexpensive approximation of the median.
-         */
-        final char pivot = a[pivotIndex1];
+    private static int radixDigits(long diff) {
+        int bit = 63 - Long.numberOfLeadingZeros(diff);
+        return diff == 0 ? 0 : bit < 10 ? 1 : (bit - 10) / 11 + 2;
+    }
 
-        /*
-         * The first element to be sorted is moved to the
-         * location formerly occupied by the pivot. After
-         * completion of partitioning the pivot is swapped
-         * back into its final position, and excluded from
-         * the next subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
+    /**
+     * Checks the count array and then computes the histogram.
+     *
+     * @param count the count array
+     * @param total the total number of elements
+     * @param low the index of the first element, inclusive
+     * @return {@code true} if the digit must be processed, otherwise {@code false}
+     */
+    private static boolean processDigit(int[] count, int total, int low) {
 
         /*
-         * Dutch National Flag partitioning
-         *
-         *     left part               central part    right part
-         * +------------------------------------------------------+ // todo ---+----
-         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
-         * +------------------------------------------------------+
-         *               ^          ^                ^
-         *               |          |                |
-         *             lower        k              upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
+         * Check if we can skip the given digit.
          */
-        for (int k = upper; --k > lower; ) {
-            char ak = a[k];
-
-            if (ak == pivot) {
-                continue;
+        for (int c : count) {
+            if (c == total) {
+                return false;
             }
-            a[k] = pivot;
-
-            if (ak < pivot) { // Move a[k] to the left part
-                while (a[++lower] < pivot);
-
-                if (a[lower] > pivot) {
-                    a[--upper] = a[lower];
-                }
-                a[lower] = ak;
-            } else { // ak > pivot - Move a[k] to the right part
-                a[--upper] = ak;
+            if (c > 0) {
+                break;
             }
         }
 
         /*
-         * Swap the pivot into its final position.
+         * Compute the histogram.
          */
-        a[low] = a[lower]; a[lower] = pivot;
+        count[0] += low;
 
-        return new int[] { lower, upper };
+        for (int i = 0; ++i < count.length; ) { // todo
+            count[i] += count[i - 1];
+        }
+        return true;
     }
 
     /**
-     * Sorts the specified range of the array using insertion sort.
+     * Tries to sort the specified range of the array using parallel
+     * MSD (The Most Significant Digit) bucket sort.<p>
+     *
+     * The elements are distributed into the buffer by the highest
+     * digit which is not the same for all elements and copied back,
+     * then the buckets are sorted independently in parallel, so that
+     * no merging of the sorted parts is required.
      *
+     * @param sorter parallel context
      * @param a the array to be sorted
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted or the buckets
+     *         are being sorted, otherwise {@code false}
      */
-    static void insertionSort(char[] a, int low, int high) {
-        for (int i, k = low; ++k < high; ) {
-            char ai = a[i = k];
+    static boolean tryBucketSort(Sorter<int[]> sorter, int[] a, int low, int high) {
+        int[] b = sorter.b;
 
-            if (ai < a[i - 1]) {
-                do {
-                    a[i] = a[--i];
-                } while (i > low && ai < a[i - 1]);
+        if (b == null) {
+            return false;
+        }
+        int offset = sorter.offset, size = high - low;
+        int[][] count = new int[Math.min(size / MIN_RADIX_PART_SIZE, sorter.parallelism << 2)][2048];
 
-                a[i] = ai;
+        /*
+         * Find the highest digit to be processed.
+         */
+        for (int shift = 21; ; shift -= shift == 10 ? 10 : 11) {
+            int mask = shift == 0 ? 0x3FF : 0x7FF;
+            int flip = shift == 21 ? 0x400 : 0; // Reverse the sign bit
+
+            new RadixSorter<>(null, a, null, count,
+                low, high, shift, mask, flip, 0, count.length).invoke();
+
+            if (processDigit(count, size, low - offset)) {
+
+                /*
+                 * Distribute the elements into buckets.
+                 */
+                new RadixSorter<>(null, a, b, count,
+                    low, high, shift, mask, flip, 0, count.length).invoke();
+
+                int[] bucket = count[0].clone();
+
+                /*
+                 * Copy the buckets back to original array.
+                 */
+                processCopy(count, size, low);
+                new RadixSorter<>(null, b, a, count,
+                    low - offset, high - offset, 0, 0, 0, 0, count.length).invoke();
+
+                /*
+                 * Sort the buckets in parallel, joining small
+                 * neighbouring buckets into one part.
+                 */
+                for (int i = 0, start = low, end = low; end < high; ) {
+                    int next = ++i < bucket.length ? bucket[i] + offset : high;
+
+                    if (next - start > MIN_PARALLEL_SORT_SIZE && end > start) {
+                        sorter.fork(0, start, end);
+                        start = end;
+                    }
+                    if ((end = next) == high) {
+                        sorter.fork(0, start, end);
+                    }
+                }
+                return true;
+            }
+
+            /*
+             * All elements are equal and therefore already sorted.
+             */
+            if (shift == 0) {
+                return true;
             }
         }
     }
 
-// #[short]
-
     /**
-     * Sorts the specified range of the array using
-     * counting sort or Dual-Pivot Quicksort.
+     * Sorts the specified range of the array using parallel
+     * LSD (The Least Significant Digit) Radix sort.<p>
+     *
+     * The range is divided into parts, each part counts its own
+     * digits, and then all parts move their elements in parallel
+     * to the final positions of the digit, keeping the order.
      *
      * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param b the buffer of the same size as the range
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
+     * @param offset the start index of the buffer in the array
      */
-    static void sort(short[] a, int low, int high) {
-        if (high - low > MIN_SHORT_COUNTING_SORT_SIZE) {
-            countingSort(a, low, high);
-        } else {
-            sort(a, 0, low, high);
-        }
-    }
+    private static void parallelRadixSort(int[] a, int parallelism, int[] b, int low, int high, int offset) {
+        int size = high - low;
+        int[][] count = new int[Math.min(size / MIN_RADIX_PART_SIZE, parallelism << 2)][2048];
 
-    /**
-     * The number of distinct short values.
-     */
-    private static final int NUM_SHORT_VALUES = 1 << 16;
+        int[] src = a, dst = b;
+        int start = low, last = low - offset;
 
-    /**
-     * Sorts the specified range of the array using counting sort.
+        /*
+         * Process the digits of 10, 11 and 11 bits.
+         */
+        for (int shift = 0; shift < 32; shift += shift == 0 ? 10 : 11) {
+            int mask = shift == 0 ? 0x3FF : 0x7FF;
+            int flip = shift == 21 ? 0x400 : 0; // Reverse the sign bit
+
+            /*
+             * Count the digits in each part.
+             */
+            new RadixSorter<>(null, src, null, count,
+                start, start + size, shift, mask, flip, 0, count.length).invoke();
+
+            /*
+             * Move elements, if the digit must be processed.
+             */
+            if (processDigit(count, size, last)) {
+                new RadixSorter<>(null, src, dst, count,
+                    start, start + size, shift, mask, flip, 0, count.length).invoke();
+
+                int[] t = src; src = dst; dst = t;
+                int k = start; start = last; last = k;
+            }
+        }
+
+        /*
+         * Copy the buffer to original array, if we process odd number of digits.
+         */
+        if (src != a) {
+            processCopy(count, size, low);
+            new RadixSorter<>(null, src, a, count,
+                start, start + size, 0, 0, 0, 0, count.length).invoke();
+        }
+    }
+
+    /**
+     * Counts the digits of the part of the array.
      *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param a the array
+     * @param count the count array of the part
+     * @param shift the shift of the digit
+     * @param mask the mask of the digit
+     * @param flip the bits to be reversed in the digit
+     * @param low the index of the first element, inclusive
+     * @param high the index of the last element, exclusive
      */
-    private static void countingSort(short[] a, int low, int high) {
-        int[] count = new int[NUM_SHORT_VALUES];
+    private static void countDigit(int[] a, int[] count,
+            int shift, int mask, int flip, int low, int high) {
+        Arrays.fill(count, 0);
+
+        for (int i = low; i < high; ++i) {
+            ++count[(a[i] >>> shift) & mask ^ flip];
+        }
+    }
+
+    /**
+     * Moves elements of the part of the array to the final
+     * positions of the digit, keeping their order.
+     *
+     * @param dst the destination where elements are moved
+     * @param src the part to be moved
+     * @param count the end positions of the digits of the part
+     * @param shift the shift of the digit
+     * @param mask the mask of the digit
+     * @param flip the bits to be reversed in the digit
+     * @param low the index of the first element, inclusive
+     * @param high the index of the last element, exclusive
+     */
+    private static void scatterDigit(int[] dst, int[] src, int[] count,
+            int shift, int mask, int flip, int low, int high) {
+        for (int i = high; i > low; ) {
+            dst[--count[(src[--i] >>> shift) & mask ^ flip]] = src[i];
+        }
+    }
+
+    /**
+     * Checks the count arrays of all parts and then computes
+     * the end positions of the digits for each part.
+     *
+     * @param count the count arrays of the parts
+     * @param total the total number of elements
+     * @param low the index of the first element, inclusive
+     * @return {@code true} if the digit must be processed, otherwise {@code false}
+     */
+    private static boolean processDigit(int[][] count, int total, int low) {
 
         /*
-         * Compute the histogram.
+         * Check if we can skip the given digit.
          */
-        for (int i = high; i > low; ++count[a[--i] & 0xFFFF]);
+        for (int i = 0; ; ++i) {
+            int num = 0;
+
+            for (int[] c : count) {
+                num += c[i];
+            }
+            if (num == total) {
+                return false;
+            }
+            if (num > 0) {
+                break;
+            }
+        }
 
         /*
-         * Place values on their final positions.
+         * Compute the end positions of the digits, where
+         * the parts are placed one after another.
          */
-  
-        if (high - low > NUM_SHORT_VALUES) {
-            for (int i = Short.MIN_VALUE; high > low; ) {
-                for (int k = count[--i & 0xFFFF]; k > 0; --k) {
-                    a[--high] = (short) i;
-                }
+        for (int i = 0; i < count[0].length; ++i) {
+            for (int[] c : count) {
+                c[i] = (low += c[i]);
             }
-        } else {
-            for (int i = Short.MIN_VALUE; high > low; ) {
-                while (count[--i & 0xFFFF] == 0);
+        }
+        return true;
+    }
 
-                int num = count[i & 0xFFFF];
+    /**
+     * Computes the end positions of the parts to be copied.
+     *
+     * @param count the count arrays of the parts
+     * @param total the total number of elements
+     * @param low the index of the first element, inclusive
+     */
+    private static void processCopy(int[][] count, int total, int low) {
+        int step = total / count.length;
 
-                do {
-                    a[--high] = (short) i;
-                } while (--num > 0);
-            }
+        for (int i = 0; i < count.length; ++i) {
+            count[i][0] = low + (i == count.length - 1 ? total : (i + 1) * step);
         }
     }
 
     /**
-     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     * Sorts the specified range of the array using heap sort.
      *
      * @param a the array to be sorted
-     * @param bits the combination of recursion depth and bit flag, where
-     *        the right bit "0" indicates that range is the leftmost part
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void sort(short[] a, int bits, int low, int high) {
-        while (true) {
-            int size = high - low;
+    static void heapSort(int[] a, int low, int high) {
+        for (int k = (low + high) >>> 1; k > low; ) { // todo
+            pushDown(a, --k, a[k], low, high);
+        }
+        while (--high > low) {
+            int max = a[low];
+            pushDown(a, low, a[high], low, high);
+            a[high] = max;
+        }
+    }
 
-            /*
-             * Invoke insertion sort on small part.
-             */
-            if (size < MAX_INSERTION_SORT_SIZE) {
-                insertionSort(a, low, high);
-                return;
-            }
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given array
+     * @param p the start index
+     * @param value the given element
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDown(int[] a, int p, int value, int low, int high) {
+        for (int k ;; a[p] = a[p = k]) {
+            k = (p << 1) - low + 2; // Index of the right child
 
-            /*
-             * Switch to counting sort, if execution time is quadratic.
-             */
-            if ((bits += 2) > MAX_RECURSION_DEPTH) {
-                countingSort(a, low, high);
-                return;
+            if (k > high) {
+                break;
             }
-
-            /*
-             * Divide the given array into the golden ratio using
-             * an inexpensive approximation to select five sample
-             * elements and determine pivots.
-             */
-            int step = (size >> 2) + (size >> 3) + (size >> 7);
-
-            /*
-             * Five elements around (and including) the central element
-             * will be used for pivot selection as described below. The
-             * unequal choice of spacing these elements was empirically
-             * determined to work well on a wide variety of inputs.
-             */
-            int e1 = low + step;
-            int e5 = high - step;
-            int e3 = (e1 + e5) >>> 1;
-            int e2 = (e1 + e3) >>> 1;
-            int e4 = (e3 + e5) >>> 1;
-            short a3 = a[e3];
-
-            /*
-             * Sort these elements in-place by the combination
-             * of 4-element sorting network and insertion sort.
-             *
-             *   1 ---------o---------------o-----------------
-             *              |               |
-             *   2 ---------|-------o-------o-------o---------
-             *              |       |               |
-             *   4 ---------o-------|-------o-------o---------
-             *                      |       |
-             *   5 -----------------o-------o-----------------
-             */
-            if (a[e1] > a[e4]) { short t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
-            if (a[e2] > a[e5]) { short t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
-            if (a[e4] > a[e5]) { short t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
-            if (a[e1] > a[e2]) { short t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
-            if (a[e2] > a[e4]) { short t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
-
-            /*
-             * Insert the third element.
-             */
-            if (a3 < a[e2]) {
-                if (a3 < a[e1]) {
-                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
-                } else {
-                    a[e3] = a[e2]; a[e2] = a3;
-                }
-            } else if (a3 > a[e4]) {
-                if (a3 > a[e5]) {
-                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
-                } else {
-                    a[e3] = a[e4]; a[e4] = a3;
-                }
+            if (k == high || a[k] < a[k - 1]) {
+                --k;
+            }
+            if (a[k] <= value) {
+                break;
             }
+        }
+        a[p] = value;
+    }
 
-            /*
-             * indices[0] - the index of the last element of the left part
-             * indices[1] - the index of the first element of the right part
-             */
-            int[] indices;
+// #[long]
 
-            /*
-             * Partitioning with two pivots on array of fully random elements.
-             */
-            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+    /**
+     * Sorts the specified range of the array using parallel merge
+     * sort and/or Dual-Pivot Quicksort.<p>
+     *
+     * To balance the faster splitting and parallelism of merge sort
+     * with the faster element partitioning of Quicksort, ranges are
+     * subdivided in tiers such that, if there is enough parallelism,
+     * the four-way parallel merge is started, still ensuring enough
+     * parallelism to process the partitions.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(long[] a, int parallelism, int low, int high) {
+        sort(a, parallelism, null, low, high);
+    }
 
-                indices = partitionWithTwoPivots(a, low, high, e1, e5);
+    /**
+     * Sorts the specified range of the array, so that additional
+     * buffer doesn't exceed the given budget.<p>
+     *
+     * If the budget is less than the size of the range, but not less
+     * than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel sorting
+     * uses the largest buffer within the budget to sort blocks, which
+     * are then merged in place. Otherwise the range is sorted without
+     * additional buffer.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param budget the max size of additional buffer in bytes
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(long[] a, int parallelism, long budget, int low, int high) {
+        int size = high - low;
+        int length = (int) Math.max(0, Math.min(budget >> 3, size));
 
-                /*
-                 * Sort non-left parts recursively (possibly in parallel),
-                 * excluding known pivots.
-                 */
-                sort(a, bits | 1, indices[0] + 1, indices[1]);
-                sort(a, bits | 1, indices[1] + 1, high);
+        if (length == size) {
+            sort(a, parallelism, null, low, high);
+        } else {
+            long[] b = parallelism > 1 && size > MIN_PARALLEL_SORT_SIZE
+                && (long) length * MAX_BOUNDED_BLOCK_COUNT >= size
+                    ? tryAllocate(long[].class, length) : null;
 
-            } else { // Partitioning with one pivot
+            sort(a, parallelism, b != null ? b : new long[0], low, high);
+        }
+    }
 
-                indices = partitionWithOnePivot(a, low, high, e3, e3);
+    /**
+     * Sorts the specified range of the array using the given
+     * workspace as additional buffer.<p>
+     *
+     * If the workspace is supplied, no buffer is allocated during
+     * sorting. If the workspace is shorter than the range, but not
+     * shorter than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel
+     * sorting sorts the blocks, which fit the workspace, and merges
+     * them in place. Otherwise the range is sorted without additional
+     * buffer: runs are not merged, and neither Radix sort nor parallel
+     * merge sort is used.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param workspace the additional buffer of at least {@code high - low}
+     *        elements, or {@code null} to allocate the buffer, if required
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(long[] a, int parallelism, long[] workspace, int low, int high) {
+        /*
+         * Sort large range in parallel as int keys, if the
+         * elements fit in 32 bits, when reduced by the min element.
+         */
+        if (parallelism <= 1 || workspace != null || high - low <= MIN_COMPRESSED_SORT_SIZE
+                || !tryCompressedSort(a, parallelism, low, high)) {
+            if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+                long[] b = workspace != null ? workspace : tryAllocateBounded(long[].class, high - low);
+
+                if (b != null && b.length < high - low
+                        && (long) b.length * MAX_BOUNDED_BLOCK_COUNT >= high - low) {
+                    boundedSort(a, parallelism, b, low, high);
+                } else {
+                    new Sorter<>(a, b, workspace == null, parallelism, low, high - low).invoke();
+                }
+            } else if (workspace == null) {
+                sort(null, a, 0, low, high);
+            } else {
+                Workspace.lend(workspace, workspace.length);
 
-                /*
-                 * Sort the right part (possibly in parallel), excluding
-                 * known pivot. All elements from the central part are
-                 * equal and therefore already sorted.
-                 */
-                sort(a, bits | 1, indices[1], high);
+                try {
+                    sort(null, a, 0, low, high);
+                } finally {
+                    Workspace.lend(null, 0);
+                }
             }
-            high = indices[0]; // Iterate along the left part
         }
     }
 
     /**
-     * Partitions the specified range of the array using two given pivots.
+     * Tries to sort the specified range of the array as int keys, if
+     * the elements fit in 32 bits, when reduced by the min element.
+     * The keys are packed into int array, sorted by the int version
+     * of sorting and expanded back, so that only half of the bytes
+     * are moved through memory.<p>
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of pivot1, the first pivot
-     * @param pivotIndex2 the index of pivot2, the second pivot
-     * @return indices of parts after partitioning
+     * The range of the elements is checked by the sample at first,
+     * then the min and max elements are found in parallel. The range
+     * is left to merging sort, if the sample is monotonous, or if the
+     * elements go up and down less often than the runs can be merged,
+     * so that highly structured data are not packed.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
      */
-    private static int[] partitionWithTwoPivots(
-            short[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+    private static boolean tryCompressedSort(long[] a, int parallelism, int low, int high) {
+        int step = (high - low) / RADIX_SAMPLE_SIZE;
+        long min = a[low], max = min;
 
         /*
-         * Pointers to the right and left parts.
+         * Check the range of the sample.
          */
-        int upper = --high;
-        int lower = low;
+        boolean ascending = true, descending = true;
 
-        /*
-         * Use the first and fifth of the five sorted elements as
-         * the pivots. These values are inexpensive approximation
-         * of tertiles. Note, that pivot1 < pivot2.
-         */
-        final short pivot1 = a[pivotIndex1]; // todo final
-        final short pivot2 = a[pivotIndex2];
+        for (int i = low + step; i < high; i += step) {
+            ascending &= a[i - step] <= a[i];
+            descending &= a[i - step] >= a[i];
+            min = Math.min(min, a[i]);
+            max = Math.max(max, a[i]);
+        }
+        if (ascending || descending || (max - min) >>> 32 != 0) {
+            return false;
+        }
 
         /*
-         * The first and the last elements to be sorted are moved
-         * to the locations formerly occupied by the pivots. When
-         * partitioning is completed, the pivots are swapped back
-         * into their final positions, and excluded from the next
-         * subsequent sorting.
+         * Find the min and max elements and count
+         * the steps up and down between the elements.
          */
-        a[pivotIndex1] = a[lower];
-        a[pivotIndex2] = a[upper];
+        LongAccumulator lower = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        LongAccumulator upper = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        LongAdder ups = new LongAdder(), downs = new LongAdder();
+
+        process(parallelism, low, high, (lo, hi) -> {
+            long mn = a[lo], mx = mn;
+            int up = 0, down = 0;
+
+            for (int i = lo + 1; i < hi; ++i) {
+                mn = Math.min(mn, a[i]);
+                mx = Math.max(mx, a[i]);
+                up += a[i - 1] < a[i] ? 1 : 0;
+                down += a[i - 1] > a[i] ? 1 : 0;
+            }
+            lower.accumulate(mn);
+            upper.accumulate(mx);
+            ups.add(up);
+            downs.add(down);
+        });
+
+        if ((upper.get() - lower.get()) >>> 32 != 0 || Math.min(ups.sum(), downs.sum())
+                < Math.min((high - low) / MIN_RUN_SIZE, MAX_RUN_CAPACITY)) {
+            return false;
+        }
+        int[] k = tryAllocate(int[].class, high - low);
 
-        /*
-         * Skip elements, which are less or greater than the pivots.
-         */
-        while (a[++lower] < pivot1);
-        while (a[--upper] > pivot2);
+        if (k == null) {
+            return false;
+        }
 
         /*
-         * Backward 3-interval partitioning
-         *
-         *     left part                     central part          right part
-         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
-         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
-         * +--------------+----------+--------------------------+--------------+
-         *               ^          ^                            ^
-         *               |          |                            |
-         *             lower        k                          upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
+         * Pack the elements into int keys, which keep the order.
          */
-        for (int unused = --lower, k = ++upper; --k > lower; ) {
-            short ak = a[k];
+        long bias = lower.get() - Integer.MIN_VALUE;
 
-            if (ak < pivot1) { // Move a[k] to the left part
-                while (a[++lower] < pivot1);
-
-                if (lower > k) {
-                    lower = k;
-                    break;
-                }
-                if (a[lower] > pivot2) {
-                    a[k] = a[--upper];
-                    a[upper] = a[lower];
-                } else {
-                    a[k] = a[lower];
-                }
-                a[lower] = ak;
-            } else if (ak > pivot2) { // Move a[k] to the right part
-                a[k] = a[--upper];
-                a[upper] = ak;
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                k[i - low] = (int) (a[i] - bias);
             }
-        }
+        });
+        sort(k, parallelism, 0, k.length);
 
         /*
-         * Swap the pivots into their final positions.
+         * Expand the sorted keys back.
          */
-        a[low]  = a[lower]; a[lower] = pivot1;
-        a[high] = a[upper]; a[upper] = pivot2;
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                a[i] = bias + k[i - low];
+            }
+        });
+        return true;
+    }
 
-        return new int[] { lower, upper };
+    /**
+     * Returns the indices of the elements from the specified range
+     * of the array, arranged in ascending numerical order of the
+     * elements, the array itself is not modified. Indices of equal
+     * elements are in ascending order.<p>
+     *
+     * The high half of each element is packed with its index into
+     * a long value, and the packed values are sorted. Then groups
+     * of the elements with equal high halves are sorted in the same
+     * way by the low halves of the elements.
+     *
+     * @param a the array of the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return the indices of the elements in sorted order
+     */
+    static int[] indexSort(long[] a, int parallelism, int low, int high) {
+        return indexSort(a, parallelism, low, high, 0);
     }
 
     /**
-     * Partitions the specified range of the array using one given pivot.
+     * Returns the indices of the elements from the specified range
+     * of the array, arranged in ascending numerical order of the
+     * elements, with the given value added to the indices.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of single pivot
-     * @param pivotIndex2 the index of single pivot
-     * @return indices of parts after partitioning
+     * @param a the array of the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @param delta the value to be added to the indices
+     * @return the indices of the elements in sorted order
      */
-    private static int[] partitionWithOnePivot(
-            short[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+    private static int[] indexSort(long[] a, int parallelism, int low, int high, int delta) {
+        long[] p = new long[high - low];
 
         /*
-         * Pointers to the right and left parts.
+         * Pack the high halves of the elements with the indices.
          */
-        int upper = high;
-        int lower = low;
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                p[i - low] = a[i] & 0xFFFFFFFF00000000L | i;
+            }
+        });
+        sort(p, parallelism, 0, p.length);
 
         /*
-         * Use the third of the five sorted elements as the pivot.
-         * This value is inexpensive approximation of the median.
+         * Mark the start of each group of equal high halves.
          */
-        final short pivot = a[pivotIndex1];
+        boolean[] start = new boolean[p.length + 1];
+        start[0] = start[p.length] = true;
 
-        /*
-         * The first element to be sorted is moved to the
-         * location formerly occupied by the pivot. After
-         * completion of partitioning the pivot is swapped
-         * back into its final position, and excluded from
-         * the next subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
+        process(parallelism, 1, p.length, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                start[i] = (p[i - 1] ^ p[i]) >>> 32 != 0;
+            }
+        });
 
         /*
-         * Dutch National Flag partitioning
-         *
-         *     left part               central part    right part
-         * +------------------------------------------------------+ // todo ---+----
-         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
-         * +------------------------------------------------------+
-         *               ^          ^                ^
-         *               |          |                |
-         *             lower        k              upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
+         * Sort the groups, which start in the part,
+         * by the low halves of the elements.
          */
-        for (int k = upper; --k > lower; ) {
-            short ak = a[k];
+        process(parallelism, 0, p.length, (lo, hi) -> {
+            int i = lo;
 
-            if (ak == pivot) {
-                continue;
+            while (i < hi && !start[i]) {
+                ++i;
             }
-            a[k] = pivot;
-
-            if (ak < pivot) { // Move a[k] to the left part
-                while (a[++lower] < pivot);
-
-                if (a[lower] > pivot) {
-                    a[--upper] = a[lower];
+            for (int j; i < hi; i = j) {
+                for (j = i + 1; !start[j]; ++j);
+
+                if (j - i > 1) {
+                    process(parallelism, i, j, (from, to) -> {
+                        for (int k = from; k < to; ++k) {
+                            int index = (int) p[k];
+                            p[k] = (long) ((int) a[index] ^ Integer.MIN_VALUE) << 32 | index;
+                        }
+                    });
+                    sort(p, parallelism, i, j);
                 }
-                a[lower] = ak;
-            } else { // ak > pivot - Move a[k] to the right part
-                a[--upper] = ak;
             }
-        }
-
-        /*
-         * Swap the pivot into its final position.
-         */
-        a[low] = a[lower]; a[lower] = pivot;
-
-        return new int[] { lower, upper };
+        });
+        return unpackIndices(p, parallelism, delta);
     }
 
     /**
-     * Sorts the specified range of the array using insertion sort.
+     * Extracts the indices from the low halves of the packed values.
      *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param p the array of the packed values
+     * @param parallelism the parallelism level
+     * @param delta the value to be added to the indices
+     * @return the extracted indices
      */
-    static void insertionSort(short[] a, int low, int high) {
-        for (int i, k = low; ++k < high; ) {
-            short ai = a[i = k];
-
-            if (ai < a[i - 1]) {
-                do {
-                    a[i] = a[--i];
-                } while (i > low && ai < a[i - 1]);
+    private static int[] unpackIndices(long[] p, int parallelism, int delta) {
+        int[] index = new int[p.length];
 
-                a[i] = ai;
+        process(parallelism, 0, p.length, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                index[i] = (int) p[i] + delta;
             }
-        }
+        });
+        return index;
     }
 
-// #[float]
-
     /**
-     * The number of distinct short values. // todo
-     todo: double
+     * Places the element of the given rank at its sorted position,
+     * see the selection of several ranks.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
      */
-    private static final int FLOAT_NEGATIVE_ZERO = Float.floatToRawIntBits(-0.0f);
+    static void select(long[] a, int rank, int low, int high) {
+        select(a, new int[] { rank }, low, high);
+    }
 
     /**
-     * Sorts the specified range of the array using parallel merge
-     * sort and/or Dual-Pivot Quicksort.<p>
+     * Places the elements of the given ranks at their sorted positions
+     * in the specified range of the array, so that all elements before
+     * each of them are less than or equal to it, and all elements after
+     * it are greater than or equal to it.<p>
      *
-     * To balance the faster splitting and parallelism of merge sort
-     * with the faster element partitioning of Quicksort, ranges are
-     * subdivided in tiers such that, if there is enough parallelism,
-     * the four-way parallel merge is started, still ensuring enough
-     * parallelism to process the partitions.
+     * The ranks are selected by the same partitioning as sorting,
+     * which recurses only into the parts with the ranks. If the
+     * recursion is too deep, the ranks are selected using the
+     * median of medians in linear worst-case time.
      *
-     * @param a the array to be sorted
-     * @param parallelism the parallelism level
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
      */
-    static void sort(float[] a, int parallelism, int low, int high) {
-        /*
-         * Phase 1. Count the number of negative zero -0.0f,
-         * turn them into positive zero, and move all NaNs
-         * to the end of the array.
-         */
-        int numNegativeZero = 0; // todo rename negativeZeroCount
-
-        for (int k = high; k > low; ) {
-            float ak = a[--k];
-
-            if (Float.floatToRawIntBits(ak) == FLOAT_NEGATIVE_ZERO) { // ak is -0.0f    // todo double
-                numNegativeZero++;
-                a[k] = 0.0f;
-            } else if (ak != ak) { // ak is NaN
-                a[k] = a[--high];
-                a[high] = ak;
-            }
-        }
-
-        /*
-         * Phase 2. Sort everything except NaNs,
-         * which are already in place.
-         */
-        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
-            new Sorter<>(a, parallelism, low, high - low).invoke();
-        } else {
-            sort(null, a, 0, low, high);
-        }
-
-        /*
-         * Phase 3. Turn positive zero 0.0f
-         * back into negative zero -0.0f.
-         */
-        if (++numNegativeZero == 1) {
-            return;
-        }
-
-        /*
-         * Find the position one less than
-         * the index of the first zero.
-         */
-        while (low <= high) {
-            int middle = (low + high) >>> 1;
-
-            if (a[middle] < 0.0f) {
-                low = middle + 1;
-            } else {
-                high = middle - 1;
-            }
-        }
-
-        /*
-         * Replace the required number of 0.0f by -0.0f.
-         */
-        while (--numNegativeZero > 0) {
-            a[++high] = -0.0f;
-        }
+    static void select(long[] a, int[] ranks, int low, int high) {
+        select(a, ranks, 0, ranks.length, 0, low, high);
     }
 
     /**
-     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     * Selects the elements of the given ranks from the specified
+     * range of the array using Dual-Pivot Quicksort partitioning.
      *
-     * @param sorter parallel context
-     * @param a the array to be sorted
-     * @param bits the combination of recursion depth and bit flag, where
-     *        the right bit "0" indicates that range is the leftmost part
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param from the index of the first rank, inclusive, to be selected
+     * @param to the index of the last rank, exclusive, to be selected
+     * @param bits the recursion depth
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
      */
-    static void sort(Sorter<float[]> sorter, float[] a, int bits, int low, int high) {
-        while (true) {
+    private static void select(long[] a, int[] ranks, int from, int to, int bits, int low, int high) {
+        while (from < to) {
             int size = high - low;
 
             /*
-             * Run adaptive mixed insertion sort on small non-leftmost parts.
-             */
-            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
-                sort(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
-                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
-                return;
-            }
-
-            /*
-             * Invoke insertion sort on small leftmost part.
+             * Invoke insertion sort on small part.
              */
             if (size < MAX_INSERTION_SORT_SIZE) {
-                sort(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
-                        low, high, DualPivotQuicksort_r38_12::insertionSort);
+                insertionSort(a, low, high);
                 return;
             }
 
             /*
-             * Try merging sort on large part.
+             * Switch to the median of medians, if execution time is quadratic.
              */
-            if (size > MIN_MERGING_SORT_SIZE * bits
-                    && tryMergingSort(sorter, a, low, high)) {
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                for (; from < to; low = ranks[from++]) {
+                    medianSelect(a, ranks[from], low, high);
+                }
                 return;
             }
 
             /*
-             * Divide the given array into the golden ratio using
-             * an inexpensive approximation to select five sample
-             * elements and determine pivots.
+             * Use the same five sample elements
+             * to determine pivots as sorting.
              */
             int step = (size >> 2) + (size >> 3) + (size >> 7);
 
-            /*
-             * Five elements around (and including) the central element
-             * will be used for pivot selection as described below. The
-             * unequal choice of spacing these elements was empirically
-             * determined to work well on a wide variety of inputs.
-             */
             int e1 = low + step;
             int e5 = high - step;
             int e3 = (e1 + e5) >>> 1;
             int e2 = (e1 + e3) >>> 1;
             int e4 = (e3 + e5) >>> 1;
-            float a3 = a[e3];
-
-            /*
-             * Check if part is large and contains random
-             * data, taking into account parallel context.
-             */
-            boolean isLargeRandom =
-                size > MIN_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
-//              size > MIN_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
-                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+            long a3 = a[e3];
 
             /*
              * Sort these elements in-place by the combination
              * of 4-element sorting network and insertion sort.
-             *
-             *   1 ---------o---------------o-----------------
-             *              |               |
-             *   2 ---------|-------o-------o-------o---------
-             *              |       |               |
-             *   4 ---------o-------|-------o-------o---------
-             *                      |       |
-             *   5 -----------------o-------o-----------------
              */
-            if (a[e1] > a[e4]) { float t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
-            if (a[e2] > a[e5]) { float t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
-            if (a[e4] > a[e5]) { float t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
-            if (a[e1] > a[e2]) { float t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
-            if (a[e2] > a[e4]) { float t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+            if (a[e1] > a[e4]) { long t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { long t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { long t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { long t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { long t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
 
             /*
              * Insert the third element.
@@ -3150,11 +3750,152 @@ final class DualPivotQuicksort_r38_12 {
             }
 
             /*
-             * Try Radix sort on large fully random data.
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
              */
-            if (isLargeRandom
-                    && a[e2] < a[e3] && a[e3] < a[e4]
-                    && tryRadixSort(sorter, a, low, high)) {
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Select the ranks of the left and central parts
+                 * recursively, excluding known pivots, and iterate
+                 * along the right part.
+                 */
+                int r1 = rankIndex(ranks, from, to, lower);
+                int r2 = rankIndex(ranks, r1, to, lower + 1);
+                int r3 = rankIndex(ranks, r2, to, upper);
+
+                select(a, ranks, from, r1, bits, low, lower);
+                select(a, ranks, r2, r3, bits, lower + 1, upper);
+
+                from = rankIndex(ranks, r3, to, upper + 1);
+                low = upper + 1;
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Select the ranks of the left part recursively and
+                 * iterate along the right part. All elements from
+                 * the central part are equal and therefore selected.
+                 */
+                int r1 = rankIndex(ranks, from, to, lower);
+
+                select(a, ranks, from, r1, bits, low, lower);
+
+                from = rankIndex(ranks, r1, to, upper);
+                low = upper;
+            }
+        }
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position in the
+     * specified range of the array in linear worst-case time, using the
+     * median of medians of five elements as the pivot.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    private static void medianSelect(long[] a, int rank, int low, int high) {
+        while (high - low >= MAX_INSERTION_SORT_SIZE) {
+            /*
+             * Move the medians of the groups of five
+             * elements to the beginning of the range.
+             */
+            int m = low;
+
+            for (int i = low; i + 5 <= high; i += 5, ++m) {
+                insertionSort(a, i, i + 5);
+                long t = a[m]; a[m] = a[i + 2]; a[i + 2] = t;
+            }
+
+            /*
+             * Partition the range around the median of medians.
+             */
+            int middle = (low + m) >>> 1;
+            medianSelect(a, middle, low, m);
+            int[] indices = partitionWithOnePivot(a, low, high, middle, middle);
+
+            if (rank < indices[0]) {
+                high = indices[0];
+            } else if (rank >= indices[1]) {
+                low = indices[1];
+            } else {
+                return;
+            }
+        }
+        insertionSort(a, low, high);
+    }
+
+    /**
+     * Sorts the first k positions of the specified range of the array:
+     * the k least elements are moved to the beginning of the range in
+     * ascending numerical order, and the other elements follow them
+     * in unspecified order.<p>
+     *
+     * Only the parts after partitioning, which overlap the first k
+     * positions, are processed, therefore the expected running time
+     * is O(n + k log(k)).
+     *
+     * @param a the array to be partially sorted
+     * @param parallelism the parallelism level
+     * @param k the number of the least elements to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void partialSort(long[] a, int parallelism, int k, int low, int high) {
+        if (k >= high - low) {
+            sort(a, parallelism, low, high);
+            return;
+        }
+        int limit = low + Math.max(k, 0);
+
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            new Sorter<>(a, null, false, parallelism, low, high - low, limit).invoke();
+        } else {
+            partialSort(null, a, limit, low, high);
+        }
+    }
+
+    /**
+     * Sorts the leading part of the specified range of the array up to
+     * the given limit using Dual-Pivot Quicksort. The parts, which are
+     * before the limit, are sorted completely (possibly in parallel),
+     * the part with the limit is partitioned again, and the parts
+     * after the limit are skipped.
+     *
+     * @param sorter parallel context
+     * @param a the array to be partially sorted
+     * @param limit the index of the last element, exclusive, to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void partialSort(Sorter<long[]> sorter, long[] a, int limit, int low, int high) {
+        for (int bits = 0; limit > low; ) {
+            int size = high - low;
+
+            /*
+             * Sort the part completely, if it is before
+             * the limit, or it is small.
+             */
+            if (high <= limit || size < MAX_INSERTION_SORT_SIZE) {
+                sort(sorter, a, bits, low, high);
                 return;
             }
 
@@ -3167,116 +3908,362 @@ final class DualPivotQuicksort_r38_12 {
             }
 
             /*
-             * indices[0] - the index of the last element of the left part
-             * indices[1] - the index of the first element of the right part
+             * Use the same five sample elements
+             * to determine pivots as sorting.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            long a3 = a[e3];
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { long t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { long t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { long t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { long t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { long t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
              */
-            int[] indices;
+            int lower, upper;
 
             /*
              * Partitioning with two pivots on array of fully random elements.
              */
             if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
 
-                indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
-                    low, high, e1, e5, DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                int[] indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
+                }
 
                 /*
-                 * Sort non-left parts recursively (possibly in parallel),
-                 * excluding known pivots.
+                 * Sort the left part and the central part, if it is
+                 * before the limit, (possibly in parallel), excluding
+                 * known pivots, and iterate along the part with the limit.
                  */
                 if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[0] + 1, indices[1]);
-                    sorter.fork(bits | 1, indices[1] + 1, high);
+                    sorter.fork(bits, low, lower);
+
+                    if (limit > upper) {
+                        sorter.fork(bits | 1, lower + 1, upper);
+                    }
                 } else {
-                    sort(sorter, a, bits | 1, indices[0] + 1, indices[1]);
-                    sort(sorter, a, bits | 1, indices[1] + 1, high);
+                    sort(sorter, a, bits, low, lower);
+
+                    if (limit > upper) {
+                        sort(sorter, a, bits | 1, lower + 1, upper);
+                    }
                 }
+                low = limit > upper ? upper + 1 : lower + 1;
+                high = limit > upper ? high : upper;
 
             } else { // Partitioning with one pivot
 
-                indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                int[] indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
                     low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
+                }
 
                 /*
-                 * Sort the right part (possibly in parallel), excluding
-                 * known pivot. All elements from the central part are
-                 * equal and therefore already sorted.
+                 * Sort the left part (possibly in parallel) and iterate
+                 * along the right part, if it overlaps the limit. All
+                 * elements from the central part are equal and
+                 * therefore already sorted.
                  */
                 if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[1], high);
+                    sorter.fork(bits, low, lower);
                 } else {
-                    sort(sorter, a, bits | 1, indices[1], high);
+                    sort(sorter, a, bits, low, lower);
                 }
+                low = upper;
             }
-            high = indices[0]; // Iterate along the left part
+            bits |= 1;
         }
     }
 
     /**
-     * Partitions the specified range of the array using two given pivots.
+     * Sorts the specified range of the array using Dual-Pivot Quicksort.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of pivot1, the first pivot
-     * @param pivotIndex2 the index of pivot2, the second pivot
-     * @return indices of parts after partitioning
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
      */
-    private static int[] partitionWithTwoPivots(
-            float[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
-
-        /*
-         * Pointers to the right and left parts.
-         */
-        int upper = --high;
-        int lower = low;
+    static void sort(Sorter<long[]> sorter, long[] a, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
 
-        /*
-         * Use the first and fifth of the five sorted elements as
-         * the pivots. These values are inexpensive approximation
-         * of tertiles. Note, that pivot1 < pivot2.
-         */
-        final float pivot1 = a[pivotIndex1]; // todo final
-        final float pivot2 = a[pivotIndex2];
+            /*
+             * Run adaptive mixed insertion sort on small non-leftmost parts.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
+                sort(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
+                return;
+            }
 
-        /*
-         * The first and the last elements to be sorted are moved
-         * to the locations formerly occupied by the pivots. When
-         * partitioning is completed, the pivots are swapped back
-         * into their final positions, and excluded from the next
-         * subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
-        a[pivotIndex2] = a[upper];
+            /*
+             * Invoke insertion sort on small leftmost part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                sort(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::insertionSort);
+                return;
+            }
 
-        /*
-         * Skip elements, which are less or greater than the pivots.
-         */
-        while (a[++lower] < pivot1);
-        while (a[--upper] > pivot2);
+            /*
+             * Try merging sort on large part.
+             */
+            if (size > MIN_MERGING_SORT_SIZE * bits
+                    && tryMergingSort(sorter, a, low, high)) {
+                return;
+            }
 
-        /*
-         * Backward 3-interval partitioning
-         *
-         *     left part                     central part          right part
-         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
-         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
-         * +--------------+----------+--------------------------+--------------+
-         *               ^          ^                            ^
-         *               |          |                            |
-         *             lower        k                          upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
-         */
-        for (int unused = --lower, k = ++upper; --k > lower; ) {
-            float ak = a[k];
+            /*
+             * Try bucket sort on huge part in parallel context.
+             */
+            if (size > MIN_BUCKET_SORT_SIZE && bits == 0 && sorter != null
+                    && tryBucketSort(sorter, a, low, high)) {
+                return;
+            }
 
-            if (ak < pivot1) { // Move a[k] to the left part
-                while (a[++lower] < pivot1);
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
 
-                if (lower > k) {
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            long a3 = a[e3];
+
+            /*
+             * Check if part is large and contains random
+             * data, taking into account parallel context.
+             */
+            boolean isLargeRandom =
+                size > MIN_LONG_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
+//              size > MIN_LONG_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
+                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             *
+             *   1 ---------o---------------o-----------------
+             *              |               |
+             *   2 ---------|-------o-------o-------o---------
+             *              |       |               |
+             *   4 ---------o-------|-------o-------o---------
+             *                      |       |
+             *   5 -----------------o-------o-----------------
+             */
+            if (a[e1] > a[e4]) { long t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { long t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { long t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { long t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { long t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * Try Radix sort on large random data,
+             * if the sampled cost model prefers it.
+             */
+            if (isLargeRandom
+                    && a[e2] < a[e3] && a[e3] < a[e4]
+                    && preferRadixSort(a, low, high)
+                    && tryRadixSort(sorter, a, low, high)) {
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, low, high);
+                return;
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, lower + 1, upper);
+                    sorter.fork(bits | 1, upper + 1, high);
+                } else {
+                    sort(sorter, a, bits | 1, lower + 1, upper);
+                    sort(sorter, a, bits | 1, upper + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(long.class, a, Unsafe.ARRAY_LONG_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, upper, high);
+                } else {
+                    sort(sorter, a, bits | 1, upper, high);
+                }
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Partitions the specified range of the array using two given pivots.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            long[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        final long pivot1 = a[pivotIndex1]; // todo final
+        final long pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+        a[pivotIndex2] = a[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning
+         *
+         *     left part                     central part          right part
+         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
+         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
+         * +--------------+----------+--------------------------+--------------+
+         *               ^          ^                            ^
+         *               |          |                            |
+         *             lower        k                          upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            long ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
                     lower = k;
                     break;
                 }
@@ -3299,7 +4286,139 @@ final class DualPivotQuicksort_r38_12 {
         a[low]  = a[lower]; a[lower] = pivot1;
         a[high] = a[upper]; a[upper] = pivot2;
 
-        return new int[] { lower, upper };
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array using two given
+     * pivots by two passes of branch-free block partitioning: at
+     * first by pivot1 and then the rest of the range by pivot2.<p>
+     *
+     * The parts are the same as after partitioning with two pivots,
+     * but the elements are classified by blocks without branches,
+     * therefore mispredictions on random data are avoided.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithBlocks(
+            long[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        int end = --high;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. Note, that pivot1 < pivot2.
+         */
+        long pivot1 = a[pivotIndex1];
+        long pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots.
+         */
+        a[pivotIndex1] = a[low];
+        a[pivotIndex2] = a[end];
+
+        /*
+         * Split the range by pivot1, and then by pivot2
+         * using the nearest greater value as the bound.
+         */
+        int lower = partitionByBlocks(a, low + 1, end, pivot1) - 1;
+        int upper = pivot2 == Long.MAX_VALUE ? end :
+            partitionByBlocks(a, lower + 1, end, pivot2 + 1);
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low] = a[lower]; a[lower] = pivot1;
+        a[end] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array, so that
+     * the elements less than the bound precede other elements,
+     * using branch-free classification of blocks of elements.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param bound the value to compare the elements with
+     * @return the index of the first element, which is not less than the bound
+     */
+    private static int partitionByBlocks(long[] a, int low, int high, long bound) {
+        long maskL = 0L, maskR = 0L;
+
+        /*
+         * Process the blocks from both sides, while they don't overlap.
+         */
+        while (high - low >= PARTITION_BLOCK_SIZE << 1) {
+
+            /*
+             * Mark the elements, which are not less
+             * than the bound, in the left block.
+             */
+            if (maskL == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskL |= (a[low + i] < bound ? 0L : 1L) << i;
+                }
+            }
+
+            /*
+             * Mark the elements, which are less
+             * than the bound, in the right block.
+             */
+            if (maskR == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskR |= (a[high - 1 - i] < bound ? 1L : 0L) << i;
+                }
+            }
+
+            /*
+             * Swap the misplaced elements of the blocks
+             * and clear their marks.
+             */
+            while (maskL != 0L && maskR != 0L) {
+                int i = low + Long.numberOfTrailingZeros(maskL);
+                int j = high - 1 - Long.numberOfTrailingZeros(maskR);
+                long ai = a[i]; a[i] = a[j]; a[j] = ai;
+                maskL &= maskL - 1;
+                maskR &= maskR - 1;
+            }
+
+            /*
+             * Move to the next blocks, if done.
+             */
+            if (maskL == 0L) {
+                low += PARTITION_BLOCK_SIZE;
+            }
+            if (maskR == 0L) {
+                high -= PARTITION_BLOCK_SIZE;
+            }
+        }
+
+        /*
+         * Partition the rest of the range, including
+         * the unfinished block, by simple scanning.
+         */
+        while (true) {
+            while (low < high && a[low] < bound) {
+                ++low;
+            }
+            while (low < high && a[high - 1] >= bound) {
+                --high;
+            }
+            if (low == high) {
+                return low;
+            }
+            long al = a[low]; a[low++] = a[--high]; a[high] = al;
+        }
     }
 
     /**
@@ -3313,7 +4432,7 @@ final class DualPivotQuicksort_r38_12 {
      * @return indices of parts after partitioning
      */
     private static int[] partitionWithOnePivot(
-            float[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+            long[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
 
         /*
          * Pointers to the right and left parts.
@@ -3325,7 +4444,7 @@ final class DualPivotQuicksort_r38_12 {
          * Use the third of the five sorted elements as the pivot.
          * This value is inexpensive approximation of the median.
          */
-        final float pivot = a[pivotIndex1];
+        final long pivot = a[pivotIndex1];
 
         /*
          * The first element to be sorted is moved to the
@@ -3352,7 +4471,7 @@ final class DualPivotQuicksort_r38_12 {
          * Pointer upper is the first index of right part
          */
         for (int k = upper; --k > lower; ) {
-            float ak = a[k];
+            long ak = a[k];
 
             if (ak == pivot) {
                 continue;
@@ -3376,7 +4495,7 @@ final class DualPivotQuicksort_r38_12 {
          */
         a[low] = a[lower]; a[lower] = pivot;
 
-        return new int[] { lower, upper };
+        return Workspace.indices(lower, upper);
     }
 
     /**
@@ -3395,7 +4514,7 @@ final class DualPivotQuicksort_r38_12 {
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void mixedInsertionSort(float[] a, int low, int high) {
+    static void mixedInsertionSort(long[] a, int low, int high) {
 
         /*
          * Split part for pin and pair insertion sorts.
@@ -3407,7 +4526,7 @@ final class DualPivotQuicksort_r38_12 {
          */
         if (end == high) {
             for (int i; ++low < high; ) {
-                float ai = a[i = low];
+                long ai = a[i = low];
 
                 while (ai < a[i - 1]) {
                     a[i] = a[--i];
@@ -3421,7 +4540,7 @@ final class DualPivotQuicksort_r38_12 {
          * Start with pin insertion sort.
          */
         for (int i, p = high; ++low < end; ) {
-            float ai = a[i = low], pin = a[--p];
+            long ai = a[i = low], pin = a[--p];
 
             /*
              * Swap larger element with pin.
@@ -3444,7 +4563,7 @@ final class DualPivotQuicksort_r38_12 {
          * Finish with pair insertion sort.
          */
         for (int i; low < high; ++low) {
-            float a1 = a[i = low], a2 = a[++low];
+            long a1 = a[i = low], a2 = a[++low];
 
             /*
              * Insert two elements per iteration: at first, insert the
@@ -3485,9 +4604,9 @@ final class DualPivotQuicksort_r38_12 {
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void insertionSort(float[] a, int low, int high) {
+    static void insertionSort(long[] a, int low, int high) {
         for (int i, k = low; ++k < high; ) {
-            float ai = a[i = k];
+            long ai = a[i = k];
 
             if (ai < a[i - 1]) {
                 do {
@@ -3508,13 +4627,55 @@ final class DualPivotQuicksort_r38_12 {
      * @param high the index of the last element, exclusive, to be sorted
      * @return {@code true} if the array is finally sorted, otherwise {@code false}
      */
-    static boolean tryMergingSort(Sorter<float[]> sorter, float[] a, int low, int high) {
+    static boolean tryMergingSort(Sorter<long[]> sorter, long[] a, int low, int high) {
+        int parts = sorter == null ? 0 : Math.min((high - low) / MIN_PARALLEL_SORT_SIZE, sorter.parallelism << 2);
 
         /*
          * The element run[i] holds the start index
-         * of i-th sequence in non-descending order.
+         * of i-th sequence in non-descending order,
+         * the element run[count] holds the end index.
+         */
+        int[] run = parts > 1 ? parallelFindRuns(sorter, a, parts, low, high) :
+            findRuns(sorter, a, true, low, high);
+
+        if (run == null) {
+            return false;
+        }
+        int count = 0;
+
+        while (run[++count] < high);
+
+        /*
+         * Merge all runs.
          */
-        int count = 1;
+        if (count > 1) {
+            long[] b; int offset = low;
+
+            if (sorter != null && (b = sorter.b) != null) {
+                offset = sorter.offset;
+            } else if ((b = tryAllocate(sorter, long[].class, high - low)) == null) {
+                return false;
+            }
+            mergeRuns(sorter, a, b, offset, true, run, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * Identifies the runs of the specified range, reversing
+     * the descending sequences into ascending order.
+     *
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param leftmost indicates that the first run can't be the tail
+     *        of the run of the previous part, therefore it must be large
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
+     */
+    private static int[] findRuns(Sorter<long[]> sorter, long[] a, boolean leftmost, int low, int high) {
+        int count = 1, capacity = 0;
         int[] run = null;
 
         /*
@@ -3537,7 +4698,7 @@ final class DualPivotQuicksort_r38_12 {
 
                 // Reverse into ascending order
                 for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
-                    float ai = a[i]; a[i] = a[j]; a[j] = ai;
+                    long ai = a[i]; a[i] = a[j]; a[j] = ai;
                 }
 
                 // todo javadoc
@@ -3546,7 +4707,7 @@ final class DualPivotQuicksort_r38_12 {
                 }
 
             } else { // Identify constant sequence
-                for (float ak = a[k]; ++k < high && ak == a[k]; );
+                for (long ak = a[k]; ++k < high && ak == a[k]; );
 
                 // todo javadoc
                 if (k < high) {
@@ -3559,22 +4720,18 @@ final class DualPivotQuicksort_r38_12 {
              */
             if (run == null) {
 
-                if (k == high) {
-
-                    /*
-                     * Array is monotonous sequence
-                     * and therefore already sorted.
-                     */
-                    return true;
-                }
-
                 /*
                  * Terminate scanning, if the runs are too small.
                  */
-                if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
+                if (leftmost && k < high && k - low < count * MIN_RUN_SIZE) {
+                    return null;
                 }
-                run = new int[ Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8];
+
+                /*
+                 * Monotonous sequence is the single run.
+                 */
+                capacity = k == high ? 2 : Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+                run = sorter == null ? Workspace.run(capacity) : new int[capacity];
                 run[0] = low;
 
             } else if (a[last - 1] > a[last]) { // Start the new run
@@ -3583,15 +4740,15 @@ final class DualPivotQuicksort_r38_12 {
                  * Terminate scanning, if the runs are too small.
                  */
                 if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
+                    return null;
                 }
 
-                if (++count == run.length) {
+                if (++count == capacity) {
 
                     /*
                      * Array is not highly structured.
                      */
-                    return false;
+                    return null;
                 }
             }
 
@@ -3608,20 +4765,63 @@ final class DualPivotQuicksort_r38_12 {
             }
         }
 
-        /*
-         * Merge all runs.
-         */
-        if (count > 1) {
-            float[] b; int offset = low;
+        return run;
+    }
 
-            if (sorter != null && (b = sorter.b) != null) {
-                offset = sorter.offset;
-            } else if ((b = tryAllocate(float[].class, high - low)) == null) {
-                return false;
+    /**
+     * Identifies the runs of the parts of the specified range in
+     * parallel and joins the runs which cross the boundaries of
+     * the parts.
+     *
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param parts the number of the parts
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
+     */
+    private static int[] parallelFindRuns(Sorter<long[]> sorter, long[] a, int parts, int low, int high) {
+        int[][] runs = new int[parts][];
+        new RunScanner<>(sorter, a, runs, low, high, 0, parts).invoke();
+
+        int capacity = Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+        int[] run = new int[capacity];
+        int count = 0, step = (high - low) / parts;
+
+        for (int i = 0; i < parts; ++i) {
+            int[] part = runs[i];
+
+            /*
+             * Terminate, if the part is not highly structured.
+             */
+            if (part == null) {
+                return null;
+            }
+            int end = i == parts - 1 ? high : part[0] + step;
+
+            /*
+             * Skip the start of the first run of the part, if the
+             * last run of the previous part goes on with it.
+             */
+            for (int j = count > 0 && a[part[0] - 1] <= a[part[0]] ? 1 : 0; part[j] < end; ++j) {
+
+                if (count == capacity - 1) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return null;
+                }
+                run[count++] = part[j];
             }
-            mergeRuns(sorter, a, b, offset, true, run, 0, count);
         }
-        return true;
+        run[count] = high;
+
+        /*
+         * Check the size of the joined runs.
+         */
+        return high - low < count * MIN_RUN_SIZE ? null : run;
     }
 
     /**
@@ -3637,7 +4837,7 @@ final class DualPivotQuicksort_r38_12 {
      * @param hi the start index of the last run, inclusive
      * @return the destination where the runs are merged // todo r
      */
-    private static void mergeRuns(Sorter<float[]> sorter, float[] a, float[] b, int offset,
+    private static void mergeRuns(Sorter<long[]> sorter, long[] a, long[] b, int offset,
             boolean aim, int[] run, int lo, int hi) {
 
         if (hi - lo == 1) {
@@ -3647,6 +4847,14 @@ final class DualPivotQuicksort_r38_12 {
             return;
         }
 
+        /*
+         * Merge large parts in parallel.
+         */
+        if (sorter != null && run[hi] - run[lo] > MIN_PARALLEL_SORT_SIZE) {
+            new RunMerger<>(null, a, b, offset, aim, run, lo, hi).invoke();
+            return;
+        }
+
         /*
          * Split the array into two approximately equal parts.
          */
@@ -3665,17 +4873,13 @@ final class DualPivotQuicksort_r38_12 {
         int lo2 = aim ? run[mi] - offset : run[mi];
         int hi2 = aim ? run[hi] - offset : run[hi];
 
-        float[] dst = aim ? a : b;
-        float[] src = aim ? b : a;
+        long[] dst = aim ? a : b;
+        long[] src = aim ? b : a;
 
         /*
          * Merge the left and right parts.
          */
-        if (hi1 - lo1 > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-            new Merger<>(null, dst, k, src, lo1, hi1, lo2, hi2).invoke();
-        } else {
-            mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
-        }
+        mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
     }
 
     /**
@@ -3692,8 +4896,8 @@ final class DualPivotQuicksort_r38_12 {
      * @param lo2 the start index of the second part, inclusive
      * @param hi2 the end index of the second part, exclusive
      */
-    private static void mergeParts(Merger<float[]> merger, float[] dst, int k,
-            float[] src, int lo1, int hi1, int lo2, int hi2) {
+    private static void mergeParts(Merger<long[]> merger, long[] dst, int k,
+            long[] src, int lo1, int hi1, int lo2, int hi2) {
 
         /*
          * Merge the parts in parallel.
@@ -3714,7 +4918,7 @@ final class DualPivotQuicksort_r38_12 {
                  * Find the median of the larger part.
                  */
                 int mi1 = (lo1 + hi1) >>> 1;
-                float key = src[mi1];
+                long key = src[mi1];
                 int mi2 = hi2;
 
                 /*
@@ -3749,42 +4953,136 @@ final class DualPivotQuicksort_r38_12 {
         }
 
         /*
-         * Merge small parts sequentially.
+         * Merge small parts sequentially by the simple loop, which is
+         * fast while the branches are predicted well. From time to time
+         * the block is merged without branches to measure how the parts
+         * interleave: the parts taking turns by short irregular runs
+         * are merged by blocks, and the long run of one part is taken
+         * by galloping. Otherwise the next block is measured later.
          */
         if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
 
-            if (src[hi1 - 1] < src[hi2 - 1]) {
-                while (lo1 < hi1) {
-                    float slo1 = src[lo1]; // todo rename: first, or key, or curr
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+            for (int step = MAX_MERGE_PROBE_STEP / 2, probe = k + step; ; ) {
+                int size = Math.min(hi1 - lo1, hi2 - lo2);
+
+                /*
+                 * Merge the rest by the simple loop, if one of the parts
+                 * ends before the next block. The loop checks the bound of
+                 * the part, which ends first, if the last elements differ.
+                 */
+                if (size <= Math.max(probe - k, MERGE_BLOCK_SIZE)) {
+                    if (src[hi1 - 1] < src[hi2 - 1]) {
+                        while (lo1 < hi1) {
+                            long slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else if (src[hi1 - 1] > src[hi2 - 1]) {
+                        while (lo2 < hi2) {
+                            long slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else {
+                        while (lo1 < hi1 && lo2 < hi2) {
+                            long slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
                     }
+                    break;
                 }
-            } else if (src[hi1 - 1] > src[hi2 - 1]) {
-                while (lo2 < hi2) {
-                    float slo1 = src[lo1];
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+
+                /*
+                 * Merge the parts by the simple loop, which takes at most
+                 * one element from each part, until the next block.
+                 */
+                if (k < probe) {
+                    while (k < probe) {
+                        long slo1 = src[lo1];
+
+                        if (slo1 <= src[lo2]) {
+                            dst[k++] = src[lo1++];
+                        }
+                        if (slo1 >= src[lo2]) {
+                            dst[k++] = src[lo2++];
+                        }
                     }
+                    continue;
                 }
-            } else {
-                while (lo1 < hi1 && lo2 < hi2) {
-                    float slo1 = src[lo1];
 
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
+                /*
+                 * Merge the block and count the elements of the parts.
+                 */
+                int pattern = mergeBlock(dst, k, src, lo1, lo2);
+                int second = Integer.bitCount(pattern);
+                k += MERGE_BLOCK_SIZE;
+                lo1 += MERGE_BLOCK_SIZE - second;
+                lo2 += second;
+
+                if (pattern == 0 || pattern == -1) {
+
+                    /*
+                     * Gallop along the part, which has given
+                     * all elements of the block.
+                     */
+                    int from = k;
+
+                    if (pattern == 0) {
+                        int end = gallop(src[lo2], src, lo1, hi1, true);
+                        System.arraycopy(src, lo1, dst, k, end - lo1);
+                        k += end - lo1;
+                        lo1 = end;
+                    } else {
+                        int end = gallop(src[lo1], src, lo2, hi2, false);
+                        System.arraycopy(src, lo2, dst, k, end - lo2);
+                        k += end - lo2;
+                        lo2 = end;
                     }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+
+                    /*
+                     * Measure the next block right after the long run,
+                     * and merge longer by the simple loop otherwise.
+                     */
+                    if (k - from < MIN_GALLOP_RUN) {
+                        step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                        probe = k + step;
+                    } else {
+                        step = MERGE_BLOCK_SIZE;
+                        probe = k;
                     }
+                } else if (Integer.bitCount((pattern ^ pattern >>> 1) << 1) < MIN_IRREGULAR_TURNS
+                        || isRegular(pattern)) {
+
+                    /*
+                     * Merge longer by the simple loop, since
+                     * the parts give long or regular runs.
+                     */
+                    step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                    probe = k + step;
+                } else {
+
+                    /*
+                     * Continue by blocks, since the parts
+                     * give short runs irregularly.
+                     */
+                    step = MERGE_BLOCK_SIZE;
+                    probe = k;
                 }
             }
         }
@@ -3805,1315 +5103,13426 @@ final class DualPivotQuicksort_r38_12 {
     }
 
     /**
-     * Tries to sort the specified range of the array
-     * using LSD (The Least Significant Digit) Radix sort.
+     * Merges the block of the parts without branches, selecting
+     * the smaller head and advancing its part by conditional moves.
+     * The block is merged out of line, so that the simple loop
+     * of merging is compiled as tight as without the block.
      *
-     * @param a the array to be sorted
-     * @param sorter // todo
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     * @param dst the destination where the block is merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source of the parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @return the bits of the block, set for the elements given
+     *         by the second part, the last element is the lowest bit
      */
-    static boolean tryRadixSort(Sorter<float[]> sorter, float[] a, int low, int high) {
-        float[] b; int offset = low, size = high - low;
-
-        /*
-         * Allocate additional buffer.
-         */
-        if (sorter != null && (b = sorter.b) != null) {
-            offset = sorter.offset;
-        } else if ((b = tryAllocate(float[].class, size)) == null) {
-            return false;
+    @DontInline
+    private static int mergeBlock(long[] dst, int k, long[] src, int lo1, int lo2) {
+        int pattern = 0;
+
+        for (int end = k + MERGE_BLOCK_SIZE; k < end; ) {
+            long x = src[lo1], y = src[lo2];
+            boolean second = y < x;
+            dst[k++] = second ? y : x;
+            lo1 += second ? 0 : 1;
+            lo2 += second ? 1 : 0;
+            pattern = pattern << 1 | (second ? 1 : 0);
         }
+        return pattern;
+    }
 
-        int start = low - offset;
-        int last = high - offset;
+    /**
+     * Finds the end of the leading elements of the sorted part, which
+     * are less than the key, or not greater, if {@code inclusive} is
+     * set, by exponential search followed by binary search, so that
+     * the cost is logarithmic in the number of the found elements.
+     *
+     * @param key the key to be compared with
+     * @param a the sorted part
+     * @param low the start index of the part, inclusive
+     * @param high the end index of the part, exclusive
+     * @param inclusive specifies whether the elements equal to the key are taken
+     * @return the index of the first element which is not taken
+     */
+    private static int gallop(long key, long[] a, int low, int high, boolean inclusive) {
+        int step = 1;
 
         /*
-         * Count the number of all digits.
+         * Double the step while the elements are taken.
          */
-        int[] count1 = new int[1024];
-        int[] count2 = new int[2048];
-        int[] count3 = new int[2048];
-
-        for (int i = low; i < high; ++i) {
-            ++count1[ fti(a[i])         & 0x3FF];
-            ++count2[(fti(a[i]) >>> 10) & 0x7FF];
-            ++count3[(fti(a[i]) >>> 21) & 0x7FF];
+        for (int i = low; i < high && (inclusive ? a[i] <= key : a[i] < key); i = low + step - 1) {
+            low = i + 1;
+            step <<= 1;
         }
+        high = Math.min(low + step - 1, high);
 
         /*
-         * Detect digits to be processed.
+         * Find the end within the last step.
          */
-        boolean processDigit1 = processDigit(count1, size, low);
-        boolean processDigit2 = processDigit(count2, size, low);
-        boolean processDigit3 = processDigit(count3, size, low);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
 
-        /*
-         * Process the 1-st digit.
-         */
-        if (processDigit1) {
-            for (int i = high; i > low; ) {
-                b[--count1[fti(a[--i]) & 0x3FF] - offset] = a[i];
+            if (inclusive ? a[mid] <= key : a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
+        return low;
+    }
 
-        /*
-         * Process the 2-nd digit.
-         */
-        if (processDigit2) {
-            if (processDigit1) {
-                for (int i = last; i > start; ) {
-                    a[--count2[(fti(b[--i]) >>> 10) & 0x7FF]] = b[i];
+    /**
+     * Finds the positions in the sorted parts, which split off the given
+     * number of the smallest elements, by narrowing the windows of the
+     * parts around the pivot taken in the middle of the largest window.
+     *
+     * @param a the array with the parts
+     * @param start the start indexes of the parts, inclusive
+     * @param end the end indexes of the parts, exclusive
+     * @param rank the number of the smallest elements
+     * @return the positions in the parts
+     */
+    private static int[] splitParts(long[] a, int[] start, int[] end, int rank) {
+        int[] lo = start.clone(), hi = end.clone();
+        int[] lower = new int[lo.length], upper = new int[lo.length];
+
+        while (true) {
+
+            /*
+             * Find the largest window.
+             */
+            int p = 0;
+
+            for (int i = 1; i < lo.length; ++i) {
+                if (hi[i] - lo[i] > hi[p] - lo[p]) {
+                    p = i;
                 }
+            }
+
+            /*
+             * All windows are empty, the positions are found.
+             */
+            if (lo[p] == hi[p]) {
+                return lo;
+            }
+            long pivot = a[(lo[p] + hi[p]) >>> 1];
+            int less = 0, notGreater = 0;
+
+            /*
+             * Count the elements less than the pivot and not greater.
+             */
+            for (int i = 0; i < lo.length; ++i) {
+                lower[i] = gallop(pivot, a, lo[i], hi[i], false);
+                upper[i] = gallop(pivot, a, lower[i], hi[i], true);
+                less += lower[i] - start[i];
+                notGreater += upper[i] - start[i];
+            }
+
+            if (rank < less) {
+                int[] t = hi; hi = lower; lower = t;
+            } else if (rank > notGreater) {
+                int[] t = lo; lo = upper; upper = t;
             } else {
-                for (int i = high; i > low; ) {
-                    b[--count2[(fti(a[--i]) >>> 10) & 0x7FF] - offset] = a[i];
+
+                /*
+                 * Take the elements equal to the pivot up to the rank.
+                 */
+                for (int i = 0, rest = rank - less; i < lower.length; ++i) {
+                    int take = Math.min(rest, upper[i] - lower[i]);
+                    lower[i] += take;
+                    rest -= take;
                 }
+                return lower;
             }
         }
+    }
+
+    /**
+     * Merges the sorted parts by the tournament, where the internal
+     * nodes of the tree keep the losers of the matches, and the root
+     * keeps the winner, so that each element takes the logarithmic
+     * number of comparisons and is moved once. Four parts are merged
+     * with the heads kept in local variables, until a part is exhausted.
+     *
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     */
+    private static void multiMerge(long[] dst, int k, long[] src, int[] lo, int[] hi) {
 
         /*
-         * Process the 3-rd digit.
+         * Merge four parts by two matches of the heads
+         * and the final, while no part is exhausted.
          */
-        if (processDigit3) {
-            if (processDigit1 ^ processDigit2) {
-                for (int i = last; i > start; ) {
-                    a[--count3[(fti(b[--i]) >>> 21) & 0x7FF]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count3[(fti(a[--i]) >>> 21) & 0x7FF] - offset] = a[i];
+        if (lo.length == 4) {
+            int i0 = lo[0], i1 = lo[1], i2 = lo[2], i3 = lo[3];
+            int h0 = hi[0], h1 = hi[1], h2 = hi[2], h3 = hi[3];
+
+            while (i0 < h0 && i1 < h1 && i2 < h2 && i3 < h3) {
+                long a0 = src[i0], a1 = src[i1], a2 = src[i2], a3 = src[i3];
+
+                if (a0 <= a1) {
+                    if (a2 <= a3) {
+                        if (a0 <= a2) { dst[k++] = a0; ++i0; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a0 <= a3) { dst[k++] = a0; ++i0; } else { dst[k++] = a3; ++i3; }
+                    }
+                } else {
+                    if (a2 <= a3) {
+                        if (a1 <= a2) { dst[k++] = a1; ++i1; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a1 <= a3) { dst[k++] = a1; ++i1; } else { dst[k++] = a3; ++i3; }
+                    }
                 }
             }
+            lo[0] = i0; lo[1] = i1; lo[2] = i2; lo[3] = i3;
         }
 
         /*
-         * Copy the buffer to original array, if we process ood number of digits.
+         * Merge the rest by the tournament.
          */
-        if (processDigit1 ^ processDigit2 ^ processDigit3) {
-            System.arraycopy(b, low - offset, a, low, size);
-        }
-        return true;
-    }
+        int n = lo.length, size = 0;
+        int[] tree = new int[n];
 
-    /**
-     * Returns masked bits that represent the float value.
-     *
-     * @param f the given value
-     * @return masked bits
-     */
-    private static int fti(float f) {
-        int x = Float.floatToRawIntBits(f);
-        return x ^ ((x >> 31) | 0x80000000);
-    }
+        /*
+         * Start with the virtual part, which beats any other part.
+         */
+        Arrays.fill(tree, n);
 
-    /**
-     * Sorts the specified range of the array using heap sort.
-     *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     */
-    static void heapSort(float[] a, int low, int high) {
-        for (int k = (low + high) >>> 1; k > low; ) {
-            pushDown(a, --k, a[k], low, high);
+        for (int i = n - 1; i >= 0; --i) {
+            size += hi[i] - lo[i];
+            int w = i;
+
+            for (int t = (i + n) >> 1; t > 0; t >>= 1) {
+                if (beats(src, lo, hi, tree[t], w)) {
+                    int loser = w; w = tree[t]; tree[t] = loser;
+                }
+            }
+            tree[0] = w;
         }
-        while (--high > low) {
-            float max = a[low];
-            pushDown(a, low, a[high], low, high);
-            a[high] = max;
+
+        /*
+         * Move the winner and replay its matches
+         * with the next element of the same part.
+         */
+        for (int end = k + size; k < end; ) {
+            int w = tree[0];
+            dst[k++] = src[lo[w]++];
+            boolean done = lo[w] == hi[w];
+            long key = done ? 0 : src[lo[w]];
+
+            for (int t = (w + n) >> 1; t > 0; t >>= 1) {
+                int c = tree[t];
+
+                if (lo[c] < hi[c] && (done || src[lo[c]] < key)) {
+                    tree[t] = w;
+                    w = c;
+                    key = src[lo[c]];
+                    done = false;
+                }
+            }
+            tree[0] = w;
         }
     }
 
     /**
-     * Pushes specified element down during heap sort.
+     * Checks whether the head of the first part beats the head of
+     * the second part, the exhausted part is beaten by any other one.
      *
-     * @param a the given array
-     * @param p the start index
-     * @param value the given element
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param a the array with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     * @param i the index of the first part, or the virtual part
+     * @param j the index of the second part, or the virtual part
+     * @return {@code true} if the first part wins the match
      */
-    private static void pushDown(float[] a, int p, float value, int low, int high) {
-        for (int k ;; a[p] = a[p = k]) {
-            k = (p << 1) - low + 2; // Index of the right child
-
-            if (k > high) {
-                break;
-            }
-            if (k == high || a[k] < a[k - 1]) {
-                --k;
-            }
-            if (a[k] <= value) {
-                break;
-            }
+    private static boolean beats(long[] a, int[] lo, int[] hi, int i, int j) {
+        if (i == lo.length) {
+            return true;
         }
-        a[p] = value;
+        if (j == lo.length) {
+            return false;
+        }
+        return lo[i] < hi[i] && (lo[j] == hi[j] || a[lo[i]] < a[lo[j]]);
     }
 
-// #[double]
-
     /**
-     * The number of distinct short values. // todo
-     todo: double
-     */
-    private static final long DOUBLE_NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0d);
-
-    /**
-     * Sorts the specified range of the array using parallel merge
-     * sort and/or Dual-Pivot Quicksort.<p>
-     *
-     * To balance the faster splitting and parallelism of merge sort
-     * with the faster element partitioning of Quicksort, ranges are
-     * subdivided in tiers such that, if there is enough parallelism,
-     * the four-way parallel merge is started, still ensuring enough
-     * parallelism to process the partitions.
+     * Sorts the specified range of the array in parallel using
+     * the bounded buffer, which is smaller than the range. Blocks
+     * of the range, which fit the buffer, are sorted one by one,
+     * then the sorted blocks are merged in place.
      *
      * @param a the array to be sorted
      * @param parallelism the parallelism level
+     * @param b the bounded buffer
      * @param low the index of the first element, inclusive, to be sorted
      * @param high the index of the last element, exclusive, to be sorted
      */
-    static void sort(double[] a, int parallelism, int low, int high) {
-        /*
-         * Phase 1. Count the number of negative zero -0.0d,
-         * turn them into positive zero, and move all NaNs
-         * to the end of the array.
-         */
-        int numNegativeZero = 0; // todo rename negativeZeroCount
-
-        for (int k = high; k > low; ) {
-            double ak = a[--k];
-
-            if (Double.doubleToRawLongBits(ak) == DOUBLE_NEGATIVE_ZERO) { // ak is -0.0f    // todo double
-                numNegativeZero++;
-                a[k] = 0.0d;
-            } else if (ak != ak) { // ak is NaN
-                a[k] = a[--high];
-                a[high] = ak;
-            }
-        }
-
-        /*
-         * Phase 2. Sort everything except NaNs,
-         * which are already in place.
-         */
-        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
-            new Sorter<>(a, parallelism, low, high - low).invoke();
-        } else {
-            sort(null, a, 0, low, high);
-        }
+    private static void boundedSort(long[] a, int parallelism, long[] b, int low, int high) {
+        int size = high - low, step = b.length;
 
         /*
-         * Phase 3. Turn positive zero 0.0d
-         * back into negative zero -0.0d.
+         * Sort the blocks, which fit the buffer.
          */
-        if (++numNegativeZero == 1) {
-            return;
+        for (int k = low; k < high; ) {
+            int hi = high - k > step ? k + step : high;
+            new Sorter<>(a, b, false, parallelism, k, hi - k).invoke();
+            k = hi;
         }
 
         /*
-         * Find the position one less than
-         * the index of the first zero.
+         * Merge the pairs of the sorted blocks in place,
+         * doubling the size of the blocks at each step.
          */
-        while (low <= high) {
-            int middle = (low + high) >>> 1;
-
-            if (a[middle] < 0.0d) {
-                low = middle + 1;
-            } else {
-                high = middle - 1;
+        for (; step < size; step = size - step > step ? step << 1 : size) {
+            for (int k = low; high - k > step; ) {
+                int mi = k + step;
+                int hi = high - mi > step ? mi + step : high;
+                new BoundedMerger<>(null, a, b, k, mi, hi, 0, b.length).invoke();
+                k = hi;
             }
         }
-
-        /*
-         * Replace the required number of 0.0d by -0.0d.
-         */
-        while (--numNegativeZero > 0) {
-            a[++high] = -0.0d;
-        }
     }
 
     /**
-     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     * Merges the adjacent sorted parts of the array in place using
+     * the bounded buffer. If the parts don't fit the buffer, the larger
+     * part is split by its median and the smaller part by the same value,
+     * the inner segments are swapped, and the left and the right pairs
+     * of the segments are merged independently.
      *
-     * @param sorter parallel context
-     * @param a the array to be sorted
-     * @param bits the combination of recursion depth and bit flag, where
-     *        the right bit "0" indicates that range is the leftmost part
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param merger parallel context
+     * @param a the array with the parts to be merged
+     * @param b the bounded buffer
+     * @param lo the start index of the first part, inclusive
+     * @param mi the start index of the second part, inclusive
+     * @param hi the end index of the second part, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
      */
-    static void sort(Sorter<double[]> sorter, double[] a, int bits, int low, int high) {
-        while (true) {
-            int size = high - low;
+    private static void mergeInPlace(BoundedMerger<long[]> merger, long[] a, long[] b,
+            int lo, int mi, int hi, int offset, int size) {
 
-            /*
-             * Run adaptive mixed insertion sort on small non-leftmost parts.
-             */
-            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
-                sort(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
-                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
-                return;
-            }
+        while (lo < mi && mi < hi && a[mi - 1] > a[mi]) {
 
             /*
-             * Invoke insertion sort on small leftmost part.
+             * Merge the parts forward, if the first part fits the buffer.
              */
-            if (size < MAX_INSERTION_SORT_SIZE) {
-                sort(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
-                    low, high, DualPivotQuicksort_r38_12::insertionSort);
+            if (mi - lo <= size) {
+                System.arraycopy(a, lo, b, offset, mi - lo);
+                int i = offset, end = offset + mi - lo;
+
+                while (i < end && mi < hi) {
+                    a[lo++] = b[i] <= a[mi] ? b[i++] : a[mi++];
+                }
+                System.arraycopy(b, i, a, lo, end - i);
                 return;
             }
 
             /*
-             * Try merging sort on large part.
+             * Merge the parts backward, if the second part fits the buffer.
              */
-            if (size > MIN_MERGING_SORT_SIZE * bits
-                    && tryMergingSort(sorter, a, low, high)) {
+            if (hi - mi <= size) {
+                System.arraycopy(a, mi, b, offset, hi - mi);
+                int i = offset + hi - mi;
+
+                while (i > offset && mi > lo) {
+                    a[--hi] = b[i - 1] >= a[mi - 1] ? b[--i] : a[--mi];
+                }
+                System.arraycopy(b, offset, a, lo, i - offset);
                 return;
             }
 
             /*
-             * Divide the given array into the golden ratio using
-             * an inexpensive approximation to select five sample
-             * elements and determine pivots.
-             */
-            int step = (size >> 2) + (size >> 3) + (size >> 7);
-
-            /*
-             * Five elements around (and including) the central element
-             * will be used for pivot selection as described below. The
-             * unequal choice of spacing these elements was empirically
-             * determined to work well on a wide variety of inputs.
+             * Split the larger part by its median
+             * and the smaller part by the same value.
              */
-            int e1 = low + step;
-            int e5 = high - step;
-            int e3 = (e1 + e5) >>> 1;
-            int e2 = (e1 + e3) >>> 1;
-            int e4 = (e3 + e5) >>> 1;
-            double a3 = a[e3];
+            int m1, m2;
 
-            /*
-             * Check if part is large and contains random
-             * data, taking into account parallel context.
-             */
-            boolean isLargeRandom =
-                size > MIN_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
-//              size > MIN_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
-                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+            if (mi - lo >= hi - mi) {
+                m1 = (lo + mi) >>> 1;
+                m2 = mi;
+                long key = a[m1];
 
-            /*
-             * Sort these elements in-place by the combination
-             * of 4-element sorting network and insertion sort.
-             *
-             *   1 ---------o---------------o-----------------
-             *              |               |
-             *   2 ---------|-------o-------o-------o---------
-             *              |       |               |
-             *   4 ---------o-------|-------o-------o---------
-             *                      |       |
-             *   5 -----------------o-------o-----------------
-             */
-            if (a[e1] > a[e4]) { double t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
-            if (a[e2] > a[e5]) { double t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
-            if (a[e4] > a[e5]) { double t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
-            if (a[e1] > a[e2]) { double t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
-            if (a[e2] > a[e4]) { double t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+                for (int h = hi; m2 < h; ) {
+                    int m = (m2 + h) >>> 1;
 
-            /*
-             * Insert the third element.
-             */
-            if (a3 < a[e2]) {
-                if (a3 < a[e1]) {
-                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
-                } else {
-                    a[e3] = a[e2]; a[e2] = a3;
-                }
-            } else if (a3 > a[e4]) {
-                if (a3 > a[e5]) {
-                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
-                } else {
-                    a[e3] = a[e4]; a[e4] = a3;
+                    if (a[m] < key) {
+                        m2 = m + 1;
+                    } else {
+                        h = m;
+                    }
                 }
-            }
+            } else {
+                m2 = (mi + hi) >>> 1;
+                m1 = lo;
+                long key = a[m2];
 
-            /*
-             * Try Radix sort on large fully random data.
-             */
-            if (isLargeRandom
-                    && a[e2] < a[e3] && a[e3] < a[e4]
-                    && tryRadixSort(sorter, a, low, high)) {
-                return;
-            }
+                for (int h = mi; m1 < h; ) {
+                    int m = (m1 + h) >>> 1;
 
-            /*
-             * Switch to heap sort, if execution time is quadratic.
-             */
-            if ((bits += 2) > MAX_RECURSION_DEPTH) {
-                heapSort(a, low, high);
-                return;
+                    if (a[m] <= key) {
+                        m1 = m + 1;
+                    } else {
+                        h = m;
+                    }
+                }
             }
 
             /*
-             * indices[0] - the index of the last element of the left part
-             * indices[1] - the index of the first element of the right part
+             * Swap the inner segments.
              */
-            int[] indices;
+            rotate(a, b, m1, mi, m2, offset, size);
+            int m = m1 + m2 - mi;
 
             /*
-             * Partitioning with two pivots on array of fully random elements.
+             * Merge the left pair of the segments (possibly in parallel,
+             * giving half of the buffer) and iterate along the right pair.
              */
-            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
-
-                indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
-                    low, high, e1, e5, DualPivotQuicksort_r38_12::partitionWithTwoPivots);
-
-                /*
-                 * Sort non-left parts recursively (possibly in parallel),
-                 * excluding known pivots.
-                 */
-                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[0] + 1, indices[1]);
-                    sorter.fork(bits | 1, indices[1] + 1, high);
-                } else {
-                    sort(sorter, a, bits | 1, indices[0] + 1, indices[1]);
-                    sort(sorter, a, bits | 1, indices[1] + 1, high);
-                }
-
-            } else { // Partitioning with one pivot
-
-                indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
-                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
-
-                /*
-                 * Sort the right part (possibly in parallel), excluding
-                 * known pivot. All elements from the central part are
-                 * equal and therefore already sorted.
-                 */
-                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-                    sorter.fork(bits | 1, indices[1], high);
-                } else {
-                    sort(sorter, a, bits | 1, indices[1], high);
-                }
+            if (merger != null && size > 1
+                    && m - lo > MIN_MERGE_PART_SIZE && hi - m > MIN_MERGE_PART_SIZE) {
+                merger.fork(lo, m1, m, offset, size >> 1);
+                offset += size >> 1;
+                size -= size >> 1;
+            } else {
+                mergeInPlace(merger, a, b, lo, m1, m, offset, size);
             }
-            high = indices[0]; // Iterate along the left part
+            lo = m;
+            mi = m2;
         }
     }
 
     /**
-     * Partitions the specified range of the array using two given pivots.
+     * Swaps the adjacent segments of the array using the bounded
+     * buffer, if the smaller segment fits it, otherwise by reversals.
      *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of pivot1, the first pivot
-     * @param pivotIndex2 the index of pivot2, the second pivot
-     * @return indices of parts after partitioning
+     * @param a the array with the segments
+     * @param b the bounded buffer
+     * @param lo the start index of the first segment, inclusive
+     * @param mi the start index of the second segment, inclusive
+     * @param hi the end index of the second segment, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
      */
-    private static int[] partitionWithTwoPivots(
+    private static void rotate(long[] a, long[] b, int lo, int mi, int hi, int offset, int size) {
+        if (mi - lo <= size && mi - lo <= hi - mi) {
+            System.arraycopy(a, lo, b, offset, mi - lo);
+            System.arraycopy(a, mi, a, lo, hi - mi);
+            System.arraycopy(b, offset, a, lo + hi - mi, mi - lo);
+        } else if (hi - mi <= size) {
+            System.arraycopy(a, mi, b, offset, hi - mi);
+            System.arraycopy(a, lo, a, lo + hi - mi, mi - lo);
+            System.arraycopy(b, offset, a, lo, hi - mi);
+        } else {
+            for (int i = lo, j = mi; i < --j; ++i) {
+                long ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = mi, j = hi; i < --j; ++i) {
+                long ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = lo, j = hi; i < --j; ++i) {
+                long ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+        }
+    }
+
+    /**
+     * Estimates by the sample of elements, whether Radix sort is
+     * cheaper than Dual-Pivot Quicksort on the specified range of
+     * the array. The sample gives the key range, the run structure
+     * and the number of duplicates, see the cost model. The sample
+     * is hashed to count the duplicates only, if Radix sort may be
+     * cheaper at all.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if Radix sort is expected to be cheaper
+     */
+    private static boolean preferRadixSort(long[] a, int low, int high) {
+        int step = (high - low) / RADIX_SAMPLE_SIZE;
+        int first = low + (step >> 1);
+        int last = first + RADIX_SAMPLE_SIZE * step;
+        long diff = 0;
+        int ascending = 0, descending = 0, distinct = 0;
+
+        for (int i = first; i < last; i += step) {
+            diff |= a[i] ^ a[first];
+
+            if (a[i] < a[i + 1]) {
+                ascending++;
+            } else if (a[i] > a[i + 1]) {
+                descending++;
+            }
+        }
+        int size = high - low, bits = 64 - Long.numberOfLeadingZeros(diff);
+
+        /*
+         * Hash the sample, unless Radix sort is more
+         * expensive even with all elements distinct.
+         */
+        if (!isRadixSortCheaper(size, bits, ascending, descending, RADIX_SAMPLE_SIZE, LONG_RADIX_PASS_COST)) {
+            return false;
+        }
+        int[] hash = Workspace.count(7, SAMPLE_HASH_SIZE >> 5);
+
+        for (int i = first; i < last; i += step) {
+            int h = (int) ((a[i] * 0x9E3779B97F4A7C15L) >>> 52);
+
+            if ((hash[h >>> 5] & (1 << h)) == 0) {
+                hash[h >>> 5] |= 1 << h;
+                distinct++;
+            }
+        }
+        return isRadixSortCheaper(size, bits, ascending, descending, distinct, LONG_RADIX_PASS_COST);
+    }
+
+    /**
+     * Tries to sort the specified range of the array
+     * using LSD (The Least Significant Digit) Radix sort.
+     *
+     * @param sorter // todo
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryRadixSort(Sorter<long[]> sorter, long[] a, int low, int high) {
+        long[] b; int offset = low, size = high - low;
+
+        /*
+         * Allocate additional buffer.
+         */
+        if (sorter != null && (b = sorter.b) != null) {
+            offset = sorter.offset;
+        } else if ((b = tryAllocate(sorter, long[].class, size)) == null) {
+            return mayAllocate(sorter) && tryFlagSort(sorter, a, low, high);
+        }
+
+        /*
+         * Sort large part in parallel.
+         */
+        if (sorter != null && size > MIN_RADIX_PART_SIZE << 1) {
+            parallelRadixSort(a, sorter.parallelism, b, low, high, offset);
+            return true;
+        }
+
+        int start = low - offset;
+        int last = high - offset;
+
+        /*
+         * Count the number of all digits.
+         */
+        int[] count1 = Workspace.count(0, 1024);
+        int[] count2 = Workspace.count(1, 2048);
+        int[] count3 = Workspace.count(2, 2048);
+        int[] count4 = Workspace.count(3, 2048);
+        int[] count5 = Workspace.count(4, 2048);
+        int[] count6 = Workspace.count(8, 1024);
+        long min = a[low], max = min;
+
+        for (int i = low; i < high; ++i) {
+            ++count1[(int)  (a[i]         & 0x3FF)];
+            ++count2[(int) ((a[i] >>> 10) & 0x7FF)];
+            ++count3[(int) ((a[i] >>> 21) & 0x7FF)];
+            ++count4[(int) ((a[i] >>> 32) & 0x7FF)];
+            ++count5[(int) ((a[i] >>> 43) & 0x7FF)];
+            ++count6[(int) ((a[i] >>> 54) ^ 0x200)]; // Reverse the sign bit
+            min = Math.min(min, a[i]);
+            max = Math.max(max, a[i]);
+        }
+
+        /*
+         * Sort the keys reduced by the min element, if their
+         * significant bits need less passes than the digits to
+         * be processed, taking into account the counting pass.
+         */
+        int bits = 64 - Long.numberOfLeadingZeros(max - min);
+
+        if (bits + 11 < radixDigits(min ^ max) * 11) {
+            rangeRadixSort(a, b, low, high, offset, min, bits);
+            return true;
+        }
+
+        /*
+         * Detect digits to be processed.
+         */
+        boolean processDigit1 = processDigit(count1, size, low);
+        boolean processDigit2 = processDigit(count2, size, low);
+        boolean processDigit3 = processDigit(count3, size, low);
+        boolean processDigit4 = processDigit(count4, size, low);
+        boolean processDigit5 = processDigit(count5, size, low);
+        boolean processDigit6 = processDigit(count6, size, low);
+
+        /*
+         * Process the 1-st digit.
+         */
+        if (processDigit1) {
+            for (int i = high; i > low; ) {
+                b[--count1[(int) (a[--i] & 0x3FF)] - offset] = a[i];
+            }
+        }
+
+        /*
+         * Process the 2-nd digit.
+         */
+        if (processDigit2) {
+            if (processDigit1) {
+                for (int i = last; i > start; ) {
+                    a[--count2[(int) ((b[--i] >>> 10) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count2[(int) ((a[--i] >>> 10) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 3-rd digit.
+         */
+        if (processDigit3) {
+            if (processDigit1 ^ processDigit2) {
+                for (int i = last; i > start; ) {
+                    a[--count3[(int) ((b[--i] >>> 21) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count3[(int) ((a[--i] >>> 21) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 4-th digit.
+         */
+        if (processDigit4) {
+            if (processDigit1 ^ processDigit2 ^ processDigit3) {
+                for (int i = last; i > start; ) {
+                    a[--count4[(int) ((b[--i] >>> 32) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count4[(int) ((a[--i] >>> 32) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 5-th digit.
+         */
+        if (processDigit5) {
+            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4) {
+                for (int i = last; i > start; ) {
+                    a[--count5[(int) ((b[--i] >>> 43) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count5[(int) ((a[--i] >>> 43) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 6-th digit.
+         */
+        if (processDigit6) {
+            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5) {
+                for (int i = last; i > start; ) {
+                    a[--count6[(int) ((b[--i] >>> 54) ^ 0x200)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count6[(int) ((a[--i] >>> 54) ^ 0x200)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Copy the buffer to original array, if we process ood number of digits.
+         */
+        if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5 ^ processDigit6) {
+            System.arraycopy(b, low - offset, a, low, size);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the specified range of the array in place using MSD
+     * (The Most Significant Digit) Radix sort, also known as American
+     * flag sort, if additional buffer can't be allocated.<p>
+     *
+     * The elements are swapped into the buckets of the highest digit
+     * which is not the same for all elements, then the buckets are
+     * sorted independently, in parallel, if there is parallel context.
+     * The buckets are much smaller than the range, therefore the buffer
+     * is usually allocated to sort them.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} as the array is finally sorted
+     *         or the buckets are being sorted
+     */
+    static boolean tryFlagSort(Sorter<long[]> sorter, long[] a, int low, int high) {
+        int[] start = new int[257];
+        int[] next = new int[256];
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            int flip = shift == 56 ? 0x80 : 0; // Reverse the sign bit
+
+            /*
+             * Count the elements in the buckets.
+             */
+            Arrays.fill(next, 0);
+
+            for (int i = low; i < high; ++i) {
+                ++next[(int) (a[i] >>> shift) & 0xFF ^ flip];
+            }
+
+            /*
+             * Skip the digit which is the same for all elements.
+             */
+            if (next[(int) (a[low] >>> shift) & 0xFF ^ flip] == high - low) {
+                continue;
+            }
+
+            /*
+             * Compute the start of each bucket.
+             */
+            start[0] = low;
+
+            for (int d = 0; d < 256; ++d) {
+                start[d + 1] = start[d] + next[d];
+                next[d] = start[d];
+            }
+
+            /*
+             * Swap the elements into their buckets, sweeping the buckets
+             * which are not filled yet. Unlike the cycles of swaps, the
+             * swaps of the sweep are independent and therefore faster.
+             */
+            for (boolean moved = true; moved; ) {
+                moved = false;
+
+                for (int d = 0; d < 256; ++d) {
+                    int end = start[d + 1];
+
+                    if (next[d] < end) {
+                        moved = true;
+
+                        for (int i = next[d]; i < end; ++i) {
+                            long ai = a[i];
+                            int j = next[(int) (ai >>> shift) & 0xFF ^ flip]++;
+                            a[i] = a[j];
+                            a[j] = ai;
+                        }
+                    }
+                }
+            }
+
+            /*
+             * Sort the buckets, forking the large ones in parallel context.
+             */
+            for (int d = 0; d < 256; ++d) {
+                int lo = start[d], hi = start[d + 1];
+
+                if (sorter != null && hi - lo > MIN_PARALLEL_SORT_SIZE) {
+                    sorter.fork(0, lo, hi);
+                } else if (hi - lo > 1) {
+                    sort(sorter, a, 0, lo, hi);
+                }
+            }
+            return true;
+        }
+
+        /*
+         * All elements are equal and therefore already sorted.
+         */
+        return true;
+    }
+
+    /**
+     * Sorts the specified range of the array using LSD Radix sort
+     * of the keys reduced by the min element. The number of digits
+     * and their width are chosen by the number of significant bits
+     * of the keys, and the next digit is counted, while the elements
+     * are moved by the current digit.
+     *
+     * @param a the array to be sorted
+     * @param b the buffer of the same size as the range
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @param offset the start index of the buffer in the array
+     * @param min the min element
+     * @param bits the number of significant bits of the keys
+     */
+    private static void rangeRadixSort(long[] a, long[] b, int low, int high, int offset, long min, int bits) {
+        int digits = (bits + 10) / 11;
+        int width = (bits - 1) / digits + 1;
+        int mask = (1 << width) - 1;
+        int size = high - low;
+
+        int[] count = Workspace.count(1, 2048);
+        int[] next = Workspace.count(2, 2048);
+        long[] src = a, dst = b;
+        int from = low, to = low - offset;
+
+        /*
+         * Count the lowest digit.
+         */
+        for (int i = low; i < high; ++i) {
+            ++count[(int) (a[i] - min) & mask];
+        }
+
+        for (int shift = 0; shift < bits; shift += width) {
+            int nextShift = shift + width;
+
+            if (nextShift < bits) {
+                Arrays.fill(next, 0);
+            }
+
+            /*
+             * Move the elements by the digit and count the next digit.
+             */
+            if (processDigit(count, size, to)) {
+                if (nextShift < bits) {
+                    for (int i = from + size; i > from; ) {
+                        long key = src[--i] - min;
+                        ++next[(int) (key >>> nextShift) & mask];
+                        dst[--count[(int) (key >>> shift) & mask]] = src[i];
+                    }
+                } else {
+                    for (int i = from + size; i > from; ) {
+                        dst[--count[(int) ((src[--i] - min) >>> shift) & mask]] = src[i];
+                    }
+                }
+                long[] t = src; src = dst; dst = t;
+                int k = from; from = to; to = k;
+
+            } else if (nextShift < bits) {
+                for (int i = from; i < from + size; ++i) {
+                    ++next[(int) ((src[i] - min) >>> nextShift) & mask];
+                }
+            }
+            int[] t = count; count = next; next = t;
+        }
+
+        /*
+         * Copy the buffer to original array, if we process odd number of digits.
+         */
+        if (src != a) {
+            System.arraycopy(src, from, a, low, size);
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array using parallel
+     * MSD (The Most Significant Digit) bucket sort.<p>
+     *
+     * The elements are distributed into the buffer by the highest
+     * digit which is not the same for all elements and copied back,
+     * then the buckets are sorted independently in parallel, so that
+     * no merging of the sorted parts is required.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted or the buckets
+     *         are being sorted, otherwise {@code false}
+     */
+    static boolean tryBucketSort(Sorter<long[]> sorter, long[] a, int low, int high) {
+        long[] b = sorter.b;
+
+        if (b == null) {
+            return false;
+        }
+        int offset = sorter.offset, size = high - low;
+        int[][] count = new int[Math.min(size / MIN_RADIX_PART_SIZE, sorter.parallelism << 2)][2048];
+
+        /*
+         * Find the highest digit to be processed.
+         */
+        for (int shift = 54; ; shift -= shift == 10 ? 10 : 11) {
+            int mask = shift == 0 || shift == 54 ? 0x3FF : 0x7FF;
+            int flip = shift == 54 ? 0x200 : 0; // Reverse the sign bit
+
+            new RadixSorter<>(null, a, null, count,
+                low, high, shift, mask, flip, 0, count.length).invoke();
+
+            if (processDigit(count, size, low - offset)) {
+
+                /*
+                 * Distribute the elements into buckets.
+                 */
+                new RadixSorter<>(null, a, b, count,
+                    low, high, shift, mask, flip, 0, count.length).invoke();
+
+                int[] bucket = count[0].clone();
+
+                /*
+                 * Copy the buckets back to original array.
+                 */
+                processCopy(count, size, low);
+                new RadixSorter<>(null, b, a, count,
+                    low - offset, high - offset, 0, 0, 0, 0, count.length).invoke();
+
+                /*
+                 * Sort the buckets in parallel, joining small
+                 * neighbouring buckets into one part.
+                 */
+                for (int i = 0, start = low, end = low; end < high; ) {
+                    int next = ++i < bucket.length ? bucket[i] + offset : high;
+
+                    if (next - start > MIN_PARALLEL_SORT_SIZE && end > start) {
+                        sorter.fork(0, start, end);
+                        start = end;
+                    }
+                    if ((end = next) == high) {
+                        sorter.fork(0, start, end);
+                    }
+                }
+                return true;
+            }
+
+            /*
+             * All elements are equal and therefore already sorted.
+             */
+            if (shift == 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using parallel
+     * LSD (The Least Significant Digit) Radix sort.<p>
+     *
+     * The range is divided into parts, each part counts its own
+     * digits, and then all parts move their elements in parallel
+     * to the final positions of the digit, keeping the order.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param b the buffer of the same size as the range
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @param offset the start index of the buffer in the array
+     */
+    private static void parallelRadixSort(long[] a, int parallelism, long[] b, int low, int high, int offset) {
+        int size = high - low;
+        int[][] count = new int[Math.min(size / MIN_RADIX_PART_SIZE, parallelism << 2)][2048];
+
+        long[] src = a, dst = b;
+        int start = low, last = low - offset;
+
+        /*
+         * Process the digits of 10, 11, 11, 11, 11 and 10 bits.
+         */
+        for (int shift = 0; shift < 64; shift += shift == 0 ? 10 : 11) {
+            int mask = shift == 0 || shift == 54 ? 0x3FF : 0x7FF;
+            int flip = shift == 54 ? 0x200 : 0; // Reverse the sign bit
+
+            /*
+             * Count the digits in each part.
+             */
+            new RadixSorter<>(null, src, null, count,
+                start, start + size, shift, mask, flip, 0, count.length).invoke();
+
+            /*
+             * Move elements, if the digit must be processed.
+             */
+            if (processDigit(count, size, last)) {
+                new RadixSorter<>(null, src, dst, count,
+                    start, start + size, shift, mask, flip, 0, count.length).invoke();
+
+                long[] t = src; src = dst; dst = t;
+                int k = start; start = last; last = k;
+            }
+        }
+
+        /*
+         * Copy the buffer to original array, if we process odd number of digits.
+         */
+        if (src != a) {
+            processCopy(count, size, low);
+            new RadixSorter<>(null, src, a, count,
+                start, start + size, 0, 0, 0, 0, count.length).invoke();
+        }
+    }
+
+    /**
+     * Counts the digits of the part of the array.
+     *
+     * @param a the array
+     * @param count the count array of the part
+     * @param shift the shift of the digit
+     * @param mask the mask of the digit
+     * @param flip the bits to be reversed in the digit
+     * @param low the index of the first element, inclusive
+     * @param high the index of the last element, exclusive
+     */
+    private static void countDigit(long[] a, int[] count,
+            int shift, int mask, int flip, int low, int high) {
+        Arrays.fill(count, 0);
+
+        for (int i = low; i < high; ++i) {
+            ++count[(int) (a[i] >>> shift) & mask ^ flip];
+        }
+    }
+
+    /**
+     * Moves elements of the part of the array to the final
+     * positions of the digit, keeping their order.
+     *
+     * @param dst the destination where elements are moved
+     * @param src the part to be moved
+     * @param count the end positions of the digits of the part
+     * @param shift the shift of the digit
+     * @param mask the mask of the digit
+     * @param flip the bits to be reversed in the digit
+     * @param low the index of the first element, inclusive
+     * @param high the index of the last element, exclusive
+     */
+    private static void scatterDigit(long[] dst, long[] src, int[] count,
+            int shift, int mask, int flip, int low, int high) {
+        for (int i = high; i > low; ) {
+            dst[--count[(int) (src[--i] >>> shift) & mask ^ flip]] = src[i];
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using heap sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void heapSort(long[] a, int low, int high) {
+        for (int k = (low + high) >>> 1; k > low; ) {
+            pushDown(a, --k, a[k], low, high);
+        }
+        while (--high > low) {
+            long max = a[low];
+            pushDown(a, low, a[high], low, high);
+            a[high] = max;
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given array
+     * @param p the start index
+     * @param value the given element
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDown(long[] a, int p, long value, int low, int high) {
+        for (int k ;; a[p] = a[p = k]) {
+            k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a[k] < a[k - 1]) {
+                --k;
+            }
+            if (a[k] <= value) {
+                break;
+            }
+        }
+        a[p] = value;
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using parallel
+     * merge sort and/or Dual-Pivot Quicksort, applying the same moves
+     * to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array, moved together with the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sortWithPayload(long[] a, int[] x, int parallelism, int low, int high) {
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            new PayloadSorter<>(a, x, parallelism, low, high - low).invoke();
+        } else {
+            sort(null, a, x, 0, low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using Dual-Pivot
+     * Quicksort, applying the same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array, moved together with the keys
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(PayloadSorter<int[]> sorter, long[] a, int[] x, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
+
+            /*
+             * Run adaptive mixed insertion sort on small non-leftmost parts.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
+                mixedInsertionSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * Invoke insertion sort on small leftmost part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * Try merging sort on large part.
+             */
+            if (size > MIN_MERGING_SORT_SIZE * bits
+                    && tryMergingSort(sorter, a, x, low, high)) {
+                return;
+            }
+
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            long a3 = a[e3];
+            int x3 = x[e3];
+
+            /*
+             * Check if part is large and contains random
+             * data, taking into account parallel context.
+             */
+            boolean isLargeRandom =
+                size > MIN_LONG_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
+                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { swap(a, x, e1, e4); }
+            if (a[e2] > a[e5]) { swap(a, x, e2, e5); }
+            if (a[e4] > a[e5]) { swap(a, x, e4, e5); }
+            if (a[e1] > a[e2]) { swap(a, x, e1, e2); }
+            if (a[e2] > a[e4]) { swap(a, x, e2, e4); }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                    x[e3] = x[e2]; x[e2] = x[e1]; x[e1] = x3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                    x[e3] = x[e2]; x[e2] = x3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                    x[e3] = x[e4]; x[e4] = x[e5]; x[e5] = x3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                    x[e3] = x[e4]; x[e4] = x3;
+                }
+            }
+
+            /*
+             * Try Radix sort on large fully random data.
+             */
+            if (isLargeRandom
+                    && a[e2] < a[e3] && a[e3] < a[e4]
+                    && tryRadixSort(sorter, a, x, low, high)) {
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partitionWithTwoPivots(a, x, low, high, e1, e5);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, lower + 1, upper);
+                    sorter.fork(bits | 1, upper + 1, high);
+                } else {
+                    sort(sorter, a, x, bits | 1, lower + 1, upper);
+                    sort(sorter, a, x, bits | 1, upper + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partitionWithOnePivot(a, x, low, high, e3);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, upper, high);
+                } else {
+                    sort(sorter, a, x, bits | 1, upper, high);
+                }
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Swaps two elements of the array of keys and of the payload array.
+     *
+     * @param a the array of keys
+     * @param x the payload array
+     * @param i the index of the first element
+     * @param j the index of the second element
+     */
+    private static void swap(long[] a, int[] x, int i, int j) {
+        long ai = a[i]; a[i] = a[j]; a[j] = ai;
+        int xi = x[i]; x[i] = x[j]; x[j] = xi;
+    }
+
+    /**
+     * Partitions the specified range of the array of keys using two
+     * given pivots, applying the same moves to the payload array.
+     *
+     * @param a the array of keys for partitioning
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            long[] a, int[] x, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        long pivot1 = a[pivotIndex1];
+        long pivot2 = a[pivotIndex2];
+        int payload1 = x[pivotIndex1];
+        int payload2 = x[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower]; x[pivotIndex1] = x[lower];
+        a[pivotIndex2] = a[upper]; x[pivotIndex2] = x[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning, see the same
+         * partitioning of the keys without payload.
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            long ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                int xk = x[k];
+
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper]; x[k] = x[upper];
+                    a[upper] = a[lower]; x[upper] = x[lower];
+                } else {
+                    a[k] = a[lower]; x[k] = x[lower];
+                }
+                a[lower] = ak; x[lower] = xk;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                int xk = x[k];
+                a[k] = a[--upper]; x[k] = x[upper];
+                a[upper] = ak; x[upper] = xk;
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; x[low]  = x[lower];
+        a[high] = a[upper]; x[high] = x[upper];
+        a[lower] = pivot1; x[lower] = payload1;
+        a[upper] = pivot2; x[upper] = payload2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array of keys using one
+     * given pivot, applying the same moves to the payload array.<p>
+     *
+     * Unlike the partitioning of the keys without payload, the
+     * elements equal to the pivot are moved, not overwritten,
+     * because their payloads are different.
+     *
+     * @param a the array of keys for partitioning
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithOnePivot(
+            long[] a, int[] x, int low, int high, int pivotIndex) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = high;
+        int lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
+         */
+        long pivot = a[pivotIndex];
+        int payload = x[pivotIndex];
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
+         */
+        a[pivotIndex] = a[lower]; x[pivotIndex] = x[lower];
+
+        /*
+         * Dutch National Flag partitioning, the key a[k] is used
+         * as the sentinel, while the element a[k] is processed.
+         */
+        for (int k = upper; --k > lower; ) {
+            long ak = a[k];
+
+            if (ak == pivot) {
+                continue;
+            }
+            int xk = x[k];
+            a[k] = pivot;
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[k] = a[--upper]; x[k] = x[upper];
+                    a[upper] = a[lower]; x[upper] = x[lower];
+                } else {
+                    a[k] = a[lower]; x[k] = x[lower];
+                }
+                a[lower] = ak; x[lower] = xk;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[k] = a[--upper]; x[k] = x[upper];
+                a[upper] = ak; x[upper] = xk;
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a[low] = a[lower]; x[low] = x[lower];
+        a[lower] = pivot; x[lower] = payload;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using mixed
+     * insertion sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void mixedInsertionSort(long[] a, int[] x, int low, int high) {
+
+        /*
+         * Split part for pin and pair insertion sorts.
+         */
+        int end = high - 3 * ((high - low) >> 3 << 1);
+
+        /*
+         * Invoke simple insertion sort on small part.
+         */
+        if (end == high) {
+            for (int i; ++low < high; ) {
+                long ai = a[i = low];
+                int xi = x[i];
+
+                while (ai < a[i - 1]) {
+                    a[i] = a[i - 1];
+                    x[i] = x[--i];
+                }
+                a[i] = ai;
+                x[i] = xi;
+            }
+            return;
+        }
+
+        /*
+         * Start with pin insertion sort.
+         */
+        for (int i, p = high; ++low < end; ) {
+            long ai = a[i = low], pin = a[--p];
+            int xi = x[i];
+
+            /*
+             * Swap larger element with pin.
+             */
+            if (ai > pin) {
+                ai = pin;
+                a[p] = a[i];
+                xi = x[p];
+                x[p] = x[i];
+            }
+
+            /*
+             * Insert element into sorted part.
+             */
+            while (ai < a[i - 1]) {
+                a[i] = a[i - 1];
+                x[i] = x[--i];
+            }
+            a[i] = ai;
+            x[i] = xi;
+        }
+
+        /*
+         * Finish with pair insertion sort.
+         */
+        for (int i; low < high; ++low) {
+            long a1 = a[i = low], a2 = a[++low];
+            int x1 = x[i], x2 = x[low];
+
+            /*
+             * Insert two elements per iteration: at first, insert the
+             * larger element and then insert the smaller element, but
+             * from the position where the larger element was inserted.
+             */
+            if (a1 > a2) {
+
+                while (a1 < a[--i]) {
+                    a[i + 2] = a[i];
+                    x[i + 2] = x[i];
+                }
+                a[++i + 1] = a1;
+                x[i + 1] = x1;
+
+                while (a2 < a[--i]) {
+                    a[i + 1] = a[i];
+                    x[i + 1] = x[i];
+                }
+                a[i + 1] = a2;
+                x[i + 1] = x2;
+
+            } else if (a1 < a[i - 1]) {
+
+                while (a2 < a[--i]) {
+                    a[i + 2] = a[i];
+                    x[i + 2] = x[i];
+                }
+                a[++i + 1] = a2;
+                x[i + 1] = x2;
+
+                while (a1 < a[--i]) {
+                    a[i + 1] = a[i];
+                    x[i + 1] = x[i];
+                }
+                a[i + 1] = a1;
+                x[i + 1] = x1;
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using insertion
+     * sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(long[] a, int[] x, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            long ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                int xi = x[i];
+
+                do {
+                    a[i] = a[i - 1];
+                    x[i] = x[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+                x[i] = xi;
+            }
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array of keys using
+     * merging sort, applying the same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryMergingSort(PayloadSorter<int[]> sorter, long[] a, int[] x, int low, int high) {
+
+        /*
+         * The element run[i] holds the start index
+         * of i-th sequence in non-descending order.
+         */
+        int count = 1, capacity = 0;
+        int[] run = null;
+
+        /*
+         * Identify all possible runs.
+         */
+        for (int k = low + 1, last = low; k < high; ) {
+
+            /*
+             * Find the next run.
+             */
+            if (a[k - 1] < a[k]) {
+
+                // Identify ascending sequence
+                while (++k < high && a[k - 1] <= a[k]);
+
+            } else if (a[k - 1] > a[k]) {
+
+                // Identify descending sequence
+                while (++k < high && a[k - 1] >= a[k]);
+
+                // Reverse into ascending order
+                for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
+                    swap(a, x, i, j);
+                }
+
+                if (k < high && a[k - 1] < a[k]) {
+                    continue;
+                }
+
+            } else { // Identify constant sequence
+                for (long ak = a[k]; ++k < high && ak == a[k]; );
+
+                if (k < high) {
+                    continue;
+                }
+            }
+
+            /*
+             * Process the current run.
+             */
+            if (run == null) {
+
+                if (k == high) {
+
+                    /*
+                     * Array is monotonous sequence
+                     * and therefore already sorted.
+                     */
+                    return true;
+                }
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return false;
+                }
+                capacity = Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+                run = sorter == null ? Workspace.run(capacity) : new int[capacity];
+                run[0] = low;
+
+            } else if (a[last - 1] > a[last]) { // Start the new run
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return false;
+                }
+
+                if (++count == capacity) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return false;
+                }
+            }
+
+            /*
+             * Save the current run.
+             */
+            run[count] = (last = k);
+
+            /*
+             * Check single-element run at the end.
+             */
+            if (++k == high) {
+                --k;
+            }
+        }
+
+        /*
+         * Merge all runs.
+         */
+        if (count > 1) {
+            long[] b; int[] y; int offset = low;
+
+            if (sorter != null && (b = sorter.b) != null) {
+                y = sorter.y;
+                offset = sorter.offset;
+            } else if (sorter == null
+                    ? (b = Workspace.buffer(0, long[].class, high - low)) == null
+                        || (y = Workspace.buffer(1, int[].class, high - low)) == null
+                    : (b = tryAllocate(long[].class, high - low)) == null
+                        || (y = tryAllocate(int[].class, high - low)) == null) {
+                return false;
+            }
+            mergeRuns(sorter, a, x, b, y, offset, true, run, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * Merges the specified runs of the keys and the payloads.
+     *
+     * @param sorter parallel context
+     * @param a the source array of keys
+     * @param x the source payload array
+     * @param b the temporary buffer of keys used in merging
+     * @param y the temporary buffer of payloads used in merging
+     * @param offset the start index in the source, inclusive
+     * @param aim specifies merging: to source (true) or buffer (false)
+     * @param run the start indexes of the runs, inclusive
+     * @param lo the start index of the first run, inclusive
+     * @param hi the start index of the last run, inclusive
+     */
+    private static void mergeRuns(PayloadSorter<int[]> sorter, long[] a, int[] x,
+            long[] b, int[] y, int offset, boolean aim, int[] run, int lo, int hi) {
+
+        if (hi - lo == 1) {
+            if (!aim) {
+                System.arraycopy(a, run[lo], b, run[lo] - offset, run[hi] - run[lo]);
+                System.arraycopy(x, run[lo], y, run[lo] - offset, run[hi] - run[lo]);
+            }
+            return;
+        }
+
+        /*
+         * Split the array into two approximately equal parts.
+         */
+        int mi = lo, rmi = (run[lo] + run[hi]) >>> 1;
+        while (run[++mi + 1] <= rmi);
+
+        /*
+         * Merge the runs of all parts.
+         */
+        mergeRuns(sorter, a, x, b, y, offset, !aim, run, lo, mi);
+        mergeRuns(sorter, a, x, b, y, offset, !aim, run, mi, hi);
+
+        int k  = !aim ? run[lo] - offset : run[lo];
+        int lo1 = aim ? run[lo] - offset : run[lo];
+        int hi1 = aim ? run[mi] - offset : run[mi];
+        int lo2 = aim ? run[mi] - offset : run[mi];
+        int hi2 = aim ? run[hi] - offset : run[hi];
+
+        /*
+         * Merge the left and right parts.
+         */
+        if (hi1 - lo1 > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+            new PayloadMerger<>(null, aim ? a : b, aim ? x : y, k,
+                aim ? b : a, aim ? y : x, lo1, hi1, lo2, hi2).invoke();
+        } else {
+            mergeParts(null, aim ? a : b, aim ? x : y, k,
+                aim ? b : a, aim ? y : x, lo1, hi1, lo2, hi2);
+        }
+    }
+
+    /**
+     * Merges the sorted parts of the keys and the payloads.
+     *
+     * @param merger parallel context
+     * @param dst the destination of keys where parts are merged
+     * @param pdst the destination of payloads where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source of keys of both parts
+     * @param psrc the source of payloads of both parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param hi1 the end index of the first part, exclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @param hi2 the end index of the second part, exclusive
+     */
+    private static void mergeParts(PayloadMerger<int[]> merger, long[] dst, int[] pdst, int k,
+            long[] src, int[] psrc, int lo1, int hi1, int lo2, int hi2) {
+
+        /*
+         * Merge the parts in parallel.
+         */
+        if (merger != null) {
+
+            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+
+                /*
+                 * The first part must be larger.
+                 */
+                if (hi1 - lo1 < hi2 - lo2) {
+                    int lo = lo1; lo1 = lo2; lo2 = lo;
+                    int hi = hi1; hi1 = hi2; hi2 = hi;
+                }
+
+                /*
+                 * Find the median of the larger part.
+                 */
+                int mi1 = (lo1 + hi1) >>> 1;
+                long key = src[mi1];
+                int mi2 = hi2;
+
+                /*
+                 * Split the smaller part.
+                 */
+                for (int mid = lo2; mid < mi2; ) {
+                    int d = (mid + mi2) >>> 1;
+
+                    if (key > src[d]) {
+                        mid = d + 1;
+                    } else {
+                        mi2 = d;
+                    }
+                }
+
+                /*
+                 * Merge other parts in parallel.
+                 */
+                merger.fork(k, lo1, mi1, lo2, mi2);
+
+                /*
+                 * Reserve space for the second parts.
+                 */
+                k += mi2 - lo2 + mi1 - lo1;
+
+                /*
+                 * Iterate along the second parts.
+                 */
+                lo1 = mi1;
+                lo2 = mi2;
+            }
+        }
+
+        /*
+         * Merge small parts sequentially.
+         */
+        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+
+            if (src[hi1 - 1] < src[hi2 - 1]) {
+                while (lo1 < hi1) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            } else if (src[hi1 - 1] > src[hi2 - 1]) {
+                while (lo2 < hi2) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            } else {
+                while (lo1 < hi1 && lo2 < hi2) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            }
+        }
+
+        /*
+         * Copy the tail of the left part.
+         */
+        if (lo1 < hi1) {
+            System.arraycopy(src, lo1, dst, k, hi1 - lo1);
+            System.arraycopy(psrc, lo1, pdst, k, hi1 - lo1);
+        }
+
+        /*
+         * Copy the tail of the right part.
+         */
+        if (lo2 < hi2) {
+            System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+            System.arraycopy(psrc, lo2, pdst, k + hi1 - lo1, hi2 - lo2);
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array of keys using
+     * LSD (The Least Significant Digit) Radix sort, applying the
+     * same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryRadixSort(PayloadSorter<int[]> sorter, long[] a, int[] x, int low, int high) {
+        long[] b; int[] y; int offset = low, size = high - low;
+
+        /*
+         * Allocate additional buffers.
+         */
+        if (sorter != null && (b = sorter.b) != null) {
+            y = sorter.y;
+            offset = sorter.offset;
+        } else if ((b = tryAllocate(long[].class, size)) == null
+                || (y = tryAllocate(int[].class, size)) == null) {
+            return false;
+        }
+
+        /*
+         * Count the number of all digits.
+         */
+        int[][] count = new int[6][2048];
+
+        for (int i = low; i < high; ++i) {
+            ++count[0][(int)  (a[i]         & 0x3FF)];
+            ++count[1][(int) ((a[i] >>> 10) & 0x7FF)];
+            ++count[2][(int) ((a[i] >>> 21) & 0x7FF)];
+            ++count[3][(int) ((a[i] >>> 32) & 0x7FF)];
+            ++count[4][(int) ((a[i] >>> 43) & 0x7FF)];
+            ++count[5][(int) ((a[i] >>> 54) ^ 0x200)]; // Reverse the sign bit
+        }
+
+        /*
+         * Process the digits of 10, 11, 11, 11, 11 and 10 bits,
+         * moving the elements between the array and the buffer.
+         */
+        boolean toBuffer = true;
+
+        for (int d = 0, shift = 0; d < 6; shift += shift == 0 ? 10 : 11, ++d) {
+            int mask = d == 0 || d == 5 ? 0x3FF : 0x7FF;
+            int flip = d == 5 ? 0x200 : 0; // Reverse the sign bit
+            int[] c = count[d];
+
+            if (processDigit(c, size, low)) {
+                if (toBuffer) {
+                    for (int i = high; i > low; ) {
+                        int j = --c[(int) (a[--i] >>> shift) & mask ^ flip] - offset;
+                        b[j] = a[i];
+                        y[j] = x[i];
+                    }
+                } else {
+                    for (int i = high - offset; i > low - offset; ) {
+                        int j = --c[(int) (b[--i] >>> shift) & mask ^ flip];
+                        a[j] = b[i];
+                        x[j] = y[i];
+                    }
+                }
+                toBuffer = !toBuffer;
+            }
+        }
+
+        /*
+         * Copy the buffers to original arrays, if we process odd number of digits.
+         */
+        if (!toBuffer) {
+            System.arraycopy(b, low - offset, a, low, size);
+            System.arraycopy(y, low - offset, x, low, size);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using heap
+     * sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void heapSort(long[] a, int[] x, int low, int high) {
+        for (int k = (low + high) >>> 1; k > low; ) {
+            --k;
+            pushDown(a, x, k, a[k], x[k], low, high);
+        }
+        while (--high > low) {
+            long max = a[low];
+            int payload = x[low];
+            pushDown(a, x, low, a[high], x[high], low, high);
+            a[high] = max;
+            x[high] = payload;
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given array of keys
+     * @param x the given payload array
+     * @param p the start index
+     * @param value the given key
+     * @param payload the payload of the given key
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDown(long[] a, int[] x, int p, long value, int payload, int low, int high) {
+        for (int k ;; p = k) {
+            k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a[k] < a[k - 1]) {
+                --k;
+            }
+            if (a[k] <= value) {
+                break;
+            }
+            a[p] = a[k];
+            x[p] = x[k];
+        }
+        a[p] = value;
+        x[p] = payload;
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using parallel
+     * merge sort and/or Dual-Pivot Quicksort, applying the same moves
+     * to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array, moved together with the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sortWithPayload(long[] a, long[] x, int parallelism, int low, int high) {
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            new PayloadSorter<>(a, x, parallelism, low, high - low).invoke();
+        } else {
+            sort(null, a, x, 0, low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using Dual-Pivot
+     * Quicksort, applying the same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array, moved together with the keys
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(PayloadSorter<long[]> sorter, long[] a, long[] x, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
+
+            /*
+             * Run adaptive mixed insertion sort on small non-leftmost parts.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
+                mixedInsertionSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * Invoke insertion sort on small leftmost part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * Try merging sort on large part.
+             */
+            if (size > MIN_MERGING_SORT_SIZE * bits
+                    && tryMergingSort(sorter, a, x, low, high)) {
+                return;
+            }
+
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            long a3 = a[e3];
+            long x3 = x[e3];
+
+            /*
+             * Check if part is large and contains random
+             * data, taking into account parallel context.
+             */
+            boolean isLargeRandom =
+                size > MIN_LONG_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
+                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { swap(a, x, e1, e4); }
+            if (a[e2] > a[e5]) { swap(a, x, e2, e5); }
+            if (a[e4] > a[e5]) { swap(a, x, e4, e5); }
+            if (a[e1] > a[e2]) { swap(a, x, e1, e2); }
+            if (a[e2] > a[e4]) { swap(a, x, e2, e4); }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                    x[e3] = x[e2]; x[e2] = x[e1]; x[e1] = x3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                    x[e3] = x[e2]; x[e2] = x3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                    x[e3] = x[e4]; x[e4] = x[e5]; x[e5] = x3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                    x[e3] = x[e4]; x[e4] = x3;
+                }
+            }
+
+            /*
+             * Try Radix sort on large fully random data.
+             */
+            if (isLargeRandom
+                    && a[e2] < a[e3] && a[e3] < a[e4]
+                    && tryRadixSort(sorter, a, x, low, high)) {
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partitionWithTwoPivots(a, x, low, high, e1, e5);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, lower + 1, upper);
+                    sorter.fork(bits | 1, upper + 1, high);
+                } else {
+                    sort(sorter, a, x, bits | 1, lower + 1, upper);
+                    sort(sorter, a, x, bits | 1, upper + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partitionWithOnePivot(a, x, low, high, e3);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, upper, high);
+                } else {
+                    sort(sorter, a, x, bits | 1, upper, high);
+                }
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Swaps two elements of the array of keys and of the payload array.
+     *
+     * @param a the array of keys
+     * @param x the payload array
+     * @param i the index of the first element
+     * @param j the index of the second element
+     */
+    private static void swap(long[] a, long[] x, int i, int j) {
+        long ai = a[i]; a[i] = a[j]; a[j] = ai;
+        long xi = x[i]; x[i] = x[j]; x[j] = xi;
+    }
+
+    /**
+     * Partitions the specified range of the array of keys using two
+     * given pivots, applying the same moves to the payload array.
+     *
+     * @param a the array of keys for partitioning
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            long[] a, long[] x, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        long pivot1 = a[pivotIndex1];
+        long pivot2 = a[pivotIndex2];
+        long payload1 = x[pivotIndex1];
+        long payload2 = x[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower]; x[pivotIndex1] = x[lower];
+        a[pivotIndex2] = a[upper]; x[pivotIndex2] = x[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning, see the same
+         * partitioning of the keys without payload.
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            long ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                long xk = x[k];
+
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper]; x[k] = x[upper];
+                    a[upper] = a[lower]; x[upper] = x[lower];
+                } else {
+                    a[k] = a[lower]; x[k] = x[lower];
+                }
+                a[lower] = ak; x[lower] = xk;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                long xk = x[k];
+                a[k] = a[--upper]; x[k] = x[upper];
+                a[upper] = ak; x[upper] = xk;
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; x[low]  = x[lower];
+        a[high] = a[upper]; x[high] = x[upper];
+        a[lower] = pivot1; x[lower] = payload1;
+        a[upper] = pivot2; x[upper] = payload2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array of keys using one
+     * given pivot, applying the same moves to the payload array.<p>
+     *
+     * Unlike the partitioning of the keys without payload, the
+     * elements equal to the pivot are moved, not overwritten,
+     * because their payloads are different.
+     *
+     * @param a the array of keys for partitioning
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithOnePivot(
+            long[] a, long[] x, int low, int high, int pivotIndex) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = high;
+        int lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
+         */
+        long pivot = a[pivotIndex];
+        long payload = x[pivotIndex];
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
+         */
+        a[pivotIndex] = a[lower]; x[pivotIndex] = x[lower];
+
+        /*
+         * Dutch National Flag partitioning, the key a[k] is used
+         * as the sentinel, while the element a[k] is processed.
+         */
+        for (int k = upper; --k > lower; ) {
+            long ak = a[k];
+
+            if (ak == pivot) {
+                continue;
+            }
+            long xk = x[k];
+            a[k] = pivot;
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[k] = a[--upper]; x[k] = x[upper];
+                    a[upper] = a[lower]; x[upper] = x[lower];
+                } else {
+                    a[k] = a[lower]; x[k] = x[lower];
+                }
+                a[lower] = ak; x[lower] = xk;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[k] = a[--upper]; x[k] = x[upper];
+                a[upper] = ak; x[upper] = xk;
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a[low] = a[lower]; x[low] = x[lower];
+        a[lower] = pivot; x[lower] = payload;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using mixed
+     * insertion sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void mixedInsertionSort(long[] a, long[] x, int low, int high) {
+
+        /*
+         * Split part for pin and pair insertion sorts.
+         */
+        int end = high - 3 * ((high - low) >> 3 << 1);
+
+        /*
+         * Invoke simple insertion sort on small part.
+         */
+        if (end == high) {
+            for (int i; ++low < high; ) {
+                long ai = a[i = low];
+                long xi = x[i];
+
+                while (ai < a[i - 1]) {
+                    a[i] = a[i - 1];
+                    x[i] = x[--i];
+                }
+                a[i] = ai;
+                x[i] = xi;
+            }
+            return;
+        }
+
+        /*
+         * Start with pin insertion sort.
+         */
+        for (int i, p = high; ++low < end; ) {
+            long ai = a[i = low], pin = a[--p];
+            long xi = x[i];
+
+            /*
+             * Swap larger element with pin.
+             */
+            if (ai > pin) {
+                ai = pin;
+                a[p] = a[i];
+                xi = x[p];
+                x[p] = x[i];
+            }
+
+            /*
+             * Insert element into sorted part.
+             */
+            while (ai < a[i - 1]) {
+                a[i] = a[i - 1];
+                x[i] = x[--i];
+            }
+            a[i] = ai;
+            x[i] = xi;
+        }
+
+        /*
+         * Finish with pair insertion sort.
+         */
+        for (int i; low < high; ++low) {
+            long a1 = a[i = low], a2 = a[++low];
+            long x1 = x[i], x2 = x[low];
+
+            /*
+             * Insert two elements per iteration: at first, insert the
+             * larger element and then insert the smaller element, but
+             * from the position where the larger element was inserted.
+             */
+            if (a1 > a2) {
+
+                while (a1 < a[--i]) {
+                    a[i + 2] = a[i];
+                    x[i + 2] = x[i];
+                }
+                a[++i + 1] = a1;
+                x[i + 1] = x1;
+
+                while (a2 < a[--i]) {
+                    a[i + 1] = a[i];
+                    x[i + 1] = x[i];
+                }
+                a[i + 1] = a2;
+                x[i + 1] = x2;
+
+            } else if (a1 < a[i - 1]) {
+
+                while (a2 < a[--i]) {
+                    a[i + 2] = a[i];
+                    x[i + 2] = x[i];
+                }
+                a[++i + 1] = a2;
+                x[i + 1] = x2;
+
+                while (a1 < a[--i]) {
+                    a[i + 1] = a[i];
+                    x[i + 1] = x[i];
+                }
+                a[i + 1] = a1;
+                x[i + 1] = x1;
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using insertion
+     * sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(long[] a, long[] x, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            long ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                long xi = x[i];
+
+                do {
+                    a[i] = a[i - 1];
+                    x[i] = x[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+                x[i] = xi;
+            }
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array of keys using
+     * merging sort, applying the same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryMergingSort(PayloadSorter<long[]> sorter, long[] a, long[] x, int low, int high) {
+
+        /*
+         * The element run[i] holds the start index
+         * of i-th sequence in non-descending order.
+         */
+        int count = 1, capacity = 0;
+        int[] run = null;
+
+        /*
+         * Identify all possible runs.
+         */
+        for (int k = low + 1, last = low; k < high; ) {
+
+            /*
+             * Find the next run.
+             */
+            if (a[k - 1] < a[k]) {
+
+                // Identify ascending sequence
+                while (++k < high && a[k - 1] <= a[k]);
+
+            } else if (a[k - 1] > a[k]) {
+
+                // Identify descending sequence
+                while (++k < high && a[k - 1] >= a[k]);
+
+                // Reverse into ascending order
+                for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
+                    swap(a, x, i, j);
+                }
+
+                if (k < high && a[k - 1] < a[k]) {
+                    continue;
+                }
+
+            } else { // Identify constant sequence
+                for (long ak = a[k]; ++k < high && ak == a[k]; );
+
+                if (k < high) {
+                    continue;
+                }
+            }
+
+            /*
+             * Process the current run.
+             */
+            if (run == null) {
+
+                if (k == high) {
+
+                    /*
+                     * Array is monotonous sequence
+                     * and therefore already sorted.
+                     */
+                    return true;
+                }
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return false;
+                }
+                capacity = Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+                run = sorter == null ? Workspace.run(capacity) : new int[capacity];
+                run[0] = low;
+
+            } else if (a[last - 1] > a[last]) { // Start the new run
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return false;
+                }
+
+                if (++count == capacity) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return false;
+                }
+            }
+
+            /*
+             * Save the current run.
+             */
+            run[count] = (last = k);
+
+            /*
+             * Check single-element run at the end.
+             */
+            if (++k == high) {
+                --k;
+            }
+        }
+
+        /*
+         * Merge all runs.
+         */
+        if (count > 1) {
+            long[] b; long[] y; int offset = low;
+
+            if (sorter != null && (b = sorter.b) != null) {
+                y = sorter.y;
+                offset = sorter.offset;
+            } else if (sorter == null
+                    ? (b = Workspace.buffer(0, long[].class, high - low)) == null
+                        || (y = Workspace.buffer(1, long[].class, high - low)) == null
+                    : (b = tryAllocate(long[].class, high - low)) == null
+                        || (y = tryAllocate(long[].class, high - low)) == null) {
+                return false;
+            }
+            mergeRuns(sorter, a, x, b, y, offset, true, run, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * Merges the specified runs of the keys and the payloads.
+     *
+     * @param sorter parallel context
+     * @param a the source array of keys
+     * @param x the source payload array
+     * @param b the temporary buffer of keys used in merging
+     * @param y the temporary buffer of payloads used in merging
+     * @param offset the start index in the source, inclusive
+     * @param aim specifies merging: to source (true) or buffer (false)
+     * @param run the start indexes of the runs, inclusive
+     * @param lo the start index of the first run, inclusive
+     * @param hi the start index of the last run, inclusive
+     */
+    private static void mergeRuns(PayloadSorter<long[]> sorter, long[] a, long[] x,
+            long[] b, long[] y, int offset, boolean aim, int[] run, int lo, int hi) {
+
+        if (hi - lo == 1) {
+            if (!aim) {
+                System.arraycopy(a, run[lo], b, run[lo] - offset, run[hi] - run[lo]);
+                System.arraycopy(x, run[lo], y, run[lo] - offset, run[hi] - run[lo]);
+            }
+            return;
+        }
+
+        /*
+         * Split the array into two approximately equal parts.
+         */
+        int mi = lo, rmi = (run[lo] + run[hi]) >>> 1;
+        while (run[++mi + 1] <= rmi);
+
+        /*
+         * Merge the runs of all parts.
+         */
+        mergeRuns(sorter, a, x, b, y, offset, !aim, run, lo, mi);
+        mergeRuns(sorter, a, x, b, y, offset, !aim, run, mi, hi);
+
+        int k  = !aim ? run[lo] - offset : run[lo];
+        int lo1 = aim ? run[lo] - offset : run[lo];
+        int hi1 = aim ? run[mi] - offset : run[mi];
+        int lo2 = aim ? run[mi] - offset : run[mi];
+        int hi2 = aim ? run[hi] - offset : run[hi];
+
+        /*
+         * Merge the left and right parts.
+         */
+        if (hi1 - lo1 > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+            new PayloadMerger<>(null, aim ? a : b, aim ? x : y, k,
+                aim ? b : a, aim ? y : x, lo1, hi1, lo2, hi2).invoke();
+        } else {
+            mergeParts(null, aim ? a : b, aim ? x : y, k,
+                aim ? b : a, aim ? y : x, lo1, hi1, lo2, hi2);
+        }
+    }
+
+    /**
+     * Merges the sorted parts of the keys and the payloads.
+     *
+     * @param merger parallel context
+     * @param dst the destination of keys where parts are merged
+     * @param pdst the destination of payloads where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source of keys of both parts
+     * @param psrc the source of payloads of both parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param hi1 the end index of the first part, exclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @param hi2 the end index of the second part, exclusive
+     */
+    private static void mergeParts(PayloadMerger<long[]> merger, long[] dst, long[] pdst, int k,
+            long[] src, long[] psrc, int lo1, int hi1, int lo2, int hi2) {
+
+        /*
+         * Merge the parts in parallel.
+         */
+        if (merger != null) {
+
+            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+
+                /*
+                 * The first part must be larger.
+                 */
+                if (hi1 - lo1 < hi2 - lo2) {
+                    int lo = lo1; lo1 = lo2; lo2 = lo;
+                    int hi = hi1; hi1 = hi2; hi2 = hi;
+                }
+
+                /*
+                 * Find the median of the larger part.
+                 */
+                int mi1 = (lo1 + hi1) >>> 1;
+                long key = src[mi1];
+                int mi2 = hi2;
+
+                /*
+                 * Split the smaller part.
+                 */
+                for (int mid = lo2; mid < mi2; ) {
+                    int d = (mid + mi2) >>> 1;
+
+                    if (key > src[d]) {
+                        mid = d + 1;
+                    } else {
+                        mi2 = d;
+                    }
+                }
+
+                /*
+                 * Merge other parts in parallel.
+                 */
+                merger.fork(k, lo1, mi1, lo2, mi2);
+
+                /*
+                 * Reserve space for the second parts.
+                 */
+                k += mi2 - lo2 + mi1 - lo1;
+
+                /*
+                 * Iterate along the second parts.
+                 */
+                lo1 = mi1;
+                lo2 = mi2;
+            }
+        }
+
+        /*
+         * Merge small parts sequentially.
+         */
+        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+
+            if (src[hi1 - 1] < src[hi2 - 1]) {
+                while (lo1 < hi1) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            } else if (src[hi1 - 1] > src[hi2 - 1]) {
+                while (lo2 < hi2) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            } else {
+                while (lo1 < hi1 && lo2 < hi2) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            }
+        }
+
+        /*
+         * Copy the tail of the left part.
+         */
+        if (lo1 < hi1) {
+            System.arraycopy(src, lo1, dst, k, hi1 - lo1);
+            System.arraycopy(psrc, lo1, pdst, k, hi1 - lo1);
+        }
+
+        /*
+         * Copy the tail of the right part.
+         */
+        if (lo2 < hi2) {
+            System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+            System.arraycopy(psrc, lo2, pdst, k + hi1 - lo1, hi2 - lo2);
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array of keys using
+     * LSD (The Least Significant Digit) Radix sort, applying the
+     * same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryRadixSort(PayloadSorter<long[]> sorter, long[] a, long[] x, int low, int high) {
+        long[] b; long[] y; int offset = low, size = high - low;
+
+        /*
+         * Allocate additional buffers.
+         */
+        if (sorter != null && (b = sorter.b) != null) {
+            y = sorter.y;
+            offset = sorter.offset;
+        } else if ((b = tryAllocate(long[].class, size)) == null
+                || (y = tryAllocate(long[].class, size)) == null) {
+            return false;
+        }
+
+        /*
+         * Count the number of all digits.
+         */
+        int[][] count = new int[6][2048];
+
+        for (int i = low; i < high; ++i) {
+            ++count[0][(int)  (a[i]         & 0x3FF)];
+            ++count[1][(int) ((a[i] >>> 10) & 0x7FF)];
+            ++count[2][(int) ((a[i] >>> 21) & 0x7FF)];
+            ++count[3][(int) ((a[i] >>> 32) & 0x7FF)];
+            ++count[4][(int) ((a[i] >>> 43) & 0x7FF)];
+            ++count[5][(int) ((a[i] >>> 54) ^ 0x200)]; // Reverse the sign bit
+        }
+
+        /*
+         * Process the digits of 10, 11, 11, 11, 11 and 10 bits,
+         * moving the elements between the array and the buffer.
+         */
+        boolean toBuffer = true;
+
+        for (int d = 0, shift = 0; d < 6; shift += shift == 0 ? 10 : 11, ++d) {
+            int mask = d == 0 || d == 5 ? 0x3FF : 0x7FF;
+            int flip = d == 5 ? 0x200 : 0; // Reverse the sign bit
+            int[] c = count[d];
+
+            if (processDigit(c, size, low)) {
+                if (toBuffer) {
+                    for (int i = high; i > low; ) {
+                        int j = --c[(int) (a[--i] >>> shift) & mask ^ flip] - offset;
+                        b[j] = a[i];
+                        y[j] = x[i];
+                    }
+                } else {
+                    for (int i = high - offset; i > low - offset; ) {
+                        int j = --c[(int) (b[--i] >>> shift) & mask ^ flip];
+                        a[j] = b[i];
+                        x[j] = y[i];
+                    }
+                }
+                toBuffer = !toBuffer;
+            }
+        }
+
+        /*
+         * Copy the buffers to original arrays, if we process odd number of digits.
+         */
+        if (!toBuffer) {
+            System.arraycopy(b, low - offset, a, low, size);
+            System.arraycopy(y, low - offset, x, low, size);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using heap
+     * sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void heapSort(long[] a, long[] x, int low, int high) {
+        for (int k = (low + high) >>> 1; k > low; ) {
+            --k;
+            pushDown(a, x, k, a[k], x[k], low, high);
+        }
+        while (--high > low) {
+            long max = a[low];
+            long payload = x[low];
+            pushDown(a, x, low, a[high], x[high], low, high);
+            a[high] = max;
+            x[high] = payload;
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given array of keys
+     * @param x the given payload array
+     * @param p the start index
+     * @param value the given key
+     * @param payload the payload of the given key
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDown(long[] a, long[] x, int p, long value, long payload, int low, int high) {
+        for (int k ;; p = k) {
+            k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a[k] < a[k - 1]) {
+                --k;
+            }
+            if (a[k] <= value) {
+                break;
+            }
+            a[p] = a[k];
+            x[p] = x[k];
+        }
+        a[p] = value;
+        x[p] = payload;
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using parallel
+     * merge sort and/or Dual-Pivot Quicksort, applying the same moves
+     * to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array, moved together with the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sortWithPayload(long[] a, double[] x, int parallelism, int low, int high) {
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            new PayloadSorter<>(a, x, parallelism, low, high - low).invoke();
+        } else {
+            sort(null, a, x, 0, low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using Dual-Pivot
+     * Quicksort, applying the same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array, moved together with the keys
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(PayloadSorter<double[]> sorter, long[] a, double[] x, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
+
+            /*
+             * Run adaptive mixed insertion sort on small non-leftmost parts.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
+                mixedInsertionSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * Invoke insertion sort on small leftmost part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * Try merging sort on large part.
+             */
+            if (size > MIN_MERGING_SORT_SIZE * bits
+                    && tryMergingSort(sorter, a, x, low, high)) {
+                return;
+            }
+
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            long a3 = a[e3];
+            double x3 = x[e3];
+
+            /*
+             * Check if part is large and contains random
+             * data, taking into account parallel context.
+             */
+            boolean isLargeRandom =
+                size > MIN_LONG_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
+                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { swap(a, x, e1, e4); }
+            if (a[e2] > a[e5]) { swap(a, x, e2, e5); }
+            if (a[e4] > a[e5]) { swap(a, x, e4, e5); }
+            if (a[e1] > a[e2]) { swap(a, x, e1, e2); }
+            if (a[e2] > a[e4]) { swap(a, x, e2, e4); }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                    x[e3] = x[e2]; x[e2] = x[e1]; x[e1] = x3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                    x[e3] = x[e2]; x[e2] = x3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                    x[e3] = x[e4]; x[e4] = x[e5]; x[e5] = x3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                    x[e3] = x[e4]; x[e4] = x3;
+                }
+            }
+
+            /*
+             * Try Radix sort on large fully random data.
+             */
+            if (isLargeRandom
+                    && a[e2] < a[e3] && a[e3] < a[e4]
+                    && tryRadixSort(sorter, a, x, low, high)) {
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, x, low, high);
+                return;
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partitionWithTwoPivots(a, x, low, high, e1, e5);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, lower + 1, upper);
+                    sorter.fork(bits | 1, upper + 1, high);
+                } else {
+                    sort(sorter, a, x, bits | 1, lower + 1, upper);
+                    sort(sorter, a, x, bits | 1, upper + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partitionWithOnePivot(a, x, low, high, e3);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, upper, high);
+                } else {
+                    sort(sorter, a, x, bits | 1, upper, high);
+                }
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Swaps two elements of the array of keys and of the payload array.
+     *
+     * @param a the array of keys
+     * @param x the payload array
+     * @param i the index of the first element
+     * @param j the index of the second element
+     */
+    private static void swap(long[] a, double[] x, int i, int j) {
+        long ai = a[i]; a[i] = a[j]; a[j] = ai;
+        double xi = x[i]; x[i] = x[j]; x[j] = xi;
+    }
+
+    /**
+     * Partitions the specified range of the array of keys using two
+     * given pivots, applying the same moves to the payload array.
+     *
+     * @param a the array of keys for partitioning
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            long[] a, double[] x, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        long pivot1 = a[pivotIndex1];
+        long pivot2 = a[pivotIndex2];
+        double payload1 = x[pivotIndex1];
+        double payload2 = x[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower]; x[pivotIndex1] = x[lower];
+        a[pivotIndex2] = a[upper]; x[pivotIndex2] = x[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning, see the same
+         * partitioning of the keys without payload.
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            long ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                double xk = x[k];
+
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper]; x[k] = x[upper];
+                    a[upper] = a[lower]; x[upper] = x[lower];
+                } else {
+                    a[k] = a[lower]; x[k] = x[lower];
+                }
+                a[lower] = ak; x[lower] = xk;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                double xk = x[k];
+                a[k] = a[--upper]; x[k] = x[upper];
+                a[upper] = ak; x[upper] = xk;
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; x[low]  = x[lower];
+        a[high] = a[upper]; x[high] = x[upper];
+        a[lower] = pivot1; x[lower] = payload1;
+        a[upper] = pivot2; x[upper] = payload2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array of keys using one
+     * given pivot, applying the same moves to the payload array.<p>
+     *
+     * Unlike the partitioning of the keys without payload, the
+     * elements equal to the pivot are moved, not overwritten,
+     * because their payloads are different.
+     *
+     * @param a the array of keys for partitioning
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithOnePivot(
+            long[] a, double[] x, int low, int high, int pivotIndex) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = high;
+        int lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
+         */
+        long pivot = a[pivotIndex];
+        double payload = x[pivotIndex];
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
+         */
+        a[pivotIndex] = a[lower]; x[pivotIndex] = x[lower];
+
+        /*
+         * Dutch National Flag partitioning, the key a[k] is used
+         * as the sentinel, while the element a[k] is processed.
+         */
+        for (int k = upper; --k > lower; ) {
+            long ak = a[k];
+
+            if (ak == pivot) {
+                continue;
+            }
+            double xk = x[k];
+            a[k] = pivot;
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[k] = a[--upper]; x[k] = x[upper];
+                    a[upper] = a[lower]; x[upper] = x[lower];
+                } else {
+                    a[k] = a[lower]; x[k] = x[lower];
+                }
+                a[lower] = ak; x[lower] = xk;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[k] = a[--upper]; x[k] = x[upper];
+                a[upper] = ak; x[upper] = xk;
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a[low] = a[lower]; x[low] = x[lower];
+        a[lower] = pivot; x[lower] = payload;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using mixed
+     * insertion sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void mixedInsertionSort(long[] a, double[] x, int low, int high) {
+
+        /*
+         * Split part for pin and pair insertion sorts.
+         */
+        int end = high - 3 * ((high - low) >> 3 << 1);
+
+        /*
+         * Invoke simple insertion sort on small part.
+         */
+        if (end == high) {
+            for (int i; ++low < high; ) {
+                long ai = a[i = low];
+                double xi = x[i];
+
+                while (ai < a[i - 1]) {
+                    a[i] = a[i - 1];
+                    x[i] = x[--i];
+                }
+                a[i] = ai;
+                x[i] = xi;
+            }
+            return;
+        }
+
+        /*
+         * Start with pin insertion sort.
+         */
+        for (int i, p = high; ++low < end; ) {
+            long ai = a[i = low], pin = a[--p];
+            double xi = x[i];
+
+            /*
+             * Swap larger element with pin.
+             */
+            if (ai > pin) {
+                ai = pin;
+                a[p] = a[i];
+                xi = x[p];
+                x[p] = x[i];
+            }
+
+            /*
+             * Insert element into sorted part.
+             */
+            while (ai < a[i - 1]) {
+                a[i] = a[i - 1];
+                x[i] = x[--i];
+            }
+            a[i] = ai;
+            x[i] = xi;
+        }
+
+        /*
+         * Finish with pair insertion sort.
+         */
+        for (int i; low < high; ++low) {
+            long a1 = a[i = low], a2 = a[++low];
+            double x1 = x[i], x2 = x[low];
+
+            /*
+             * Insert two elements per iteration: at first, insert the
+             * larger element and then insert the smaller element, but
+             * from the position where the larger element was inserted.
+             */
+            if (a1 > a2) {
+
+                while (a1 < a[--i]) {
+                    a[i + 2] = a[i];
+                    x[i + 2] = x[i];
+                }
+                a[++i + 1] = a1;
+                x[i + 1] = x1;
+
+                while (a2 < a[--i]) {
+                    a[i + 1] = a[i];
+                    x[i + 1] = x[i];
+                }
+                a[i + 1] = a2;
+                x[i + 1] = x2;
+
+            } else if (a1 < a[i - 1]) {
+
+                while (a2 < a[--i]) {
+                    a[i + 2] = a[i];
+                    x[i + 2] = x[i];
+                }
+                a[++i + 1] = a2;
+                x[i + 1] = x2;
+
+                while (a1 < a[--i]) {
+                    a[i + 1] = a[i];
+                    x[i + 1] = x[i];
+                }
+                a[i + 1] = a1;
+                x[i + 1] = x1;
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using insertion
+     * sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(long[] a, double[] x, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            long ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                double xi = x[i];
+
+                do {
+                    a[i] = a[i - 1];
+                    x[i] = x[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+                x[i] = xi;
+            }
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array of keys using
+     * merging sort, applying the same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryMergingSort(PayloadSorter<double[]> sorter, long[] a, double[] x, int low, int high) {
+
+        /*
+         * The element run[i] holds the start index
+         * of i-th sequence in non-descending order.
+         */
+        int count = 1, capacity = 0;
+        int[] run = null;
+
+        /*
+         * Identify all possible runs.
+         */
+        for (int k = low + 1, last = low; k < high; ) {
+
+            /*
+             * Find the next run.
+             */
+            if (a[k - 1] < a[k]) {
+
+                // Identify ascending sequence
+                while (++k < high && a[k - 1] <= a[k]);
+
+            } else if (a[k - 1] > a[k]) {
+
+                // Identify descending sequence
+                while (++k < high && a[k - 1] >= a[k]);
+
+                // Reverse into ascending order
+                for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
+                    swap(a, x, i, j);
+                }
+
+                if (k < high && a[k - 1] < a[k]) {
+                    continue;
+                }
+
+            } else { // Identify constant sequence
+                for (long ak = a[k]; ++k < high && ak == a[k]; );
+
+                if (k < high) {
+                    continue;
+                }
+            }
+
+            /*
+             * Process the current run.
+             */
+            if (run == null) {
+
+                if (k == high) {
+
+                    /*
+                     * Array is monotonous sequence
+                     * and therefore already sorted.
+                     */
+                    return true;
+                }
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return false;
+                }
+                capacity = Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+                run = sorter == null ? Workspace.run(capacity) : new int[capacity];
+                run[0] = low;
+
+            } else if (a[last - 1] > a[last]) { // Start the new run
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return false;
+                }
+
+                if (++count == capacity) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return false;
+                }
+            }
+
+            /*
+             * Save the current run.
+             */
+            run[count] = (last = k);
+
+            /*
+             * Check single-element run at the end.
+             */
+            if (++k == high) {
+                --k;
+            }
+        }
+
+        /*
+         * Merge all runs.
+         */
+        if (count > 1) {
+            long[] b; double[] y; int offset = low;
+
+            if (sorter != null && (b = sorter.b) != null) {
+                y = sorter.y;
+                offset = sorter.offset;
+            } else if (sorter == null
+                    ? (b = Workspace.buffer(0, long[].class, high - low)) == null
+                        || (y = Workspace.buffer(1, double[].class, high - low)) == null
+                    : (b = tryAllocate(long[].class, high - low)) == null
+                        || (y = tryAllocate(double[].class, high - low)) == null) {
+                return false;
+            }
+            mergeRuns(sorter, a, x, b, y, offset, true, run, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * Merges the specified runs of the keys and the payloads.
+     *
+     * @param sorter parallel context
+     * @param a the source array of keys
+     * @param x the source payload array
+     * @param b the temporary buffer of keys used in merging
+     * @param y the temporary buffer of payloads used in merging
+     * @param offset the start index in the source, inclusive
+     * @param aim specifies merging: to source (true) or buffer (false)
+     * @param run the start indexes of the runs, inclusive
+     * @param lo the start index of the first run, inclusive
+     * @param hi the start index of the last run, inclusive
+     */
+    private static void mergeRuns(PayloadSorter<double[]> sorter, long[] a, double[] x,
+            long[] b, double[] y, int offset, boolean aim, int[] run, int lo, int hi) {
+
+        if (hi - lo == 1) {
+            if (!aim) {
+                System.arraycopy(a, run[lo], b, run[lo] - offset, run[hi] - run[lo]);
+                System.arraycopy(x, run[lo], y, run[lo] - offset, run[hi] - run[lo]);
+            }
+            return;
+        }
+
+        /*
+         * Split the array into two approximately equal parts.
+         */
+        int mi = lo, rmi = (run[lo] + run[hi]) >>> 1;
+        while (run[++mi + 1] <= rmi);
+
+        /*
+         * Merge the runs of all parts.
+         */
+        mergeRuns(sorter, a, x, b, y, offset, !aim, run, lo, mi);
+        mergeRuns(sorter, a, x, b, y, offset, !aim, run, mi, hi);
+
+        int k  = !aim ? run[lo] - offset : run[lo];
+        int lo1 = aim ? run[lo] - offset : run[lo];
+        int hi1 = aim ? run[mi] - offset : run[mi];
+        int lo2 = aim ? run[mi] - offset : run[mi];
+        int hi2 = aim ? run[hi] - offset : run[hi];
+
+        /*
+         * Merge the left and right parts.
+         */
+        if (hi1 - lo1 > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+            new PayloadMerger<>(null, aim ? a : b, aim ? x : y, k,
+                aim ? b : a, aim ? y : x, lo1, hi1, lo2, hi2).invoke();
+        } else {
+            mergeParts(null, aim ? a : b, aim ? x : y, k,
+                aim ? b : a, aim ? y : x, lo1, hi1, lo2, hi2);
+        }
+    }
+
+    /**
+     * Merges the sorted parts of the keys and the payloads.
+     *
+     * @param merger parallel context
+     * @param dst the destination of keys where parts are merged
+     * @param pdst the destination of payloads where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source of keys of both parts
+     * @param psrc the source of payloads of both parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param hi1 the end index of the first part, exclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @param hi2 the end index of the second part, exclusive
+     */
+    private static void mergeParts(PayloadMerger<double[]> merger, long[] dst, double[] pdst, int k,
+            long[] src, double[] psrc, int lo1, int hi1, int lo2, int hi2) {
+
+        /*
+         * Merge the parts in parallel.
+         */
+        if (merger != null) {
+
+            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+
+                /*
+                 * The first part must be larger.
+                 */
+                if (hi1 - lo1 < hi2 - lo2) {
+                    int lo = lo1; lo1 = lo2; lo2 = lo;
+                    int hi = hi1; hi1 = hi2; hi2 = hi;
+                }
+
+                /*
+                 * Find the median of the larger part.
+                 */
+                int mi1 = (lo1 + hi1) >>> 1;
+                long key = src[mi1];
+                int mi2 = hi2;
+
+                /*
+                 * Split the smaller part.
+                 */
+                for (int mid = lo2; mid < mi2; ) {
+                    int d = (mid + mi2) >>> 1;
+
+                    if (key > src[d]) {
+                        mid = d + 1;
+                    } else {
+                        mi2 = d;
+                    }
+                }
+
+                /*
+                 * Merge other parts in parallel.
+                 */
+                merger.fork(k, lo1, mi1, lo2, mi2);
+
+                /*
+                 * Reserve space for the second parts.
+                 */
+                k += mi2 - lo2 + mi1 - lo1;
+
+                /*
+                 * Iterate along the second parts.
+                 */
+                lo1 = mi1;
+                lo2 = mi2;
+            }
+        }
+
+        /*
+         * Merge small parts sequentially.
+         */
+        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+
+            if (src[hi1 - 1] < src[hi2 - 1]) {
+                while (lo1 < hi1) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            } else if (src[hi1 - 1] > src[hi2 - 1]) {
+                while (lo2 < hi2) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            } else {
+                while (lo1 < hi1 && lo2 < hi2) {
+                    long slo1 = src[lo1];
+
+                    if (slo1 <= src[lo2]) {
+                        pdst[k] = psrc[lo1];
+                        dst[k++] = src[lo1++];
+                    }
+                    if (slo1 >= src[lo2]) {
+                        pdst[k] = psrc[lo2];
+                        dst[k++] = src[lo2++];
+                    }
+                }
+            }
+        }
+
+        /*
+         * Copy the tail of the left part.
+         */
+        if (lo1 < hi1) {
+            System.arraycopy(src, lo1, dst, k, hi1 - lo1);
+            System.arraycopy(psrc, lo1, pdst, k, hi1 - lo1);
+        }
+
+        /*
+         * Copy the tail of the right part.
+         */
+        if (lo2 < hi2) {
+            System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+            System.arraycopy(psrc, lo2, pdst, k + hi1 - lo1, hi2 - lo2);
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array of keys using
+     * LSD (The Least Significant Digit) Radix sort, applying the
+     * same moves to the payload array.
+     *
+     * @param sorter parallel context
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryRadixSort(PayloadSorter<double[]> sorter, long[] a, double[] x, int low, int high) {
+        long[] b; double[] y; int offset = low, size = high - low;
+
+        /*
+         * Allocate additional buffers.
+         */
+        if (sorter != null && (b = sorter.b) != null) {
+            y = sorter.y;
+            offset = sorter.offset;
+        } else if ((b = tryAllocate(long[].class, size)) == null
+                || (y = tryAllocate(double[].class, size)) == null) {
+            return false;
+        }
+
+        /*
+         * Count the number of all digits.
+         */
+        int[][] count = new int[6][2048];
+
+        for (int i = low; i < high; ++i) {
+            ++count[0][(int)  (a[i]         & 0x3FF)];
+            ++count[1][(int) ((a[i] >>> 10) & 0x7FF)];
+            ++count[2][(int) ((a[i] >>> 21) & 0x7FF)];
+            ++count[3][(int) ((a[i] >>> 32) & 0x7FF)];
+            ++count[4][(int) ((a[i] >>> 43) & 0x7FF)];
+            ++count[5][(int) ((a[i] >>> 54) ^ 0x200)]; // Reverse the sign bit
+        }
+
+        /*
+         * Process the digits of 10, 11, 11, 11, 11 and 10 bits,
+         * moving the elements between the array and the buffer.
+         */
+        boolean toBuffer = true;
+
+        for (int d = 0, shift = 0; d < 6; shift += shift == 0 ? 10 : 11, ++d) {
+            int mask = d == 0 || d == 5 ? 0x3FF : 0x7FF;
+            int flip = d == 5 ? 0x200 : 0; // Reverse the sign bit
+            int[] c = count[d];
+
+            if (processDigit(c, size, low)) {
+                if (toBuffer) {
+                    for (int i = high; i > low; ) {
+                        int j = --c[(int) (a[--i] >>> shift) & mask ^ flip] - offset;
+                        b[j] = a[i];
+                        y[j] = x[i];
+                    }
+                } else {
+                    for (int i = high - offset; i > low - offset; ) {
+                        int j = --c[(int) (b[--i] >>> shift) & mask ^ flip];
+                        a[j] = b[i];
+                        x[j] = y[i];
+                    }
+                }
+                toBuffer = !toBuffer;
+            }
+        }
+
+        /*
+         * Copy the buffers to original arrays, if we process odd number of digits.
+         */
+        if (!toBuffer) {
+            System.arraycopy(b, low - offset, a, low, size);
+            System.arraycopy(y, low - offset, x, low, size);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the specified range of the array of keys using heap
+     * sort, applying the same moves to the payload array.
+     *
+     * @param a the array of keys to be sorted
+     * @param x the payload array
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void heapSort(long[] a, double[] x, int low, int high) {
+        for (int k = (low + high) >>> 1; k > low; ) {
+            --k;
+            pushDown(a, x, k, a[k], x[k], low, high);
+        }
+        while (--high > low) {
+            long max = a[low];
+            double payload = x[low];
+            pushDown(a, x, low, a[high], x[high], low, high);
+            a[high] = max;
+            x[high] = payload;
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given array of keys
+     * @param x the given payload array
+     * @param p the start index
+     * @param value the given key
+     * @param payload the payload of the given key
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDown(long[] a, double[] x, int p, long value, double payload, int low, int high) {
+        for (int k ;; p = k) {
+            k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a[k] < a[k - 1]) {
+                --k;
+            }
+            if (a[k] <= value) {
+                break;
+            }
+            a[p] = a[k];
+            x[p] = x[k];
+        }
+        a[p] = value;
+        x[p] = payload;
+    }
+
+// #[byte]
+
+    /**
+     * Sorts the specified range of the array using parallel
+     * counting sort or sequential sorting.<p>
+     *
+     * The range is divided into parts, each part computes its
+     * own histogram, and then all parts put their values on the
+     * final positions in parallel.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(byte[] a, int parallelism, int low, int high) {
+        int parts = Math.min(parallelism, (high - low) / MIN_COUNTING_PART_SIZE);
+
+        if (parts > 1) {
+            int[][] count = new int[parts][NUM_BYTE_VALUES];
+
+            new CountingSorter<>(null, a, count, false, low, high, 0, parts).invoke();
+
+            /*
+             * All elements are equal, if the values must not be put.
+             */
+            if (processDigit(count, high - low, low)) {
+                new CountingSorter<>(null, a, count, true, low, high, 0, parts).invoke();
+            }
+        } else {
+            sort(a, low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using
+     * counting sort or insertion sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(byte[] a, int low, int high) {
+        if (high - low > MIN_BYTE_COUNTING_SORT_SIZE) {
+            countingSort(a, low, high);
+        } else {
+            insertionSort(a, low, high);
+        }
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position,
+     * see the selection of several ranks.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(byte[] a, int rank, int low, int high) {
+        sort(a, low, high);
+    }
+
+    /**
+     * Places the elements of the given ranks at their sorted positions
+     * in the specified range of the array. The range is sorted, because
+     * counting sort takes linear time, and small ranges are sorted
+     * by insertion sort.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(byte[] a, int[] ranks, int low, int high) {
+        sort(a, low, high);
+    }
+
+    /**
+     * The number of distinct byte values.
+     */
+    private static final int NUM_BYTE_VALUES = 1 << 8;
+
+    /**
+     * Sorts the specified range of the array using counting sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void countingSort(byte[] a, int low, int high) {
+        int[] count = Workspace.count(5, NUM_BYTE_VALUES);
+
+        /*
+         * Compute the histogram.
+         */
+        for (int i = high; i > low; ++count[a[--i] & 0xFF]);
+
+        /*
+         * Put values on their final positions.
+         */
+        if (high - low > NUM_BYTE_VALUES) {
+            for (int i = Byte.MIN_VALUE; high > low; ) {
+                for (int k = count[--i & 0xFF]; k > 0; --k) {
+                    a[--high] = (byte) i;
+                }
+            }
+        } else {
+            for (int i = Byte.MIN_VALUE; high > low; ) {
+                while (count[--i & 0xFF] == 0);
+
+                int num = count[i & 0xFF];
+
+                do {
+                    a[--high] = (byte) i;
+                } while (--num > 0);
+            }
+        }
+    }
+
+    /**
+     * Computes the histogram of the part of the array.
+     *
+     * @param a the array
+     * @param count the count array of the part
+     * @param low the index of the first element, inclusive
+     * @param high the index of the last element, exclusive
+     */
+    private static void countValues(byte[] a, int[] count, int low, int high) {
+        for (int i = high; i > low; ++count[a[--i] - Byte.MIN_VALUE]);
+    }
+
+    /**
+     * Puts values of the part on their final positions.
+     *
+     * @param a the array
+     * @param count the end positions of the values of all parts
+     * @param part the index of the part
+     * @param low the index of the first element, inclusive
+     */
+    private static void fillValues(byte[] a, int[][] count, int part, int low) {
+        int[] prev = count[part > 0 ? part - 1 : count.length - 1];
+
+        for (int i = 0; i < NUM_BYTE_VALUES; ++i) {
+            int start = part > 0 ? prev[i] : i > 0 ? prev[i - 1] : low;
+
+            for (int k = count[part][i]; k > start; a[--k] = (byte) (i + Byte.MIN_VALUE));
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using insertion sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(byte[] a, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            byte ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                do {
+                    a[i] = a[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+            }
+        }
+    }
+
+// #[char]
+
+    /**
+     * Sorts the specified range of the array using parallel
+     * counting sort or sequential sorting.<p>
+     *
+     * The range is divided into parts, each part computes its
+     * own histogram, and then all parts put their values on the
+     * final positions in parallel.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(char[] a, int parallelism, int low, int high) {
+        int parts = Math.min(parallelism, (high - low) / MIN_COUNTING_PART_SIZE);
+
+        if (parts > 1) {
+            int[][] count = new int[parts][NUM_CHAR_VALUES];
+
+            new CountingSorter<>(null, a, count, false, low, high, 0, parts).invoke();
+
+            /*
+             * All elements are equal, if the values must not be put.
+             */
+            if (processDigit(count, high - low, low)) {
+                new CountingSorter<>(null, a, count, true, low, high, 0, parts).invoke();
+            }
+        } else {
+            sort(a, low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using
+     * counting sort or Dual-Pivot Quicksort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(char[] a, int low, int high) {
+        if (high - low > MIN_CHAR_COUNTING_SORT_SIZE) {
+            countingSort(a, low, high);
+        } else {
+            quickSort(a, 0, low, high);
+        }
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position,
+     * see the selection of several ranks.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(char[] a, int rank, int low, int high) {
+        sort(a, low, high);
+    }
+
+    /**
+     * Places the elements of the given ranks at their sorted positions
+     * in the specified range of the array. The range is sorted, because
+     * counting sort takes linear time, and small ranges are sorted
+     * by Dual-Pivot Quicksort.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(char[] a, int[] ranks, int low, int high) {
+        sort(a, low, high);
+    }
+
+    /**
+     * The number of distinct char values.
+     */
+    private static final int NUM_CHAR_VALUES = 1 << 16;
+
+    /**
+     * Sorts the specified range of the array using counting sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void countingSort(char[] a, int low, int high) {
+        int[] count = Workspace.count(6, NUM_CHAR_VALUES);
+
+        /*
+         * Compute the histogram.
+         */
+        for (int i = high; i > low; ++count[a[--i]]);
+
+        /*
+         * Put values on their final positions.
+         */
+        if (high - low > NUM_CHAR_VALUES) {
+            for (int i = NUM_CHAR_VALUES; i > 0; ) {
+//              for (low = high - count[--i]; high > low; ) { // todo
+//                  a[--high] = (char) i;
+//              }
+                for (low = high - count[--i]; high > low;
+                    a[--high] = (char) i
+                );
+            }
+        } else {
+            for (int i = NUM_CHAR_VALUES; high > low; ) {
+                while (count[--i] == 0);
+
+                int c = count[i]; // todo num
+
+                do {
+                    a[--high] = (char) i;
+                } while (--c > 0);
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     *
+     * @param a the array to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void quickSort(char[] a, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
+
+            /*
+             * Invoke insertion sort on small part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Switch to counting sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                countingSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            char a3 = a[e3];
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             *
+             *   1 ---------o---------------o-----------------
+             *              |               |
+             *   2 ---------|-------o-------o-------o---------
+             *              |       |               |
+             *   4 ---------o-------|-------o-------o---------
+             *                      |       |
+             *   5 -----------------o-------o-----------------
+             */
+            if (a[e1] > a[e4]) { char t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { char t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { char t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { char t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { char t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partitionWithTwoPivots(a, low, high, e1, e5);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                quickSort(a, bits | 1, lower + 1, upper);
+                quickSort(a, bits | 1, upper + 1, high);
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partitionWithOnePivot(a, low, high, e3, e3);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                quickSort(a, bits | 1, upper, high);
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Partitions the specified range of the array using two given pivots.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            char[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        final char pivot1 = a[pivotIndex1]; // todo final
+        final char pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+        a[pivotIndex2] = a[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning
+         *
+         *     left part                     central part          right part
+         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
+         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
+         * +--------------+----------+--------------------------+--------------+
+         *               ^          ^                            ^
+         *               |          |                            |
+         *             lower        k                          upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            char ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper];
+                    a[upper] = a[lower];
+                } else {
+                    a[k] = a[lower];
+                }
+                a[lower] = ak;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                a[k] = a[--upper];
+                a[upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; a[lower] = pivot1;
+        a[high] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array using one given pivot.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of single pivot
+     * @param pivotIndex2 the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithOnePivot(
+            char[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = high;
+        int lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
+         */
+        final char pivot = a[pivotIndex1];
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+
+        /*
+         * Dutch National Flag partitioning
+         *
+         *     left part               central part    right part
+         * +------------------------------------------------------+ // todo ---+----
+         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
+         * +------------------------------------------------------+
+         *               ^          ^                ^
+         *               |          |                |
+         *             lower        k              upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int k = upper; --k > lower; ) {
+            char ak = a[k];
+
+            if (ak == pivot) {
+                continue;
+            }
+            a[k] = pivot;
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[--upper] = a[lower];
+                }
+                a[lower] = ak;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[--upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a[low] = a[lower]; a[lower] = pivot;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Computes the histogram of the part of the array.
+     *
+     * @param a the array
+     * @param count the count array of the part
+     * @param low the index of the first element, inclusive
+     * @param high the index of the last element, exclusive
+     */
+    private static void countValues(char[] a, int[] count, int low, int high) {
+        for (int i = high; i > low; ++count[a[--i]]);
+    }
+
+    /**
+     * Puts values of the part on their final positions.
+     *
+     * @param a the array
+     * @param count the end positions of the values of all parts
+     * @param part the index of the part
+     * @param low the index of the first element, inclusive
+     */
+    private static void fillValues(char[] a, int[][] count, int part, int low) {
+        int[] prev = count[part > 0 ? part - 1 : count.length - 1];
+
+        for (int i = 0; i < NUM_CHAR_VALUES; ++i) {
+            int start = part > 0 ? prev[i] : i > 0 ? prev[i - 1] : low;
+
+            for (int k = count[part][i]; k > start; a[--k] = (char) i);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using insertion sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(char[] a, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            char ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                do {
+                    a[i] = a[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+            }
+        }
+    }
+
+// #[short]
+
+    /**
+     * Sorts the specified range of the array using parallel
+     * counting sort or sequential sorting.<p>
+     *
+     * The range is divided into parts, each part computes its
+     * own histogram, and then all parts put their values on the
+     * final positions in parallel.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(short[] a, int parallelism, int low, int high) {
+        int parts = Math.min(parallelism, (high - low) / MIN_COUNTING_PART_SIZE);
+
+        if (parts > 1) {
+            int[][] count = new int[parts][NUM_SHORT_VALUES];
+
+            new CountingSorter<>(null, a, count, false, low, high, 0, parts).invoke();
+
+            /*
+             * All elements are equal, if the values must not be put.
+             */
+            if (processDigit(count, high - low, low)) {
+                new CountingSorter<>(null, a, count, true, low, high, 0, parts).invoke();
+            }
+        } else {
+            sort(a, low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using
+     * counting sort or Dual-Pivot Quicksort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(short[] a, int low, int high) {
+        if (high - low > MIN_SHORT_COUNTING_SORT_SIZE) {
+            countingSort(a, low, high);
+        } else {
+            quickSort(a, 0, low, high);
+        }
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position,
+     * see the selection of several ranks.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(short[] a, int rank, int low, int high) {
+        sort(a, low, high);
+    }
+
+    /**
+     * Places the elements of the given ranks at their sorted positions
+     * in the specified range of the array. The range is sorted, because
+     * counting sort takes linear time, and small ranges are sorted
+     * by Dual-Pivot Quicksort.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(short[] a, int[] ranks, int low, int high) {
+        sort(a, low, high);
+    }
+
+    /**
+     * The number of distinct short values.
+     */
+    private static final int NUM_SHORT_VALUES = 1 << 16;
+
+    /**
+     * Sorts the specified range of the array using counting sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void countingSort(short[] a, int low, int high) {
+        int[] count = Workspace.count(6, NUM_SHORT_VALUES);
+
+        /*
+         * Compute the histogram.
+         */
+        for (int i = high; i > low; ++count[a[--i] & 0xFFFF]);
+
+        /*
+         * Place values on their final positions.
+         */
+  
+        if (high - low > NUM_SHORT_VALUES) {
+            for (int i = Short.MIN_VALUE; high > low; ) {
+                for (int k = count[--i & 0xFFFF]; k > 0; --k) {
+                    a[--high] = (short) i;
+                }
+            }
+        } else {
+            for (int i = Short.MIN_VALUE; high > low; ) {
+                while (count[--i & 0xFFFF] == 0);
+
+                int num = count[i & 0xFFFF];
+
+                do {
+                    a[--high] = (short) i;
+                } while (--num > 0);
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     *
+     * @param a the array to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void quickSort(short[] a, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
+
+            /*
+             * Invoke insertion sort on small part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Switch to counting sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                countingSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            short a3 = a[e3];
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             *
+             *   1 ---------o---------------o-----------------
+             *              |               |
+             *   2 ---------|-------o-------o-------o---------
+             *              |       |               |
+             *   4 ---------o-------|-------o-------o---------
+             *                      |       |
+             *   5 -----------------o-------o-----------------
+             */
+            if (a[e1] > a[e4]) { short t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { short t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { short t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { short t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { short t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partitionWithTwoPivots(a, low, high, e1, e5);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                quickSort(a, bits | 1, lower + 1, upper);
+                quickSort(a, bits | 1, upper + 1, high);
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partitionWithOnePivot(a, low, high, e3, e3);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                quickSort(a, bits | 1, upper, high);
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Partitions the specified range of the array using two given pivots.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            short[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        final short pivot1 = a[pivotIndex1]; // todo final
+        final short pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+        a[pivotIndex2] = a[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning
+         *
+         *     left part                     central part          right part
+         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
+         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
+         * +--------------+----------+--------------------------+--------------+
+         *               ^          ^                            ^
+         *               |          |                            |
+         *             lower        k                          upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            short ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper];
+                    a[upper] = a[lower];
+                } else {
+                    a[k] = a[lower];
+                }
+                a[lower] = ak;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                a[k] = a[--upper];
+                a[upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; a[lower] = pivot1;
+        a[high] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array using one given pivot.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of single pivot
+     * @param pivotIndex2 the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithOnePivot(
+            short[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = high;
+        int lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
+         */
+        final short pivot = a[pivotIndex1];
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+
+        /*
+         * Dutch National Flag partitioning
+         *
+         *     left part               central part    right part
+         * +------------------------------------------------------+ // todo ---+----
+         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
+         * +------------------------------------------------------+
+         *               ^          ^                ^
+         *               |          |                |
+         *             lower        k              upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int k = upper; --k > lower; ) {
+            short ak = a[k];
+
+            if (ak == pivot) {
+                continue;
+            }
+            a[k] = pivot;
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[--upper] = a[lower];
+                }
+                a[lower] = ak;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[--upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a[low] = a[lower]; a[lower] = pivot;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Computes the histogram of the part of the array.
+     *
+     * @param a the array
+     * @param count the count array of the part
+     * @param low the index of the first element, inclusive
+     * @param high the index of the last element, exclusive
+     */
+    private static void countValues(short[] a, int[] count, int low, int high) {
+        for (int i = high; i > low; ++count[a[--i] - Short.MIN_VALUE]);
+    }
+
+    /**
+     * Puts values of the part on their final positions.
+     *
+     * @param a the array
+     * @param count the end positions of the values of all parts
+     * @param part the index of the part
+     * @param low the index of the first element, inclusive
+     */
+    private static void fillValues(short[] a, int[][] count, int part, int low) {
+        int[] prev = count[part > 0 ? part - 1 : count.length - 1];
+
+        for (int i = 0; i < NUM_SHORT_VALUES; ++i) {
+            int start = part > 0 ? prev[i] : i > 0 ? prev[i - 1] : low;
+
+            for (int k = count[part][i]; k > start; a[--k] = (short) (i + Short.MIN_VALUE));
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using insertion sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(short[] a, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            short ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                do {
+                    a[i] = a[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+            }
+        }
+    }
+
+// #[float]
+
+    /**
+     * The number of distinct short values. // todo
+     todo: double
+     */
+    private static final int FLOAT_NEGATIVE_ZERO = Float.floatToRawIntBits(-0.0f);
+
+    /**
+     * Sorts the specified range of the array using parallel merge
+     * sort and/or Dual-Pivot Quicksort.<p>
+     *
+     * To balance the faster splitting and parallelism of merge sort
+     * with the faster element partitioning of Quicksort, ranges are
+     * subdivided in tiers such that, if there is enough parallelism,
+     * the four-way parallel merge is started, still ensuring enough
+     * parallelism to process the partitions.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(float[] a, int parallelism, int low, int high) {
+        sort(a, parallelism, null, low, high);
+    }
+
+    /**
+     * Sorts the specified range of the array, so that additional
+     * buffer doesn't exceed the given budget.<p>
+     *
+     * If the budget is less than the size of the range, but not less
+     * than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel sorting
+     * uses the largest buffer within the budget to sort blocks, which
+     * are then merged in place. Otherwise the range is sorted without
+     * additional buffer.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param budget the max size of additional buffer in bytes
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(float[] a, int parallelism, long budget, int low, int high) {
+        int size = high - low;
+        int length = (int) Math.max(0, Math.min(budget >> 2, size));
+
+        if (length == size) {
+            sort(a, parallelism, null, low, high);
+        } else {
+            float[] b = parallelism > 1 && size > MIN_PARALLEL_SORT_SIZE
+                && (long) length * MAX_BOUNDED_BLOCK_COUNT >= size
+                    ? tryAllocate(float[].class, length) : null;
+
+            sort(a, parallelism, b != null ? b : new float[0], low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using the given
+     * workspace as additional buffer.<p>
+     *
+     * If the workspace is supplied, no buffer is allocated during
+     * sorting. If the workspace is shorter than the range, but not
+     * shorter than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel
+     * sorting sorts the blocks, which fit the workspace, and merges
+     * them in place. Otherwise the range is sorted without additional
+     * buffer: runs are not merged, and neither Radix sort nor parallel
+     * merge sort is used.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param workspace the additional buffer of at least {@code high - low}
+     *        elements, or {@code null} to allocate the buffer, if required
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(float[] a, int parallelism, float[] workspace, int low, int high) {
+        /*
+         * Phase 1. Count the number of negative zero -0.0f,
+         * turn them into positive zero, and move all NaNs
+         * to the end of the array.
+         */
+        long count = parallelism > 1 && high - low > MIN_PROCESS_PART_SIZE << 1
+            ? parallelMoveNaNs(a, parallelism, low, high) : moveNaNs(a, low, high);
+
+        int numNegativeZero = (int) (count >>> 32);
+        high = (int) count;
+
+        /*
+         * Phase 2. Sort everything except NaNs,
+         * which are already in place.
+         */
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            float[] b = workspace != null ? workspace : tryAllocateBounded(float[].class, high - low);
+
+            if (b != null && b.length < high - low
+                    && (long) b.length * MAX_BOUNDED_BLOCK_COUNT >= high - low) {
+                boundedSort(a, parallelism, b, low, high);
+            } else {
+                new Sorter<>(a, b, workspace == null, parallelism, low, high - low).invoke();
+            }
+        } else if (workspace == null) {
+            sort(null, a, 0, low, high);
+        } else {
+            Workspace.lend(workspace, workspace.length);
+
+            try {
+                sort(null, a, 0, low, high);
+            } finally {
+                Workspace.lend(null, 0);
+            }
+        }
+
+        /*
+         * Phase 3. Turn positive zero 0.0f
+         * back into negative zero -0.0f.
+         */
+        if (++numNegativeZero == 1) {
+            return;
+        }
+
+        /*
+         * Find the position one less than
+         * the index of the first zero.
+         */
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (a[middle] < 0.0f) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        /*
+         * Replace the required number of 0.0f by -0.0f.
+         */
+        process(parallelism, high + 1, high + numNegativeZero,
+            (lo, hi) -> Arrays.fill(a, lo, hi, -0.0f));
+    }
+
+    /**
+     * Counts the number of negative zero -0.0f in the specified
+     * range of the array, turns them into positive zero, and moves
+     * all NaNs to the end of the range.
+     *
+     * @param a the array to be processed
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @return the number of negative zeros in the high half
+     *         and the index of the first NaN in the low half
+     */
+    private static long moveNaNs(float[] a, int low, int high) {
+        int numNegativeZero = 0;
+
+        for (int k = high; k > low; ) {
+            float ak = a[--k];
+
+            if (Float.floatToRawIntBits(ak) == FLOAT_NEGATIVE_ZERO) { // ak is -0.0f
+                numNegativeZero++;
+                a[k] = 0.0f;
+            } else if (ak != ak) { // ak is NaN
+                a[k] = a[--high];
+                a[high] = ak;
+            }
+        }
+        return (long) numNegativeZero << 32 | high;
+    }
+
+    /**
+     * Counts the number of negative zero -0.0f in the specified
+     * range of the array, turns them into positive zero, and moves
+     * all NaNs to the end of the range in parallel.<p>
+     *
+     * Each part moves its NaNs to its own end, and then the NaNs
+     * before the final index of the first NaN are exchanged with
+     * the elements after it, so that only the misplaced elements
+     * are moved sequentially.
+     *
+     * @param a the array to be processed
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @return the number of negative zeros in the high half
+     *         and the index of the first NaN in the low half
+     */
+    private static long parallelMoveNaNs(float[] a, int parallelism, int low, int high) {
+        long[] count = new long[Math.min((high - low) / MIN_PROCESS_PART_SIZE, parallelism << 2)];
+        int step = (high - low) / count.length;
+
+        /*
+         * Process the parts in parallel.
+         */
+        new Processor(null, (lo, hi) -> {
+            for (int i = (int) lo; i < hi; ++i) {
+                count[i] = moveNaNs(a, low + i * step, i == count.length - 1 ? high : low + (i + 1) * step);
+            }
+        }, 1, 0, count.length).invoke();
+
+        /*
+         * Find the final index of the first NaN.
+         */
+        int numNegativeZero = 0, end = high;
+
+        for (int i = 0; i < count.length; ++i) {
+            numNegativeZero += (int) (count[i] >>> 32);
+            end -= (i == count.length - 1 ? high : low + (i + 1) * step) - (int) count[i];
+        }
+
+        /*
+         * Exchange the NaNs before the end with the elements
+         * after it, taken from the last parts first.
+         */
+        for (int i = 0, j = count.length - 1, last = (int) count[j]; i < j; ++i) {
+            for (int k = (int) count[i], hi = Math.min(low + (i + 1) * step, end); k < hi; ++k) {
+                while (last <= Math.max(low + j * step, end)) {
+                    last = (int) count[--j];
+                }
+                float ak = a[k];
+                a[k] = a[--last];
+                a[last] = ak;
+            }
+        }
+        return (long) numNegativeZero << 32 | end;
+    }
+
+    /**
+     * Returns the indices of the elements from the specified range
+     * of the array, arranged in the order of {@link Float#compare},
+     * the array itself is not modified. Indices of equal elements
+     * are in ascending order.<p>
+     *
+     * The bits of each element are mapped to int value, preserving
+     * the order, and packed with the index into a long value, so
+     * that the indices are moved together with the keys by parallel
+     * merge sort, Radix sort and/or Dual-Pivot Quicksort.
+     *
+     * @param a the array of the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return the indices of the elements in sorted order
+     */
+    static int[] indexSort(float[] a, int parallelism, int low, int high) {
+        long[] p = new long[high - low];
+
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                int bits = Float.floatToIntBits(a[i]);
+                p[i - low] = (long) (bits ^ (bits >> 31 & 0x7FFFFFFF)) << 32 | i;
+            }
+        });
+        sort(p, parallelism, 0, p.length);
+        return unpackIndices(p, parallelism, 0);
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position,
+     * see the selection of several ranks.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(float[] a, int rank, int low, int high) {
+        select(a, new int[] { rank }, low, high);
+    }
+
+    /**
+     * Places the elements of the given ranks at their sorted positions
+     * in the specified range of the array in the order of {@link Float#compare},
+     * so that all elements before each of them are less than or equal
+     * to it, and all elements after it are greater than or equal to it.<p>
+     *
+     * The ranks are selected by the same partitioning as sorting,
+     * which recurses only into the parts with the ranks. If the
+     * recursion is too deep, the ranks are selected using the
+     * median of medians in linear worst-case time.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(float[] a, int[] ranks, int low, int high) {
+        /*
+         * Phase 1. Count the number of negative zero -0.0f,
+         * turn them into positive zero, and move all NaNs
+         * to the end of the array.
+         */
+        long count = moveNaNs(a, low, high);
+        int numNegativeZero = (int) (count >>> 32);
+        high = (int) count;
+
+        /*
+         * Phase 2. Select the ranks before NaNs,
+         * which are already in place.
+         */
+        select(a, ranks, 0, rankIndex(ranks, 0, ranks.length, high), 0, low, high);
+
+        /*
+         * Phase 3. Turn the first positive zeros 0.0f back
+         * into negative zero -0.0f. The selected elements
+         * stay in place, because zeros are separated from
+         * other elements by the same selected elements.
+         */
+        for (int i = low; numNegativeZero > 0; ++i) {
+            if (a[i] == 0.0f) {
+                a[i] = -0.0f;
+                numNegativeZero--;
+            }
+        }
+    }
+
+    /**
+     * Selects the elements of the given ranks from the specified
+     * range of the array using Dual-Pivot Quicksort partitioning.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param from the index of the first rank, inclusive, to be selected
+     * @param to the index of the last rank, exclusive, to be selected
+     * @param bits the recursion depth
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    private static void select(float[] a, int[] ranks, int from, int to, int bits, int low, int high) {
+        while (from < to) {
+            int size = high - low;
+
+            /*
+             * Invoke insertion sort on small part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Switch to the median of medians, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                for (; from < to; low = ranks[from++]) {
+                    medianSelect(a, ranks[from], low, high);
+                }
+                return;
+            }
+
+            /*
+             * Use the same five sample elements
+             * to determine pivots as sorting.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            float a3 = a[e3];
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { float t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { float t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { float t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { float t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { float t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Select the ranks of the left and central parts
+                 * recursively, excluding known pivots, and iterate
+                 * along the right part.
+                 */
+                int r1 = rankIndex(ranks, from, to, lower);
+                int r2 = rankIndex(ranks, r1, to, lower + 1);
+                int r3 = rankIndex(ranks, r2, to, upper);
+
+                select(a, ranks, from, r1, bits, low, lower);
+                select(a, ranks, r2, r3, bits, lower + 1, upper);
+
+                from = rankIndex(ranks, r3, to, upper + 1);
+                low = upper + 1;
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Select the ranks of the left part recursively and
+                 * iterate along the right part. All elements from
+                 * the central part are equal and therefore selected.
+                 */
+                int r1 = rankIndex(ranks, from, to, lower);
+
+                select(a, ranks, from, r1, bits, low, lower);
+
+                from = rankIndex(ranks, r1, to, upper);
+                low = upper;
+            }
+        }
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position in the
+     * specified range of the array in linear worst-case time, using the
+     * median of medians of five elements as the pivot.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    private static void medianSelect(float[] a, int rank, int low, int high) {
+        while (high - low >= MAX_INSERTION_SORT_SIZE) {
+            /*
+             * Move the medians of the groups of five
+             * elements to the beginning of the range.
+             */
+            int m = low;
+
+            for (int i = low; i + 5 <= high; i += 5, ++m) {
+                insertionSort(a, i, i + 5);
+                float t = a[m]; a[m] = a[i + 2]; a[i + 2] = t;
+            }
+
+            /*
+             * Partition the range around the median of medians.
+             */
+            int middle = (low + m) >>> 1;
+            medianSelect(a, middle, low, m);
+            int[] indices = partitionWithOnePivot(a, low, high, middle, middle);
+
+            if (rank < indices[0]) {
+                high = indices[0];
+            } else if (rank >= indices[1]) {
+                low = indices[1];
+            } else {
+                return;
+            }
+        }
+        insertionSort(a, low, high);
+    }
+
+    /**
+     * Sorts the first k positions of the specified range of the array:
+     * the k least elements are moved to the beginning of the range in
+     * the order of {@link Float#compare}, and the other elements follow
+     * them in unspecified order.<p>
+     *
+     * Only the parts after partitioning, which overlap the first k
+     * positions, are processed, therefore the expected running time
+     * is O(n + k log(k)).
+     *
+     * @param a the array to be partially sorted
+     * @param parallelism the parallelism level
+     * @param k the number of the least elements to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void partialSort(float[] a, int parallelism, int k, int low, int high) {
+        if (k >= high - low) {
+            sort(a, parallelism, low, high);
+            return;
+        }
+        int limit = low + Math.max(k, 0);
+
+        /*
+         * Phase 1. Count the number of negative zero -0.0f,
+         * turn them into positive zero, and move all NaNs
+         * to the end of the array.
+         */
+        long count = parallelism > 1 && high - low > MIN_PROCESS_PART_SIZE << 1
+            ? parallelMoveNaNs(a, parallelism, low, high) : moveNaNs(a, low, high);
+
+        int numNegativeZero = (int) (count >>> 32);
+        high = (int) count;
+
+        /*
+         * Phase 2. Sort the first positions before NaNs,
+         * which are already in place.
+         */
+        limit = Math.min(limit, high);
+
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            new Sorter<>(a, null, false, parallelism, low, high - low, limit).invoke();
+        } else {
+            partialSort(null, a, limit, low, high);
+        }
+
+        /*
+         * Phase 3. Turn positive zero 0.0f back into negative
+         * zero -0.0f, the sorted positions first.
+         */
+        if (numNegativeZero == 0) {
+            return;
+        }
+
+        /*
+         * Find the index of the first zero in the sorted positions.
+         */
+        int lo = low;
+
+        for (int hi = limit - 1; lo <= hi; ) {
+            int middle = (lo + hi) >>> 1;
+
+            if (a[middle] < 0.0f) {
+                lo = middle + 1;
+            } else {
+                hi = middle - 1;
+            }
+        }
+
+        /*
+         * Replace the required number of 0.0f by -0.0f,
+         * which remain in unspecified order after the limit.
+         */
+        for (int i = lo; i < limit && numNegativeZero > 0 && a[i] == 0.0f; ++i) {
+            a[i] = -0.0f;
+            numNegativeZero--;
+        }
+        for (int i = limit; numNegativeZero > 0; ++i) {
+            if (a[i] == 0.0f) {
+                a[i] = -0.0f;
+                numNegativeZero--;
+            }
+        }
+    }
+
+    /**
+     * Sorts the leading part of the specified range of the array up to
+     * the given limit using Dual-Pivot Quicksort. The parts, which are
+     * before the limit, are sorted completely (possibly in parallel),
+     * the part with the limit is partitioned again, and the parts
+     * after the limit are skipped.
+     *
+     * @param sorter parallel context
+     * @param a the array to be partially sorted
+     * @param limit the index of the last element, exclusive, to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void partialSort(Sorter<float[]> sorter, float[] a, int limit, int low, int high) {
+        for (int bits = 0; limit > low; ) {
+            int size = high - low;
+
+            /*
+             * Sort the part completely, if it is before
+             * the limit, or it is small.
+             */
+            if (high <= limit || size < MAX_INSERTION_SORT_SIZE) {
+                sort(sorter, a, bits, low, high);
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Use the same five sample elements
+             * to determine pivots as sorting.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            float a3 = a[e3];
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { float t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { float t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { float t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { float t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { float t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
+                }
+
+                /*
+                 * Sort the left part and the central part, if it is
+                 * before the limit, (possibly in parallel), excluding
+                 * known pivots, and iterate along the part with the limit.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits, low, lower);
+
+                    if (limit > upper) {
+                        sorter.fork(bits | 1, lower + 1, upper);
+                    }
+                } else {
+                    sort(sorter, a, bits, low, lower);
+
+                    if (limit > upper) {
+                        sort(sorter, a, bits | 1, lower + 1, upper);
+                    }
+                }
+                low = limit > upper ? upper + 1 : lower + 1;
+                high = limit > upper ? high : upper;
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
+                }
+
+                /*
+                 * Sort the left part (possibly in parallel) and iterate
+                 * along the right part, if it overlaps the limit. All
+                 * elements from the central part are equal and
+                 * therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits, low, lower);
+                } else {
+                    sort(sorter, a, bits, low, lower);
+                }
+                low = upper;
+            }
+            bits |= 1;
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(Sorter<float[]> sorter, float[] a, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
+
+            /*
+             * Run adaptive mixed insertion sort on small non-leftmost parts.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
+                sort(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
+                return;
+            }
+
+            /*
+             * Invoke insertion sort on small leftmost part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                sort(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                        low, high, DualPivotQuicksort_r38_12::insertionSort);
+                return;
+            }
+
+            /*
+             * Try merging sort on large part.
+             */
+            if (size > MIN_MERGING_SORT_SIZE * bits
+                    && tryMergingSort(sorter, a, low, high)) {
+                return;
+            }
+
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            float a3 = a[e3];
+
+            /*
+             * Check if part is large and contains random
+             * data, taking into account parallel context.
+             */
+            boolean isLargeRandom =
+                size > MIN_FLOAT_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
+//              size > MIN_FLOAT_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
+                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             *
+             *   1 ---------o---------------o-----------------
+             *              |               |
+             *   2 ---------|-------o-------o-------o---------
+             *              |       |               |
+             *   4 ---------o-------|-------o-------o---------
+             *                      |       |
+             *   5 -----------------o-------o-----------------
+             */
+            if (a[e1] > a[e4]) { float t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { float t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { float t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { float t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { float t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * Try Radix sort on large random data,
+             * if the sampled cost model prefers it.
+             */
+            if (isLargeRandom
+                    && a[e2] < a[e3] && a[e3] < a[e4]
+                    && preferRadixSort(a, low, high)
+                    && tryRadixSort(sorter, a, low, high)) {
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, low, high);
+                return;
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, lower + 1, upper);
+                    sorter.fork(bits | 1, upper + 1, high);
+                } else {
+                    sort(sorter, a, bits | 1, lower + 1, upper);
+                    sort(sorter, a, bits | 1, upper + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(float.class, a, Unsafe.ARRAY_FLOAT_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, upper, high);
+                } else {
+                    sort(sorter, a, bits | 1, upper, high);
+                }
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Partitions the specified range of the array using two given pivots.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            float[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        final float pivot1 = a[pivotIndex1]; // todo final
+        final float pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+        a[pivotIndex2] = a[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning
+         *
+         *     left part                     central part          right part
+         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
+         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
+         * +--------------+----------+--------------------------+--------------+
+         *               ^          ^                            ^
+         *               |          |                            |
+         *             lower        k                          upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            float ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper];
+                    a[upper] = a[lower];
+                } else {
+                    a[k] = a[lower];
+                }
+                a[lower] = ak;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                a[k] = a[--upper];
+                a[upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; a[lower] = pivot1;
+        a[high] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array using two given
+     * pivots by two passes of branch-free block partitioning: at
+     * first by pivot1 and then the rest of the range by pivot2.<p>
+     *
+     * The parts are the same as after partitioning with two pivots,
+     * but the elements are classified by blocks without branches,
+     * therefore mispredictions on random data are avoided.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithBlocks(
+            float[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        int end = --high;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. Note, that pivot1 < pivot2.
+         */
+        float pivot1 = a[pivotIndex1];
+        float pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots.
+         */
+        a[pivotIndex1] = a[low];
+        a[pivotIndex2] = a[end];
+
+        /*
+         * Split the range by pivot1, and then by pivot2
+         * using the nearest greater value as the bound.
+         */
+        int lower = partitionByBlocks(a, low + 1, end, pivot1) - 1;
+        int upper = pivot2 == Float.POSITIVE_INFINITY ? end :
+            partitionByBlocks(a, lower + 1, end, Math.nextUp(pivot2));
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low] = a[lower]; a[lower] = pivot1;
+        a[end] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array, so that
+     * the elements less than the bound precede other elements,
+     * using branch-free classification of blocks of elements.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param bound the value to compare the elements with
+     * @return the index of the first element, which is not less than the bound
+     */
+    private static int partitionByBlocks(float[] a, int low, int high, float bound) {
+        long maskL = 0L, maskR = 0L;
+
+        /*
+         * Process the blocks from both sides, while they don't overlap.
+         */
+        while (high - low >= PARTITION_BLOCK_SIZE << 1) {
+
+            /*
+             * Mark the elements, which are not less
+             * than the bound, in the left block.
+             */
+            if (maskL == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskL |= (a[low + i] < bound ? 0L : 1L) << i;
+                }
+            }
+
+            /*
+             * Mark the elements, which are less
+             * than the bound, in the right block.
+             */
+            if (maskR == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskR |= (a[high - 1 - i] < bound ? 1L : 0L) << i;
+                }
+            }
+
+            /*
+             * Swap the misplaced elements of the blocks
+             * and clear their marks.
+             */
+            while (maskL != 0L && maskR != 0L) {
+                int i = low + Long.numberOfTrailingZeros(maskL);
+                int j = high - 1 - Long.numberOfTrailingZeros(maskR);
+                float ai = a[i]; a[i] = a[j]; a[j] = ai;
+                maskL &= maskL - 1;
+                maskR &= maskR - 1;
+            }
+
+            /*
+             * Move to the next blocks, if done.
+             */
+            if (maskL == 0L) {
+                low += PARTITION_BLOCK_SIZE;
+            }
+            if (maskR == 0L) {
+                high -= PARTITION_BLOCK_SIZE;
+            }
+        }
+
+        /*
+         * Partition the rest of the range, including
+         * the unfinished block, by simple scanning.
+         */
+        while (true) {
+            while (low < high && a[low] < bound) {
+                ++low;
+            }
+            while (low < high && a[high - 1] >= bound) {
+                --high;
+            }
+            if (low == high) {
+                return low;
+            }
+            float al = a[low]; a[low++] = a[--high]; a[high] = al;
+        }
+    }
+
+    /**
+     * Partitions the specified range of the array using one given pivot.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of single pivot
+     * @param pivotIndex2 the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithOnePivot(
+            float[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = high;
+        int lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
+         */
+        final float pivot = a[pivotIndex1];
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+
+        /*
+         * Dutch National Flag partitioning
+         *
+         *     left part               central part    right part
+         * +------------------------------------------------------+ // todo ---+----
+         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
+         * +------------------------------------------------------+
+         *               ^          ^                ^
+         *               |          |                |
+         *             lower        k              upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int k = upper; --k > lower; ) {
+            float ak = a[k];
+
+            if (ak == pivot) {
+                continue;
+            }
+            a[k] = pivot;
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[--upper] = a[lower];
+                }
+                a[lower] = ak;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[--upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a[low] = a[lower]; a[lower] = pivot;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Sorts the specified range of the array using mixed insertion sort.<p>
+     *
+     * Mixed insertion sort is combination of pin insertion sort,
+     * simple insertion sort and pair insertion sort.<p>
+     *
+     * In the context of Dual-Pivot Quicksort, the pivot element
+     * from the left part plays the role of sentinel, because it
+     * is less than any elements from the given part. Therefore,
+     * expensive check of the left range can be skipped on each
+     * iteration unless it is the leftmost call.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void mixedInsertionSort(float[] a, int low, int high) {
+
+        /*
+         * Split part for pin and pair insertion sorts.
+         */
+        int end = high - 3 * ((high - low) >> 3 << 1);
+
+        /*
+         * Invoke simple insertion sort on small part.
+         */
+        if (end == high) {
+            for (int i; ++low < high; ) {
+                float ai = a[i = low];
+
+                while (ai < a[i - 1]) {
+                    a[i] = a[--i];
+                }
+                a[i] = ai;
+            }
+            return;
+        }
+
+        /*
+         * Start with pin insertion sort.
+         */
+        for (int i, p = high; ++low < end; ) {
+            float ai = a[i = low], pin = a[--p];
+
+            /*
+             * Swap larger element with pin.
+             */
+            if (ai > pin) {
+                ai = pin;
+                a[p] = a[i];
+            }
+
+            /*
+             * Insert element into sorted part.
+             */
+            while (ai < a[i - 1]) {
+                a[i] = a[--i];
+            }
+            a[i] = ai;
+        }
+
+        /*
+         * Finish with pair insertion sort.
+         */
+        for (int i; low < high; ++low) {
+            float a1 = a[i = low], a2 = a[++low];
+
+            /*
+             * Insert two elements per iteration: at first, insert the
+             * larger element and then insert the smaller element, but
+             * from the position where the larger element was inserted.
+             */
+            if (a1 > a2) {
+
+                while (a1 < a[--i]) {
+                    a[i + 2] = a[i];
+                }
+                a[++i + 1] = a1;
+
+                while (a2 < a[--i]) {
+                    a[i + 1] = a[i];
+                }
+                a[i + 1] = a2;
+
+            } else if (a1 < a[i - 1]) {
+
+                while (a2 < a[--i]) {
+                    a[i + 2] = a[i];
+                }
+                a[++i + 1] = a2;
+
+                while (a1 < a[--i]) {
+                    a[i + 1] = a[i];
+                }
+                a[i + 1] = a1;
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using insertion sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(float[] a, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            float ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                do {
+                    a[i] = a[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+            }
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array using merging sort.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryMergingSort(Sorter<float[]> sorter, float[] a, int low, int high) {
+        int parts = sorter == null ? 0 : Math.min((high - low) / MIN_PARALLEL_SORT_SIZE, sorter.parallelism << 2);
+
+        /*
+         * The element run[i] holds the start index
+         * of i-th sequence in non-descending order,
+         * the element run[count] holds the end index.
+         */
+        int[] run = parts > 1 ? parallelFindRuns(sorter, a, parts, low, high) :
+            findRuns(sorter, a, true, low, high);
+
+        if (run == null) {
+            return false;
+        }
+        int count = 0;
+
+        while (run[++count] < high);
+
+        /*
+         * Merge all runs.
+         */
+        if (count > 1) {
+            float[] b; int offset = low;
+
+            if (sorter != null && (b = sorter.b) != null) {
+                offset = sorter.offset;
+            } else if ((b = tryAllocate(sorter, float[].class, high - low)) == null) {
+                return false;
+            }
+            mergeRuns(sorter, a, b, offset, true, run, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * Identifies the runs of the specified range, reversing
+     * the descending sequences into ascending order.
+     *
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param leftmost indicates that the first run can't be the tail
+     *        of the run of the previous part, therefore it must be large
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
+     */
+    private static int[] findRuns(Sorter<float[]> sorter, float[] a, boolean leftmost, int low, int high) {
+        int count = 1, capacity = 0;
+        int[] run = null;
+
+        /*
+         * Identify all possible runs.
+         */
+        for (int k = low + 1, last = low; k < high; ) {
+
+            /*
+             * Find the next run.
+             */
+            if (a[k - 1] < a[k]) {
+
+                // Identify ascending sequence
+                while (++k < high && a[k - 1] <= a[k]);
+
+            } else if (a[k - 1] > a[k]) {
+
+                // Identify descending sequence
+                while (++k < high && a[k - 1] >= a[k]);
+
+                // Reverse into ascending order
+                for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
+                    float ai = a[i]; a[i] = a[j]; a[j] = ai;
+                }
+
+                // todo javadoc
+                if (k < high && a[k - 1] < a[k]) {
+                    continue;
+                }
+
+            } else { // Identify constant sequence
+                for (float ak = a[k]; ++k < high && ak == a[k]; );
+
+                // todo javadoc
+                if (k < high) {
+                    continue;
+                }
+            }
+
+            /*
+             * Process the current run.
+             */
+            if (run == null) {
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (leftmost && k < high && k - low < count * MIN_RUN_SIZE) {
+                    return null;
+                }
+
+                /*
+                 * Monotonous sequence is the single run.
+                 */
+                capacity = k == high ? 2 : Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+                run = sorter == null ? Workspace.run(capacity) : new int[capacity];
+                run[0] = low;
+
+            } else if (a[last - 1] > a[last]) { // Start the new run
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return null;
+                }
+
+                if (++count == capacity) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return null;
+                }
+            }
+
+            /*
+             * Save the current run.
+             */
+            run[count] = (last = k);
+
+            /*
+             * Check single-element run at the end.
+             */
+            if (++k == high) {
+                --k;
+            }
+        }
+
+        return run;
+    }
+
+    /**
+     * Identifies the runs of the parts of the specified range in
+     * parallel and joins the runs which cross the boundaries of
+     * the parts.
+     *
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param parts the number of the parts
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
+     */
+    private static int[] parallelFindRuns(Sorter<float[]> sorter, float[] a, int parts, int low, int high) {
+        int[][] runs = new int[parts][];
+        new RunScanner<>(sorter, a, runs, low, high, 0, parts).invoke();
+
+        int capacity = Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+        int[] run = new int[capacity];
+        int count = 0, step = (high - low) / parts;
+
+        for (int i = 0; i < parts; ++i) {
+            int[] part = runs[i];
+
+            /*
+             * Terminate, if the part is not highly structured.
+             */
+            if (part == null) {
+                return null;
+            }
+            int end = i == parts - 1 ? high : part[0] + step;
+
+            /*
+             * Skip the start of the first run of the part, if the
+             * last run of the previous part goes on with it.
+             */
+            for (int j = count > 0 && a[part[0] - 1] <= a[part[0]] ? 1 : 0; part[j] < end; ++j) {
+
+                if (count == capacity - 1) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return null;
+                }
+                run[count++] = part[j];
+            }
+        }
+        run[count] = high;
+
+        /*
+         * Check the size of the joined runs.
+         */
+        return high - low < count * MIN_RUN_SIZE ? null : run;
+    }
+
+    /**
+     * Merges the specified runs.
+     *
+     * @param sorter parallel context
+     * @param a the source array
+     * @param b the temporary buffer used in merging
+     * @param offset the start index in the source, inclusive
+     * @param aim specifies merging: to source (+1), buffer (-1) or any (0) // todo javadoc update
+     * @param run the start indexes of the runs, inclusive
+     * @param lo the start index of the first run, inclusive
+     * @param hi the start index of the last run, inclusive
+     * @return the destination where the runs are merged // todo r
+     */
+    private static void mergeRuns(Sorter<float[]> sorter, float[] a, float[] b, int offset,
+            boolean aim, int[] run, int lo, int hi) {
+
+        if (hi - lo == 1) {
+            if (!aim) {
+                System.arraycopy(a, run[lo], b, run[lo] - offset, run[hi] - run[lo]);
+            }
+            return;
+        }
+
+        /*
+         * Merge large parts in parallel.
+         */
+        if (sorter != null && run[hi] - run[lo] > MIN_PARALLEL_SORT_SIZE) {
+            new RunMerger<>(null, a, b, offset, aim, run, lo, hi).invoke();
+            return;
+        }
+
+        /*
+         * Split the array into two approximately equal parts.
+         */
+        int mi = lo, rmi = (run[lo] + run[hi]) >>> 1;
+        while (run[++mi + 1] <= rmi);
+
+        /*
+         * Merge the runs of all parts.
+         */
+        mergeRuns(sorter, a, b, offset, !aim, run, lo, mi);
+        mergeRuns(sorter, a, b, offset, !aim, run, mi, hi);
+
+        int k  = !aim ? run[lo] - offset : run[lo];
+        int lo1 = aim ? run[lo] - offset : run[lo];
+        int hi1 = aim ? run[mi] - offset : run[mi];
+        int lo2 = aim ? run[mi] - offset : run[mi];
+        int hi2 = aim ? run[hi] - offset : run[hi];
+
+        float[] dst = aim ? a : b;
+        float[] src = aim ? b : a;
+
+        /*
+         * Merge the left and right parts.
+         */
+        mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
+    }
+
+    /**
+     * Merges the sorted parts.
+     *
+     * @param merger parallel context
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param a1 the first part // todo r
+     * @param src the first part // todo a
+     * @param lo1 the start index of the first part, inclusive
+     * @param hi1 the end index of the first part, exclusive
+     * @param a2 the second part // todo r
+     * @param lo2 the start index of the second part, inclusive
+     * @param hi2 the end index of the second part, exclusive
+     */
+    private static void mergeParts(Merger<float[]> merger, float[] dst, int k,
+            float[] src, int lo1, int hi1, int lo2, int hi2) {
+
+        /*
+         * Merge the parts in parallel.
+         */
+        if (merger != null) {
+
+            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+
+                /*
+                 * The first part must be larger.
+                 */
+                if (hi1 - lo1 < hi2 - lo2) {
+                    int lo = lo1; lo1 = lo2; lo2 = lo;
+                    int hi = hi1; hi1 = hi2; hi2 = hi;
+                }
+
+                /*
+                 * Find the median of the larger part.
+                 */
+                int mi1 = (lo1 + hi1) >>> 1;
+                float key = src[mi1];
+                int mi2 = hi2;
+
+                /*
+                 * Split the smaller part.
+                 */
+                for (int mid = lo2; mid < mi2; ) {
+                    int d = (mid + mi2) >>> 1; // todo rename int m = ...
+
+                    if (key > src[d]) {
+                        mid = d + 1;
+                    } else {
+                        mi2 = d;
+                    }
+                }
+
+                /*
+                 * Merge other parts in parallel.
+                 */
+                merger.fork(k, lo1, mi1, lo2, mi2);
+
+                /*
+                 * Reserve space for the second parts.
+                 */
+                k += mi2 - lo2 + mi1 - lo1;
+
+                /*
+                 * Iterate along the second parts.
+                 */
+                lo1 = mi1;
+                lo2 = mi2;
+            }
+        }
+
+        /*
+         * Merge small parts sequentially by the simple loop, which is
+         * fast while the branches are predicted well. From time to time
+         * the block is merged without branches to measure how the parts
+         * interleave: the parts taking turns by short irregular runs
+         * are merged by blocks, and the long run of one part is taken
+         * by galloping. Otherwise the next block is measured later.
+         */
+        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+
+            for (int step = MAX_MERGE_PROBE_STEP / 2, probe = k + step; ; ) {
+                int size = Math.min(hi1 - lo1, hi2 - lo2);
+
+                /*
+                 * Merge the rest by the simple loop, if one of the parts
+                 * ends before the next block. The loop checks the bound of
+                 * the part, which ends first, if the last elements differ.
+                 */
+                if (size <= Math.max(probe - k, MERGE_BLOCK_SIZE)) {
+                    if (src[hi1 - 1] < src[hi2 - 1]) {
+                        while (lo1 < hi1) {
+                            float slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else if (src[hi1 - 1] > src[hi2 - 1]) {
+                        while (lo2 < hi2) {
+                            float slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else {
+                        while (lo1 < hi1 && lo2 < hi2) {
+                            float slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    }
+                    break;
+                }
+
+                /*
+                 * Merge the parts by the simple loop, which takes at most
+                 * one element from each part, until the next block.
+                 */
+                if (k < probe) {
+                    while (k < probe) {
+                        float slo1 = src[lo1];
+
+                        if (slo1 <= src[lo2]) {
+                            dst[k++] = src[lo1++];
+                        }
+                        if (slo1 >= src[lo2]) {
+                            dst[k++] = src[lo2++];
+                        }
+                    }
+                    continue;
+                }
+
+                /*
+                 * Merge the block and count the elements of the parts.
+                 */
+                int pattern = mergeBlock(dst, k, src, lo1, lo2);
+                int second = Integer.bitCount(pattern);
+                k += MERGE_BLOCK_SIZE;
+                lo1 += MERGE_BLOCK_SIZE - second;
+                lo2 += second;
+
+                if (pattern == 0 || pattern == -1) {
+
+                    /*
+                     * Gallop along the part, which has given
+                     * all elements of the block.
+                     */
+                    int from = k;
+
+                    if (pattern == 0) {
+                        int end = gallop(src[lo2], src, lo1, hi1, true);
+                        System.arraycopy(src, lo1, dst, k, end - lo1);
+                        k += end - lo1;
+                        lo1 = end;
+                    } else {
+                        int end = gallop(src[lo1], src, lo2, hi2, false);
+                        System.arraycopy(src, lo2, dst, k, end - lo2);
+                        k += end - lo2;
+                        lo2 = end;
+                    }
+
+                    /*
+                     * Measure the next block right after the long run,
+                     * and merge longer by the simple loop otherwise.
+                     */
+                    if (k - from < MIN_GALLOP_RUN) {
+                        step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                        probe = k + step;
+                    } else {
+                        step = MERGE_BLOCK_SIZE;
+                        probe = k;
+                    }
+                } else if (Integer.bitCount((pattern ^ pattern >>> 1) << 1) < MIN_IRREGULAR_TURNS
+                        || isRegular(pattern)) {
+
+                    /*
+                     * Merge longer by the simple loop, since
+                     * the parts give long or regular runs.
+                     */
+                    step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                    probe = k + step;
+                } else {
+
+                    /*
+                     * Continue by blocks, since the parts
+                     * give short runs irregularly.
+                     */
+                    step = MERGE_BLOCK_SIZE;
+                    probe = k;
+                }
+            }
+        }
+
+        /*
+         * Copy the tail of the left part.
+         */
+        if (lo1 < hi1) {
+            System.arraycopy(src, lo1, dst, k, hi1 - lo1);
+        }
+
+        /*
+         * Copy the tail of the right part.
+         */
+        if (lo2 < hi2) {
+            System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+        }
+    }
+
+    /**
+     * Merges the block of the parts without branches, selecting
+     * the smaller head and advancing its part by conditional moves.
+     * The block is merged out of line, so that the simple loop
+     * of merging is compiled as tight as without the block.<p>
+     *
+     * The elements are compared and selected by their bits, ordered
+     * as int values, which are moved conditionally unlike float values.
+     * The parts contain neither NaNs nor negative zeros.
+     *
+     * @param dst the destination where the block is merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source of the parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @return the bits of the block, set for the elements given
+     *         by the second part, the last element is the lowest bit
+     */
+    @DontInline
+    private static int mergeBlock(float[] dst, int k, float[] src, int lo1, int lo2) {
+        int pattern = 0;
+
+        for (int end = k + MERGE_BLOCK_SIZE; k < end; ) {
+            int x = Float.floatToRawIntBits(src[lo1]);
+            int y = Float.floatToRawIntBits(src[lo2]);
+            boolean second = (y ^ y >> 31 >>> 1) < (x ^ x >> 31 >>> 1);
+            dst[k++] = Float.intBitsToFloat(second ? y : x);
+            lo1 += second ? 0 : 1;
+            lo2 += second ? 1 : 0;
+            pattern = pattern << 1 | (second ? 1 : 0);
+        }
+        return pattern;
+    }
+
+    /**
+     * Finds the end of the leading elements of the sorted part, which
+     * are less than the key, or not greater, if {@code inclusive} is
+     * set, by exponential search followed by binary search, so that
+     * the cost is logarithmic in the number of the found elements.
+     *
+     * @param key the key to be compared with
+     * @param a the sorted part
+     * @param low the start index of the part, inclusive
+     * @param high the end index of the part, exclusive
+     * @param inclusive specifies whether the elements equal to the key are taken
+     * @return the index of the first element which is not taken
+     */
+    private static int gallop(float key, float[] a, int low, int high, boolean inclusive) {
+        int step = 1;
+
+        /*
+         * Double the step while the elements are taken.
+         */
+        for (int i = low; i < high && (inclusive ? a[i] <= key : a[i] < key); i = low + step - 1) {
+            low = i + 1;
+            step <<= 1;
+        }
+        high = Math.min(low + step - 1, high);
+
+        /*
+         * Find the end within the last step.
+         */
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (inclusive ? a[mid] <= key : a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the positions in the sorted parts, which split off the given
+     * number of the smallest elements, by narrowing the windows of the
+     * parts around the pivot taken in the middle of the largest window.
+     *
+     * @param a the array with the parts
+     * @param start the start indexes of the parts, inclusive
+     * @param end the end indexes of the parts, exclusive
+     * @param rank the number of the smallest elements
+     * @return the positions in the parts
+     */
+    private static int[] splitParts(float[] a, int[] start, int[] end, int rank) {
+        int[] lo = start.clone(), hi = end.clone();
+        int[] lower = new int[lo.length], upper = new int[lo.length];
+
+        while (true) {
+
+            /*
+             * Find the largest window.
+             */
+            int p = 0;
+
+            for (int i = 1; i < lo.length; ++i) {
+                if (hi[i] - lo[i] > hi[p] - lo[p]) {
+                    p = i;
+                }
+            }
+
+            /*
+             * All windows are empty, the positions are found.
+             */
+            if (lo[p] == hi[p]) {
+                return lo;
+            }
+            float pivot = a[(lo[p] + hi[p]) >>> 1];
+            int less = 0, notGreater = 0;
+
+            /*
+             * Count the elements less than the pivot and not greater.
+             */
+            for (int i = 0; i < lo.length; ++i) {
+                lower[i] = gallop(pivot, a, lo[i], hi[i], false);
+                upper[i] = gallop(pivot, a, lower[i], hi[i], true);
+                less += lower[i] - start[i];
+                notGreater += upper[i] - start[i];
+            }
+
+            if (rank < less) {
+                int[] t = hi; hi = lower; lower = t;
+            } else if (rank > notGreater) {
+                int[] t = lo; lo = upper; upper = t;
+            } else {
+
+                /*
+                 * Take the elements equal to the pivot up to the rank.
+                 */
+                for (int i = 0, rest = rank - less; i < lower.length; ++i) {
+                    int take = Math.min(rest, upper[i] - lower[i]);
+                    lower[i] += take;
+                    rest -= take;
+                }
+                return lower;
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted parts by the tournament, where the internal
+     * nodes of the tree keep the losers of the matches, and the root
+     * keeps the winner, so that each element takes the logarithmic
+     * number of comparisons and is moved once. Four parts are merged
+     * with the heads kept in local variables, until a part is exhausted.
+     *
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     */
+    private static void multiMerge(float[] dst, int k, float[] src, int[] lo, int[] hi) {
+
+        /*
+         * Merge four parts by two matches of the heads
+         * and the final, while no part is exhausted.
+         */
+        if (lo.length == 4) {
+            int i0 = lo[0], i1 = lo[1], i2 = lo[2], i3 = lo[3];
+            int h0 = hi[0], h1 = hi[1], h2 = hi[2], h3 = hi[3];
+
+            while (i0 < h0 && i1 < h1 && i2 < h2 && i3 < h3) {
+                float a0 = src[i0], a1 = src[i1], a2 = src[i2], a3 = src[i3];
+
+                if (a0 <= a1) {
+                    if (a2 <= a3) {
+                        if (a0 <= a2) { dst[k++] = a0; ++i0; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a0 <= a3) { dst[k++] = a0; ++i0; } else { dst[k++] = a3; ++i3; }
+                    }
+                } else {
+                    if (a2 <= a3) {
+                        if (a1 <= a2) { dst[k++] = a1; ++i1; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a1 <= a3) { dst[k++] = a1; ++i1; } else { dst[k++] = a3; ++i3; }
+                    }
+                }
+            }
+            lo[0] = i0; lo[1] = i1; lo[2] = i2; lo[3] = i3;
+        }
+
+        /*
+         * Merge the rest by the tournament.
+         */
+        int n = lo.length, size = 0;
+        int[] tree = new int[n];
+
+        /*
+         * Start with the virtual part, which beats any other part.
+         */
+        Arrays.fill(tree, n);
+
+        for (int i = n - 1; i >= 0; --i) {
+            size += hi[i] - lo[i];
+            int w = i;
+
+            for (int t = (i + n) >> 1; t > 0; t >>= 1) {
+                if (beats(src, lo, hi, tree[t], w)) {
+                    int loser = w; w = tree[t]; tree[t] = loser;
+                }
+            }
+            tree[0] = w;
+        }
+
+        /*
+         * Move the winner and replay its matches
+         * with the next element of the same part.
+         */
+        for (int end = k + size; k < end; ) {
+            int w = tree[0];
+            dst[k++] = src[lo[w]++];
+            boolean done = lo[w] == hi[w];
+            float key = done ? 0 : src[lo[w]];
+
+            for (int t = (w + n) >> 1; t > 0; t >>= 1) {
+                int c = tree[t];
+
+                if (lo[c] < hi[c] && (done || src[lo[c]] < key)) {
+                    tree[t] = w;
+                    w = c;
+                    key = src[lo[c]];
+                    done = false;
+                }
+            }
+            tree[0] = w;
+        }
+    }
+
+    /**
+     * Checks whether the head of the first part beats the head of
+     * the second part, the exhausted part is beaten by any other one.
+     *
+     * @param a the array with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     * @param i the index of the first part, or the virtual part
+     * @param j the index of the second part, or the virtual part
+     * @return {@code true} if the first part wins the match
+     */
+    private static boolean beats(float[] a, int[] lo, int[] hi, int i, int j) {
+        if (i == lo.length) {
+            return true;
+        }
+        if (j == lo.length) {
+            return false;
+        }
+        return lo[i] < hi[i] && (lo[j] == hi[j] || a[lo[i]] < a[lo[j]]);
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel using
+     * the bounded buffer, which is smaller than the range. Blocks
+     * of the range, which fit the buffer, are sorted one by one,
+     * then the sorted blocks are merged in place.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param b the bounded buffer
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void boundedSort(float[] a, int parallelism, float[] b, int low, int high) {
+        int size = high - low, step = b.length;
+
+        /*
+         * Sort the blocks, which fit the buffer.
+         */
+        for (int k = low; k < high; ) {
+            int hi = high - k > step ? k + step : high;
+            new Sorter<>(a, b, false, parallelism, k, hi - k).invoke();
+            k = hi;
+        }
+
+        /*
+         * Merge the pairs of the sorted blocks in place,
+         * doubling the size of the blocks at each step.
+         */
+        for (; step < size; step = size - step > step ? step << 1 : size) {
+            for (int k = low; high - k > step; ) {
+                int mi = k + step;
+                int hi = high - mi > step ? mi + step : high;
+                new BoundedMerger<>(null, a, b, k, mi, hi, 0, b.length).invoke();
+                k = hi;
+            }
+        }
+    }
+
+    /**
+     * Merges the adjacent sorted parts of the array in place using
+     * the bounded buffer. If the parts don't fit the buffer, the larger
+     * part is split by its median and the smaller part by the same value,
+     * the inner segments are swapped, and the left and the right pairs
+     * of the segments are merged independently.
+     *
+     * @param merger parallel context
+     * @param a the array with the parts to be merged
+     * @param b the bounded buffer
+     * @param lo the start index of the first part, inclusive
+     * @param mi the start index of the second part, inclusive
+     * @param hi the end index of the second part, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
+     */
+    private static void mergeInPlace(BoundedMerger<float[]> merger, float[] a, float[] b,
+            int lo, int mi, int hi, int offset, int size) {
+
+        while (lo < mi && mi < hi && a[mi - 1] > a[mi]) {
+
+            /*
+             * Merge the parts forward, if the first part fits the buffer.
+             */
+            if (mi - lo <= size) {
+                System.arraycopy(a, lo, b, offset, mi - lo);
+                int i = offset, end = offset + mi - lo;
+
+                while (i < end && mi < hi) {
+                    a[lo++] = b[i] <= a[mi] ? b[i++] : a[mi++];
+                }
+                System.arraycopy(b, i, a, lo, end - i);
+                return;
+            }
+
+            /*
+             * Merge the parts backward, if the second part fits the buffer.
+             */
+            if (hi - mi <= size) {
+                System.arraycopy(a, mi, b, offset, hi - mi);
+                int i = offset + hi - mi;
+
+                while (i > offset && mi > lo) {
+                    a[--hi] = b[i - 1] >= a[mi - 1] ? b[--i] : a[--mi];
+                }
+                System.arraycopy(b, offset, a, lo, i - offset);
+                return;
+            }
+
+            /*
+             * Split the larger part by its median
+             * and the smaller part by the same value.
+             */
+            int m1, m2;
+
+            if (mi - lo >= hi - mi) {
+                m1 = (lo + mi) >>> 1;
+                m2 = mi;
+                float key = a[m1];
+
+                for (int h = hi; m2 < h; ) {
+                    int m = (m2 + h) >>> 1;
+
+                    if (a[m] < key) {
+                        m2 = m + 1;
+                    } else {
+                        h = m;
+                    }
+                }
+            } else {
+                m2 = (mi + hi) >>> 1;
+                m1 = lo;
+                float key = a[m2];
+
+                for (int h = mi; m1 < h; ) {
+                    int m = (m1 + h) >>> 1;
+
+                    if (a[m] <= key) {
+                        m1 = m + 1;
+                    } else {
+                        h = m;
+                    }
+                }
+            }
+
+            /*
+             * Swap the inner segments.
+             */
+            rotate(a, b, m1, mi, m2, offset, size);
+            int m = m1 + m2 - mi;
+
+            /*
+             * Merge the left pair of the segments (possibly in parallel,
+             * giving half of the buffer) and iterate along the right pair.
+             */
+            if (merger != null && size > 1
+                    && m - lo > MIN_MERGE_PART_SIZE && hi - m > MIN_MERGE_PART_SIZE) {
+                merger.fork(lo, m1, m, offset, size >> 1);
+                offset += size >> 1;
+                size -= size >> 1;
+            } else {
+                mergeInPlace(merger, a, b, lo, m1, m, offset, size);
+            }
+            lo = m;
+            mi = m2;
+        }
+    }
+
+    /**
+     * Swaps the adjacent segments of the array using the bounded
+     * buffer, if the smaller segment fits it, otherwise by reversals.
+     *
+     * @param a the array with the segments
+     * @param b the bounded buffer
+     * @param lo the start index of the first segment, inclusive
+     * @param mi the start index of the second segment, inclusive
+     * @param hi the end index of the second segment, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
+     */
+    private static void rotate(float[] a, float[] b, int lo, int mi, int hi, int offset, int size) {
+        if (mi - lo <= size && mi - lo <= hi - mi) {
+            System.arraycopy(a, lo, b, offset, mi - lo);
+            System.arraycopy(a, mi, a, lo, hi - mi);
+            System.arraycopy(b, offset, a, lo + hi - mi, mi - lo);
+        } else if (hi - mi <= size) {
+            System.arraycopy(a, mi, b, offset, hi - mi);
+            System.arraycopy(a, lo, a, lo + hi - mi, mi - lo);
+            System.arraycopy(b, offset, a, lo, hi - mi);
+        } else {
+            for (int i = lo, j = mi; i < --j; ++i) {
+                float ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = mi, j = hi; i < --j; ++i) {
+                float ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = lo, j = hi; i < --j; ++i) {
+                float ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+        }
+    }
+
+    /**
+     * Estimates by the sample of elements, whether Radix sort is
+     * cheaper than Dual-Pivot Quicksort on the specified range of
+     * the array. The sample gives the key range, the run structure
+     * and the number of duplicates, see the cost model. The sample
+     * is hashed to count the duplicates only, if Radix sort may be
+     * cheaper at all.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if Radix sort is expected to be cheaper
+     */
+    private static boolean preferRadixSort(float[] a, int low, int high) {
+        int step = (high - low) / RADIX_SAMPLE_SIZE;
+        int first = low + (step >> 1);
+        int last = first + RADIX_SAMPLE_SIZE * step;
+        int diff = 0;
+        int ascending = 0, descending = 0, distinct = 0;
+
+        for (int i = first; i < last; i += step) {
+            diff |= Float.floatToRawIntBits(a[i]) ^ Float.floatToRawIntBits(a[first]);
+
+            if (a[i] < a[i + 1]) {
+                ascending++;
+            } else if (a[i] > a[i + 1]) {
+                descending++;
+            }
+        }
+        int size = high - low, bits = 32 - Integer.numberOfLeadingZeros(diff);
+
+        /*
+         * Hash the sample, unless Radix sort is more
+         * expensive even with all elements distinct.
+         */
+        if (!isRadixSortCheaper(size, bits, ascending, descending, RADIX_SAMPLE_SIZE, FLOAT_RADIX_PASS_COST)) {
+            return false;
+        }
+        int[] hash = Workspace.count(7, SAMPLE_HASH_SIZE >> 5);
+
+        for (int i = first; i < last; i += step) {
+            int h = (Float.floatToRawIntBits(a[i]) * 0x9E3779B9) >>> 20;
+
+            if ((hash[h >>> 5] & (1 << h)) == 0) {
+                hash[h >>> 5] |= 1 << h;
+                distinct++;
+            }
+        }
+        return isRadixSortCheaper(size, bits, ascending, descending, distinct, FLOAT_RADIX_PASS_COST);
+    }
+
+    /**
+     * Tries to sort the specified range of the array
+     * using LSD (The Least Significant Digit) Radix sort.
+     *
+     * @param a the array to be sorted
+     * @param sorter // todo
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryRadixSort(Sorter<float[]> sorter, float[] a, int low, int high) {
+        float[] b; int offset = low, size = high - low;
+
+        /*
+         * Allocate additional buffer.
+         */
+        if (sorter != null && (b = sorter.b) != null) {
+            offset = sorter.offset;
+        } else if ((b = tryAllocate(sorter, float[].class, size)) == null) {
+            return mayAllocate(sorter) && tryFlagSort(sorter, a, low, high);
+        }
+
+        int start = low - offset;
+        int last = high - offset;
+
+        /*
+         * Count the number of all digits.
+         */
+        int[] count1 = Workspace.count(0, 1024);
+        int[] count2 = Workspace.count(1, 2048);
+        int[] count3 = Workspace.count(2, 2048);
+
+        for (int i = low; i < high; ++i) {
+            ++count1[ fti(a[i])         & 0x3FF];
+            ++count2[(fti(a[i]) >>> 10) & 0x7FF];
+            ++count3[(fti(a[i]) >>> 21) & 0x7FF];
+        }
+
+        /*
+         * Detect digits to be processed.
+         */
+        boolean processDigit1 = processDigit(count1, size, low);
+        boolean processDigit2 = processDigit(count2, size, low);
+        boolean processDigit3 = processDigit(count3, size, low);
+
+        /*
+         * Process the 1-st digit.
+         */
+        if (processDigit1) {
+            for (int i = high; i > low; ) {
+                b[--count1[fti(a[--i]) & 0x3FF] - offset] = a[i];
+            }
+        }
+
+        /*
+         * Process the 2-nd digit.
+         */
+        if (processDigit2) {
+            if (processDigit1) {
+                for (int i = last; i > start; ) {
+                    a[--count2[(fti(b[--i]) >>> 10) & 0x7FF]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count2[(fti(a[--i]) >>> 10) & 0x7FF] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 3-rd digit.
+         */
+        if (processDigit3) {
+            if (processDigit1 ^ processDigit2) {
+                for (int i = last; i > start; ) {
+                    a[--count3[(fti(b[--i]) >>> 21) & 0x7FF]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count3[(fti(a[--i]) >>> 21) & 0x7FF] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Copy the buffer to original array, if we process ood number of digits.
+         */
+        if (processDigit1 ^ processDigit2 ^ processDigit3) {
+            System.arraycopy(b, low - offset, a, low, size);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the specified range of the array in place using MSD
+     * (The Most Significant Digit) Radix sort, also known as American
+     * flag sort, if additional buffer can't be allocated.<p>
+     *
+     * The elements are swapped into the buckets of the highest digit
+     * which is not the same for all elements, then the buckets are
+     * sorted independently, in parallel, if there is parallel context.
+     * The buckets are much smaller than the range, therefore the buffer
+     * is usually allocated to sort them.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} as the array is finally sorted
+     *         or the buckets are being sorted
+     */
+    static boolean tryFlagSort(Sorter<float[]> sorter, float[] a, int low, int high) {
+        int[] start = new int[257];
+        int[] next = new int[256];
+
+        for (int shift = 24; shift >= 0; shift -= 8) {
+
+            /*
+             * Count the elements in the buckets.
+             */
+            Arrays.fill(next, 0);
+
+            for (int i = low; i < high; ++i) {
+                ++next[(fti(a[i]) >>> shift) & 0xFF];
+            }
+
+            /*
+             * Skip the digit which is the same for all elements.
+             */
+            if (next[(fti(a[low]) >>> shift) & 0xFF] == high - low) {
+                continue;
+            }
+
+            /*
+             * Compute the start of each bucket.
+             */
+            start[0] = low;
+
+            for (int d = 0; d < 256; ++d) {
+                start[d + 1] = start[d] + next[d];
+                next[d] = start[d];
+            }
+
+            /*
+             * Swap the elements into their buckets, sweeping the buckets
+             * which are not filled yet. Unlike the cycles of swaps, the
+             * swaps of the sweep are independent and therefore faster.
+             */
+            for (boolean moved = true; moved; ) {
+                moved = false;
+
+                for (int d = 0; d < 256; ++d) {
+                    int end = start[d + 1];
+
+                    if (next[d] < end) {
+                        moved = true;
+
+                        for (int i = next[d]; i < end; ++i) {
+                            float ai = a[i];
+                            int j = next[(fti(ai) >>> shift) & 0xFF]++;
+                            a[i] = a[j];
+                            a[j] = ai;
+                        }
+                    }
+                }
+            }
+
+            /*
+             * Sort the buckets, forking the large ones in parallel context.
+             */
+            for (int d = 0; d < 256; ++d) {
+                int lo = start[d], hi = start[d + 1];
+
+                if (sorter != null && hi - lo > MIN_PARALLEL_SORT_SIZE) {
+                    sorter.fork(0, lo, hi);
+                } else if (hi - lo > 1) {
+                    sort(sorter, a, 0, lo, hi);
+                }
+            }
+            return true;
+        }
+
+        /*
+         * All elements are equal and therefore already sorted.
+         */
+        return true;
+    }
+
+    /**
+     * Returns masked bits that represent the float value.
+     *
+     * @param f the given value
+     * @return masked bits
+     */
+    private static int fti(float f) {
+        int x = Float.floatToRawIntBits(f);
+        return x ^ ((x >> 31) | 0x80000000);
+    }
+
+    /**
+     * Sorts the specified range of the array using heap sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void heapSort(float[] a, int low, int high) {
+        for (int k = (low + high) >>> 1; k > low; ) {
+            pushDown(a, --k, a[k], low, high);
+        }
+        while (--high > low) {
+            float max = a[low];
+            pushDown(a, low, a[high], low, high);
+            a[high] = max;
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given array
+     * @param p the start index
+     * @param value the given element
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDown(float[] a, int p, float value, int low, int high) {
+        for (int k ;; a[p] = a[p = k]) {
+            k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a[k] < a[k - 1]) {
+                --k;
+            }
+            if (a[k] <= value) {
+                break;
+            }
+        }
+        a[p] = value;
+    }
+
+// #[double]
+
+    /**
+     * The number of distinct short values. // todo
+     todo: double
+     */
+    private static final long DOUBLE_NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0d);
+
+    /**
+     * Sorts the specified range of the array using parallel merge
+     * sort and/or Dual-Pivot Quicksort.<p>
+     *
+     * To balance the faster splitting and parallelism of merge sort
+     * with the faster element partitioning of Quicksort, ranges are
+     * subdivided in tiers such that, if there is enough parallelism,
+     * the four-way parallel merge is started, still ensuring enough
+     * parallelism to process the partitions.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(double[] a, int parallelism, int low, int high) {
+        sort(a, parallelism, null, low, high);
+    }
+
+    /**
+     * Sorts the specified range of the array, so that additional
+     * buffer doesn't exceed the given budget.<p>
+     *
+     * If the budget is less than the size of the range, but not less
+     * than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel sorting
+     * uses the largest buffer within the budget to sort blocks, which
+     * are then merged in place. Otherwise the range is sorted without
+     * additional buffer.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param budget the max size of additional buffer in bytes
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(double[] a, int parallelism, long budget, int low, int high) {
+        int size = high - low;
+        int length = (int) Math.max(0, Math.min(budget >> 3, size));
+
+        if (length == size) {
+            sort(a, parallelism, null, low, high);
+        } else {
+            double[] b = parallelism > 1 && size > MIN_PARALLEL_SORT_SIZE
+                && (long) length * MAX_BOUNDED_BLOCK_COUNT >= size
+                    ? tryAllocate(double[].class, length) : null;
+
+            sort(a, parallelism, b != null ? b : new double[0], low, high);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using the given
+     * workspace as additional buffer.<p>
+     *
+     * If the workspace is supplied, no buffer is allocated during
+     * sorting. If the workspace is shorter than the range, but not
+     * shorter than 1/{@value #MAX_BOUNDED_BLOCK_COUNT} of it, parallel
+     * sorting sorts the blocks, which fit the workspace, and merges
+     * them in place. Otherwise the range is sorted without additional
+     * buffer: runs are not merged, and neither Radix sort nor parallel
+     * merge sort is used.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param workspace the additional buffer of at least {@code high - low}
+     *        elements, or {@code null} to allocate the buffer, if required
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(double[] a, int parallelism, double[] workspace, int low, int high) {
+        /*
+         * Phase 1. Count the number of negative zero -0.0d,
+         * turn them into positive zero, and move all NaNs
+         * to the end of the array.
+         */
+        long count = parallelism > 1 && high - low > MIN_PROCESS_PART_SIZE << 1
+            ? parallelMoveNaNs(a, parallelism, low, high) : moveNaNs(a, low, high);
+
+        int numNegativeZero = (int) (count >>> 32);
+        high = (int) count;
+
+        /*
+         * Phase 2. Sort everything except NaNs, which are already in
+         * place, in parallel as int keys, if the elements are integral
+         * and fit in 32 bits, when reduced by the min element.
+         */
+        if (parallelism <= 1 || workspace != null || high - low <= MIN_COMPRESSED_SORT_SIZE
+                || !tryCompressedSort(a, parallelism, low, high)) {
+            if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+                double[] b = workspace != null ? workspace : tryAllocateBounded(double[].class, high - low);
+
+                if (b != null && b.length < high - low
+                        && (long) b.length * MAX_BOUNDED_BLOCK_COUNT >= high - low) {
+                    boundedSort(a, parallelism, b, low, high);
+                } else {
+                    new Sorter<>(a, b, workspace == null, parallelism, low, high - low).invoke();
+                }
+            } else if (workspace == null) {
+                sort(null, a, 0, low, high);
+            } else {
+                Workspace.lend(workspace, workspace.length);
+
+                try {
+                    sort(null, a, 0, low, high);
+                } finally {
+                    Workspace.lend(null, 0);
+                }
+            }
+        }
+
+        /*
+         * Phase 3. Turn positive zero 0.0d
+         * back into negative zero -0.0d.
+         */
+        if (++numNegativeZero == 1) {
+            return;
+        }
+
+        /*
+         * Find the position one less than
+         * the index of the first zero.
+         */
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (a[middle] < 0.0d) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        /*
+         * Replace the required number of 0.0d by -0.0d.
+         */
+        process(parallelism, high + 1, high + numNegativeZero,
+            (lo, hi) -> Arrays.fill(a, lo, hi, -0.0d));
+    }
+
+    /**
+     * Counts the number of negative zero -0.0d in the specified
+     * range of the array, turns them into positive zero, and moves
+     * all NaNs to the end of the range.
+     *
+     * @param a the array to be processed
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @return the number of negative zeros in the high half
+     *         and the index of the first NaN in the low half
+     */
+    private static long moveNaNs(double[] a, int low, int high) {
+        int numNegativeZero = 0;
+
+        for (int k = high; k > low; ) {
+            double ak = a[--k];
+
+            if (Double.doubleToRawLongBits(ak) == DOUBLE_NEGATIVE_ZERO) { // ak is -0.0d
+                numNegativeZero++;
+                a[k] = 0.0d;
+            } else if (ak != ak) { // ak is NaN
+                a[k] = a[--high];
+                a[high] = ak;
+            }
+        }
+        return (long) numNegativeZero << 32 | high;
+    }
+
+    /**
+     * Counts the number of negative zero -0.0d in the specified
+     * range of the array, turns them into positive zero, and moves
+     * all NaNs to the end of the range in parallel.<p>
+     *
+     * Each part moves its NaNs to its own end, and then the NaNs
+     * before the final index of the first NaN are exchanged with
+     * the elements after it, so that only the misplaced elements
+     * are moved sequentially.
+     *
+     * @param a the array to be processed
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @return the number of negative zeros in the high half
+     *         and the index of the first NaN in the low half
+     */
+    private static long parallelMoveNaNs(double[] a, int parallelism, int low, int high) {
+        long[] count = new long[Math.min((high - low) / MIN_PROCESS_PART_SIZE, parallelism << 2)];
+        int step = (high - low) / count.length;
+
+        /*
+         * Process the parts in parallel.
+         */
+        new Processor(null, (lo, hi) -> {
+            for (int i = (int) lo; i < hi; ++i) {
+                count[i] = moveNaNs(a, low + i * step, i == count.length - 1 ? high : low + (i + 1) * step);
+            }
+        }, 1, 0, count.length).invoke();
+
+        /*
+         * Find the final index of the first NaN.
+         */
+        int numNegativeZero = 0, end = high;
+
+        for (int i = 0; i < count.length; ++i) {
+            numNegativeZero += (int) (count[i] >>> 32);
+            end -= (i == count.length - 1 ? high : low + (i + 1) * step) - (int) count[i];
+        }
+
+        /*
+         * Exchange the NaNs before the end with the elements
+         * after it, taken from the last parts first.
+         */
+        for (int i = 0, j = count.length - 1, last = (int) count[j]; i < j; ++i) {
+            for (int k = (int) count[i], hi = Math.min(low + (i + 1) * step, end); k < hi; ++k) {
+                while (last <= Math.max(low + j * step, end)) {
+                    last = (int) count[--j];
+                }
+                double ak = a[k];
+                a[k] = a[--last];
+                a[last] = ak;
+            }
+        }
+        return (long) numNegativeZero << 32 | end;
+    }
+
+
+    /**
+     * Tries to sort the specified range of the array as int keys, if
+     * the elements are integral and fit in 32 bits, when reduced by
+     * the min element. The array must not contain NaNs and -0.0d.
+     * The keys are packed into int array, sorted by the int version
+     * of sorting and expanded back, so that only half of the bytes
+     * are moved through memory.<p>
+     *
+     * The range of the elements is checked by the sample at first,
+     * then the min and max elements are found in parallel. The range
+     * is left to merging sort, if the sample is monotonous, or if the
+     * elements go up and down less often than the runs can be merged,
+     * so that highly structured data are not packed.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    private static boolean tryCompressedSort(double[] a, int parallelism, int low, int high) {
+        int step = (high - low) / RADIX_SAMPLE_SIZE;
+        long min = (long) a[low], max = min;
+
+        /*
+         * Check the range of the sample.
+         */
+        boolean ascending = true, descending = true;
+
+        for (int i = low; i < high; i += step) {
+            long v = (long) a[i];
+
+            if (v != a[i]) {
+                return false;
+            }
+            if (i > low) {
+                ascending &= a[i - step] <= a[i];
+                descending &= a[i - step] >= a[i];
+            }
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        if (ascending || descending || (max - min) >>> 32 != 0) {
+            return false;
+        }
+
+        /*
+         * Find the min and max elements, which are all integral,
+         * and count the steps up and down between the elements.
+         */
+        LongAccumulator lower = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        LongAccumulator upper = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        LongAdder ups = new LongAdder(), downs = new LongAdder();
+
+        process(parallelism, low, high, (lo, hi) -> {
+            long mn = (long) a[lo], mx = mn;
+            int up = 0, down = 0;
+
+            for (int i = lo; i < hi; ++i) {
+                long v = (long) a[i];
+
+                if (v != a[i]) { // Mark the range as too wide
+                    mn = Long.MIN_VALUE;
+                    mx = Long.MAX_VALUE;
+                    break;
+                }
+                mn = Math.min(mn, v);
+                mx = Math.max(mx, v);
+
+                if (i > lo) {
+                    up += a[i - 1] < a[i] ? 1 : 0;
+                    down += a[i - 1] > a[i] ? 1 : 0;
+                }
+            }
+            lower.accumulate(mn);
+            upper.accumulate(mx);
+            ups.add(up);
+            downs.add(down);
+        });
+
+        if ((upper.get() - lower.get()) >>> 32 != 0 || Math.min(ups.sum(), downs.sum())
+                < Math.min((high - low) / MIN_RUN_SIZE, MAX_RUN_CAPACITY)) {
+            return false;
+        }
+        int[] k = tryAllocate(int[].class, high - low);
+
+        if (k == null) {
+            return false;
+        }
+
+        /*
+         * Pack the elements into int keys, which keep the order.
+         */
+        long bias = lower.get() - Integer.MIN_VALUE;
+
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                k[i - low] = (int) ((long) a[i] - bias);
+            }
+        });
+        sort(k, parallelism, 0, k.length);
+
+        /*
+         * Expand the sorted keys back.
+         */
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                a[i] = bias + k[i - low];
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Returns the indices of the elements from the specified range
+     * of the array, arranged in the order of {@link Double#compare},
+     * the array itself is not modified. Indices of equal elements
+     * are in ascending order.<p>
+     *
+     * The bits of each element are mapped to long value, preserving
+     * the order, and the indices are sorted by the mapped values.
+     *
+     * @param a the array of the keys
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return the indices of the elements in sorted order
+     */
+    static int[] indexSort(double[] a, int parallelism, int low, int high) {
+        long[] k = new long[high - low];
+
+        process(parallelism, low, high, (lo, hi) -> {
+            for (int i = lo; i < hi; ++i) {
+                long bits = Double.doubleToLongBits(a[i]);
+                k[i - low] = bits ^ (bits >> 63 & 0x7FFFFFFFFFFFFFFFL);
+            }
+        });
+        return indexSort(k, parallelism, 0, k.length, low);
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position,
+     * see the selection of several ranks.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(double[] a, int rank, int low, int high) {
+        select(a, new int[] { rank }, low, high);
+    }
+
+    /**
+     * Places the elements of the given ranks at their sorted positions
+     * in the specified range of the array in the order of {@link Double#compare},
+     * so that all elements before each of them are less than or equal
+     * to it, and all elements after it are greater than or equal to it.<p>
+     *
+     * The ranks are selected by the same partitioning as sorting,
+     * which recurses only into the parts with the ranks. If the
+     * recursion is too deep, the ranks are selected using the
+     * median of medians in linear worst-case time.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    static void select(double[] a, int[] ranks, int low, int high) {
+        /*
+         * Phase 1. Count the number of negative zero -0.0d,
+         * turn them into positive zero, and move all NaNs
+         * to the end of the array.
+         */
+        long count = moveNaNs(a, low, high);
+        int numNegativeZero = (int) (count >>> 32);
+        high = (int) count;
+
+        /*
+         * Phase 2. Select the ranks before NaNs,
+         * which are already in place.
+         */
+        select(a, ranks, 0, rankIndex(ranks, 0, ranks.length, high), 0, low, high);
+
+        /*
+         * Phase 3. Turn the first positive zeros 0.0d back
+         * into negative zero -0.0d. The selected elements
+         * stay in place, because zeros are separated from
+         * other elements by the same selected elements.
+         */
+        for (int i = low; numNegativeZero > 0; ++i) {
+            if (a[i] == 0.0d) {
+                a[i] = -0.0d;
+                numNegativeZero--;
+            }
+        }
+    }
+
+    /**
+     * Selects the elements of the given ranks from the specified
+     * range of the array using Dual-Pivot Quicksort partitioning.
+     *
+     * @param a the array for selection
+     * @param ranks the indices of the elements to be selected in ascending order
+     * @param from the index of the first rank, inclusive, to be selected
+     * @param to the index of the last rank, exclusive, to be selected
+     * @param bits the recursion depth
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    private static void select(double[] a, int[] ranks, int from, int to, int bits, int low, int high) {
+        while (from < to) {
+            int size = high - low;
+
+            /*
+             * Invoke insertion sort on small part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Switch to the median of medians, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                for (; from < to; low = ranks[from++]) {
+                    medianSelect(a, ranks[from], low, high);
+                }
+                return;
+            }
+
+            /*
+             * Use the same five sample elements
+             * to determine pivots as sorting.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            double a3 = a[e3];
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { double t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { double t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { double t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { double t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { double t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Select the ranks of the left and central parts
+                 * recursively, excluding known pivots, and iterate
+                 * along the right part.
+                 */
+                int r1 = rankIndex(ranks, from, to, lower);
+                int r2 = rankIndex(ranks, r1, to, lower + 1);
+                int r3 = rankIndex(ranks, r2, to, upper);
+
+                select(a, ranks, from, r1, bits, low, lower);
+                select(a, ranks, r2, r3, bits, lower + 1, upper);
+
+                from = rankIndex(ranks, r3, to, upper + 1);
+                low = upper + 1;
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Select the ranks of the left part recursively and
+                 * iterate along the right part. All elements from
+                 * the central part are equal and therefore selected.
+                 */
+                int r1 = rankIndex(ranks, from, to, lower);
+
+                select(a, ranks, from, r1, bits, low, lower);
+
+                from = rankIndex(ranks, r1, to, upper);
+                low = upper;
+            }
+        }
+    }
+
+    /**
+     * Places the element of the given rank at its sorted position in the
+     * specified range of the array in linear worst-case time, using the
+     * median of medians of five elements as the pivot.
+     *
+     * @param a the array for selection
+     * @param rank the index of the element to be selected
+     * @param low the index of the first element, inclusive, for selection
+     * @param high the index of the last element, exclusive, for selection
+     */
+    private static void medianSelect(double[] a, int rank, int low, int high) {
+        while (high - low >= MAX_INSERTION_SORT_SIZE) {
+            /*
+             * Move the medians of the groups of five
+             * elements to the beginning of the range.
+             */
+            int m = low;
+
+            for (int i = low; i + 5 <= high; i += 5, ++m) {
+                insertionSort(a, i, i + 5);
+                double t = a[m]; a[m] = a[i + 2]; a[i + 2] = t;
+            }
+
+            /*
+             * Partition the range around the median of medians.
+             */
+            int middle = (low + m) >>> 1;
+            medianSelect(a, middle, low, m);
+            int[] indices = partitionWithOnePivot(a, low, high, middle, middle);
+
+            if (rank < indices[0]) {
+                high = indices[0];
+            } else if (rank >= indices[1]) {
+                low = indices[1];
+            } else {
+                return;
+            }
+        }
+        insertionSort(a, low, high);
+    }
+
+    /**
+     * Sorts the first k positions of the specified range of the array:
+     * the k least elements are moved to the beginning of the range in
+     * the order of {@link Double#compare}, and the other elements follow
+     * them in unspecified order.<p>
+     *
+     * Only the parts after partitioning, which overlap the first k
+     * positions, are processed, therefore the expected running time
+     * is O(n + k log(k)).
+     *
+     * @param a the array to be partially sorted
+     * @param parallelism the parallelism level
+     * @param k the number of the least elements to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void partialSort(double[] a, int parallelism, int k, int low, int high) {
+        if (k >= high - low) {
+            sort(a, parallelism, low, high);
+            return;
+        }
+        int limit = low + Math.max(k, 0);
+
+        /*
+         * Phase 1. Count the number of negative zero -0.0d,
+         * turn them into positive zero, and move all NaNs
+         * to the end of the array.
+         */
+        long count = parallelism > 1 && high - low > MIN_PROCESS_PART_SIZE << 1
+            ? parallelMoveNaNs(a, parallelism, low, high) : moveNaNs(a, low, high);
+
+        int numNegativeZero = (int) (count >>> 32);
+        high = (int) count;
+
+        /*
+         * Phase 2. Sort the first positions before NaNs,
+         * which are already in place.
+         */
+        limit = Math.min(limit, high);
+
+        if (parallelism > 1 && high - low > MIN_PARALLEL_SORT_SIZE) {
+            new Sorter<>(a, null, false, parallelism, low, high - low, limit).invoke();
+        } else {
+            partialSort(null, a, limit, low, high);
+        }
+
+        /*
+         * Phase 3. Turn positive zero 0.0d back into negative
+         * zero -0.0d, the sorted positions first.
+         */
+        if (numNegativeZero == 0) {
+            return;
+        }
+
+        /*
+         * Find the index of the first zero in the sorted positions.
+         */
+        int lo = low;
+
+        for (int hi = limit - 1; lo <= hi; ) {
+            int middle = (lo + hi) >>> 1;
+
+            if (a[middle] < 0.0d) {
+                lo = middle + 1;
+            } else {
+                hi = middle - 1;
+            }
+        }
+
+        /*
+         * Replace the required number of 0.0d by -0.0d,
+         * which remain in unspecified order after the limit.
+         */
+        for (int i = lo; i < limit && numNegativeZero > 0 && a[i] == 0.0d; ++i) {
+            a[i] = -0.0d;
+            numNegativeZero--;
+        }
+        for (int i = limit; numNegativeZero > 0; ++i) {
+            if (a[i] == 0.0d) {
+                a[i] = -0.0d;
+                numNegativeZero--;
+            }
+        }
+    }
+
+    /**
+     * Sorts the leading part of the specified range of the array up to
+     * the given limit using Dual-Pivot Quicksort. The parts, which are
+     * before the limit, are sorted completely (possibly in parallel),
+     * the part with the limit is partitioned again, and the parts
+     * after the limit are skipped.
+     *
+     * @param sorter parallel context
+     * @param a the array to be partially sorted
+     * @param limit the index of the last element, exclusive, to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void partialSort(Sorter<double[]> sorter, double[] a, int limit, int low, int high) {
+        for (int bits = 0; limit > low; ) {
+            int size = high - low;
+
+            /*
+             * Sort the part completely, if it is before
+             * the limit, or it is small.
+             */
+            if (high <= limit || size < MAX_INSERTION_SORT_SIZE) {
+                sort(sorter, a, bits, low, high);
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, low, high);
+                return;
+            }
+
+            /*
+             * Use the same five sample elements
+             * to determine pivots as sorting.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            double a3 = a[e3];
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             */
+            if (a[e1] > a[e4]) { double t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { double t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { double t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { double t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { double t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
+                }
+
+                /*
+                 * Sort the left part and the central part, if it is
+                 * before the limit, (possibly in parallel), excluding
+                 * known pivots, and iterate along the part with the limit.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits, low, lower);
+
+                    if (limit > upper) {
+                        sorter.fork(bits | 1, lower + 1, upper);
+                    }
+                } else {
+                    sort(sorter, a, bits, low, lower);
+
+                    if (limit > upper) {
+                        sort(sorter, a, bits | 1, lower + 1, upper);
+                    }
+                }
+                low = limit > upper ? upper + 1 : lower + 1;
+                high = limit > upper ? high : upper;
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                if (limit <= lower) {
+                    high = lower; // Iterate along the left part
+                    continue;
+                }
+
+                /*
+                 * Sort the left part (possibly in parallel) and iterate
+                 * along the right part, if it overlaps the limit. All
+                 * elements from the central part are equal and
+                 * therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits, low, lower);
+                } else {
+                    sort(sorter, a, bits, low, lower);
+                }
+                low = upper;
+            }
+            bits |= 1;
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using Dual-Pivot Quicksort.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sort(Sorter<double[]> sorter, double[] a, int bits, int low, int high) {
+        while (true) {
+            int size = high - low;
+
+            /*
+             * Run adaptive mixed insertion sort on small non-leftmost parts.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE + bits && (bits & 1) > 0) {
+                sort(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::mixedInsertionSort);
+                return;
+            }
+
+            /*
+             * Invoke insertion sort on small leftmost part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                sort(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, DualPivotQuicksort_r38_12::insertionSort);
+                return;
+            }
+
+            /*
+             * Try merging sort on large part.
+             */
+            if (size > MIN_MERGING_SORT_SIZE * bits
+                    && tryMergingSort(sorter, a, low, high)) {
+                return;
+            }
+
+            /*
+             * Divide the given array into the golden ratio using
+             * an inexpensive approximation to select five sample
+             * elements and determine pivots.
+             */
+            int step = (size >> 2) + (size >> 3) + (size >> 7);
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection as described below. The
+             * unequal choice of spacing these elements was empirically
+             * determined to work well on a wide variety of inputs.
+             */
+            int e1 = low + step;
+            int e5 = high - step;
+            int e3 = (e1 + e5) >>> 1;
+            int e2 = (e1 + e3) >>> 1;
+            int e4 = (e3 + e5) >>> 1;
+            double a3 = a[e3];
+
+            /*
+             * Check if part is large and contains random
+             * data, taking into account parallel context.
+             */
+            boolean isLargeRandom =
+                size > MIN_DOUBLE_RADIX_SORT_SIZE && (sorter == null || bits > 0) &&
+//              size > MIN_DOUBLE_RADIX_SORT_SIZE && (sorter != null && bits > 0) &&
+                (a[e1] > a[e2] || a[e2] > a3 || a3 > a[e4] || a[e4] > a[e5]);
+
+            /*
+             * Sort these elements in-place by the combination
+             * of 4-element sorting network and insertion sort.
+             *
+             *   1 ---------o---------------o-----------------
+             *              |               |
+             *   2 ---------|-------o-------o-------o---------
+             *              |       |               |
+             *   4 ---------o-------|-------o-------o---------
+             *                      |       |
+             *   5 -----------------o-------o-----------------
+             */
+            if (a[e1] > a[e4]) { double t = a[e1]; a[e1] = a[e4]; a[e4] = t; }
+            if (a[e2] > a[e5]) { double t = a[e2]; a[e2] = a[e5]; a[e5] = t; }
+            if (a[e4] > a[e5]) { double t = a[e4]; a[e4] = a[e5]; a[e5] = t; }
+            if (a[e1] > a[e2]) { double t = a[e1]; a[e1] = a[e2]; a[e2] = t; }
+            if (a[e2] > a[e4]) { double t = a[e2]; a[e2] = a[e4]; a[e4] = t; }
+
+            /*
+             * Insert the third element.
+             */
+            if (a3 < a[e2]) {
+                if (a3 < a[e1]) {
+                    a[e3] = a[e2]; a[e2] = a[e1]; a[e1] = a3;
+                } else {
+                    a[e3] = a[e2]; a[e2] = a3;
+                }
+            } else if (a3 > a[e4]) {
+                if (a3 > a[e5]) {
+                    a[e3] = a[e4]; a[e4] = a[e5]; a[e5] = a3;
+                } else {
+                    a[e3] = a[e4]; a[e4] = a3;
+                }
+            }
+
+            /*
+             * Try Radix sort on large random data,
+             * if the sampled cost model prefers it.
+             */
+            if (isLargeRandom
+                    && a[e2] < a[e3] && a[e3] < a[e4]
+                    && preferRadixSort(a, low, high)
+                    && tryRadixSort(sorter, a, low, high)) {
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSort(a, low, high);
+                return;
+            }
+
+            /*
+             * lower - the index of the last element of the left part
+             * upper - the index of the first element of the right part
+             */
+            int lower, upper;
+
+            /*
+             * Partitioning with two pivots on array of fully random elements.
+             */
+            if (a[e1] < a[e2] && a[e2] < a[e3] && a[e3] < a[e4] && a[e4] < a[e5]) {
+
+                int[] indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, e1, e5, size > MIN_BLOCK_PARTITION_SIZE
+                        ? DualPivotQuicksort_r38_12::partitionWithBlocks
+                        : DualPivotQuicksort_r38_12::partitionWithTwoPivots);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, lower + 1, upper);
+                    sorter.fork(bits | 1, upper + 1, high);
+                } else {
+                    sort(sorter, a, bits | 1, lower + 1, upper);
+                    sort(sorter, a, bits | 1, upper + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                int[] indices = partition(double.class, a, Unsafe.ARRAY_DOUBLE_BASE_OFFSET,
+                    low, high, e3, e3, DualPivotQuicksort_r38_12::partitionWithOnePivot);
+                lower = indices[0]; upper = indices[1];
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, upper, high);
+                } else {
+                    sort(sorter, a, bits | 1, upper, high);
+                }
+            }
+            high = lower; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Partitions the specified range of the array using two given pivots.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithTwoPivots(
+            double[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        int upper = --high;
+        int lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. These values are inexpensive approximation
+         * of tertiles. Note, that pivot1 < pivot2.
+         */
+        final double pivot1 = a[pivotIndex1]; // todo final
+        final double pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots. When
+         * partitioning is completed, the pivots are swapped back
+         * into their final positions, and excluded from the next
+         * subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+        a[pivotIndex2] = a[upper];
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a[++lower] < pivot1);
+        while (a[--upper] > pivot2);
+
+        /*
+         * Backward 3-interval partitioning
+         *
+         *     left part                     central part          right part
+         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
+         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
+         * +--------------+----------+--------------------------+--------------+
+         *               ^          ^                            ^
+         *               |          |                            |
+         *             lower        k                          upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int unused = --lower, k = ++upper; --k > lower; ) {
+            double ak = a[k];
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a[++lower] < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a[lower] > pivot2) {
+                    a[k] = a[--upper];
+                    a[upper] = a[lower];
+                } else {
+                    a[k] = a[lower];
+                }
+                a[lower] = ak;
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                a[k] = a[--upper];
+                a[upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low]  = a[lower]; a[lower] = pivot1;
+        a[high] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array using two given
+     * pivots by two passes of branch-free block partitioning: at
+     * first by pivot1 and then the rest of the range by pivot2.<p>
+     *
+     * The parts are the same as after partitioning with two pivots,
+     * but the elements are classified by blocks without branches,
+     * therefore mispredictions on random data are avoided.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithBlocks(
+            double[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+
+        int end = --high;
+
+        /*
+         * Use the first and fifth of the five sorted elements as
+         * the pivots. Note, that pivot1 < pivot2.
+         */
+        double pivot1 = a[pivotIndex1];
+        double pivot2 = a[pivotIndex2];
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots.
+         */
+        a[pivotIndex1] = a[low];
+        a[pivotIndex2] = a[end];
+
+        /*
+         * Split the range by pivot1, and then by pivot2
+         * using the nearest greater value as the bound.
+         */
+        int lower = partitionByBlocks(a, low + 1, end, pivot1) - 1;
+        int upper = pivot2 == Double.POSITIVE_INFINITY ? end :
+            partitionByBlocks(a, lower + 1, end, Math.nextUp(pivot2));
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a[low] = a[lower]; a[lower] = pivot1;
+        a[end] = a[upper]; a[upper] = pivot2;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Partitions the specified range of the array, so that
+     * the elements less than the bound precede other elements,
+     * using branch-free classification of blocks of elements.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param bound the value to compare the elements with
+     * @return the index of the first element, which is not less than the bound
+     */
+    private static int partitionByBlocks(double[] a, int low, int high, double bound) {
+        long maskL = 0L, maskR = 0L;
+
+        /*
+         * Process the blocks from both sides, while they don't overlap.
+         */
+        while (high - low >= PARTITION_BLOCK_SIZE << 1) {
+
+            /*
+             * Mark the elements, which are not less
+             * than the bound, in the left block.
+             */
+            if (maskL == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskL |= (a[low + i] < bound ? 0L : 1L) << i;
+                }
+            }
+
+            /*
+             * Mark the elements, which are less
+             * than the bound, in the right block.
+             */
+            if (maskR == 0L) {
+                for (int i = 0; i < PARTITION_BLOCK_SIZE; ++i) {
+                    maskR |= (a[high - 1 - i] < bound ? 1L : 0L) << i;
+                }
+            }
+
+            /*
+             * Swap the misplaced elements of the blocks
+             * and clear their marks.
+             */
+            while (maskL != 0L && maskR != 0L) {
+                int i = low + Long.numberOfTrailingZeros(maskL);
+                int j = high - 1 - Long.numberOfTrailingZeros(maskR);
+                double ai = a[i]; a[i] = a[j]; a[j] = ai;
+                maskL &= maskL - 1;
+                maskR &= maskR - 1;
+            }
+
+            /*
+             * Move to the next blocks, if done.
+             */
+            if (maskL == 0L) {
+                low += PARTITION_BLOCK_SIZE;
+            }
+            if (maskR == 0L) {
+                high -= PARTITION_BLOCK_SIZE;
+            }
+        }
+
+        /*
+         * Partition the rest of the range, including
+         * the unfinished block, by simple scanning.
+         */
+        while (true) {
+            while (low < high && a[low] < bound) {
+                ++low;
+            }
+            while (low < high && a[high - 1] >= bound) {
+                --high;
+            }
+            if (low == high) {
+                return low;
+            }
+            double al = a[low]; a[low++] = a[--high]; a[high] = al;
+        }
+    }
+
+    /**
+     * Partitions the specified range of the array using one given pivot.
+     *
+     * @param a the array for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of single pivot
+     * @param pivotIndex2 the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static int[] partitionWithOnePivot(
             double[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
 
         /*
-         * Pointers to the right and left parts.
+         * Pointers to the right and left parts.
+         */
+        int upper = high;
+        int lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         * This value is inexpensive approximation of the median.
+         */
+        final double pivot = a[pivotIndex1];
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot. After
+         * completion of partitioning the pivot is swapped
+         * back into its final position, and excluded from
+         * the next subsequent sorting.
+         */
+        a[pivotIndex1] = a[lower];
+
+        /*
+         * Dutch National Flag partitioning
+         *
+         *     left part               central part    right part
+         * +------------------------------------------------------+ // todo ---+----
+         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
+         * +------------------------------------------------------+
+         *               ^          ^                ^
+         *               |          |                |
+         *             lower        k              upper
+         *
+         * Pointer k is the last index of ?-part
+         * Pointer lower is the last index of left part
+         * Pointer upper is the first index of right part
+         */
+        for (int k = upper; --k > lower; ) {
+            double ak = a[k];
+
+            if (ak == pivot) {
+                continue;
+            }
+            a[k] = pivot;
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a[++lower] < pivot);
+
+                if (a[lower] > pivot) {
+                    a[--upper] = a[lower];
+                }
+                a[lower] = ak;
+            } else { // ak > pivot - Move a[k] to the right part
+                a[--upper] = ak;
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a[low] = a[lower]; a[lower] = pivot;
+
+        return Workspace.indices(lower, upper);
+    }
+
+    /**
+     * Sorts the specified range of the array using mixed insertion sort.<p>
+     *
+     * Mixed insertion sort is combination of pin insertion sort,
+     * simple insertion sort and pair insertion sort.<p>
+     *
+     * In the context of Dual-Pivot Quicksort, the pivot element
+     * from the left part plays the role of sentinel, because it
+     * is less than any elements from the given part. Therefore,
+     * expensive check of the left range can be skipped on each
+     * iteration unless it is the leftmost call.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void mixedInsertionSort(double[] a, int low, int high) {
+
+        /*
+         * Split part for pin and pair insertion sorts.
+         */
+        int end = high - 3 * ((high - low) >> 3 << 1);
+
+        /*
+         * Invoke simple insertion sort on small part.
+         */
+        if (end == high) {
+            for (int i; ++low < high; ) {
+                double ai = a[i = low];
+
+                while (ai < a[i - 1]) {
+                    a[i] = a[--i];
+                }
+                a[i] = ai;
+            }
+            return;
+        }
+
+        /*
+         * Start with pin insertion sort.
+         */
+        for (int i, p = high; ++low < end; ) {
+            double ai = a[i = low], pin = a[--p];
+
+            /*
+             * Swap larger element with pin.
+             */
+            if (ai > pin) {
+                ai = pin;
+                a[p] = a[i];
+            }
+
+            /*
+             * Insert element into sorted part.
+             */
+            while (ai < a[i - 1]) {
+                a[i] = a[--i];
+            }
+            a[i] = ai;
+        }
+
+        /*
+         * Finish with pair insertion sort.
+         */
+        for (int i; low < high; ++low) {
+            double a1 = a[i = low], a2 = a[++low];
+
+            /*
+             * Insert two elements per iteration: at first, insert the
+             * larger element and then insert the smaller element, but
+             * from the position where the larger element was inserted.
+             */
+            if (a1 > a2) {
+
+                while (a1 < a[--i]) {
+                    a[i + 2] = a[i];
+                }
+                a[++i + 1] = a1;
+
+                while (a2 < a[--i]) {
+                    a[i + 1] = a[i];
+                }
+                a[i + 1] = a2;
+
+            } else if (a1 < a[i - 1]) {
+
+                while (a2 < a[--i]) {
+                    a[i + 2] = a[i];
+                }
+                a[++i + 1] = a2;
+
+                while (a1 < a[--i]) {
+                    a[i + 1] = a[i];
+                }
+                a[i + 1] = a1;
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array using insertion sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void insertionSort(double[] a, int low, int high) {
+        for (int i, k = low; ++k < high; ) {
+            double ai = a[i = k];
+
+            if (ai < a[i - 1]) {
+                do {
+                    a[i] = a[--i];
+                } while (i > low && ai < a[i - 1]);
+
+                a[i] = ai;
+            }
+        }
+    }
+
+    /**
+     * Tries to sort the specified range of the array using merging sort.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryMergingSort(Sorter<double[]> sorter, double[] a, int low, int high) {
+        int parts = sorter == null ? 0 : Math.min((high - low) / MIN_PARALLEL_SORT_SIZE, sorter.parallelism << 2);
+
+        /*
+         * The element run[i] holds the start index
+         * of i-th sequence in non-descending order,
+         * the element run[count] holds the end index.
+         */
+        int[] run = parts > 1 ? parallelFindRuns(sorter, a, parts, low, high) :
+            findRuns(sorter, a, true, low, high);
+
+        if (run == null) {
+            return false;
+        }
+        int count = 0;
+
+        while (run[++count] < high);
+
+        /*
+         * Merge all runs.
+         */
+        if (count > 1) {
+            double[] b; int offset = low;
+
+            if (sorter != null && (b = sorter.b) != null) {
+                offset = sorter.offset;
+            } else if ((b = tryAllocate(sorter, double[].class, high - low)) == null) {
+                return false;
+            }
+            mergeRuns(sorter, a, b, offset, true, run, 0, count);
+        }
+        return true;
+    }
+
+    /**
+     * Identifies the runs of the specified range, reversing
+     * the descending sequences into ascending order.
+     *
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param leftmost indicates that the first run can't be the tail
+     *        of the run of the previous part, therefore it must be large
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
+     */
+    private static int[] findRuns(Sorter<double[]> sorter, double[] a, boolean leftmost, int low, int high) {
+        int count = 1, capacity = 0;
+        int[] run = null;
+
+        /*
+         * Identify all possible runs.
+         */
+        for (int k = low + 1, last = low; k < high; ) {
+
+            /*
+             * Find the next run.
+             */
+            if (a[k - 1] < a[k]) {
+
+                // Identify ascending sequence
+                while (++k < high && a[k - 1] <= a[k]);
+
+            } else if (a[k - 1] > a[k]) {
+
+                // Identify descending sequence
+                while (++k < high && a[k - 1] >= a[k]);
+
+                // Reverse into ascending order
+                for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
+                    double ai = a[i]; a[i] = a[j]; a[j] = ai;
+                }
+
+                // todo javadoc
+                if (k < high && a[k - 1] < a[k]) {
+                    continue;
+                }
+
+            } else { // Identify constant sequence
+                for (double ak = a[k]; ++k < high && ak == a[k]; );
+
+                // todo javadoc
+                if (k < high) {
+                    continue;
+                }
+            }
+
+            /*
+             * Process the current run.
+             */
+            if (run == null) {
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (leftmost && k < high && k - low < count * MIN_RUN_SIZE) {
+                    return null;
+                }
+
+                /*
+                 * Monotonous sequence is the single run.
+                 */
+                capacity = k == high ? 2 : Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+                run = sorter == null ? Workspace.run(capacity) : new int[capacity];
+                run[0] = low;
+
+            } else if (a[last - 1] > a[last]) { // Start the new run
+
+                /*
+                 * Terminate scanning, if the runs are too small.
+                 */
+                if (k - low < count * MIN_RUN_SIZE) {
+                    return null;
+                }
+
+                if (++count == capacity) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return null;
+                }
+            }
+
+            /*
+             * Save the current run.
+             */
+            run[count] = (last = k);
+
+            /*
+             * Check single-element run at the end.
+             */
+            if (++k == high) {
+                --k;
+            }
+        }
+
+        return run;
+    }
+
+    /**
+     * Identifies the runs of the parts of the specified range in
+     * parallel and joins the runs which cross the boundaries of
+     * the parts.
+     *
+     * @param sorter parallel context
+     * @param a the array to be scanned
+     * @param parts the number of the parts
+     * @param low the index of the first element, inclusive, to be scanned
+     * @param high the index of the last element, exclusive, to be scanned
+     * @return the start indexes of the runs followed by the end index,
+     *         or {@code null} if the range is not highly structured
+     */
+    private static int[] parallelFindRuns(Sorter<double[]> sorter, double[] a, int parts, int low, int high) {
+        int[][] runs = new int[parts][];
+        new RunScanner<>(sorter, a, runs, low, high, 0, parts).invoke();
+
+        int capacity = Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8;
+        int[] run = new int[capacity];
+        int count = 0, step = (high - low) / parts;
+
+        for (int i = 0; i < parts; ++i) {
+            int[] part = runs[i];
+
+            /*
+             * Terminate, if the part is not highly structured.
+             */
+            if (part == null) {
+                return null;
+            }
+            int end = i == parts - 1 ? high : part[0] + step;
+
+            /*
+             * Skip the start of the first run of the part, if the
+             * last run of the previous part goes on with it.
+             */
+            for (int j = count > 0 && a[part[0] - 1] <= a[part[0]] ? 1 : 0; part[j] < end; ++j) {
+
+                if (count == capacity - 1) {
+
+                    /*
+                     * Array is not highly structured.
+                     */
+                    return null;
+                }
+                run[count++] = part[j];
+            }
+        }
+        run[count] = high;
+
+        /*
+         * Check the size of the joined runs.
+         */
+        return high - low < count * MIN_RUN_SIZE ? null : run;
+    }
+
+    /**
+     * Merges the specified runs.
+     *
+     * @param sorter parallel context
+     * @param a the source array
+     * @param b the temporary buffer used in merging
+     * @param offset the start index in the source, inclusive
+     * @param aim specifies merging: to source (+1), buffer (-1) or any (0) // todo javadoc update
+     * @param run the start indexes of the runs, inclusive
+     * @param lo the start index of the first run, inclusive
+     * @param hi the start index of the last run, inclusive
+     * @return the destination where the runs are merged // todo r
+     */
+    private static void mergeRuns(Sorter<double[]> sorter, double[] a, double[] b, int offset,
+            boolean aim, int[] run, int lo, int hi) {
+
+        if (hi - lo == 1) {
+            if (!aim) {
+                System.arraycopy(a, run[lo], b, run[lo] - offset, run[hi] - run[lo]);
+            }
+            return;
+        }
+
+        /*
+         * Merge large parts in parallel.
+         */
+        if (sorter != null && run[hi] - run[lo] > MIN_PARALLEL_SORT_SIZE) {
+            new RunMerger<>(null, a, b, offset, aim, run, lo, hi).invoke();
+            return;
+        }
+
+        /*
+         * Split the array into two approximately equal parts.
+         */
+        int mi = lo, rmi = (run[lo] + run[hi]) >>> 1;
+        while (run[++mi + 1] <= rmi);
+
+        /*
+         * Merge the runs of all parts.
+         */
+        mergeRuns(sorter, a, b, offset, !aim, run, lo, mi);
+        mergeRuns(sorter, a, b, offset, !aim, run, mi, hi);
+
+        int k  = !aim ? run[lo] - offset : run[lo];
+        int lo1 = aim ? run[lo] - offset : run[lo];
+        int hi1 = aim ? run[mi] - offset : run[mi];
+        int lo2 = aim ? run[mi] - offset : run[mi];
+        int hi2 = aim ? run[hi] - offset : run[hi];
+
+        double[] dst = aim ? a : b;
+        double[] src = aim ? b : a;
+
+        /*
+         * Merge the left and right parts.
+         */
+        mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
+    }
+
+    /**
+     * Merges the sorted parts.
+     *
+     * @param merger parallel context
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param a1 the first part // todo r
+     * @param src the first part // todo a
+     * @param lo1 the start index of the first part, inclusive
+     * @param hi1 the end index of the first part, exclusive
+     * @param a2 the second part // todo r
+     * @param lo2 the start index of the second part, inclusive
+     * @param hi2 the end index of the second part, exclusive
+     */
+    private static void mergeParts(Merger<double[]> merger, double[] dst, int k,
+            double[] src, int lo1, int hi1, int lo2, int hi2) {
+
+        /*
+         * Merge the parts in parallel.
+         */
+        if (merger != null) {
+
+            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+
+                /*
+                 * The first part must be larger.
+                 */
+                if (hi1 - lo1 < hi2 - lo2) {
+                    int lo = lo1; lo1 = lo2; lo2 = lo;
+                    int hi = hi1; hi1 = hi2; hi2 = hi;
+                }
+
+                /*
+                 * Find the median of the larger part.
+                 */
+                int mi1 = (lo1 + hi1) >>> 1;
+                double key = src[mi1];
+                int mi2 = hi2;
+
+                /*
+                 * Split the smaller part.
+                 */
+                for (int mid = lo2; mid < mi2; ) {
+                    int d = (mid + mi2) >>> 1; // todo rename int m = ...
+
+                    if (key > src[d]) {
+                        mid = d + 1;
+                    } else {
+                        mi2 = d;
+                    }
+                }
+
+                /*
+                 * Merge other parts in parallel.
+                 */
+                merger.fork(k, lo1, mi1, lo2, mi2);
+
+                /*
+                 * Reserve space for the second parts.
+                 */
+                k += mi2 - lo2 + mi1 - lo1;
+
+                /*
+                 * Iterate along the second parts.
+                 */
+                lo1 = mi1;
+                lo2 = mi2;
+            }
+        }
+
+        /*
+         * Merge small parts sequentially by the simple loop, which is
+         * fast while the branches are predicted well. From time to time
+         * the block is merged without branches to measure how the parts
+         * interleave: the parts taking turns by short irregular runs
+         * are merged by blocks, and the long run of one part is taken
+         * by galloping. Otherwise the next block is measured later.
+         */
+        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+
+            for (int step = MAX_MERGE_PROBE_STEP / 2, probe = k + step; ; ) {
+                int size = Math.min(hi1 - lo1, hi2 - lo2);
+
+                /*
+                 * Merge the rest by the simple loop, if one of the parts
+                 * ends before the next block. The loop checks the bound of
+                 * the part, which ends first, if the last elements differ.
+                 */
+                if (size <= Math.max(probe - k, MERGE_BLOCK_SIZE)) {
+                    if (src[hi1 - 1] < src[hi2 - 1]) {
+                        while (lo1 < hi1) {
+                            double slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else if (src[hi1 - 1] > src[hi2 - 1]) {
+                        while (lo2 < hi2) {
+                            double slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    } else {
+                        while (lo1 < hi1 && lo2 < hi2) {
+                            double slo1 = src[lo1];
+
+                            if (slo1 <= src[lo2]) {
+                                dst[k++] = src[lo1++];
+                            }
+                            if (slo1 >= src[lo2]) {
+                                dst[k++] = src[lo2++];
+                            }
+                        }
+                    }
+                    break;
+                }
+
+                /*
+                 * Merge the parts by the simple loop, which takes at most
+                 * one element from each part, until the next block.
+                 */
+                if (k < probe) {
+                    while (k < probe) {
+                        double slo1 = src[lo1];
+
+                        if (slo1 <= src[lo2]) {
+                            dst[k++] = src[lo1++];
+                        }
+                        if (slo1 >= src[lo2]) {
+                            dst[k++] = src[lo2++];
+                        }
+                    }
+                    continue;
+                }
+
+                /*
+                 * Merge the block and count the elements of the parts.
+                 */
+                int pattern = mergeBlock(dst, k, src, lo1, lo2);
+                int second = Integer.bitCount(pattern);
+                k += MERGE_BLOCK_SIZE;
+                lo1 += MERGE_BLOCK_SIZE - second;
+                lo2 += second;
+
+                if (pattern == 0 || pattern == -1) {
+
+                    /*
+                     * Gallop along the part, which has given
+                     * all elements of the block.
+                     */
+                    int from = k;
+
+                    if (pattern == 0) {
+                        int end = gallop(src[lo2], src, lo1, hi1, true);
+                        System.arraycopy(src, lo1, dst, k, end - lo1);
+                        k += end - lo1;
+                        lo1 = end;
+                    } else {
+                        int end = gallop(src[lo1], src, lo2, hi2, false);
+                        System.arraycopy(src, lo2, dst, k, end - lo2);
+                        k += end - lo2;
+                        lo2 = end;
+                    }
+
+                    /*
+                     * Measure the next block right after the long run,
+                     * and merge longer by the simple loop otherwise.
+                     */
+                    if (k - from < MIN_GALLOP_RUN) {
+                        step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                        probe = k + step;
+                    } else {
+                        step = MERGE_BLOCK_SIZE;
+                        probe = k;
+                    }
+                } else if (Integer.bitCount((pattern ^ pattern >>> 1) << 1) < MIN_IRREGULAR_TURNS
+                        || isRegular(pattern)) {
+
+                    /*
+                     * Merge longer by the simple loop, since
+                     * the parts give long or regular runs.
+                     */
+                    step = Math.min(step << 1, MAX_MERGE_PROBE_STEP);
+                    probe = k + step;
+                } else {
+
+                    /*
+                     * Continue by blocks, since the parts
+                     * give short runs irregularly.
+                     */
+                    step = MERGE_BLOCK_SIZE;
+                    probe = k;
+                }
+            }
+        }
+
+        /*
+         * Copy the tail of the left part.
+         */
+        if (lo1 < hi1) {
+            System.arraycopy(src, lo1, dst, k, hi1 - lo1);
+        }
+
+        /*
+         * Copy the tail of the right part.
+         */
+        if (lo2 < hi2) {
+            System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+        }
+    }
+
+    /**
+     * Merges the block of the parts without branches, selecting
+     * the smaller head and advancing its part by conditional moves.
+     * The block is merged out of line, so that the simple loop
+     * of merging is compiled as tight as without the block.<p>
+     *
+     * The elements are compared and selected by their bits, ordered
+     * as long values, which are moved conditionally unlike double values.
+     * The parts contain neither NaNs nor negative zeros.
+     *
+     * @param dst the destination where the block is merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source of the parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @return the bits of the block, set for the elements given
+     *         by the second part, the last element is the lowest bit
+     */
+    @DontInline
+    private static int mergeBlock(double[] dst, int k, double[] src, int lo1, int lo2) {
+        int pattern = 0;
+
+        for (int end = k + MERGE_BLOCK_SIZE; k < end; ) {
+            long x = Double.doubleToRawLongBits(src[lo1]);
+            long y = Double.doubleToRawLongBits(src[lo2]);
+            boolean second = (y ^ y >> 63 >>> 1) < (x ^ x >> 63 >>> 1);
+            dst[k++] = Double.longBitsToDouble(second ? y : x);
+            lo1 += second ? 0 : 1;
+            lo2 += second ? 1 : 0;
+            pattern = pattern << 1 | (second ? 1 : 0);
+        }
+        return pattern;
+    }
+
+    /**
+     * Finds the end of the leading elements of the sorted part, which
+     * are less than the key, or not greater, if {@code inclusive} is
+     * set, by exponential search followed by binary search, so that
+     * the cost is logarithmic in the number of the found elements.
+     *
+     * @param key the key to be compared with
+     * @param a the sorted part
+     * @param low the start index of the part, inclusive
+     * @param high the end index of the part, exclusive
+     * @param inclusive specifies whether the elements equal to the key are taken
+     * @return the index of the first element which is not taken
+     */
+    private static int gallop(double key, double[] a, int low, int high, boolean inclusive) {
+        int step = 1;
+
+        /*
+         * Double the step while the elements are taken.
+         */
+        for (int i = low; i < high && (inclusive ? a[i] <= key : a[i] < key); i = low + step - 1) {
+            low = i + 1;
+            step <<= 1;
+        }
+        high = Math.min(low + step - 1, high);
+
+        /*
+         * Find the end within the last step.
+         */
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (inclusive ? a[mid] <= key : a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the positions in the sorted parts, which split off the given
+     * number of the smallest elements, by narrowing the windows of the
+     * parts around the pivot taken in the middle of the largest window.
+     *
+     * @param a the array with the parts
+     * @param start the start indexes of the parts, inclusive
+     * @param end the end indexes of the parts, exclusive
+     * @param rank the number of the smallest elements
+     * @return the positions in the parts
+     */
+    private static int[] splitParts(double[] a, int[] start, int[] end, int rank) {
+        int[] lo = start.clone(), hi = end.clone();
+        int[] lower = new int[lo.length], upper = new int[lo.length];
+
+        while (true) {
+
+            /*
+             * Find the largest window.
+             */
+            int p = 0;
+
+            for (int i = 1; i < lo.length; ++i) {
+                if (hi[i] - lo[i] > hi[p] - lo[p]) {
+                    p = i;
+                }
+            }
+
+            /*
+             * All windows are empty, the positions are found.
+             */
+            if (lo[p] == hi[p]) {
+                return lo;
+            }
+            double pivot = a[(lo[p] + hi[p]) >>> 1];
+            int less = 0, notGreater = 0;
+
+            /*
+             * Count the elements less than the pivot and not greater.
+             */
+            for (int i = 0; i < lo.length; ++i) {
+                lower[i] = gallop(pivot, a, lo[i], hi[i], false);
+                upper[i] = gallop(pivot, a, lower[i], hi[i], true);
+                less += lower[i] - start[i];
+                notGreater += upper[i] - start[i];
+            }
+
+            if (rank < less) {
+                int[] t = hi; hi = lower; lower = t;
+            } else if (rank > notGreater) {
+                int[] t = lo; lo = upper; upper = t;
+            } else {
+
+                /*
+                 * Take the elements equal to the pivot up to the rank.
+                 */
+                for (int i = 0, rest = rank - less; i < lower.length; ++i) {
+                    int take = Math.min(rest, upper[i] - lower[i]);
+                    lower[i] += take;
+                    rest -= take;
+                }
+                return lower;
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted parts by the tournament, where the internal
+     * nodes of the tree keep the losers of the matches, and the root
+     * keeps the winner, so that each element takes the logarithmic
+     * number of comparisons and is moved once. Four parts are merged
+     * with the heads kept in local variables, until a part is exhausted.
+     *
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     */
+    private static void multiMerge(double[] dst, int k, double[] src, int[] lo, int[] hi) {
+
+        /*
+         * Merge four parts by two matches of the heads
+         * and the final, while no part is exhausted.
+         */
+        if (lo.length == 4) {
+            int i0 = lo[0], i1 = lo[1], i2 = lo[2], i3 = lo[3];
+            int h0 = hi[0], h1 = hi[1], h2 = hi[2], h3 = hi[3];
+
+            while (i0 < h0 && i1 < h1 && i2 < h2 && i3 < h3) {
+                double a0 = src[i0], a1 = src[i1], a2 = src[i2], a3 = src[i3];
+
+                if (a0 <= a1) {
+                    if (a2 <= a3) {
+                        if (a0 <= a2) { dst[k++] = a0; ++i0; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a0 <= a3) { dst[k++] = a0; ++i0; } else { dst[k++] = a3; ++i3; }
+                    }
+                } else {
+                    if (a2 <= a3) {
+                        if (a1 <= a2) { dst[k++] = a1; ++i1; } else { dst[k++] = a2; ++i2; }
+                    } else {
+                        if (a1 <= a3) { dst[k++] = a1; ++i1; } else { dst[k++] = a3; ++i3; }
+                    }
+                }
+            }
+            lo[0] = i0; lo[1] = i1; lo[2] = i2; lo[3] = i3;
+        }
+
+        /*
+         * Merge the rest by the tournament.
+         */
+        int n = lo.length, size = 0;
+        int[] tree = new int[n];
+
+        /*
+         * Start with the virtual part, which beats any other part.
+         */
+        Arrays.fill(tree, n);
+
+        for (int i = n - 1; i >= 0; --i) {
+            size += hi[i] - lo[i];
+            int w = i;
+
+            for (int t = (i + n) >> 1; t > 0; t >>= 1) {
+                if (beats(src, lo, hi, tree[t], w)) {
+                    int loser = w; w = tree[t]; tree[t] = loser;
+                }
+            }
+            tree[0] = w;
+        }
+
+        /*
+         * Move the winner and replay its matches
+         * with the next element of the same part.
+         */
+        for (int end = k + size; k < end; ) {
+            int w = tree[0];
+            dst[k++] = src[lo[w]++];
+            boolean done = lo[w] == hi[w];
+            double key = done ? 0 : src[lo[w]];
+
+            for (int t = (w + n) >> 1; t > 0; t >>= 1) {
+                int c = tree[t];
+
+                if (lo[c] < hi[c] && (done || src[lo[c]] < key)) {
+                    tree[t] = w;
+                    w = c;
+                    key = src[lo[c]];
+                    done = false;
+                }
+            }
+            tree[0] = w;
+        }
+    }
+
+    /**
+     * Checks whether the head of the first part beats the head of
+     * the second part, the exhausted part is beaten by any other one.
+     *
+     * @param a the array with the parts
+     * @param lo the start indexes of the parts, inclusive
+     * @param hi the end indexes of the parts, exclusive
+     * @param i the index of the first part, or the virtual part
+     * @param j the index of the second part, or the virtual part
+     * @return {@code true} if the first part wins the match
+     */
+    private static boolean beats(double[] a, int[] lo, int[] hi, int i, int j) {
+        if (i == lo.length) {
+            return true;
+        }
+        if (j == lo.length) {
+            return false;
+        }
+        return lo[i] < hi[i] && (lo[j] == hi[j] || a[lo[i]] < a[lo[j]]);
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel using
+     * the bounded buffer, which is smaller than the range. Blocks
+     * of the range, which fit the buffer, are sorted one by one,
+     * then the sorted blocks are merged in place.
+     *
+     * @param a the array to be sorted
+     * @param parallelism the parallelism level
+     * @param b the bounded buffer
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void boundedSort(double[] a, int parallelism, double[] b, int low, int high) {
+        int size = high - low, step = b.length;
+
+        /*
+         * Sort the blocks, which fit the buffer.
+         */
+        for (int k = low; k < high; ) {
+            int hi = high - k > step ? k + step : high;
+            new Sorter<>(a, b, false, parallelism, k, hi - k).invoke();
+            k = hi;
+        }
+
+        /*
+         * Merge the pairs of the sorted blocks in place,
+         * doubling the size of the blocks at each step.
+         */
+        for (; step < size; step = size - step > step ? step << 1 : size) {
+            for (int k = low; high - k > step; ) {
+                int mi = k + step;
+                int hi = high - mi > step ? mi + step : high;
+                new BoundedMerger<>(null, a, b, k, mi, hi, 0, b.length).invoke();
+                k = hi;
+            }
+        }
+    }
+
+    /**
+     * Merges the adjacent sorted parts of the array in place using
+     * the bounded buffer. If the parts don't fit the buffer, the larger
+     * part is split by its median and the smaller part by the same value,
+     * the inner segments are swapped, and the left and the right pairs
+     * of the segments are merged independently.
+     *
+     * @param merger parallel context
+     * @param a the array with the parts to be merged
+     * @param b the bounded buffer
+     * @param lo the start index of the first part, inclusive
+     * @param mi the start index of the second part, inclusive
+     * @param hi the end index of the second part, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
+     */
+    private static void mergeInPlace(BoundedMerger<double[]> merger, double[] a, double[] b,
+            int lo, int mi, int hi, int offset, int size) {
+
+        while (lo < mi && mi < hi && a[mi - 1] > a[mi]) {
+
+            /*
+             * Merge the parts forward, if the first part fits the buffer.
+             */
+            if (mi - lo <= size) {
+                System.arraycopy(a, lo, b, offset, mi - lo);
+                int i = offset, end = offset + mi - lo;
+
+                while (i < end && mi < hi) {
+                    a[lo++] = b[i] <= a[mi] ? b[i++] : a[mi++];
+                }
+                System.arraycopy(b, i, a, lo, end - i);
+                return;
+            }
+
+            /*
+             * Merge the parts backward, if the second part fits the buffer.
+             */
+            if (hi - mi <= size) {
+                System.arraycopy(a, mi, b, offset, hi - mi);
+                int i = offset + hi - mi;
+
+                while (i > offset && mi > lo) {
+                    a[--hi] = b[i - 1] >= a[mi - 1] ? b[--i] : a[--mi];
+                }
+                System.arraycopy(b, offset, a, lo, i - offset);
+                return;
+            }
+
+            /*
+             * Split the larger part by its median
+             * and the smaller part by the same value.
+             */
+            int m1, m2;
+
+            if (mi - lo >= hi - mi) {
+                m1 = (lo + mi) >>> 1;
+                m2 = mi;
+                double key = a[m1];
+
+                for (int h = hi; m2 < h; ) {
+                    int m = (m2 + h) >>> 1;
+
+                    if (a[m] < key) {
+                        m2 = m + 1;
+                    } else {
+                        h = m;
+                    }
+                }
+            } else {
+                m2 = (mi + hi) >>> 1;
+                m1 = lo;
+                double key = a[m2];
+
+                for (int h = mi; m1 < h; ) {
+                    int m = (m1 + h) >>> 1;
+
+                    if (a[m] <= key) {
+                        m1 = m + 1;
+                    } else {
+                        h = m;
+                    }
+                }
+            }
+
+            /*
+             * Swap the inner segments.
+             */
+            rotate(a, b, m1, mi, m2, offset, size);
+            int m = m1 + m2 - mi;
+
+            /*
+             * Merge the left pair of the segments (possibly in parallel,
+             * giving half of the buffer) and iterate along the right pair.
+             */
+            if (merger != null && size > 1
+                    && m - lo > MIN_MERGE_PART_SIZE && hi - m > MIN_MERGE_PART_SIZE) {
+                merger.fork(lo, m1, m, offset, size >> 1);
+                offset += size >> 1;
+                size -= size >> 1;
+            } else {
+                mergeInPlace(merger, a, b, lo, m1, m, offset, size);
+            }
+            lo = m;
+            mi = m2;
+        }
+    }
+
+    /**
+     * Swaps the adjacent segments of the array using the bounded
+     * buffer, if the smaller segment fits it, otherwise by reversals.
+     *
+     * @param a the array with the segments
+     * @param b the bounded buffer
+     * @param lo the start index of the first segment, inclusive
+     * @param mi the start index of the second segment, inclusive
+     * @param hi the end index of the second segment, exclusive
+     * @param offset the start index of the buffer, inclusive
+     * @param size the size of the buffer
+     */
+    private static void rotate(double[] a, double[] b, int lo, int mi, int hi, int offset, int size) {
+        if (mi - lo <= size && mi - lo <= hi - mi) {
+            System.arraycopy(a, lo, b, offset, mi - lo);
+            System.arraycopy(a, mi, a, lo, hi - mi);
+            System.arraycopy(b, offset, a, lo + hi - mi, mi - lo);
+        } else if (hi - mi <= size) {
+            System.arraycopy(a, mi, b, offset, hi - mi);
+            System.arraycopy(a, lo, a, lo + hi - mi, mi - lo);
+            System.arraycopy(b, offset, a, lo, hi - mi);
+        } else {
+            for (int i = lo, j = mi; i < --j; ++i) {
+                double ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = mi, j = hi; i < --j; ++i) {
+                double ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+            for (int i = lo, j = hi; i < --j; ++i) {
+                double ai = a[i]; a[i] = a[j]; a[j] = ai;
+            }
+        }
+    }
+
+    /**
+     * Estimates by the sample of elements, whether Radix sort is
+     * cheaper than Dual-Pivot Quicksort on the specified range of
+     * the array. The sample gives the key range, the run structure
+     * and the number of duplicates, see the cost model. The sample
+     * is hashed to count the duplicates only, if Radix sort may be
+     * cheaper at all.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if Radix sort is expected to be cheaper
+     */
+    private static boolean preferRadixSort(double[] a, int low, int high) {
+        int step = (high - low) / RADIX_SAMPLE_SIZE;
+        int first = low + (step >> 1);
+        int last = first + RADIX_SAMPLE_SIZE * step;
+        long diff = 0;
+        int ascending = 0, descending = 0, distinct = 0;
+
+        for (int i = first; i < last; i += step) {
+            diff |= Double.doubleToRawLongBits(a[i]) ^ Double.doubleToRawLongBits(a[first]);
+
+            if (a[i] < a[i + 1]) {
+                ascending++;
+            } else if (a[i] > a[i + 1]) {
+                descending++;
+            }
+        }
+        int size = high - low, bits = 64 - Long.numberOfLeadingZeros(diff);
+
+        /*
+         * Hash the sample, unless Radix sort is more
+         * expensive even with all elements distinct.
+         */
+        if (!isRadixSortCheaper(size, bits, ascending, descending, RADIX_SAMPLE_SIZE, DOUBLE_RADIX_PASS_COST)) {
+            return false;
+        }
+        int[] hash = Workspace.count(7, SAMPLE_HASH_SIZE >> 5);
+
+        for (int i = first; i < last; i += step) {
+            int h = (int) ((Double.doubleToRawLongBits(a[i]) * 0x9E3779B97F4A7C15L) >>> 52);
+
+            if ((hash[h >>> 5] & (1 << h)) == 0) {
+                hash[h >>> 5] |= 1 << h;
+                distinct++;
+            }
+        }
+        return isRadixSortCheaper(size, bits, ascending, descending, distinct, DOUBLE_RADIX_PASS_COST);
+    }
+
+    /**
+     * Tries to sort the specified range of the array
+     * using LSD (The Least Significant Digit) Radix sort.
+     *
+     * @param a the array to be sorted
+     * @param sorter // todo
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     */
+    static boolean tryRadixSort(Sorter<double[]> sorter, double[] a, int low, int high) {
+        double[] b; int offset = low, size = high - low;
+
+        /*
+         * Allocate additional buffer.
+         */
+        if (sorter != null && (b = sorter.b) != null) {
+            offset = sorter.offset;
+        } else if ((b = tryAllocate(sorter, double[].class, size)) == null) {
+            return mayAllocate(sorter) && tryFlagSort(sorter, a, low, high);
+        }
+
+        int start = low - offset;
+        int last = high - offset;
+
+        /*
+         * Count the number of all digits.
+         */
+        int[] count1 = Workspace.count(0, 1024);
+        int[] count2 = Workspace.count(1, 2048);
+        int[] count3 = Workspace.count(2, 2048);
+        int[] count4 = Workspace.count(3, 2048);
+        int[] count5 = Workspace.count(4, 2048);
+        int[] count6 = Workspace.count(8, 1024);
+
+        for (int i = low; i < high; ++i) {
+            ++count1[(int)  (dtl(a[i])         & 0x3FF)];
+            ++count2[(int) ((dtl(a[i]) >>> 10) & 0x7FF)];
+            ++count3[(int) ((dtl(a[i]) >>> 21) & 0x7FF)];
+            ++count4[(int) ((dtl(a[i]) >>> 32) & 0x7FF)];
+            ++count5[(int) ((dtl(a[i]) >>> 43) & 0x7FF)];
+            ++count6[(int) ((dtl(a[i]) >>> 54) & 0x3FF)];
+        }
+
+        /*
+         * Detect digits to be processed.
+         */
+        boolean processDigit1 = processDigit(count1, size, low);
+        boolean processDigit2 = processDigit(count2, size, low);
+        boolean processDigit3 = processDigit(count3, size, low);
+        boolean processDigit4 = processDigit(count4, size, low);
+        boolean processDigit5 = processDigit(count5, size, low);
+        boolean processDigit6 = processDigit(count6, size, low);
+
+        /*
+         * Process the 1-st digit.
+         */
+        if (processDigit1) {
+            for (int i = high; i > low; ) {
+                b[--count1[(int) (dtl(a[--i]) & 0x3FF)] - offset] = a[i];
+            }
+        }
+
+        /*
+         * Process the 2-nd digit.
+         */
+        if (processDigit2) {
+            if (processDigit1) {
+                for (int i = last; i > start; ) {
+                    a[--count2[(int) ((dtl(b[--i]) >>> 10) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count2[(int) ((dtl(a[--i]) >>> 10) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 3-rd digit.
+         */
+        if (processDigit3) {
+            if (processDigit1 ^ processDigit2) {
+                for (int i = last; i > start; ) {
+                    a[--count3[(int) ((dtl(b[--i]) >>> 21) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count3[(int) ((dtl(a[--i]) >>> 21) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 4-th digit.
+         */
+        if (processDigit4) {
+            if (processDigit1 ^ processDigit2 ^ processDigit3) {
+                for (int i = last; i > start; ) {
+                    a[--count4[(int) ((dtl(b[--i]) >>> 32) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count4[(int) ((dtl(a[--i]) >>> 32) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 5-th digit.
+         */
+        if (processDigit5) {
+            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4) {
+                for (int i = last; i > start; ) {
+                    a[--count5[(int) ((dtl(b[--i]) >>> 43) & 0x7FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count5[(int) ((dtl(a[--i]) >>> 43) & 0x7FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Process the 6-th digit.
+         */
+        if (processDigit6) {
+            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5) {
+                for (int i = last; i > start; ) {
+                    a[--count6[(int) ((dtl(b[--i]) >>> 54) & 0x3FF)]] = b[i];
+                }
+            } else {
+                for (int i = high; i > low; ) {
+                    b[--count6[(int) ((dtl(a[--i]) >>> 54) & 0x3FF)] - offset] = a[i];
+                }
+            }
+        }
+
+        /*
+         * Copy the buffer to original array, if we process ood number of digits.
+         */
+        if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5 ^ processDigit6) {
+            System.arraycopy(b, low - offset, a, low, size);
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the specified range of the array in place using MSD
+     * (The Most Significant Digit) Radix sort, also known as American
+     * flag sort, if additional buffer can't be allocated.<p>
+     *
+     * The elements are swapped into the buckets of the highest digit
+     * which is not the same for all elements, then the buckets are
+     * sorted independently, in parallel, if there is parallel context.
+     * The buckets are much smaller than the range, therefore the buffer
+     * is usually allocated to sort them.
+     *
+     * @param sorter parallel context
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @return {@code true} as the array is finally sorted
+     *         or the buckets are being sorted
+     */
+    static boolean tryFlagSort(Sorter<double[]> sorter, double[] a, int low, int high) {
+        int[] start = new int[257];
+        int[] next = new int[256];
+
+        for (int shift = 56; shift >= 0; shift -= 8) {
+
+            /*
+             * Count the elements in the buckets.
+             */
+            Arrays.fill(next, 0);
+
+            for (int i = low; i < high; ++i) {
+                ++next[(int) (dtl(a[i]) >>> shift) & 0xFF];
+            }
+
+            /*
+             * Skip the digit which is the same for all elements.
+             */
+            if (next[(int) (dtl(a[low]) >>> shift) & 0xFF] == high - low) {
+                continue;
+            }
+
+            /*
+             * Compute the start of each bucket.
+             */
+            start[0] = low;
+
+            for (int d = 0; d < 256; ++d) {
+                start[d + 1] = start[d] + next[d];
+                next[d] = start[d];
+            }
+
+            /*
+             * Swap the elements into their buckets, sweeping the buckets
+             * which are not filled yet. Unlike the cycles of swaps, the
+             * swaps of the sweep are independent and therefore faster.
+             */
+            for (boolean moved = true; moved; ) {
+                moved = false;
+
+                for (int d = 0; d < 256; ++d) {
+                    int end = start[d + 1];
+
+                    if (next[d] < end) {
+                        moved = true;
+
+                        for (int i = next[d]; i < end; ++i) {
+                            double ai = a[i];
+                            int j = next[(int) (dtl(ai) >>> shift) & 0xFF]++;
+                            a[i] = a[j];
+                            a[j] = ai;
+                        }
+                    }
+                }
+            }
+
+            /*
+             * Sort the buckets, forking the large ones in parallel context.
+             */
+            for (int d = 0; d < 256; ++d) {
+                int lo = start[d], hi = start[d + 1];
+
+                if (sorter != null && hi - lo > MIN_PARALLEL_SORT_SIZE) {
+                    sorter.fork(0, lo, hi);
+                } else if (hi - lo > 1) {
+                    sort(sorter, a, 0, lo, hi);
+                }
+            }
+            return true;
+        }
+
+        /*
+         * All elements are equal and therefore already sorted.
+         */
+        return true;
+    }
+
+    /**
+     * Returns masked bits that represent the double value.
+     *
+     * @param d the given value
+     * @return masked bits
+     */
+    private static long dtl(double d) {
+        long x = Double.doubleToRawLongBits(d);
+        return x ^ ((x >> 63) | 0x8000000000000000L);
+    }
+
+    /**
+     * Sorts the specified range of the array using heap sort.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void heapSort(double[] a, int low, int high) {
+        for (int k = (low + high) >>> 1; k > low; ) {
+            pushDown(a, --k, a[k], low, high);
+        }
+        while (--high > low) {
+            double max = a[low];
+            pushDown(a, low, a[high], low, high);
+            a[high] = max;
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given array
+     * @param p the start index
+     * @param value the given element
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDown(double[] a, int p, double value, int low, int high) {
+        for (int k ;; a[p] = a[p = k]) {
+            k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a[k] < a[k - 1]) {
+                --k;
+            }
+            if (a[k] <= value) {
+                break;
+            }
+        }
+        a[p] = value;
+    }
+
+// #[segment]
+
+    /**
+     * The layout of int elements of the segment
+     * in native byte order without alignment.
+     */
+    private static final ValueLayout.OfInt SEGMENT_INT = ValueLayout.JAVA_INT_UNALIGNED;
+
+    /**
+     * The layout of long elements of the segment
+     * in native byte order without alignment.
+     */
+    private static final ValueLayout.OfLong SEGMENT_LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+
+    /**
+     * Sorts the specified range of the segment using parallel merge
+     * sort and/or Dual-Pivot Quicksort, see the sorting with workspace.
+     *
+     * @param a the segment to be sorted
+     * @param layout the layout of the elements
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @throws IllegalArgumentException if the layout is not int,
+     *         long, float or double value layout
+     */
+    static void sort(MemorySegment a, ValueLayout layout, int parallelism, long low, long high) {
+        sort(a, layout, parallelism, null, low, high);
+    }
+
+    /**
+     * Sorts the specified range of the segment using the given
+     * workspace as additional buffer.<p>
+     *
+     * The elements are int, long, float or double values of the given
+     * layout in any byte order, and the indices are long, therefore
+     * the ranges beyond the max length of arrays are sorted off-heap
+     * in place. The elements in non-native byte order are reversed
+     * before sorting and back after sorting.<p>
+     *
+     * Float and double elements are sorted in the same order as
+     * arrays: all NaNs are moved to the end, and the bits of other
+     * elements are mapped to int or long values, preserving the
+     * order, and mapped back after sorting.<p>
+     *
+     * If the workspace is {@code null}, the buffer is allocated off-heap
+     * for parallel sorting. If the workspace is shorter than the range,
+     * parallel merge sort is not used. Note that parallel sorting
+     * requires the segment, which is accessible by any thread.
+     *
+     * @param a the segment to be sorted
+     * @param layout the layout of the elements
+     * @param parallelism the parallelism level
+     * @param workspace the additional buffer of at least {@code high - low}
+     *        elements, or {@code null} to allocate the buffer, if required
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     * @throws IllegalArgumentException if the layout is not int,
+     *         long, float or double value layout
+     */
+    static void sort(MemorySegment a, ValueLayout layout, int parallelism,
+            MemorySegment workspace, long low, long high) {
+
+        Class<?> carrier = layout.carrier();
+        boolean isLong = carrier == long.class || carrier == double.class;
+        boolean isFloat = carrier == float.class || carrier == double.class;
+        boolean reverse = layout.order() != ByteOrder.nativeOrder();
+
+        if (!isLong && !isFloat && carrier != int.class) {
+            throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+
+        /*
+         * Phase 1. Move all NaNs to the end of the range, reverse
+         * bytes and map other elements to order-preserving values.
+         */
+        long end = !isFloat ? high : isLong ?
+            moveDoubleNaNs(a, reverse, low, high) : moveFloatNaNs(a, reverse, low, high);
+
+        if (isFloat || reverse) {
+            processLong(parallelism, low, end, (lo, hi) -> {
+                if (isLong) {
+                    mapLongs(a, isFloat, reverse, true, lo, hi);
+                } else {
+                    mapInts(a, isFloat, reverse, true, lo, hi);
+                }
+            });
+        }
+
+        /*
+         * Phase 2. Sort everything except NaNs,
+         * which are already in place.
+         */
+        long size = end - low;
+
+        if (parallelism > 1 && size > MIN_PARALLEL_SORT_SIZE) {
+            long bytes = size << (isLong ? 3 : 2);
+
+            if (workspace != null) {
+                new SegmentSorter(a, workspace.byteSize() < bytes ? null : workspace,
+                    isLong, parallelism, low, size).invoke();
+            } else {
+                try (Arena arena = Arena.ofShared()) {
+                    new SegmentSorter(a, tryAllocate(arena, bytes),
+                        isLong, parallelism, low, size).invoke();
+                }
+            }
+        } else if (isLong) {
+            sortLongs(null, a, 0, low, end);
+        } else {
+            sortInts(null, a, 0, low, end);
+        }
+
+        /*
+         * Phase 3. Map the elements back
+         * and restore their byte order.
+         */
+        if (isFloat || reverse) {
+            processLong(parallelism, low, end, (lo, hi) -> {
+                if (isLong) {
+                    mapLongs(a, isFloat, reverse, false, lo, hi);
+                } else {
+                    mapInts(a, isFloat, reverse, false, lo, hi);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sorts the file of fixed-width numeric records in place. The file
+     * is mapped into memory, and the records are sorted directly on
+     * the mapped pages, see the sorting of segments.
+     *
+     * @param file the file to be sorted
+     * @param layout the layout of the records
+     * @param parallelism the parallelism level
+     * @throws IllegalArgumentException if the layout is not int, long,
+     *         float or double value layout, or the size of the file
+     *         is not a multiple of the size of the records
+     * @throws IOException if an I/O error occurs
+     */
+    static void sort(Path file, ValueLayout layout, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+
+            if (size % layout.byteSize() != 0) {
+                throw new IllegalArgumentException(
+                    "File size " + size + " is not a multiple of " + layout.byteSize());
+            }
+            sort(channel, layout, parallelism, 0, size / layout.byteSize());
+        }
+    }
+
+    /**
+     * Sorts the specified records of the file channel in place.
+     * The region of the file is mapped into memory, the records
+     * are sorted on the mapped pages, and the changes are forced
+     * to the storage before the region is unmapped.
+     *
+     * @param channel the file channel opened for reading and writing
+     * @param layout the layout of the records
+     * @param parallelism the parallelism level
+     * @param position the position in the file, where the records start
+     * @param count the number of records to be sorted
+     * @throws IllegalArgumentException if the layout is not int,
+     *         long, float or double value layout
+     * @throws IOException if an I/O error occurs
+     */
+    static void sort(FileChannel channel, ValueLayout layout,
+            int parallelism, long position, long count) throws IOException {
+
+        try (Arena arena = Arena.ofShared()) {
+            MemorySegment a = channel.map(FileChannel.MapMode.READ_WRITE,
+                position, count * layout.byteSize(), arena);
+
+            sort(a, layout, parallelism, 0, count);
+            a.force();
+        }
+    }
+
+    /**
+     * Moves float NaNs to the end of the specified range of the segment.
+     *
+     * @param a the segment with float elements
+     * @param reverse {@code true} if the bytes of the elements are reversed
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @return the index of the first NaN
+     */
+    private static long moveFloatNaNs(MemorySegment a, boolean reverse, long low, long high) {
+        for (long k = high; k > low; ) {
+            int ak = a.getAtIndex(SEGMENT_INT, --k);
+            int bits = reverse ? Integer.reverseBytes(ak) : ak;
+
+            if ((bits & 0x7FFFFFFF) > 0x7F800000) { // ak is NaN
+                a.setAtIndex(SEGMENT_INT, k, a.getAtIndex(SEGMENT_INT, --high));
+                a.setAtIndex(SEGMENT_INT, high, ak);
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Moves double NaNs to the end of the specified range of the segment.
+     *
+     * @param a the segment with double elements
+     * @param reverse {@code true} if the bytes of the elements are reversed
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @return the index of the first NaN
+     */
+    private static long moveDoubleNaNs(MemorySegment a, boolean reverse, long low, long high) {
+        for (long k = high; k > low; ) {
+            long ak = a.getAtIndex(SEGMENT_LONG, --k);
+            long bits = reverse ? Long.reverseBytes(ak) : ak;
+
+            if ((bits & 0x7FFFFFFFFFFFFFFFL) > 0x7FF0000000000000L) { // ak is NaN
+                a.setAtIndex(SEGMENT_LONG, k, a.getAtIndex(SEGMENT_LONG, --high));
+                a.setAtIndex(SEGMENT_LONG, high, ak);
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Maps the elements of the specified range of the segment to int
+     * values in native byte order, which preserve the order of the
+     * elements, or maps them back. The bits of negative floats,
+     * except the sign bit, are inverted.
+     *
+     * @param a the segment with int or float elements
+     * @param isFloat {@code true} if the elements are floats
+     * @param reverse {@code true} if the bytes of the elements are reversed
+     * @param forward {@code true} to map the elements, or {@code false} to map them back
+     * @param low the index of the first element, inclusive, to be mapped
+     * @param high the index of the last element, exclusive, to be mapped
+     */
+    private static void mapInts(MemorySegment a, boolean isFloat,
+            boolean reverse, boolean forward, long low, long high) {
+
+        for (long i = low; i < high; ++i) {
+            int ai = a.getAtIndex(SEGMENT_INT, i);
+
+            if (reverse && forward) {
+                ai = Integer.reverseBytes(ai);
+            }
+            if (isFloat) {
+                ai ^= ai >> 31 & 0x7FFFFFFF;
+            }
+            if (reverse && !forward) {
+                ai = Integer.reverseBytes(ai);
+            }
+            a.setAtIndex(SEGMENT_INT, i, ai);
+        }
+    }
+
+    /**
+     * Maps the elements of the specified range of the segment to long
+     * values in native byte order, which preserve the order of the
+     * elements, or maps them back. The bits of negative doubles,
+     * except the sign bit, are inverted.
+     *
+     * @param a the segment with long or double elements
+     * @param isFloat {@code true} if the elements are doubles
+     * @param reverse {@code true} if the bytes of the elements are reversed
+     * @param forward {@code true} to map the elements, or {@code false} to map them back
+     * @param low the index of the first element, inclusive, to be mapped
+     * @param high the index of the last element, exclusive, to be mapped
+     */
+    private static void mapLongs(MemorySegment a, boolean isFloat,
+            boolean reverse, boolean forward, long low, long high) {
+
+        for (long i = low; i < high; ++i) {
+            long ai = a.getAtIndex(SEGMENT_LONG, i);
+
+            if (reverse && forward) {
+                ai = Long.reverseBytes(ai);
+            }
+            if (isFloat) {
+                ai ^= ai >> 63 & 0x7FFFFFFFFFFFFFFFL;
+            }
+            if (reverse && !forward) {
+                ai = Long.reverseBytes(ai);
+            }
+            a.setAtIndex(SEGMENT_LONG, i, ai);
+        }
+    }
+
+    /**
+     * Tries to allocate additional buffer off-heap.
+     *
+     * @param arena the arena to allocate the buffer
+     * @param size the size of the buffer in bytes
+     * @return {@code null} if there is not enough memory, otherwise created buffer
+     */
+    private static MemorySegment tryAllocate(Arena arena, long size) {
+        try {
+            return arena.allocate(size, Long.BYTES);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sorts the specified range of the segment of int elements
+     * using parallel merge sort and/or Dual-Pivot Quicksort.
+     *
+     * @param sorter parallel context
+     * @param a the segment to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sortInts(SegmentSorter sorter, MemorySegment a, int bits, long low, long high) {
+        while (true) {
+            long size = high - low;
+
+            /*
+             * Invoke insertion sort on small part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSortInts(a, low, high);
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSortInts(a, low, high);
+                return;
+            }
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection, the same as for arrays.
+             */
+            long step = (size >> 2) + (size >> 3) + (size >> 7);
+            long e1 = low + step;
+            long e5 = high - step;
+            long e3 = (e1 + e5) >>> 1;
+            long e2 = (e1 + e3) >>> 1;
+            long e4 = (e3 + e5) >>> 1;
+
+            /*
+             * Sort these elements in registers by
+             * the optimal 5-element sorting network.
+             */
+            int a1 = a.getAtIndex(SEGMENT_INT, e1), a2 = a.getAtIndex(SEGMENT_INT, e2), a3 = a.getAtIndex(SEGMENT_INT, e3), a4 = a.getAtIndex(SEGMENT_INT, e4), a5 = a.getAtIndex(SEGMENT_INT, e5), t;
+
+            if (a1 > a2) { t = a1; a1 = a2; a2 = t; }
+            if (a4 > a5) { t = a4; a4 = a5; a5 = t; }
+            if (a3 > a5) { t = a3; a3 = a5; a5 = t; }
+            if (a3 > a4) { t = a3; a3 = a4; a4 = t; }
+            if (a1 > a4) { t = a1; a1 = a4; a4 = t; }
+            if (a1 > a3) { t = a1; a1 = a3; a3 = t; }
+            if (a2 > a5) { t = a2; a2 = a5; a5 = t; }
+            if (a2 > a4) { t = a2; a2 = a4; a4 = t; }
+            if (a2 > a3) { t = a2; a2 = a3; a3 = t; }
+
+            a.setAtIndex(SEGMENT_INT, e1, a1);
+            a.setAtIndex(SEGMENT_INT, e2, a2);
+            a.setAtIndex(SEGMENT_INT, e3, a3);
+            a.setAtIndex(SEGMENT_INT, e4, a4);
+            a.setAtIndex(SEGMENT_INT, e5, a5);
+
+            long[] indices;
+
+            /*
+             * Partitioning with two pivots on segment of fully random elements.
+             */
+            if (a1 < a2 && a2 < a3 && a3 < a4 && a4 < a5) {
+
+                indices = partitionWithTwoPivotsInts(a, low, high, e1, e5);
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, indices[0] + 1, indices[1]);
+                    sorter.fork(bits | 1, indices[1] + 1, high);
+                } else {
+                    sortInts(sorter, a, bits | 1, indices[0] + 1, indices[1]);
+                    sortInts(sorter, a, bits | 1, indices[1] + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                indices = partitionWithOnePivotInts(a, low, high, e3);
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, indices[1], high);
+                } else {
+                    sortInts(sorter, a, bits | 1, indices[1], high);
+                }
+            }
+            high = indices[0]; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Partitions the specified range of the segment using two given pivots.
+     *
+     * @param a the segment for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static long[] partitionWithTwoPivotsInts(
+            MemorySegment a, long low, long high, long pivotIndex1, long pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        long upper = --high;
+        long lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements
+         * as the pivots. Note, that pivot1 < pivot2.
+         */
+        int pivot1 = a.getAtIndex(SEGMENT_INT, pivotIndex1);
+        int pivot2 = a.getAtIndex(SEGMENT_INT, pivotIndex2);
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots.
+         */
+        a.setAtIndex(SEGMENT_INT, pivotIndex1, a.getAtIndex(SEGMENT_INT, lower));
+        a.setAtIndex(SEGMENT_INT, pivotIndex2, a.getAtIndex(SEGMENT_INT, upper));
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a.getAtIndex(SEGMENT_INT, ++lower) < pivot1);
+        while (a.getAtIndex(SEGMENT_INT, --upper) > pivot2);
+
+        /*
+         * Backward 3-interval partitioning, see partitioning of arrays.
+         */
+        for (long unused = --lower, k = ++upper; --k > lower; ) {
+            int ak = a.getAtIndex(SEGMENT_INT, k);
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a.getAtIndex(SEGMENT_INT, ++lower) < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a.getAtIndex(SEGMENT_INT, lower) > pivot2) {
+                    a.setAtIndex(SEGMENT_INT, k, a.getAtIndex(SEGMENT_INT, --upper));
+                    a.setAtIndex(SEGMENT_INT, upper, a.getAtIndex(SEGMENT_INT, lower));
+                } else {
+                    a.setAtIndex(SEGMENT_INT, k, a.getAtIndex(SEGMENT_INT, lower));
+                }
+                a.setAtIndex(SEGMENT_INT, lower, ak);
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                a.setAtIndex(SEGMENT_INT, k, a.getAtIndex(SEGMENT_INT, --upper));
+                a.setAtIndex(SEGMENT_INT, upper, ak);
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a.setAtIndex(SEGMENT_INT, low, a.getAtIndex(SEGMENT_INT, lower)); a.setAtIndex(SEGMENT_INT, lower, pivot1);
+        a.setAtIndex(SEGMENT_INT, high, a.getAtIndex(SEGMENT_INT, upper)); a.setAtIndex(SEGMENT_INT, upper, pivot2);
+
+        return new long[] { lower, upper };
+    }
+
+    /**
+     * Partitions the specified range of the segment using one given pivot.
+     *
+     * @param a the segment for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static long[] partitionWithOnePivotInts(
+            MemorySegment a, long low, long high, long pivotIndex) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        long upper = high;
+        long lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         */
+        int pivot = a.getAtIndex(SEGMENT_INT, pivotIndex);
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot.
+         */
+        a.setAtIndex(SEGMENT_INT, pivotIndex, a.getAtIndex(SEGMENT_INT, lower));
+
+        /*
+         * Dutch National Flag partitioning, see partitioning of arrays.
+         */
+        for (long k = upper; --k > lower; ) {
+            int ak = a.getAtIndex(SEGMENT_INT, k);
+
+            if (ak == pivot) {
+                continue;
+            }
+            a.setAtIndex(SEGMENT_INT, k, pivot);
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a.getAtIndex(SEGMENT_INT, ++lower) < pivot);
+
+                if (a.getAtIndex(SEGMENT_INT, lower) > pivot) {
+                    a.setAtIndex(SEGMENT_INT, --upper, a.getAtIndex(SEGMENT_INT, lower));
+                }
+                a.setAtIndex(SEGMENT_INT, lower, ak);
+            } else { // ak > pivot - Move a[k] to the right part
+                a.setAtIndex(SEGMENT_INT, --upper, ak);
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a.setAtIndex(SEGMENT_INT, low, a.getAtIndex(SEGMENT_INT, lower)); a.setAtIndex(SEGMENT_INT, lower, pivot);
+
+        return new long[] { lower, upper };
+    }
+
+    /**
+     * Sorts the specified range of the segment using insertion sort.
+     *
+     * @param a the segment to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void insertionSortInts(MemorySegment a, long low, long high) {
+        for (long i, k = low; ++k < high; ) {
+            int ai = a.getAtIndex(SEGMENT_INT, i = k);
+
+            if (ai < a.getAtIndex(SEGMENT_INT, i - 1)) {
+                do {
+                    a.setAtIndex(SEGMENT_INT, i, a.getAtIndex(SEGMENT_INT, i - 1));
+                } while (--i > low && ai < a.getAtIndex(SEGMENT_INT, i - 1));
+
+                a.setAtIndex(SEGMENT_INT, i, ai);
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the segment using heap sort.
+     *
+     * @param a the segment to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void heapSortInts(MemorySegment a, long low, long high) {
+        for (long k = (low + high) >>> 1; k > low; ) {
+            --k;
+            pushDownInts(a, k, a.getAtIndex(SEGMENT_INT, k), low, high);
+        }
+        while (--high > low) {
+            int max = a.getAtIndex(SEGMENT_INT, low);
+            pushDownInts(a, low, a.getAtIndex(SEGMENT_INT, high), low, high);
+            a.setAtIndex(SEGMENT_INT, high, max);
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given segment
+     * @param p the start index
+     * @param value the given element
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDownInts(MemorySegment a, long p, int value, long low, long high) {
+        while (true) {
+            long k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a.getAtIndex(SEGMENT_INT, k) < a.getAtIndex(SEGMENT_INT, k - 1)) {
+                --k;
+            }
+            if (a.getAtIndex(SEGMENT_INT, k) <= value) {
+                break;
+            }
+            a.setAtIndex(SEGMENT_INT, p, a.getAtIndex(SEGMENT_INT, k));
+            p = k;
+        }
+        a.setAtIndex(SEGMENT_INT, p, value);
+    }
+
+    /**
+     * Merges the sorted parts of the segments.
+     *
+     * @param merger parallel context
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source with the parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param hi1 the end index of the first part, exclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @param hi2 the end index of the second part, exclusive
+     */
+    private static void mergePartsInts(SegmentMerger merger, MemorySegment dst, long k,
+            MemorySegment src, long lo1, long hi1, long lo2, long hi2) {
+
+        /*
+         * Merge the parts in parallel.
+         */
+        if (merger != null) {
+
+            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+
+                /*
+                 * The first part must be larger.
+                 */
+                if (hi1 - lo1 < hi2 - lo2) {
+                    long lo = lo1; lo1 = lo2; lo2 = lo;
+                    long hi = hi1; hi1 = hi2; hi2 = hi;
+                }
+
+                /*
+                 * Find the median of the larger part.
+                 */
+                long mi1 = (lo1 + hi1) >>> 1;
+                int key = src.getAtIndex(SEGMENT_INT, mi1);
+                long mi2 = hi2;
+
+                /*
+                 * Split the smaller part.
+                 */
+                for (long mid = lo2; mid < mi2; ) {
+                    long d = (mid + mi2) >>> 1;
+
+                    if (key > src.getAtIndex(SEGMENT_INT, d)) {
+                        mid = d + 1;
+                    } else {
+                        mi2 = d;
+                    }
+                }
+
+                /*
+                 * Merge other parts in parallel.
+                 */
+                merger.fork(k, lo1, mi1, lo2, mi2);
+
+                /*
+                 * Reserve space for the second parts.
+                 */
+                k += mi2 - lo2 + mi1 - lo1;
+
+                /*
+                 * Iterate along the second parts.
+                 */
+                lo1 = mi1;
+                lo2 = mi2;
+            }
+        }
+
+        /*
+         * Merge small parts sequentially.
+         */
+        while (lo1 < hi1 && lo2 < hi2) {
+            int a1 = src.getAtIndex(SEGMENT_INT, lo1);
+            int a2 = src.getAtIndex(SEGMENT_INT, lo2);
+
+            if (a1 <= a2) {
+                dst.setAtIndex(SEGMENT_INT, k++, a1);
+                ++lo1;
+            } else {
+                dst.setAtIndex(SEGMENT_INT, k++, a2);
+                ++lo2;
+            }
+        }
+
+        /*
+         * Copy the tail of the left part.
+         */
+        if (lo1 < hi1) {
+            MemorySegment.copy(src, lo1 << 2, dst, k << 2, (hi1 - lo1) << 2);
+            k += hi1 - lo1;
+        }
+
+        /*
+         * Copy the tail of the right part.
+         */
+        if (lo2 < hi2) {
+            MemorySegment.copy(src, lo2 << 2, dst, k << 2, (hi2 - lo2) << 2);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the segment of long elements
+     * using parallel merge sort and/or Dual-Pivot Quicksort.
+     *
+     * @param sorter parallel context
+     * @param a the segment to be sorted
+     * @param bits the combination of recursion depth and bit flag, where
+     *        the right bit "0" indicates that range is the leftmost part
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    static void sortLongs(SegmentSorter sorter, MemorySegment a, int bits, long low, long high) {
+        while (true) {
+            long size = high - low;
+
+            /*
+             * Invoke insertion sort on small part.
+             */
+            if (size < MAX_INSERTION_SORT_SIZE) {
+                insertionSortLongs(a, low, high);
+                return;
+            }
+
+            /*
+             * Switch to heap sort, if execution time is quadratic.
+             */
+            if ((bits += 2) > MAX_RECURSION_DEPTH) {
+                heapSortLongs(a, low, high);
+                return;
+            }
+
+            /*
+             * Five elements around (and including) the central element
+             * will be used for pivot selection, the same as for arrays.
+             */
+            long step = (size >> 2) + (size >> 3) + (size >> 7);
+            long e1 = low + step;
+            long e5 = high - step;
+            long e3 = (e1 + e5) >>> 1;
+            long e2 = (e1 + e3) >>> 1;
+            long e4 = (e3 + e5) >>> 1;
+
+            /*
+             * Sort these elements in registers by
+             * the optimal 5-element sorting network.
+             */
+            long a1 = a.getAtIndex(SEGMENT_LONG, e1), a2 = a.getAtIndex(SEGMENT_LONG, e2), a3 = a.getAtIndex(SEGMENT_LONG, e3), a4 = a.getAtIndex(SEGMENT_LONG, e4), a5 = a.getAtIndex(SEGMENT_LONG, e5), t;
+
+            if (a1 > a2) { t = a1; a1 = a2; a2 = t; }
+            if (a4 > a5) { t = a4; a4 = a5; a5 = t; }
+            if (a3 > a5) { t = a3; a3 = a5; a5 = t; }
+            if (a3 > a4) { t = a3; a3 = a4; a4 = t; }
+            if (a1 > a4) { t = a1; a1 = a4; a4 = t; }
+            if (a1 > a3) { t = a1; a1 = a3; a3 = t; }
+            if (a2 > a5) { t = a2; a2 = a5; a5 = t; }
+            if (a2 > a4) { t = a2; a2 = a4; a4 = t; }
+            if (a2 > a3) { t = a2; a2 = a3; a3 = t; }
+
+            a.setAtIndex(SEGMENT_LONG, e1, a1);
+            a.setAtIndex(SEGMENT_LONG, e2, a2);
+            a.setAtIndex(SEGMENT_LONG, e3, a3);
+            a.setAtIndex(SEGMENT_LONG, e4, a4);
+            a.setAtIndex(SEGMENT_LONG, e5, a5);
+
+            long[] indices;
+
+            /*
+             * Partitioning with two pivots on segment of fully random elements.
+             */
+            if (a1 < a2 && a2 < a3 && a3 < a4 && a4 < a5) {
+
+                indices = partitionWithTwoPivotsLongs(a, low, high, e1, e5);
+
+                /*
+                 * Sort non-left parts recursively (possibly in parallel),
+                 * excluding known pivots.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, indices[0] + 1, indices[1]);
+                    sorter.fork(bits | 1, indices[1] + 1, high);
+                } else {
+                    sortLongs(sorter, a, bits | 1, indices[0] + 1, indices[1]);
+                    sortLongs(sorter, a, bits | 1, indices[1] + 1, high);
+                }
+
+            } else { // Partitioning with one pivot
+
+                indices = partitionWithOnePivotLongs(a, low, high, e3);
+
+                /*
+                 * Sort the right part (possibly in parallel), excluding
+                 * known pivot. All elements from the central part are
+                 * equal and therefore already sorted.
+                 */
+                if (size > MIN_PARALLEL_SORT_SIZE && sorter != null) {
+                    sorter.fork(bits | 1, indices[1], high);
+                } else {
+                    sortLongs(sorter, a, bits | 1, indices[1], high);
+                }
+            }
+            high = indices[0]; // Iterate along the left part
+        }
+    }
+
+    /**
+     * Partitions the specified range of the segment using two given pivots.
+     *
+     * @param a the segment for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex1 the index of pivot1, the first pivot
+     * @param pivotIndex2 the index of pivot2, the second pivot
+     * @return indices of parts after partitioning
+     */
+    private static long[] partitionWithTwoPivotsLongs(
+            MemorySegment a, long low, long high, long pivotIndex1, long pivotIndex2) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        long upper = --high;
+        long lower = low;
+
+        /*
+         * Use the first and fifth of the five sorted elements
+         * as the pivots. Note, that pivot1 < pivot2.
+         */
+        long pivot1 = a.getAtIndex(SEGMENT_LONG, pivotIndex1);
+        long pivot2 = a.getAtIndex(SEGMENT_LONG, pivotIndex2);
+
+        /*
+         * The first and the last elements to be sorted are moved
+         * to the locations formerly occupied by the pivots.
+         */
+        a.setAtIndex(SEGMENT_LONG, pivotIndex1, a.getAtIndex(SEGMENT_LONG, lower));
+        a.setAtIndex(SEGMENT_LONG, pivotIndex2, a.getAtIndex(SEGMENT_LONG, upper));
+
+        /*
+         * Skip elements, which are less or greater than the pivots.
+         */
+        while (a.getAtIndex(SEGMENT_LONG, ++lower) < pivot1);
+        while (a.getAtIndex(SEGMENT_LONG, --upper) > pivot2);
+
+        /*
+         * Backward 3-interval partitioning, see partitioning of arrays.
+         */
+        for (long unused = --lower, k = ++upper; --k > lower; ) {
+            long ak = a.getAtIndex(SEGMENT_LONG, k);
+
+            if (ak < pivot1) { // Move a[k] to the left part
+                while (a.getAtIndex(SEGMENT_LONG, ++lower) < pivot1);
+
+                if (lower > k) {
+                    lower = k;
+                    break;
+                }
+                if (a.getAtIndex(SEGMENT_LONG, lower) > pivot2) {
+                    a.setAtIndex(SEGMENT_LONG, k, a.getAtIndex(SEGMENT_LONG, --upper));
+                    a.setAtIndex(SEGMENT_LONG, upper, a.getAtIndex(SEGMENT_LONG, lower));
+                } else {
+                    a.setAtIndex(SEGMENT_LONG, k, a.getAtIndex(SEGMENT_LONG, lower));
+                }
+                a.setAtIndex(SEGMENT_LONG, lower, ak);
+            } else if (ak > pivot2) { // Move a[k] to the right part
+                a.setAtIndex(SEGMENT_LONG, k, a.getAtIndex(SEGMENT_LONG, --upper));
+                a.setAtIndex(SEGMENT_LONG, upper, ak);
+            }
+        }
+
+        /*
+         * Swap the pivots into their final positions.
+         */
+        a.setAtIndex(SEGMENT_LONG, low, a.getAtIndex(SEGMENT_LONG, lower)); a.setAtIndex(SEGMENT_LONG, lower, pivot1);
+        a.setAtIndex(SEGMENT_LONG, high, a.getAtIndex(SEGMENT_LONG, upper)); a.setAtIndex(SEGMENT_LONG, upper, pivot2);
+
+        return new long[] { lower, upper };
+    }
+
+    /**
+     * Partitions the specified range of the segment using one given pivot.
+     *
+     * @param a the segment for partitioning
+     * @param low the index of the first element, inclusive, for partitioning
+     * @param high the index of the last element, exclusive, for partitioning
+     * @param pivotIndex the index of single pivot
+     * @return indices of parts after partitioning
+     */
+    private static long[] partitionWithOnePivotLongs(
+            MemorySegment a, long low, long high, long pivotIndex) {
+
+        /*
+         * Pointers to the right and left parts.
+         */
+        long upper = high;
+        long lower = low;
+
+        /*
+         * Use the third of the five sorted elements as the pivot.
+         */
+        long pivot = a.getAtIndex(SEGMENT_LONG, pivotIndex);
+
+        /*
+         * The first element to be sorted is moved to the
+         * location formerly occupied by the pivot.
+         */
+        a.setAtIndex(SEGMENT_LONG, pivotIndex, a.getAtIndex(SEGMENT_LONG, lower));
+
+        /*
+         * Dutch National Flag partitioning, see partitioning of arrays.
+         */
+        for (long k = upper; --k > lower; ) {
+            long ak = a.getAtIndex(SEGMENT_LONG, k);
+
+            if (ak == pivot) {
+                continue;
+            }
+            a.setAtIndex(SEGMENT_LONG, k, pivot);
+
+            if (ak < pivot) { // Move a[k] to the left part
+                while (a.getAtIndex(SEGMENT_LONG, ++lower) < pivot);
+
+                if (a.getAtIndex(SEGMENT_LONG, lower) > pivot) {
+                    a.setAtIndex(SEGMENT_LONG, --upper, a.getAtIndex(SEGMENT_LONG, lower));
+                }
+                a.setAtIndex(SEGMENT_LONG, lower, ak);
+            } else { // ak > pivot - Move a[k] to the right part
+                a.setAtIndex(SEGMENT_LONG, --upper, ak);
+            }
+        }
+
+        /*
+         * Swap the pivot into its final position.
+         */
+        a.setAtIndex(SEGMENT_LONG, low, a.getAtIndex(SEGMENT_LONG, lower)); a.setAtIndex(SEGMENT_LONG, lower, pivot);
+
+        return new long[] { lower, upper };
+    }
+
+    /**
+     * Sorts the specified range of the segment using insertion sort.
+     *
+     * @param a the segment to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void insertionSortLongs(MemorySegment a, long low, long high) {
+        for (long i, k = low; ++k < high; ) {
+            long ai = a.getAtIndex(SEGMENT_LONG, i = k);
+
+            if (ai < a.getAtIndex(SEGMENT_LONG, i - 1)) {
+                do {
+                    a.setAtIndex(SEGMENT_LONG, i, a.getAtIndex(SEGMENT_LONG, i - 1));
+                } while (--i > low && ai < a.getAtIndex(SEGMENT_LONG, i - 1));
+
+                a.setAtIndex(SEGMENT_LONG, i, ai);
+            }
+        }
+    }
+
+    /**
+     * Sorts the specified range of the segment using heap sort.
+     *
+     * @param a the segment to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void heapSortLongs(MemorySegment a, long low, long high) {
+        for (long k = (low + high) >>> 1; k > low; ) {
+            --k;
+            pushDownLongs(a, k, a.getAtIndex(SEGMENT_LONG, k), low, high);
+        }
+        while (--high > low) {
+            long max = a.getAtIndex(SEGMENT_LONG, low);
+            pushDownLongs(a, low, a.getAtIndex(SEGMENT_LONG, high), low, high);
+            a.setAtIndex(SEGMENT_LONG, high, max);
+        }
+    }
+
+    /**
+     * Pushes specified element down during heap sort.
+     *
+     * @param a the given segment
+     * @param p the start index
+     * @param value the given element
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void pushDownLongs(MemorySegment a, long p, long value, long low, long high) {
+        while (true) {
+            long k = (p << 1) - low + 2; // Index of the right child
+
+            if (k > high) {
+                break;
+            }
+            if (k == high || a.getAtIndex(SEGMENT_LONG, k) < a.getAtIndex(SEGMENT_LONG, k - 1)) {
+                --k;
+            }
+            if (a.getAtIndex(SEGMENT_LONG, k) <= value) {
+                break;
+            }
+            a.setAtIndex(SEGMENT_LONG, p, a.getAtIndex(SEGMENT_LONG, k));
+            p = k;
+        }
+        a.setAtIndex(SEGMENT_LONG, p, value);
+    }
+
+    /**
+     * Merges the sorted parts of the segments.
+     *
+     * @param merger parallel context
+     * @param dst the destination where parts are merged
+     * @param k the start index of the destination, inclusive
+     * @param src the source with the parts
+     * @param lo1 the start index of the first part, inclusive
+     * @param hi1 the end index of the first part, exclusive
+     * @param lo2 the start index of the second part, inclusive
+     * @param hi2 the end index of the second part, exclusive
+     */
+    private static void mergePartsLongs(SegmentMerger merger, MemorySegment dst, long k,
+            MemorySegment src, long lo1, long hi1, long lo2, long hi2) {
+
+        /*
+         * Merge the parts in parallel.
+         */
+        if (merger != null) {
+
+            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+
+                /*
+                 * The first part must be larger.
+                 */
+                if (hi1 - lo1 < hi2 - lo2) {
+                    long lo = lo1; lo1 = lo2; lo2 = lo;
+                    long hi = hi1; hi1 = hi2; hi2 = hi;
+                }
+
+                /*
+                 * Find the median of the larger part.
+                 */
+                long mi1 = (lo1 + hi1) >>> 1;
+                long key = src.getAtIndex(SEGMENT_LONG, mi1);
+                long mi2 = hi2;
+
+                /*
+                 * Split the smaller part.
+                 */
+                for (long mid = lo2; mid < mi2; ) {
+                    long d = (mid + mi2) >>> 1;
+
+                    if (key > src.getAtIndex(SEGMENT_LONG, d)) {
+                        mid = d + 1;
+                    } else {
+                        mi2 = d;
+                    }
+                }
+
+                /*
+                 * Merge other parts in parallel.
+                 */
+                merger.fork(k, lo1, mi1, lo2, mi2);
+
+                /*
+                 * Reserve space for the second parts.
+                 */
+                k += mi2 - lo2 + mi1 - lo1;
+
+                /*
+                 * Iterate along the second parts.
+                 */
+                lo1 = mi1;
+                lo2 = mi2;
+            }
+        }
+
+        /*
+         * Merge small parts sequentially.
+         */
+        while (lo1 < hi1 && lo2 < hi2) {
+            long a1 = src.getAtIndex(SEGMENT_LONG, lo1);
+            long a2 = src.getAtIndex(SEGMENT_LONG, lo2);
+
+            if (a1 <= a2) {
+                dst.setAtIndex(SEGMENT_LONG, k++, a1);
+                ++lo1;
+            } else {
+                dst.setAtIndex(SEGMENT_LONG, k++, a2);
+                ++lo2;
+            }
+        }
+
+        /*
+         * Copy the tail of the left part.
+         */
+        if (lo1 < hi1) {
+            MemorySegment.copy(src, lo1 << 3, dst, k << 3, (hi1 - lo1) << 3);
+            k += hi1 - lo1;
+        }
+
+        /*
+         * Copy the tail of the right part.
+         */
+        if (lo2 < hi2) {
+            MemorySegment.copy(src, lo2 << 3, dst, k << 3, (hi2 - lo2) << 3);
+        }
+    }
+
+// #[external]
+
+    /**
+     * Sorts the records of the input file, which may not fit in memory,
+     * and writes them to the output file, see the external sorting of
+     * channels. The output file must differ from the input file.
+     *
+     * @param input the file to be sorted
+     * @param output the file to write the sorted records
+     * @param layout the layout of the records
+     * @param parallelism the parallelism level
+     * @param memory the max size of the memory in bytes to sort the chunks
+     * @param directory the directory for temporary files,
+     *        or {@code null} for the default temporary-file directory
+     * @return the statistics of sorting
+     * @throws IllegalArgumentException if the layout is not int, long,
+     *         float or double value layout, the memory is less than
+     *         {@value #MIN_EXTERNAL_MEMORY} bytes, or the input ends
+     *         with incomplete record
+     * @throws IOException if an I/O error occurs
+     */
+    static ExternalStatistics sort(Path input, Path output, ValueLayout layout,
+            int parallelism, long memory, Path directory) throws IOException {
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return sort(in, out, layout, parallelism, memory, directory);
+        }
+    }
+
+    /**
+     * Sorts the records of the input channel, which may not fit in
+     * memory, and writes them to the output channel.<p>
+     *
+     * The input is read in chunks, which fit the given memory. Each chunk
+     * is sorted by parallel sorting and spilled to temporary file as
+     * sorted run. The next chunk is read and the previous run is spilled
+     * in background by the single I/O thread of the call, while the current
+     * chunk is sorted. The runs are then merged by loser tree with large
+     * sequential read buffers, and the output is written in background
+     * as well. If the number
+     * of runs is too large for the memory, the runs are merged in
+     * several passes. If the input fits the single chunk, it is
+     * written directly to the output.<p>
+     *
+     * The memory covers the arrays of the chunks, the buffers of reading
+     * and writing, which take the 16th part of the memory, but at most
+     * {@value #IO_BUFFER_SIZE} bytes each, and the read buffers of the
+     * runs while merging.<p>
+     *
+     * Float and double records are sorted in the same order as arrays.
+     *
+     * @param in the channel to read the records
+     * @param out the channel to write the sorted records
+     * @param layout the layout of the records
+     * @param parallelism the parallelism level
+     * @param memory the max size of the memory in bytes to sort the chunks
+     * @param directory the directory for temporary files,
+     *        or {@code null} for the default temporary-file directory
+     * @return the statistics of sorting
+     * @throws IllegalArgumentException if the layout is not int, long,
+     *         float or double value layout, the memory is less than
+     *         {@value #MIN_EXTERNAL_MEMORY} bytes, or the input ends
+     *         with incomplete record
+     * @throws IOException if an I/O error occurs
+     */
+    static ExternalStatistics sort(ReadableByteChannel in, WritableByteChannel out, ValueLayout layout,
+            int parallelism, long memory, Path directory) throws IOException {
+
+        Class<?> carrier = layout.carrier();
+
+        if (carrier != int.class && carrier != long.class
+                && carrier != float.class && carrier != double.class) {
+            throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+        if (memory < MIN_EXTERNAL_MEMORY) {
+            throw new IllegalArgumentException("Not enough memory: " + memory);
+        }
+        ExternalStatistics statistics = new ExternalStatistics();
+        List<Path> runs = new ArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("DualPivotQuicksort-IO").daemon().factory());
+
+        try {
+            /*
+             * Phase 1. Read the input by chunks, sort
+             * them and spill as the sorted runs.
+             */
+            spillRuns(executor, in, out, layout, parallelism, memory, directory, runs, statistics);
+
+            /*
+             * Phase 2. Merge the runs to the output.
+             */
+            if (!runs.isEmpty()) {
+                mergeRuns(executor, out, layout, memory, directory, runs, statistics);
+            }
+        } finally {
+            /*
+             * Shut down the I/O thread and wait for the last
+             * task, so that no run is written after deleting.
+             */
+            executor.close();
+
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Reads the input by chunks, sorts the chunks and spills them to
+     * temporary files as the sorted runs. Reading and spilling are
+     * performed in background, while the current chunk is sorted.
+     * If the input fits the single chunk, it is written directly
+     * to the output.
+     *
+     * @param executor the executor of background I/O
+     * @param in the channel to read the records
+     * @param out the channel to write the sorted records
+     * @param layout the layout of the records
+     * @param parallelism the parallelism level
+     * @param memory the max size of the memory in bytes to sort the chunks
+     * @param directory the directory for temporary files, or {@code null}
+     * @param runs the list to add the spilled runs
+     * @param statistics the statistics of sorting
+     * @throws IOException if an I/O error occurs
+     */
+    private static void spillRuns(ExecutorService executor, ReadableByteChannel in, WritableByteChannel out,
+            ValueLayout layout, int parallelism, long memory, Path directory,
+            List<Path> runs, ExternalStatistics statistics) throws IOException {
+
+        /*
+         * Two chunks are read and sorted in turn, and the third
+         * array is the workspace, besides the buffer of I/O.
+         */
+        int shift = layout.byteSize() == 8 ? 3 : 2;
+        int bufferSize = ioBufferSize(memory);
+        long length = Math.min((memory - bufferSize) / 3 >> shift, Integer.MAX_VALUE - 8);
+
+        if (in instanceof SeekableByteChannel channel) {
+            length = Math.min(length, (channel.size() - channel.position() >> shift) + 1);
+        }
+        int capacity = (int) Math.max(1, length);
+        Object a = Array.newInstance(layout.carrier(), capacity);
+        Object b = Array.newInstance(layout.carrier(), capacity);
+        Object workspace = Array.newInstance(layout.carrier(), capacity);
+
+        try (Arena arena = Arena.ofShared()) {
+            ByteBuffer buffer = arena.allocate(bufferSize, Long.BYTES).asByteBuffer();
+            int count = read(in, buffer, layout, a, capacity);
+            int last = 0;
+            statistics.runReadBytes += (long) count << shift;
+
+            while (count > 0) {
+                Object next = b;
+                int size = last;
+
+                /*
+                 * Spill the previous run and read the next chunk.
+                 */
+                Future<Integer> io = executor.submit(() -> {
+                    if (size > 0) {
+                        spill(buffer, layout, next, size, directory, runs);
+                        statistics.runWrittenBytes += (long) size << shift;
+                    }
+                    int k = read(in, buffer, layout, next, capacity);
+                    statistics.runReadBytes += (long) k << shift;
+                    return k;
+                });
+
+                /*
+                 * Sort the current chunk meanwhile.
+                 */
+                try {
+                    sortChunk(a, parallelism, workspace, count);
+                    statistics.runs++;
+                } finally {
+                    last = count;
+                    count = await(io);
+                }
+                b = a;
+                a = next;
+            }
+
+            /*
+             * Write the last run, which is the only one, directly to the output.
+             */
+            if (runs.isEmpty()) {
+                write(out, buffer, layout, b, last);
+            } else {
+                spill(buffer, layout, b, last, directory, runs);
+            }
+            statistics.runWrittenBytes += (long) last << shift;
+        }
+    }
+
+    /**
+     * Merges the runs to the output. If the number of runs is too large
+     * for the memory, groups of runs are merged into new runs first.
+     *
+     * @param executor the executor of background I/O
+     * @param out the channel to write the sorted records
+     * @param layout the layout of the records
+     * @param memory the max size of the memory in bytes to merge the runs
+     * @param directory the directory for temporary files, or {@code null}
+     * @param runs the runs to be merged
+     * @param statistics the statistics of sorting
+     * @throws IOException if an I/O error occurs
+     */
+    private static void mergeRuns(ExecutorService executor, WritableByteChannel out, ValueLayout layout,
+            long memory, Path directory, List<Path> runs, ExternalStatistics statistics) throws IOException {
+
+        /*
+         * The read buffers of the runs share the memory
+         * left by the two buffers of writing.
+         */
+        int bufferSize = ioBufferSize(memory);
+        long available = memory - 2L * bufferSize;
+        int fanIn = (int) Math.max(2, Math.min(available / MIN_MERGE_BUFFER_SIZE, MAX_MERGE_FAN_IN));
+
+        while (runs.size() > fanIn) {
+            List<Path> group = new ArrayList<>(runs.subList(0, fanIn));
+            Path run = createRun(directory);
+            runs.add(run);
+
+            try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+                merge(executor, channel, layout, bufferSize, available, group, statistics);
+            }
+            for (Path merged : group) {
+                Files.delete(merged);
+            }
+            runs.subList(0, fanIn).clear();
+        }
+        merge(executor, out, layout, bufferSize, available, runs, statistics);
+    }
+
+    /**
+     * Merges the runs by loser tree and writes the records to the output.
+     * The output buffer is written in background, while the next one
+     * is filled.
+     *
+     * @param executor the executor of background I/O
+     * @param out the channel to write the merged records
+     * @param layout the layout of the records
+     * @param bufferSize the size of the write buffers in bytes
+     * @param memory the max size of the read buffers in bytes
+     * @param runs the runs to be merged
+     * @param statistics the statistics of sorting
+     * @throws IOException if an I/O error occurs
+     */
+    private static void merge(ExecutorService executor, WritableByteChannel out, ValueLayout layout,
+            int bufferSize, long memory, List<Path> runs, ExternalStatistics statistics) throws IOException {
+
+        int k = runs.size();
+        boolean isLong = layout.byteSize() == 8;
+        int size = (int) Math.min(MAX_MERGE_BUFFER_SIZE, memory / k) & -Long.BYTES;
+        RunReader[] readers = new RunReader[k];
+
+        try (Arena arena = Arena.ofShared()) {
+            ByteBuffer[] buffers = {
+                arena.allocate(bufferSize, Long.BYTES).asByteBuffer().order(layout.order()),
+                arena.allocate(bufferSize, Long.BYTES).asByteBuffer().order(layout.order())
+            };
+
+            for (int i = 0; i < k; ++i) {
+                readers[i] = new RunReader(FileChannel.open(runs.get(i), StandardOpenOption.READ),
+                    arena.allocate(size, Long.BYTES).asByteBuffer().order(layout.order()),
+                    isLong, layout.carrier() == float.class || layout.carrier() == double.class);
+            }
+            LoserTree tree = new LoserTree(readers);
+            ByteBuffer buffer = buffers[0];
+            Future<Integer> io = null;
+
+            for (int i = 0; !tree.isEmpty(); tree.advance()) {
+                if (isLong) {
+                    buffer.putLong(tree.top().value);
+                } else {
+                    buffer.putInt((int) tree.top().value);
+                }
+
+                /*
+                 * Write the full buffer and fill another one meanwhile.
+                 */
+                if (!buffer.hasRemaining()) {
+                    io = flush(executor, io, out, buffer, statistics);
+                    buffer = buffers[i ^= 1].clear();
+                }
+            }
+            await(flush(executor, io, out, buffer, statistics));
+        } finally {
+            for (RunReader reader : readers) {
+                if (reader != null) {
+                    statistics.mergeReadBytes += reader.bytes;
+                    reader.channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the buffer to the output in background
+     * after the previous writing is completed.
+     *
+     * @param executor the executor of background I/O
+     * @param previous the previous writing, or {@code null}
+     * @param out the channel to write the buffer
+     * @param buffer the buffer to be written
+     * @param statistics the statistics of sorting
+     * @return the writing of the buffer
+     * @throws IOException if an I/O error occurs
+     */
+    private static Future<Integer> flush(ExecutorService executor, Future<Integer> previous,
+            WritableByteChannel out, ByteBuffer buffer, ExternalStatistics statistics) throws IOException {
+
+        if (previous != null) {
+            await(previous);
+        }
+        buffer.flip();
+        statistics.mergeWrittenBytes += buffer.remaining();
+
+        return executor.submit(() -> {
+            int bytes = buffer.remaining();
+
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            return bytes;
+        });
+    }
+
+    /**
+     * Sorts the leading elements of the chunk.
+     *
+     * @param a the chunk to be sorted
+     * @param parallelism the parallelism level
+     * @param workspace the additional buffer
+     * @param high the number of elements to be sorted
+     */
+    private static void sortChunk(Object a, int parallelism, Object workspace, int high) {
+        switch (a) {
+            case int[] ai -> sort(ai, parallelism, (int[]) workspace, 0, high);
+            case long[] al -> sort(al, parallelism, (long[]) workspace, 0, high);
+            case float[] af -> sort(af, parallelism, (float[]) workspace, 0, high);
+            case double[] ad -> sort(ad, parallelism, (double[]) workspace, 0, high);
+            default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
+        }
+    }
+
+    /**
+     * Returns the size of the buffer of reading or writing in bytes,
+     * which is the 16th part of the memory, but at most
+     * {@value #IO_BUFFER_SIZE} bytes.
+     *
+     * @param memory the max size of the memory in bytes
+     * @return the size of the buffer in bytes
+     */
+    private static int ioBufferSize(long memory) {
+        return (int) Math.min(IO_BUFFER_SIZE, memory >> 4) & -Long.BYTES;
+    }
+
+    /**
+     * Reads the records from the channel into the array,
+     * until the array is full or the end of the input.
+     *
+     * @param in the channel to read the records
+     * @param buffer the buffer to read the bytes
+     * @param layout the layout of the records
+     * @param a the array to read the records
+     * @param length the max number of records to be read
+     * @return the number of read records
+     * @throws IllegalArgumentException if the input ends with incomplete record
+     * @throws IOException if an I/O error occurs
+     */
+    private static int read(ReadableByteChannel in, ByteBuffer buffer,
+            ValueLayout layout, Object a, int length) throws IOException {
+
+        int size = (int) layout.byteSize();
+        boolean eof = false;
+        int count = 0;
+
+        while (count < length && !eof) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), (long) (length - count) * size));
+
+            while (buffer.hasRemaining() && !eof) {
+                eof = in.read(buffer) < 0;
+            }
+            buffer.flip();
+
+            if (buffer.remaining() % size != 0) {
+                throw new IllegalArgumentException("Incomplete record at the end of input");
+            }
+            int n = buffer.remaining() / size;
+            MemorySegment.copy(MemorySegment.ofBuffer(buffer), layout, 0, a, count, n);
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the leading records of the array to the channel.
+     *
+     * @param out the channel to write the records
+     * @param buffer the buffer to write the bytes
+     * @param layout the layout of the records
+     * @param a the array with the records
+     * @param length the number of records to be written
+     * @throws IOException if an I/O error occurs
+     */
+    private static void write(WritableByteChannel out, ByteBuffer buffer,
+            ValueLayout layout, Object a, int length) throws IOException {
+
+        int size = (int) layout.byteSize();
+
+        for (int count = 0; count < length; ) {
+            int n = Math.min(length - count, buffer.capacity() / size);
+            buffer.clear().limit(n * size);
+            MemorySegment.copy(a, count, MemorySegment.ofBuffer(buffer), layout, 0, n);
+
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            count += n;
+        }
+    }
+
+    /**
+     * Writes the leading records of the array to new temporary file
+     * and adds it to the runs.
+     *
+     * @param buffer the buffer to write the bytes
+     * @param layout the layout of the records
+     * @param a the array with the records
+     * @param length the number of records to be written
+     * @param directory the directory for temporary files, or {@code null}
+     * @param runs the list to add the new run
+     * @throws IOException if an I/O error occurs
+     */
+    private static void spill(ByteBuffer buffer, ValueLayout layout, Object a,
+            int length, Path directory, List<Path> runs) throws IOException {
+
+        Path run = createRun(directory);
+        runs.add(run);
+
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            write(channel, buffer, layout, a, length);
+        }
+    }
+
+    /**
+     * Creates new temporary file for the run.
+     *
+     * @param directory the directory for temporary files, or {@code null}
+     * @return the path of created file
+     * @throws IOException if an I/O error occurs
+     */
+    private static Path createRun(Path directory) throws IOException {
+        return directory == null ? Files.createTempFile("sort", ".run")
+            : Files.createTempFile(directory, "sort", ".run");
+    }
+
+    /**
+     * Waits for the I/O task to complete.
+     *
+     * @param future the future of the task
+     * @return the result of the task
+     * @throws IOException if the task failed with I/O error
+     */
+    private static int await(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException ex -> throw ex;
+                case RuntimeException ex -> throw ex;
+                case Error ex -> throw ex;
+                default -> throw new IOException(e.getCause());
+            }
+        }
+    }
+
+// #[tuning]
+
+    /**
+     * Calibrates the thresholds of sorting on the current machine and
+     * writes them to the profile. Each line of the profile is the system
+     * property {@code java.util.DualPivotQuicksort.NAME=value}, so that
+     * the profile is applied at startup, if it is loaded into the system
+     * properties or each line is given as {@code -D} option.<p>
+     *
+     * Each threshold is found by a short sweep over candidate sizes,
+     * where the algorithms on both sides of the threshold are timed on
+     * random elements: Radix sort against Dual-Pivot Quicksort without
+     * additional buffer for int, long, float and double elements,
+     * insertion sort against one level of partitioning, counting sort
+     * against insertion sort and Dual-Pivot Quicksort for bytes, chars
+     * and shorts, and parallel sorting against sequential one. The cost
+     * of one pass of Radix sort in the cost model is the time of Radix
+     * sort per pass relative to the time of Dual-Pivot Quicksort per
+     * level on large random arrays, as the median of the rounds, which
+     * time both algorithms one after another, limited to the ratio
+     * {@value #MAX_RADIX_PASS_RATIO} in either direction.<p>
+     *
+     * The other thresholds, such as {@code MIN_MERGE_PART_SIZE}, are
+     * not calibrated, but may be added to the profile by hand. The
+     * thresholds are loaded only once, therefore the calibration
+     * doesn't change sorting in the running virtual machine.
+     *
+     * @param profile the file to write the profile
+     * @param parallelism the parallelism level to calibrate parallel
+     *        sorting, which is skipped, if the level is 1
+     * @return the calibrated thresholds
+     * @throws IOException if an I/O error occurs
+     */
+    static Properties calibrate(Path profile, int parallelism) throws IOException {
+        Random random = new Random(CALIBRATION_LENGTH);
+        int[] ints = new int[CALIBRATION_LENGTH];
+        long[] longs = new long[CALIBRATION_LENGTH];
+        float[] floats = new float[CALIBRATION_LENGTH];
+        double[] doubles = new double[CALIBRATION_LENGTH];
+        byte[] bytes = new byte[CALIBRATION_LENGTH];
+        char[] chars = new char[CALIBRATION_LENGTH];
+        short[] shorts = new short[CALIBRATION_LENGTH];
+
+        for (int i = 0; i < CALIBRATION_LENGTH; ++i) {
+            ints[i] = random.nextInt();
+            longs[i] = random.nextLong();
+            floats[i] = ints[i];
+            doubles[i] = longs[i];
+            bytes[i] = (byte) ints[i];
+            chars[i] = (char) ints[i];
+            shorts[i] = (short) ints[i];
+        }
+        Properties values = new Properties();
+
+        /*
+         * Calibrate insertion sort against one level of partitioning.
          */
-        int upper = --high;
-        int lower = low;
+        values.setProperty(Tuning.PREFIX + "MAX_INSERTION_SORT_SIZE", String.valueOf(crossover(ints,
+            new int[] { 24, 32, 40, 48, 56, 64, 80, 96, 128 },
+            (a, low, high) -> insertionSort((int[]) a, low, high),
+            (a, low, high) -> partitionAndInsertionSort((int[]) a, low, high))));
 
         /*
-         * Use the first and fifth of the five sorted elements as
-         * the pivots. These values are inexpensive approximation
-         * of tertiles. Note, that pivot1 < pivot2.
+         * Calibrate Radix sort for each type of elements.
          */
-        final double pivot1 = a[pivotIndex1]; // todo final
-        final double pivot2 = a[pivotIndex2];
+        calibrateRadixSort(values, "INT", ints, Integer.SIZE,
+            (a, low, high) -> sort(null, (int[]) a, 0, low, high),
+            (a, low, high) -> tryRadixSort(null, (int[]) a, low, high));
+
+        calibrateRadixSort(values, "LONG", longs, Long.SIZE,
+            (a, low, high) -> sort(null, (long[]) a, 0, low, high),
+            (a, low, high) -> tryRadixSort(null, (long[]) a, low, high));
+
+        calibrateRadixSort(values, "FLOAT", floats, Float.SIZE,
+            (a, low, high) -> sort(null, (float[]) a, 0, low, high),
+            (a, low, high) -> tryRadixSort(null, (float[]) a, low, high));
+
+        calibrateRadixSort(values, "DOUBLE", doubles, Double.SIZE,
+            (a, low, high) -> sort(null, (double[]) a, 0, low, high),
+            (a, low, high) -> tryRadixSort(null, (double[]) a, low, high));
 
         /*
-         * The first and the last elements to be sorted are moved
-         * to the locations formerly occupied by the pivots. When
-         * partitioning is completed, the pivots are swapped back
-         * into their final positions, and excluded from the next
-         * subsequent sorting.
+         * Calibrate counting sort for each type of elements.
          */
-        a[pivotIndex1] = a[lower];
-        a[pivotIndex2] = a[upper];
+        values.setProperty(Tuning.PREFIX + "MIN_BYTE_COUNTING_SORT_SIZE", String.valueOf(crossover(bytes,
+            new int[] { 8, 16, 24, 32, 48, 64, 96, 128 },
+            (a, low, high) -> insertionSort((byte[]) a, low, high),
+            (a, low, high) -> countingSort((byte[]) a, low, high))));
+
+        values.setProperty(Tuning.PREFIX + "MIN_CHAR_COUNTING_SORT_SIZE", String.valueOf(crossover(chars,
+            new int[] { 512, 1024, 1536, 2048, 2560, 3072, 4096, 6144, 8192 },
+            (a, low, high) -> quickSort((char[]) a, 0, low, high),
+            (a, low, high) -> countingSort((char[]) a, low, high))));
+
+        values.setProperty(Tuning.PREFIX + "MIN_SHORT_COUNTING_SORT_SIZE", String.valueOf(crossover(shorts,
+            new int[] { 512, 1024, 1536, 2048, 2560, 3072, 4096, 6144, 8192 },
+            (a, low, high) -> quickSort((short[]) a, 0, low, high),
+            (a, low, high) -> countingSort((short[]) a, low, high))));
 
         /*
-         * Skip elements, which are less or greater than the pivots.
+         * Calibrate parallel sorting against sequential one.
          */
-        while (a[++lower] < pivot1);
-        while (a[--upper] > pivot2);
+        if (parallelism > 1) {
+            int[] sizes = { 1 << 10, 2 << 10, 4 << 10, 8 << 10, 16 << 10, 32 << 10, 64 << 10 };
+
+            /*
+             * Allocate the buffer of parallel sorting before timing,
+             * since sequential sorting takes no buffer either.
+             */
+            int[] buffer = new int[sizes[sizes.length - 1]];
+
+            values.setProperty(Tuning.PREFIX + "MIN_PARALLEL_SORT_SIZE", String.valueOf(crossover(ints, sizes,
+                (a, low, high) -> sort(null, (int[]) a, 0, low, high),
+                (a, low, high) -> new Sorter<>((int[]) a, buffer,
+                    true, parallelism, low, high - low).invoke())));
+        }
 
         /*
-         * Backward 3-interval partitioning
-         *
-         *     left part                     central part          right part
-         * +--------------+----------+--------------------------+--------------+        // todo m ---+---
-         * |   < pivot1   |    ?     |  pivot1 <= .. <= pivot2  |   > pivot2   |
-         * +--------------+----------+--------------------------+--------------+
-         *               ^          ^                            ^
-         *               |          |                            |
-         *             lower        k                          upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
+         * Write the profile.
          */
-        for (int unused = --lower, k = ++upper; --k > lower; ) {
-            double ak = a[k];
+        try (Writer writer = Files.newBufferedWriter(profile)) {
+            values.store(writer, "Tuning profile of DualPivotQuicksort, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        }
+        return values;
+    }
 
-            if (ak < pivot1) { // Move a[k] to the left part
-                while (a[++lower] < pivot1);
+    /**
+     * Calibrates the min size and the relative cost of one pass
+     * of Radix sort for the given type of elements.
+     *
+     * @param values the calibrated thresholds
+     * @param type the name of the type of elements
+     * @param source the random elements
+     * @param bits the number of bits in the elements
+     * @param quickSort the operation of Dual-Pivot Quicksort
+     * @param radixSort the operation of Radix sort
+     */
+    private static void calibrateRadixSort(Properties values, String type, Object source,
+            int bits, SortOperation<Object> quickSort, SortOperation<Object> radixSort) {
 
-                if (lower > k) {
-                    lower = k;
-                    break;
+        /*
+         * Take no additional buffer, so that Radix sort is not used.
+         */
+        SortOperation<Object> partitioning = (a, low, high) -> {
+            Workspace.lend(a, 0);
+
+            try {
+                quickSort.sort(a, low, high);
+            } finally {
+                Workspace.lend(null, 0);
+            }
+        };
+        values.setProperty(Tuning.PREFIX + "MIN_" + type + "_RADIX_SORT_SIZE",
+            String.valueOf(crossover(source,
+                new int[] { 256, 384, 512, 640, 768, 1024, 1536, 2048, 3072, 4096 },
+                partitioning, radixSort)));
+
+        /*
+         * Compare the time per pass and the time per level in
+         * rounds, which time both algorithms one after another,
+         * so that the median ratio is not biased by the load.
+         */
+        int size = MIN_RADIX_PART_SIZE << 1;
+        int levels = 31 - Integer.numberOfLeadingZeros(size);
+        int passes = (bits + 11) / 11 + 1;
+        double[] ratio = new double[CALIBRATION_ROUNDS];
+
+        for (int round = 0; round < CALIBRATION_ROUNDS; ++round) {
+            double level = measure(source, size, partitioning) / levels;
+            double pass = measure(source, size, radixSort) / passes;
+            ratio[round] = pass / level;
+        }
+        Arrays.sort(ratio);
+
+        /*
+         * Keep the cost within the valid ratio.
+         */
+        long cost = Math.round(PARTITION_LEVEL_COST * ratio[CALIBRATION_ROUNDS >> 1]);
+
+        values.setProperty(Tuning.PREFIX + type + "_RADIX_PASS_COST", String.valueOf(
+            Math.clamp(cost, Math.max(1, PARTITION_LEVEL_COST / MAX_RADIX_PASS_RATIO),
+                PARTITION_LEVEL_COST * MAX_RADIX_PASS_RATIO)));
+    }
+
+    /**
+     * Returns the last of the given sizes, before the second
+     * algorithm becomes faster than the first one, or the
+     * last size, if the second algorithm is always slower.
+     *
+     * @param source the random elements
+     * @param sizes the candidate sizes in ascending order
+     * @param first the operation of the algorithm for smaller sizes
+     * @param second the operation of the algorithm for larger sizes
+     * @return the size to switch the algorithms
+     */
+    private static int crossover(Object source, int[] sizes,
+            SortOperation<Object> first, SortOperation<Object> second) {
+
+        /*
+         * Warm up both algorithms before timing.
+         */
+        measure(source, sizes[sizes.length - 1], first);
+        measure(source, sizes[sizes.length - 1], second);
+
+        for (int i = 0; i < sizes.length; ++i) {
+            if (measure(source, sizes[i], second) < measure(source, sizes[i], first)) {
+                return sizes[Math.max(i - 1, 0)];
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Returns the time in nanoseconds per element of the operation,
+     * which sorts the consecutive ranges of the given size of the
+     * copy of the random elements. The fastest round is taken.
+     *
+     * @param source the random elements
+     * @param size the size of the ranges
+     * @param so the operation to be timed
+     * @return the time per element
+     */
+    private static double measure(Object source, int size, SortOperation<Object> so) {
+        Object a = Array.newInstance(source.getClass().getComponentType(), CALIBRATION_LENGTH);
+        int length = CALIBRATION_LENGTH / size * size;
+        double time = Double.MAX_VALUE;
+
+        for (int round = 0; round < CALIBRATION_ROUNDS; ++round) {
+            System.arraycopy(source, 0, a, 0, length);
+            long start = System.nanoTime();
+
+            for (int low = 0; low < length; low += size) {
+                so.sort(a, low, low + size);
+            }
+            time = Math.min(time, (double) (System.nanoTime() - start) / length);
+        }
+        return time;
+    }
+
+    /**
+     * Sorts the specified range of the array by one level of
+     * partitioning with two pivots and insertion sort of the parts.
+     *
+     * @param a the array to be sorted
+     * @param low the index of the first element, inclusive, to be sorted
+     * @param high the index of the last element, exclusive, to be sorted
+     */
+    private static void partitionAndInsertionSort(int[] a, int low, int high) {
+        int step = (high - low) / 6;
+        int e1 = low + step;
+        int e5 = e1 + (step << 2);
+
+        /*
+         * Sort five evenly spaced elements, the inner
+         * ones stop the scans of partitioning.
+         */
+        for (int i = e1 + step; i <= e5; i += step) {
+            int ai = a[i];
+            int j = i;
+
+            for (; j > e1 && ai < a[j - step]; j -= step) {
+                a[j] = a[j - step];
+            }
+            a[j] = ai;
+        }
+        if (a[e1] < a[e1 + step] && a[e5 - step] < a[e5]) {
+            int[] indices = partitionWithTwoPivots(a, low, high, e1, e5);
+            int lower = indices[0], upper = indices[1];
+
+            insertionSort(a, low, lower);
+            insertionSort(a, lower + 1, upper);
+            insertionSort(a, upper + 1, high);
+        } else {
+            insertionSort(a, low, high);
+        }
+    }
+
+// #[class]
+
+    /**
+     * Implementation of parallel sorting.
+     */
+    private static final class Sorter<T> extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 123456789L;
+
+        @SuppressWarnings("serial")
+        private final T a, b;
+        private final int parallelism, low, size, offset, depth, limit, ways;
+        private final boolean allocate;
+
+        private Sorter(T a, T b, boolean allocate, int parallelism, int low, int size) {
+            this(a, b, allocate, parallelism, low, size, low + size);
+        }
+
+        private Sorter(T a, T b, boolean allocate, int parallelism, int low, int size, int limit) {
+            this.a = a;
+            this.parallelism = parallelism;
+            this.low = low;
+            this.size = size;
+            this.offset = low;
+            this.limit = limit;
+            this.allocate = allocate;
+            this.b = b == null || Array.getLength(b) < size ? null : b;
+            this.depth = this.b == null || size > MIN_BUCKET_SORT_SIZE
+                && (a instanceof int[] || a instanceof long[]) ? 0 : -2;
+            this.ways = 1 << ((parallelism >> 7) + 2);
+        }
+
+        private Sorter(Sorter<T> parent,
+                T a, T b, int low, int size, int offset, int depth) {
+            super(parent);
+            this.a = a;
+            this.b = b;
+            this.parallelism = parent.parallelism;
+            this.low = low;
+            this.size = size;
+            this.offset = offset;
+            this.depth = depth;
+            this.limit = low + size;
+            this.allocate = parent.allocate;
+            this.ways = parent.ways;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void compute() {
+            if (depth < 0) {
+                setPendingCount(ways);
+
+                for (int i = ways - 1; i > 0; --i) {
+                    new Sorter<>(this, b, a, bound(i), bound(i + 1) - bound(i), offset, depth + 1).fork();
                 }
-                if (a[lower] > pivot2) {
-                    a[k] = a[--upper];
-                    a[upper] = a[lower];
-                } else {
-                    a[k] = a[lower];
+                new Sorter<>(this, b, a, low, bound(1) - low, offset, depth + 1).compute();
+            } else if (limit < low + size) {
+                switch(a) {
+                    case int[] ai -> partialSort((Sorter<int[]>) this, ai, limit, low, low + size);
+                    case long[] al -> partialSort((Sorter<long[]>) this, al, limit, low, low + size);
+                    case float[] af -> partialSort((Sorter<float[]>) this, af, limit, low, low + size);
+                    case double[] ad -> partialSort((Sorter<double[]>) this, ad, limit, low, low + size);
+                    default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
                 }
-                a[lower] = ak;
-            } else if (ak > pivot2) { // Move a[k] to the right part
-                a[k] = a[--upper];
-                a[upper] = ak;
+            } else {
+                switch(a) {
+                    case int[] ai -> sort((Sorter<int[]>) this, ai, depth, low, low + size);
+                    case long[] al -> sort((Sorter<long[]>) this, al, depth, low, low + size);
+                    case float[] af -> sort((Sorter<float[]>) this, af, depth, low, low + size);
+                    case double[] ad -> sort((Sorter<double[]>) this, ad, depth, low, low + size);
+                    default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
+                }
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (depth < 0) {
+                boolean src = (depth & 1) == 0;
+                int[] start = new int[ways], end = new int[ways];
+
+                for (int i = 0; i < ways; ++i) {
+                    start[i] = src ? bound(i) - offset : bound(i);
+                    end[i] = src ? bound(i + 1) - offset : bound(i + 1);
+                }
+                int slices = Math.max(1, Math.min(size / MIN_MERGE_PART_SIZE, parallelism << 1));
+
+                new MultiMerger<>(null, a, src ? low : low - offset, b,
+                    start, end, size, slices, 0, slices).invoke();
+            }
+        }
+
+        private void fork(int depth, int low, int high) {
+            addToPendingCount(1);
+            new Sorter<>(this, a, b, low, high - low, offset, depth).fork();
+        }
+
+        /**
+         * Returns the start index of the given part
+         * of the range split into the ways of merging.
+         */
+        private int bound(int i) {
+            return low + (int) ((long) size * i / ways);
+        }
+    }
+
+    /**
+     * Implementation of parallel merging.
+     */
+    private static final class Merger<T> extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 123456789L;
+
+        @SuppressWarnings("serial")
+        private final T dst, src;
+        private final int k, lo1, hi1, lo2, hi2;
+
+        private Merger(CountedCompleter<?> parent, T dst, int k,
+                T src, int lo1, int hi1, int lo2, int hi2) {
+            super(parent);
+            this.dst = dst;
+            this.k = k;
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void compute() {
+            switch(dst) {
+                case int[] di -> mergeParts((Merger<int[]>) this, di, k, (int[]) src, lo1, hi1, lo2, hi2);
+                case long[] dl -> mergeParts((Merger<long[]>) this, dl, k, (long[]) src, lo1, hi1, lo2, hi2);
+                case float[] df -> mergeParts((Merger<float[]>) this, df, k, (float[]) src, lo1, hi1, lo2, hi2);
+                case double[] dd -> mergeParts((Merger<double[]>) this, dd, k, (double[]) src, lo1, hi1, lo2, hi2);
+                default -> throw new IllegalArgumentException("Unknown array: " + dst.getClass().getName());
             }
+            propagateCompletion();
         }
 
-        /*
-         * Swap the pivots into their final positions.
-         */
-        a[low]  = a[lower]; a[lower] = pivot1;
-        a[high] = a[upper]; a[upper] = pivot2;
-
-        return new int[] { lower, upper };
+        private void fork(int k, int lo1, int hi1, int lo2, int hi2) {
+            addToPendingCount(1);
+            new Merger<>(this, dst, k, src, lo1, hi1, lo2, hi2).fork();
+        }
     }
 
     /**
-     * Partitions the specified range of the array using one given pivot.
-     *
-     * @param a the array for partitioning
-     * @param low the index of the first element, inclusive, for partitioning
-     * @param high the index of the last element, exclusive, for partitioning
-     * @param pivotIndex1 the index of single pivot
-     * @param pivotIndex2 the index of single pivot
-     * @return indices of parts after partitioning
+     * Implementation of parallel identifying of runs.
      */
-    private static int[] partitionWithOnePivot(
-            double[] a, int low, int high, int pivotIndex1, int pivotIndex2) {
+    private static final class RunScanner<T> extends CountedCompleter<Void> {
 
-        /*
-         * Pointers to the right and left parts.
-         */
-        int upper = high;
-        int lower = low;
+        private static final long serialVersionUID = 123456789L;
 
-        /*
-         * Use the third of the five sorted elements as the pivot.
-         * This value is inexpensive approximation of the median.
-         */
-        final double pivot = a[pivotIndex1];
+        @SuppressWarnings("serial")
+        private final Sorter<T> sorter;
+        @SuppressWarnings("serial")
+        private final T a;
+        private final int[][] runs;
+        private final int low, high, lo, hi;
 
-        /*
-         * The first element to be sorted is moved to the
-         * location formerly occupied by the pivot. After
-         * completion of partitioning the pivot is swapped
-         * back into its final position, and excluded from
-         * the next subsequent sorting.
-         */
-        a[pivotIndex1] = a[lower];
+        private RunScanner(Sorter<T> sorter, T a, int[][] runs, int low, int high, int lo, int hi) {
+            this(null, sorter, a, runs, low, high, lo, hi);
+        }
 
-        /*
-         * Dutch National Flag partitioning
-         *
-         *     left part               central part    right part
-         * +------------------------------------------------------+ // todo ---+----
-         * |   < pivot    |    ?     |   == pivot   |   > pivot   |
-         * +------------------------------------------------------+
-         *               ^          ^                ^
-         *               |          |                |
-         *             lower        k              upper
-         *
-         * Pointer k is the last index of ?-part
-         * Pointer lower is the last index of left part
-         * Pointer upper is the first index of right part
-         */
-        for (int k = upper; --k > lower; ) {
-            double ak = a[k];
+        private RunScanner(CountedCompleter<?> parent, Sorter<T> sorter,
+                T a, int[][] runs, int low, int high, int lo, int hi) {
+            super(parent);
+            this.sorter = sorter;
+            this.a = a;
+            this.runs = runs;
+            this.low = low;
+            this.high = high;
+            this.lo = lo;
+            this.hi = hi;
+        }
 
-            if (ak == pivot) {
-                continue;
+        @Override
+        @SuppressWarnings("unchecked")
+        public void compute() {
+            int mi = hi;
+
+            /*
+             * Scan other parts in parallel.
+             */
+            while (mi - lo > 1) {
+                int half = (lo + mi) >>> 1;
+                addToPendingCount(1);
+                new RunScanner<>(this, sorter, a, runs, low, high, half, mi).fork();
+                mi = half;
             }
-            a[k] = pivot;
 
-            if (ak < pivot) { // Move a[k] to the left part
-                while (a[++lower] < pivot);
+            /*
+             * Identify the runs of the part lo.
+             */
+            int step = (high - low) / runs.length;
+            int start = low + lo * step;
+            int end = mi == runs.length ? high : start + step;
+
+            switch(a) {
+                case int[] ai -> runs[lo] = findRuns((Sorter<int[]>) sorter, ai, lo == 0, start, end);
+                case long[] al -> runs[lo] = findRuns((Sorter<long[]>) sorter, al, lo == 0, start, end);
+                case float[] af -> runs[lo] = findRuns((Sorter<float[]>) sorter, af, lo == 0, start, end);
+                case double[] ad -> runs[lo] = findRuns((Sorter<double[]>) sorter, ad, lo == 0, start, end);
+                default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
+            }
+            propagateCompletion();
+        }
+    }
 
-                if (a[lower] > pivot) {
-                    a[--upper] = a[lower];
+    /**
+     * Implementation of parallel merging of runs.
+     */
+    private static final class RunMerger<T> extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 123456789L;
+
+        @SuppressWarnings("serial")
+        private final T a, b;
+        private final int[] run;
+        private final int offset, lo, hi;
+        private final boolean aim;
+        private int mi;
+
+        private RunMerger(CountedCompleter<?> parent, T a, T b, int offset,
+                boolean aim, int[] run, int lo, int hi) {
+            super(parent);
+            this.a = a;
+            this.b = b;
+            this.offset = offset;
+            this.aim = aim;
+            this.run = run;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void compute() {
+            if (hi - lo > 1 && run[hi] - run[lo] > MIN_PARALLEL_SORT_SIZE) {
+
+                /*
+                 * Split the runs into two approximately equal parts.
+                 */
+                int rmi = (run[lo] + run[hi]) >>> 1;
+                mi = lo;
+                while (run[++mi + 1] <= rmi);
+
+                /*
+                 * Merge the runs of both parts in parallel.
+                 */
+                setPendingCount(2);
+                new RunMerger<>(this, a, b, offset, !aim, run, lo, mi).fork();
+                new RunMerger<>(this, a, b, offset, !aim, run, mi, hi).compute();
+            } else {
+                switch(a) {
+                    case int[] ai -> mergeRuns(null, ai, (int[]) b, offset, aim, run, lo, hi);
+                    case long[] al -> mergeRuns(null, al, (long[]) b, offset, aim, run, lo, hi);
+                    case float[] af -> mergeRuns(null, af, (float[]) b, offset, aim, run, lo, hi);
+                    case double[] ad -> mergeRuns(null, ad, (double[]) b, offset, aim, run, lo, hi);
+                    default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
                 }
-                a[lower] = ak;
-            } else { // ak > pivot - Move a[k] to the right part
-                a[--upper] = ak;
             }
+            tryComplete();
         }
 
-        /*
-         * Swap the pivot into its final position.
-         */
-        a[low] = a[lower]; a[lower] = pivot;
-
-        return new int[] { lower, upper };
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (mi > lo) {
+                new Merger<>(null,
+                    aim ? a : b,
+                    !aim ? run[lo] - offset : run[lo],
+                    aim ? b : a,
+                    aim ? run[lo] - offset : run[lo],
+                    aim ? run[mi] - offset : run[mi],
+                    aim ? run[mi] - offset : run[mi],
+                    aim ? run[hi] - offset : run[hi]
+                ).invoke();
+            }
+        }
     }
 
     /**
-     * Sorts the specified range of the array using mixed insertion sort.<p>
-     *
-     * Mixed insertion sort is combination of pin insertion sort,
-     * simple insertion sort and pair insertion sort.<p>
-     *
-     * In the context of Dual-Pivot Quicksort, the pivot element
-     * from the left part plays the role of sentinel, because it
-     * is less than any elements from the given part. Therefore,
-     * expensive check of the left range can be skipped on each
-     * iteration unless it is the leftmost call.
-     *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * Implementation of parallel merging of several parts. The output
+     * is split evenly into the slices, and the parts are split by the
+     * boundaries of the slices, so that each slice is merged alone.
      */
-    static void mixedInsertionSort(double[] a, int low, int high) {
+    private static final class MultiMerger<T> extends CountedCompleter<Void> {
 
-        /*
-         * Split part for pin and pair insertion sorts.
-         */
-        int end = high - 3 * ((high - low) >> 3 << 1);
+        private static final long serialVersionUID = 123456789L;
 
-        /*
-         * Invoke simple insertion sort on small part.
-         */
-        if (end == high) {
-            for (int i; ++low < high; ) {
-                double ai = a[i = low];
+        @SuppressWarnings("serial")
+        private final T dst, src;
+        private final int[] start, end;
+        private final int k, size, slices, lo, hi;
 
-                while (ai < a[i - 1]) {
-                    a[i] = a[--i];
-                }
-                a[i] = ai;
-            }
-            return;
+        private MultiMerger(CountedCompleter<?> parent, T dst, int k, T src,
+                int[] start, int[] end, int size, int slices, int lo, int hi) {
+            super(parent);
+            this.dst = dst;
+            this.k = k;
+            this.src = src;
+            this.start = start;
+            this.end = end;
+            this.size = size;
+            this.slices = slices;
+            this.lo = lo;
+            this.hi = hi;
         }
 
-        /*
-         * Start with pin insertion sort.
-         */
-        for (int i, p = high; ++low < end; ) {
-            double ai = a[i = low], pin = a[--p];
+        @Override
+        public void compute() {
+            int mi = hi;
 
             /*
-             * Swap larger element with pin.
+             * Merge other slices in parallel.
              */
-            if (ai > pin) {
-                ai = pin;
-                a[p] = a[i];
+            while (mi - lo > 1) {
+                int half = (lo + mi) >>> 1;
+                addToPendingCount(1);
+                new MultiMerger<>(this, dst, k, src, start, end, size, slices, half, mi).fork();
+                mi = half;
             }
 
             /*
-             * Insert element into sorted part.
+             * Merge the slice lo.
              */
-            while (ai < a[i - 1]) {
-                a[i] = a[--i];
+            int from = (int) ((long) size * lo / slices);
+            int to = (int) ((long) size * (lo + 1) / slices);
+
+            switch(src) {
+                case int[] si -> multiMerge((int[]) dst, k + from, si,
+                    splitParts(si, start, end, from), splitParts(si, start, end, to));
+                case long[] sl -> multiMerge((long[]) dst, k + from, sl,
+                    splitParts(sl, start, end, from), splitParts(sl, start, end, to));
+                case float[] sf -> multiMerge((float[]) dst, k + from, sf,
+                    splitParts(sf, start, end, from), splitParts(sf, start, end, to));
+                case double[] sd -> multiMerge((double[]) dst, k + from, sd,
+                    splitParts(sd, start, end, from), splitParts(sd, start, end, to));
+                default -> throw new IllegalArgumentException("Unknown array: " + src.getClass().getName());
             }
-            a[i] = ai;
+            propagateCompletion();
         }
+    }
 
-        /*
-         * Finish with pair insertion sort.
-         */
-        for (int i; low < high; ++low) {
-            double a1 = a[i = low], a2 = a[++low];
+    /**
+     * Implementation of parallel merging in place with bounded buffer.
+     */
+    private static final class BoundedMerger<T> extends CountedCompleter<Void> {
 
-            /*
-             * Insert two elements per iteration: at first, insert the
-             * larger element and then insert the smaller element, but
-             * from the position where the larger element was inserted.
-             */
-            if (a1 > a2) {
+        private static final long serialVersionUID = 123456789L;
 
-                while (a1 < a[--i]) {
-                    a[i + 2] = a[i];
-                }
-                a[++i + 1] = a1;
+        @SuppressWarnings("serial")
+        private final T a, b;
+        private final int lo, mi, hi, offset, size;
 
-                while (a2 < a[--i]) {
-                    a[i + 1] = a[i];
-                }
-                a[i + 1] = a2;
+        private BoundedMerger(CountedCompleter<?> parent, T a, T b,
+                int lo, int mi, int hi, int offset, int size) {
+            super(parent);
+            this.a = a;
+            this.b = b;
+            this.lo = lo;
+            this.mi = mi;
+            this.hi = hi;
+            this.offset = offset;
+            this.size = size;
+        }
 
-            } else if (a1 < a[i - 1]) {
+        @Override
+        @SuppressWarnings("unchecked")
+        public void compute() {
+            switch(a) {
+                case int[] ai -> mergeInPlace((BoundedMerger<int[]>) this, ai, (int[]) b, lo, mi, hi, offset, size);
+                case long[] al -> mergeInPlace((BoundedMerger<long[]>) this, al, (long[]) b, lo, mi, hi, offset, size);
+                case float[] af -> mergeInPlace((BoundedMerger<float[]>) this, af, (float[]) b, lo, mi, hi, offset, size);
+                case double[] ad -> mergeInPlace((BoundedMerger<double[]>) this, ad, (double[]) b, lo, mi, hi, offset, size);
+                default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
+            }
+            propagateCompletion();
+        }
+
+        private void fork(int lo, int mi, int hi, int offset, int size) {
+            addToPendingCount(1);
+            new BoundedMerger<>(this, a, b, lo, mi, hi, offset, size).fork();
+        }
+    }
+
+    /**
+     * Implementation of parallel sorting of the segments.
+     */
+    private static final class SegmentSorter extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 123456789L;
+
+        @SuppressWarnings("serial")
+        private final MemorySegment a, b;
+        private final long low, size, offset;
+        private final int depth;
+        private final boolean isLong;
+
+        private SegmentSorter(MemorySegment a, MemorySegment b,
+                boolean isLong, int parallelism, long low, long size) {
+            this.a = a;
+            this.b = b;
+            this.low = low;
+            this.size = size;
+            this.offset = low;
+            this.depth = b == null ? 0 : ((parallelism >> 7) + 2) * (-2);
+            this.isLong = isLong;
+        }
+
+        private SegmentSorter(SegmentSorter parent, MemorySegment a,
+                MemorySegment b, long low, long size, long offset, int depth) {
+            super(parent);
+            this.a = a;
+            this.b = b;
+            this.low = low;
+            this.size = size;
+            this.offset = offset;
+            this.depth = depth;
+            this.isLong = parent.isLong;
+        }
+
+        @Override
+        public void compute() {
+            if (depth < 0) {
+                setPendingCount(2);
+                long half = size >> 1;
+                new SegmentSorter(this, b, a, low, half, offset, depth + 1).fork();
+                new SegmentSorter(this, b, a, low + half, size - half, offset, depth + 1).compute();
+            } else if (isLong) {
+                sortLongs(this, a, depth, low, low + size);
+            } else {
+                sortInts(this, a, depth, low, low + size);
+            }
+            tryComplete();
+        }
 
-                while (a2 < a[--i]) {
-                    a[i + 2] = a[i];
-                }
-                a[++i + 1] = a2;
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (depth < 0) {
+                long mi = low + (size >> 1);
+                boolean src = (depth & 1) == 0;
 
-                while (a1 < a[--i]) {
-                    a[i + 1] = a[i];
-                }
-                a[i + 1] = a1;
+                new SegmentMerger(null, isLong,
+                    a,
+                    src ? low : low - offset,
+                    b,
+                    src ? low - offset : low,
+                    src ? mi - offset : mi,
+                    src ? mi - offset : mi,
+                    src ? low + size - offset : low + size
+                ).invoke();
             }
         }
+
+        private void fork(int depth, long low, long high) {
+            addToPendingCount(1);
+            new SegmentSorter(this, a, b, low, high - low, offset, depth).fork();
+        }
     }
 
     /**
-     * Sorts the specified range of the array using insertion sort.
-     *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * Implementation of parallel merging of the segments.
      */
-    static void insertionSort(double[] a, int low, int high) {
-        for (int i, k = low; ++k < high; ) {
-            double ai = a[i = k];
+    private static final class SegmentMerger extends CountedCompleter<Void> {
 
-            if (ai < a[i - 1]) {
-                do {
-                    a[i] = a[--i];
-                } while (i > low && ai < a[i - 1]);
+        private static final long serialVersionUID = 123456789L;
 
-                a[i] = ai;
+        @SuppressWarnings("serial")
+        private final MemorySegment dst, src;
+        private final long k, lo1, hi1, lo2, hi2;
+        private final boolean isLong;
+
+        private SegmentMerger(CountedCompleter<?> parent, boolean isLong,
+                MemorySegment dst, long k, MemorySegment src, long lo1, long hi1, long lo2, long hi2) {
+            super(parent);
+            this.isLong = isLong;
+            this.dst = dst;
+            this.k = k;
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+        }
+
+        @Override
+        public void compute() {
+            if (isLong) {
+                mergePartsLongs(this, dst, k, src, lo1, hi1, lo2, hi2);
+            } else {
+                mergePartsInts(this, dst, k, src, lo1, hi1, lo2, hi2);
             }
+            propagateCompletion();
+        }
+
+        private void fork(long k, long lo1, long hi1, long lo2, long hi2) {
+            addToPendingCount(1);
+            new SegmentMerger(this, isLong, dst, k, src, lo1, hi1, lo2, hi2).fork();
         }
     }
 
     /**
-     * Tries to sort the specified range of the array using merging sort.
-     *
-     * @param sorter parallel context
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     * Statistics of external sorting: the numbers of runs,
+     * and the numbers of bytes read and written in each phase.
      */
-    static boolean tryMergingSort(Sorter<double[]> sorter, double[] a, int low, int high) {
+    static final class ExternalStatistics {
 
-        /*
-         * The element run[i] holds the start index
-         * of i-th sequence in non-descending order.
+        /**
+         * The number of the sorted chunks.
          */
-        int count = 1;
-        int[] run = null;
+        int runs;
 
-        /*
-         * Identify all possible runs.
+        /**
+         * The numbers of bytes read and written,
+         * while the sorted runs are formed.
          */
-        for (int k = low + 1, last = low; k < high; ) {
+        long runReadBytes, runWrittenBytes;
 
-            /*
-             * Find the next run.
-             */
-            if (a[k - 1] < a[k]) {
+        /**
+         * The numbers of bytes read and written,
+         * while the runs are merged.
+         */
+        long mergeReadBytes, mergeWrittenBytes;
 
-                // Identify ascending sequence
-                while (++k < high && a[k - 1] <= a[k]);
+        @Override
+        public String toString() {
+            return "runs: " + runs
+                + ", run phase read/written: " + runReadBytes + "/" + runWrittenBytes
+                + ", merge phase read/written: " + mergeReadBytes + "/" + mergeWrittenBytes;
+        }
+    }
 
-            } else if (a[k - 1] > a[k]) {
+    /**
+     * Sequential reader of the run with the current record.
+     */
+    private static final class RunReader {
 
-                // Identify descending sequence
-                while (++k < high && a[k - 1] >= a[k]);
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final boolean isLong, isFloat;
 
-                // Reverse into ascending order
-                for (int i = last - 1, j = k; ++i < --j && a[i] > a[j]; ) {
-                    double ai = a[i]; a[i] = a[j]; a[j] = ai;
-                }
+        /**
+         * The bits of the current record and the key, which
+         * preserves the order of the records, with NaNs last.
+         */
+        private long value, key;
 
-                // todo javadoc
-                if (k < high && a[k - 1] < a[k]) {
-                    continue;
-                }
+        /**
+         * Indicates whether the run is exhausted.
+         */
+        private boolean done;
 
-            } else { // Identify constant sequence
-                for (double ak = a[k]; ++k < high && ak == a[k]; );
+        /**
+         * The number of bytes read.
+         */
+        private long bytes;
 
-                // todo javadoc
-                if (k < high) {
-                    continue;
-                }
-            }
+        private RunReader(FileChannel channel, ByteBuffer buffer, boolean isLong, boolean isFloat) {
+            this.channel = channel;
+            this.buffer = buffer.limit(0);
+            this.isLong = isLong;
+            this.isFloat = isFloat;
+        }
 
-            /*
-             * Process the current run.
-             */
-            if (run == null) {
+        /**
+         * Reads the next record of the run.
+         */
+        private void next() throws IOException {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
 
-                if (k == high) {
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0);
 
-                    /*
-                     * Array is monotonous sequence
-                     * and therefore already sorted.
-                     */
-                    return true;
-                }
+                buffer.flip();
+                bytes += buffer.remaining();
 
-                /*
-                 * Terminate scanning, if the runs are too small.
-                 */
-                if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
+                if (!buffer.hasRemaining()) {
+                    done = true;
+                    return;
                 }
-                run = new int[ Math.min((high - low) >> 6, MAX_RUN_CAPACITY) | 8];
-                run[0] = low;
+            }
+            if (isLong) {
+                value = buffer.getLong();
+                key = !isFloat ? value : (value & Long.MAX_VALUE) > 0x7FF0000000000000L ?
+                    Long.MAX_VALUE : value ^ (value >> 63 & Long.MAX_VALUE);
+            } else {
+                int bits = buffer.getInt();
+                value = bits;
+                key = !isFloat ? bits : (bits & Integer.MAX_VALUE) > 0x7F800000 ?
+                    Long.MAX_VALUE : bits ^ (bits >> 31 & Integer.MAX_VALUE);
+            }
+        }
+    }
 
-            } else if (a[last - 1] > a[last]) { // Start the new run
+    /**
+     * Loser tree to select the least current record of the runs.
+     */
+    private static final class LoserTree {
 
-                /*
-                 * Terminate scanning, if the runs are too small.
-                 */
-                if (k - low < count * MIN_RUN_SIZE) {
-                    return false;
-                }
+        private final RunReader[] runs;
 
-                if (++count == run.length) {
+        /**
+         * The index of the winner at 0, and the indices
+         * of the losers at the internal nodes.
+         */
+        private final int[] tree;
 
-                    /*
-                     * Array is not highly structured.
-                     */
-                    return false;
-                }
-            }
+        private LoserTree(RunReader[] runs) throws IOException {
+            this.runs = runs;
+            this.tree = new int[runs.length];
 
             /*
-             * Save the current run.
+             * Start with the virtual run, which beats any other run.
              */
-            run[count] = (last = k);
+            Arrays.fill(tree, runs.length);
 
-            /*
-             * Check single-element run at the end.
-             */
-            if (++k == high) {
-                --k;
+            for (int i = runs.length - 1; i >= 0; --i) {
+                runs[i].next();
+                replay(i);
             }
         }
 
-        /*
-         * Merge all runs.
+        private RunReader top() {
+            return runs[tree[0]];
+        }
+
+        private boolean isEmpty() {
+            return top().done;
+        }
+
+        /**
+         * Moves the winner to the next record and replays the matches.
          */
-        if (count > 1) {
-            double[] b; int offset = low;
+        private void advance() throws IOException {
+            int i = tree[0];
+            runs[i].next();
+            replay(i);
+        }
 
-            if (sorter != null && (b = sorter.b) != null) {
-                offset = sorter.offset;
-            } else if ((b = tryAllocate(double[].class, high - low)) == null) {
+        private void replay(int i) {
+            for (int t = (i + runs.length) >> 1; t > 0; t >>= 1) {
+                if (beats(tree[t], i)) {
+                    int winner = tree[t]; tree[t] = i; i = winner;
+                }
+            }
+            tree[0] = i;
+        }
+
+        private boolean beats(int i, int j) {
+            if (i == runs.length) {
+                return true;
+            }
+            if (j == runs.length) {
                 return false;
             }
-            mergeRuns(sorter, a, b, offset, true, run, 0, count);
+            RunReader a = runs[i], b = runs[j];
+            return !a.done && (b.done || a.key < b.key);
         }
-        return true;
     }
 
     /**
-     * Merges the specified runs.
-     *
-     * @param sorter parallel context
-     * @param a the source array
-     * @param b the temporary buffer used in merging
-     * @param offset the start index in the source, inclusive
-     * @param aim specifies merging: to source (+1), buffer (-1) or any (0) // todo javadoc update
-     * @param run the start indexes of the runs, inclusive
-     * @param lo the start index of the first run, inclusive
-     * @param hi the start index of the last run, inclusive
-     * @return the destination where the runs are merged // todo r
+     * Implementation of parallel sorting of the keys with payload.
      */
-    private static void mergeRuns(Sorter<double[]> sorter, double[] a, double[] b, int offset,
-            boolean aim, int[] run, int lo, int hi) {
+    private static final class PayloadSorter<T> extends CountedCompleter<Void> {
 
-        if (hi - lo == 1) {
-            if (!aim) {
-                System.arraycopy(a, run[lo], b, run[lo] - offset, run[hi] - run[lo]);
+        private static final long serialVersionUID = 123456789L;
+
+        private final long[] a, b;
+        @SuppressWarnings("serial")
+        private final T x, y;
+        private final int low, size, offset, depth;
+
+        @SuppressWarnings("unchecked")
+        private PayloadSorter(long[] a, T x, int parallelism, int low, int size) {
+            long[] b = tryAllocate(long[].class, size);
+            T y = b == null ? null : (T) tryAllocate(x.getClass(), size);
+
+            this.a = a;
+            this.x = x;
+            this.low = low;
+            this.size = size;
+            this.offset = low;
+            this.b = y == null ? null : b;
+            this.y = y;
+            this.depth = y == null ? 0 : ((parallelism >> 7) + 2) * (-2);
+        }
+
+        private PayloadSorter(CountedCompleter<?> parent, long[] a, long[] b,
+                T x, T y, int low, int size, int offset, int depth) {
+            super(parent);
+            this.a = a;
+            this.b = b;
+            this.x = x;
+            this.y = y;
+            this.low = low;
+            this.size = size;
+            this.offset = offset;
+            this.depth = depth;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void compute() {
+            if (depth < 0) {
+                setPendingCount(2);
+                int half = size >> 1;
+                new PayloadSorter<>(this, b, a, y, x, low, half, offset, depth + 1).fork();
+                new PayloadSorter<>(this, b, a, y, x, low + half, size - half, offset, depth + 1).compute();
+            } else {
+                switch(x) {
+                    case int[] xi -> sort((PayloadSorter<int[]>) this, a, xi, depth, low, low + size);
+                    case long[] xl -> sort((PayloadSorter<long[]>) this, a, xl, depth, low, low + size);
+                    case double[] xd -> sort((PayloadSorter<double[]>) this, a, xd, depth, low, low + size);
+                    default -> throw new IllegalArgumentException("Unknown payload: " + x.getClass().getName());
+                }
             }
-            return;
+            tryComplete();
         }
 
-        /*
-         * Split the array into two approximately equal parts.
-         */
-        int mi = lo, rmi = (run[lo] + run[hi]) >>> 1;
-        while (run[++mi + 1] <= rmi);
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            if (depth < 0) {
+                int mi = low + (size >> 1);
+                boolean src = (depth & 1) == 0;
+
+                new PayloadMerger<>(null,
+                    a,
+                    x,
+                    src ? low : low - offset,
+                    b,
+                    y,
+                    src ? low - offset : low,
+                    src ? mi - offset : mi,
+                    src ? mi - offset : mi,
+                    src ? low + size - offset : low + size
+                ).invoke();
+            }
+        }
+
+        private void fork(int depth, int low, int high) {
+            addToPendingCount(1);
+            new PayloadSorter<>(this, a, b, x, y, low, high - low, offset, depth).fork();
+        }
+    }
+
+    /**
+     * Implementation of parallel merging of the keys with payload.
+     */
+    private static final class PayloadMerger<T> extends CountedCompleter<Void> {
 
-        /*
-         * Merge the runs of all parts.
-         */
-        mergeRuns(sorter, a, b, offset, !aim, run, lo, mi);
-        mergeRuns(sorter, a, b, offset, !aim, run, mi, hi);
+        private static final long serialVersionUID = 123456789L;
 
-        int k  = !aim ? run[lo] - offset : run[lo];
-        int lo1 = aim ? run[lo] - offset : run[lo];
-        int hi1 = aim ? run[mi] - offset : run[mi];
-        int lo2 = aim ? run[mi] - offset : run[mi];
-        int hi2 = aim ? run[hi] - offset : run[hi];
+        private final long[] dst, src;
+        @SuppressWarnings("serial")
+        private final T pdst, psrc;
+        private final int k, lo1, hi1, lo2, hi2;
 
-        double[] dst = aim ? a : b;
-        double[] src = aim ? b : a;
+        private PayloadMerger(CountedCompleter<?> parent, long[] dst, T pdst, int k,
+                long[] src, T psrc, int lo1, int hi1, int lo2, int hi2) {
+            super(parent);
+            this.dst = dst;
+            this.pdst = pdst;
+            this.k = k;
+            this.src = src;
+            this.psrc = psrc;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+        }
 
-        /*
-         * Merge the left and right parts.
-         */
-        if (hi1 - lo1 > MIN_PARALLEL_SORT_SIZE && sorter != null) {
-            new Merger<>(null, dst, k, src, lo1, hi1, lo2, hi2).invoke();
-        } else {
-            mergeParts(null, dst, k, src, lo1, hi1, lo2, hi2);
+        @Override
+        @SuppressWarnings("unchecked")
+        public void compute() {
+            switch(pdst) {
+                case int[] di -> mergeParts((PayloadMerger<int[]>) this, dst, di, k, src, (int[]) psrc, lo1, hi1, lo2, hi2);
+                case long[] dl -> mergeParts((PayloadMerger<long[]>) this, dst, dl, k, src, (long[]) psrc, lo1, hi1, lo2, hi2);
+                case double[] dd -> mergeParts((PayloadMerger<double[]>) this, dst, dd, k, src, (double[]) psrc, lo1, hi1, lo2, hi2);
+                default -> throw new IllegalArgumentException("Unknown payload: " + pdst.getClass().getName());
+            }
+            propagateCompletion();
+        }
+
+        private void fork(int k, int lo1, int hi1, int lo2, int hi2) {
+            addToPendingCount(1);
+            new PayloadMerger<>(this, dst, pdst, k, src, psrc, lo1, hi1, lo2, hi2).fork();
         }
     }
 
     /**
-     * Merges the sorted parts.
-     *
-     * @param merger parallel context
-     * @param dst the destination where parts are merged
-     * @param k the start index of the destination, inclusive
-     * @param a1 the first part // todo r
-     * @param src the first part // todo a
-     * @param lo1 the start index of the first part, inclusive
-     * @param hi1 the end index of the first part, exclusive
-     * @param a2 the second part // todo r
-     * @param lo2 the start index of the second part, inclusive
-     * @param hi2 the end index of the second part, exclusive
+     * Implementation of parallel Radix sort.
      */
-    private static void mergeParts(Merger<double[]> merger, double[] dst, int k,
-            double[] src, int lo1, int hi1, int lo2, int hi2) {
+    private static final class RadixSorter<T> extends CountedCompleter<Void> {
 
-        /*
-         * Merge the parts in parallel.
-         */
-        if (merger != null) {
+        private static final long serialVersionUID = 123456789L;
 
-            while (hi1 - lo1 > MIN_MERGE_PART_SIZE && hi2 - lo2 > MIN_MERGE_PART_SIZE) {
+        @SuppressWarnings("serial")
+        private final T src, dst;
+        private final int[][] count;
+        private final int low, high, shift, mask, flip, lo, hi;
 
-                /*
-                 * The first part must be larger.
-                 */
-                if (hi1 - lo1 < hi2 - lo2) {
-                    int lo = lo1; lo1 = lo2; lo2 = lo;
-                    int hi = hi1; hi1 = hi2; hi2 = hi;
-                }
+        private RadixSorter(CountedCompleter<?> parent, T src, T dst, int[][] count,
+                int low, int high, int shift, int mask, int flip, int lo, int hi) {
+            super(parent);
+            this.src = src;
+            this.dst = dst;
+            this.count = count;
+            this.low = low;
+            this.high = high;
+            this.shift = shift;
+            this.mask = mask;
+            this.flip = flip;
+            this.lo = lo;
+            this.hi = hi;
+        }
 
-                /*
-                 * Find the median of the larger part.
-                 */
-                int mi1 = (lo1 + hi1) >>> 1;
-                double key = src[mi1];
-                int mi2 = hi2;
+        @Override
+        public void compute() {
+            int mi = hi;
 
-                /*
-                 * Split the smaller part.
-                 */
-                for (int mid = lo2; mid < mi2; ) {
-                    int d = (mid + mi2) >>> 1; // todo rename int m = ...
+            /*
+             * Process other parts in parallel.
+             */
+            while (mi - lo > 1) {
+                int half = (lo + mi) >>> 1;
+                addToPendingCount(1);
+                new RadixSorter<>(this, src, dst, count,
+                    low, high, shift, mask, flip, half, mi).fork();
+                mi = half;
+            }
 
-                    if (key > src[d]) {
-                        mid = d + 1;
+            /*
+             * Count the digits (no destination) or move
+             * the elements of the part lo.
+             */
+            int step = (high - low) / count.length;
+            int start = low + lo * step;
+            int end = mi == count.length ? high : start + step;
+
+            switch(src) {
+                case int[] si -> {
+                    if (dst == null) {
+                        countDigit(si, count[lo], shift, mask, flip, start, end);
                     } else {
-                        mi2 = d;
+                        scatterDigit((int[]) dst, si, count[lo], shift, mask, flip, start, end);
+                    }
+                }
+                case long[] sl -> {
+                    if (dst == null) {
+                        countDigit(sl, count[lo], shift, mask, flip, start, end);
+                    } else {
+                        scatterDigit((long[]) dst, sl, count[lo], shift, mask, flip, start, end);
                     }
                 }
+                default -> throw new IllegalArgumentException("Unknown array: " + src.getClass().getName());
+            }
+            propagateCompletion();
+        }
+    }
 
-                /*
-                 * Merge other parts in parallel.
-                 */
-                merger.fork(k, lo1, mi1, lo2, mi2);
+    /**
+     * Implementation of parallel counting sort.
+     */
+    private static final class CountingSorter<T> extends CountedCompleter<Void> {
 
-                /*
-                 * Reserve space for the second parts.
-                 */
-                k += mi2 - lo2 + mi1 - lo1;
+        private static final long serialVersionUID = 123456789L;
 
-                /*
-                 * Iterate along the second parts.
-                 */
-                lo1 = mi1;
-                lo2 = mi2;
-            }
+        @SuppressWarnings("serial")
+        private final T a;
+        private final int[][] count;
+        private final boolean fill;
+        private final int low, high, lo, hi;
+
+        private CountingSorter(CountedCompleter<?> parent, T a, int[][] count,
+                boolean fill, int low, int high, int lo, int hi) {
+            super(parent);
+            this.a = a;
+            this.count = count;
+            this.fill = fill;
+            this.low = low;
+            this.high = high;
+            this.lo = lo;
+            this.hi = hi;
         }
 
-        /*
-         * Merge small parts sequentially.
-         */
-        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+        @Override
+        public void compute() {
+            int mi = hi;
 
-            if (src[hi1 - 1] < src[hi2 - 1]) {
-                while (lo1 < hi1) {
-                    double slo1 = src[lo1]; // todo rename: first, or key, or curr
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+            /*
+             * Process other parts in parallel.
+             */
+            while (mi - lo > 1) {
+                int half = (lo + mi) >>> 1;
+                addToPendingCount(1);
+                new CountingSorter<>(this, a, count, fill, low, high, half, mi).fork();
+                mi = half;
+            }
+
+            /*
+             * Count or put the values of the part lo.
+             */
+            int step = (high - low) / count.length;
+            int start = low + lo * step;
+            int end = mi == count.length ? high : start + step;
+
+            switch(a) {
+                case byte[] ab -> {
+                    if (fill) {
+                        fillValues(ab, count, lo, low);
+                    } else {
+                        countValues(ab, count[lo], start, end);
                     }
                 }
-            } else if (src[hi1 - 1] > src[hi2 - 1]) {
-                while (lo2 < hi2) {
-                    double slo1 = src[lo1];
-  
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+                case char[] ac -> {
+                    if (fill) {
+                        fillValues(ac, count, lo, low);
+                    } else {
+                        countValues(ac, count[lo], start, end);
                     }
                 }
-            } else {
-                while (lo1 < hi1 && lo2 < hi2) {
-                    double slo1 = src[lo1];
-
-                    if (slo1 <= src[lo2]) {
-                        dst[k++] = src[lo1++];
-                    }
-                    if (slo1 >= src[lo2]) {
-                        dst[k++] = src[lo2++];
+                case short[] as -> {
+                    if (fill) {
+                        fillValues(as, count, lo, low);
+                    } else {
+                        countValues(as, count[lo], start, end);
                     }
                 }
+                default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
             }
+            propagateCompletion();
         }
+    }
 
-        /*
-         * Copy the tail of the left part.
+    /**
+     * Represents a function that processes the part of the range.
+     */
+    @FunctionalInterface
+    private interface PartOperation {
+
+        /**
+         * Processes the specified part of the range.
+         *
+         * @param low the index of the first element, inclusive, to be processed
+         * @param high the index of the last element, exclusive, to be processed
          */
-        if (lo1 < hi1) {
-            System.arraycopy(src, lo1, dst, k, hi1 - lo1);
-        }
+        void process(int low, int high);
+    }
 
-        /*
-         * Copy the tail of the right part.
+    /**
+     * Represents a function that processes the part of the range
+     * with long indices.
+     */
+    @FunctionalInterface
+    private interface LongPartOperation {
+
+        /**
+         * Processes the specified part of the range.
+         *
+         * @param low the index of the first element, inclusive, to be processed
+         * @param high the index of the last element, exclusive, to be processed
          */
-        if (lo2 < hi2) {
-            System.arraycopy(src, lo2, dst, k + hi1 - lo1, hi2 - lo2);
+        void process(long low, long high);
+    }
+
+    /**
+     * Implementation of parallel processing of the parts.
+     */
+    private static final class Processor extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 123456789L;
+
+        @SuppressWarnings("serial")
+        private final LongPartOperation po;
+        private final long size, low, high;
+
+        private Processor(CountedCompleter<?> parent,
+                LongPartOperation po, long size, long low, long high) {
+            super(parent);
+            this.po = po;
+            this.size = size;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        public void compute() {
+            long hi = high;
+
+            /*
+             * Process other parts in parallel.
+             */
+            while (hi - low > size) {
+                long mi = (low + hi) >>> 1;
+                addToPendingCount(1);
+                new Processor(this, po, size, mi, hi).fork();
+                hi = mi;
+            }
+            po.process(low, hi);
+            propagateCompletion();
         }
     }
 
     /**
-     * Tries to sort the specified range of the array
-     * using LSD (The Least Significant Digit) Radix sort.
+     * Processes the specified range in parallel, if the range
+     * is large enough, otherwise as the single part.
      *
-     * @param a the array to be sorted
-     * @param sorter // todo
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
-     * @return {@code true} if the array is finally sorted, otherwise {@code false}
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @param po the operation to process the part
      */
-    static boolean tryRadixSort(Sorter<double[]> sorter, double[] a, int low, int high) {
-        double[] b; int offset = low, size = high - low;
+    private static void process(int parallelism, int low, int high, PartOperation po) {
+        processLong(parallelism, low, high, (lo, hi) -> po.process((int) lo, (int) hi));
+    }
 
-        /*
-         * Allocate additional buffer.
-         */
-        if (sorter != null && (b = sorter.b) != null) {
-            offset = sorter.offset;
-        } else if ((b = tryAllocate(double[].class, size)) == null) {
-            return false;
+    /**
+     * Processes the specified range with long indices in parallel,
+     * if the range is large enough, otherwise as the single part.
+     *
+     * @param parallelism the parallelism level
+     * @param low the index of the first element, inclusive, to be processed
+     * @param high the index of the last element, exclusive, to be processed
+     * @param po the operation to process the part
+     */
+    private static void processLong(int parallelism, long low, long high, LongPartOperation po) {
+        if (parallelism > 1 && high - low > MIN_PROCESS_PART_SIZE << 1) {
+            new Processor(null, po, Math.max(MIN_PROCESS_PART_SIZE,
+                (high - low) / (parallelism << 2)), low, high).invoke();
+        } else {
+            po.process(low, high);
         }
+    }
 
-        int start = low - offset;
-        int last = high - offset;
+    /**
+     * This class holds the tuning profile, which overrides the default
+     * thresholds by the values calibrated on the given machine. Each
+     * threshold is given by the system property, which name is the
+     * name of the threshold with the prefix {@value #PREFIX}, so that
+     * no file is read, when the thresholds are initialized. Missing,
+     * malformed and out of range values are replaced by the defaults.
+     */
+    private static final class Tuning {
 
-        /*
-         * Count the number of all digits.
+        /**
+         * The prefix of the system properties with the thresholds.
          */
-        int[] count1 = new int[1024];
-        int[] count2 = new int[2048];
-        int[] count3 = new int[2048];
-        int[] count4 = new int[2048];
-        int[] count5 = new int[2048];
-        int[] count6 = new int[1024];
+        private static final String PREFIX = "java.util.DualPivotQuicksort.";
 
-        for (int i = low; i < high; ++i) {
-            ++count1[(int)  (dtl(a[i])         & 0x3FF)];
-            ++count2[(int) ((dtl(a[i]) >>> 10) & 0x7FF)];
-            ++count3[(int) ((dtl(a[i]) >>> 21) & 0x7FF)];
-            ++count4[(int) ((dtl(a[i]) >>> 32) & 0x7FF)];
-            ++count5[(int) ((dtl(a[i]) >>> 43) & 0x7FF)];
-            ++count6[(int) ((dtl(a[i]) >>> 54) & 0x3FF)];
+        /**
+         * Returns the value of the threshold given by the profile.
+         *
+         * @param key the name of the threshold
+         * @param defaultValue the value used without the profile
+         * @param min the min valid value, inclusive
+         * @param max the max valid value, inclusive
+         * @return the value of the threshold
+         */
+        static int value(String key, int defaultValue, int min, int max) {
+            String value = System.getProperty(PREFIX + key);
+
+            if (value != null) {
+                try {
+                    int v = Integer.parseInt(value.trim());
+
+                    if (v >= min && v <= max) {
+                        return v;
+                    }
+                } catch (NumberFormatException e) {
+                    // The default value is used
+                }
+            }
+            return defaultValue;
         }
+    }
+
+    /**
+     * This class holds temporary arrays of the current thread, which
+     * are reused by subsequent sorts, so that sorting doesn't allocate
+     * memory after warmup. The arrays are taken only by the code, which
+     * neither forks nor joins tasks, therefore they are never shared
+     * by two sorts running in the same thread.
+     */
+    private static final class Workspace {
+
+        /**
+         * The workspace of the current thread.
+         */
+        private static final ThreadLocal<Workspace> CURRENT =
+            ThreadLocal.withInitial(Workspace::new);
 
-        /*
-         * Detect digits to be processed.
+        private final int[] indices = new int[2];
+        private final int[][] count = new int[9][];
+        private final Object[] buffer = new Object[2];
+        private final int[] bufferLength = new int[2];
+        private int[] run = new int[0];
+
+        /**
+         * The buffer supplied by the caller and its length.
          */
-        boolean processDigit1 = processDigit(count1, size, low);
-        boolean processDigit2 = processDigit(count2, size, low);
-        boolean processDigit3 = processDigit(count3, size, low);
-        boolean processDigit4 = processDigit(count4, size, low);
-        boolean processDigit5 = processDigit(count5, size, low);
-        boolean processDigit6 = processDigit(count6, size, low);
+        private Object lent;
+        private int lentLength;
 
-        /*
-         * Process the 1-st digit.
+        /**
+         * Lends the buffer supplied by the caller to the workspace of
+         * the current thread for sequential sorting, so that no other
+         * buffer is taken, or gets it back, if the buffer is {@code null}.
+         *
+         * @param buffer the buffer supplied by the caller, or {@code null}
+         * @param length the length of the buffer
          */
-        if (processDigit1) {
-            for (int i = high; i > low; ) {
-                b[--count1[(int) (dtl(a[--i]) & 0x3FF)] - offset] = a[i];
-            }
+        static void lend(Object buffer, int length) {
+            Workspace ws = CURRENT.get();
+            ws.lent = buffer;
+            ws.lentLength = length;
         }
 
-        /*
-         * Process the 2-nd digit.
+        /**
+         * Checks whether the buffer is lent by the caller
+         * to the workspace of the current thread.
+         *
+         * @return {@code true} if the buffer is lent, otherwise {@code false}
          */
-        if (processDigit2) {
-            if (processDigit1) {
-                for (int i = last; i > start; ) {
-                    a[--count2[(int) ((dtl(b[--i]) >>> 10) & 0x7FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count2[(int) ((dtl(a[--i]) >>> 10) & 0x7FF)] - offset] = a[i];
-                }
-            }
+        static boolean isLent() {
+            return CURRENT.get().lent != null;
         }
 
-        /*
-         * Process the 3-rd digit.
+        /**
+         * Returns the indices of parts after partitioning.
+         * Note that the indices must be read before
+         * the next partitioning in the same thread.
+         *
+         * @param lower the index of the last element of the left part
+         * @param upper the index of the first element of the right part
+         * @return indices of parts after partitioning
          */
-        if (processDigit3) {
-            if (processDigit1 ^ processDigit2) {
-                for (int i = last; i > start; ) {
-                    a[--count3[(int) ((dtl(b[--i]) >>> 21) & 0x7FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count3[(int) ((dtl(a[--i]) >>> 21) & 0x7FF)] - offset] = a[i];
-                }
-            }
+        static int[] indices(int lower, int upper) {
+            int[] indices = REUSE_WORKSPACE ? CURRENT.get().indices : new int[2];
+            indices[0] = lower;
+            indices[1] = upper;
+            return indices;
         }
 
-        /*
-         * Process the 4-th digit.
+        /**
+         * Returns the array for the start indexes of the runs.
+         *
+         * @param capacity the min length of the array
+         * @return the array of at least the given length
          */
-        if (processDigit4) {
-            if (processDigit1 ^ processDigit2 ^ processDigit3) {
-                for (int i = last; i > start; ) {
-                    a[--count4[(int) ((dtl(b[--i]) >>> 32) & 0x7FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count4[(int) ((dtl(a[--i]) >>> 32) & 0x7FF)] - offset] = a[i];
-                }
+        static int[] run(int capacity) {
+            if (!REUSE_WORKSPACE) {
+                return new int[capacity];
             }
-        }
+            Workspace ws = CURRENT.get();
 
-        /*
-         * Process the 5-th digit.
-         */
-        if (processDigit5) {
-            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4) {
-                for (int i = last; i > start; ) {
-                    a[--count5[(int) ((dtl(b[--i]) >>> 43) & 0x7FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count5[(int) ((dtl(a[--i]) >>> 43) & 0x7FF)] - offset] = a[i];
-                }
+            if (ws.run.length < capacity) {
+                ws.run = new int[capacity];
             }
+            return ws.run;
         }
 
-        /*
-         * Process the 6-th digit.
+        /**
+         * Returns the zeroed array to count the elements. The slots
+         * from 0 to 4 and 8 are used for the digits of Radix sort, the
+         * slot 5 is used by counting sort of bytes, the slot 6 - of chars
+         * and shorts, the slot 7 - by the cost model of Radix sort.
+         *
+         * @param slot the slot of the array
+         * @param length the length of the array
+         * @return the zeroed array of the given length
          */
-        if (processDigit6) {
-            if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5) {
-                for (int i = last; i > start; ) {
-                    a[--count6[(int) ((dtl(b[--i]) >>> 54) & 0x3FF)]] = b[i];
-                }
-            } else {
-                for (int i = high; i > low; ) {
-                    b[--count6[(int) ((dtl(a[--i]) >>> 54) & 0x3FF)] - offset] = a[i];
-                }
+        static int[] count(int slot, int length) {
+            if (!REUSE_WORKSPACE) {
+                return new int[length];
             }
+            int[][] count = CURRENT.get().count;
+
+            if (count[slot] == null || count[slot].length != length) {
+                return count[slot] = new int[length];
+            }
+            Arrays.fill(count[slot], 0);
+            return count[slot];
         }
 
-        /*
-         * Copy the buffer to original array, if we process ood number of digits.
+        /**
+         * Tries to take additional buffer. The slot 0
+         * is used for the keys, the slot 1 - for the payload.
+         *
+         * @param <T> the class of the buffer
+         * @param slot the slot of the buffer
+         * @param clazz the given array class
+         * @param length the min length of the buffer
+         * @return {@code null} if requested buffer is too big, or there is
+         *         not enough memory, or the buffer lent by the caller is too
+         *         small, otherwise the buffer of at least the given length
          */
-        if (processDigit1 ^ processDigit2 ^ processDigit3 ^ processDigit4 ^ processDigit5 ^ processDigit6) {
-            System.arraycopy(b, low - offset, a, low, size);
+        @SuppressWarnings("unchecked")
+        static <T> T buffer(int slot, Class<T> clazz, int length) {
+            Workspace ws = CURRENT.get();
+
+            if (ws.lent != null) {
+                return slot == 0 && ws.lent.getClass() == clazz
+                    && ws.lentLength >= length ? (T) ws.lent : null;
+            }
+            if (!REUSE_WORKSPACE) {
+                return tryAllocate(clazz, length);
+            }
+            Object b = ws.buffer[slot];
+
+            if (b != null && b.getClass() == clazz && ws.bufferLength[slot] >= length) {
+                return (T) b;
+            }
+            T t = tryAllocate(clazz, length);
+
+            if (t != null && length <= MAX_WORKSPACE_BUFFER_SIZE >>
+                    (clazz == int[].class || clazz == float[].class ? 2 : 3)) {
+                ws.buffer[slot] = t;
+                ws.bufferLength[slot] = length;
+            }
+            return t;
         }
-        return true;
     }
 
     /**
-     * Returns masked bits that represent the double value.
+     * Tries to take additional buffer in the given context: the
+     * buffer is taken from the workspace of the current thread in
+     * sequential context, otherwise the buffer is allocated, unless
+     * the workspace is supplied by the caller.
      *
-     * @param d the given value
-     * @return masked bits
+     * @param <T> the class of the buffer
+     * @param sorter parallel context
+     * @param clazz the given array class
+     * @param length the length of additional buffer
+     * @return {@code null} if the buffer can't be taken, otherwise the buffer
      */
-    private static long dtl(double d) {
-        long x = Double.doubleToRawLongBits(d);
-        return x ^ ((x >> 63) | 0x8000000000000000L);
+    private static <T> T tryAllocate(Sorter<?> sorter, Class<T> clazz, int length) {
+        return sorter == null ? Workspace.buffer(0, clazz, length) :
+            sorter.allocate ? tryAllocate(clazz, length) : null;
     }
 
     /**
-     * Sorts the specified range of the array using heap sort.
+     * Checks whether additional buffer may be allocated in the given
+     * context, that is the buffer is neither lent by the caller for
+     * sequential sorting, nor the workspace is supplied by the caller.
      *
-     * @param a the array to be sorted
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param sorter parallel context
+     * @return {@code true} if additional buffer may be allocated
      */
-    static void heapSort(double[] a, int low, int high) {
-        for (int k = (low + high) >>> 1; k > low; ) {
-            pushDown(a, --k, a[k], low, high);
-        }
-        while (--high > low) {
-            double max = a[low];
-            pushDown(a, low, a[high], low, high);
-            a[high] = max;
-        }
+    private static boolean mayAllocate(Sorter<?> sorter) {
+        return sorter == null ? !Workspace.isLent() : sorter.allocate;
     }
 
     /**
-     * Pushes specified element down during heap sort.
+     * Tries to allocate additional buffer of the given length, otherwise
+     * the largest bounded buffer, which is shorter by the power of two
+     * times, up to {@link #MAX_BOUNDED_BLOCK_COUNT} times.
      *
-     * @param a the given array
-     * @param p the start index
-     * @param value the given element
-     * @param low the index of the first element, inclusive, to be sorted
-     * @param high the index of the last element, exclusive, to be sorted
+     * @param <T> the class of the buffer
+     * @param clazz the given array class
+     * @param length the length of additional buffer
+     * @return {@code null} if there is not enough memory even for
+     *         the shortest bounded buffer, otherwise created buffer
      */
-    private static void pushDown(double[] a, int p, double value, int low, int high) {
-        for (int k ;; a[p] = a[p = k]) {
-            k = (p << 1) - low + 2; // Index of the right child
+    private static <T> T tryAllocateBounded(Class<T> clazz, int length) {
+        T b = null;
 
-            if (k > high) {
-                break;
-            }
-            if (k == high || a[k] < a[k - 1]) {
-                --k;
-            }
-            if (a[k] <= value) {
-                break;
-            }
+        for (int count = 1; b == null && count <= MAX_BOUNDED_BLOCK_COUNT; count <<= 1) {
+            b = tryAllocate(clazz, (length - 1) / count + 1);
         }
-        a[p] = value;
+        return b;
     }
 
-// #[class]
-
     /**
-     * Implementation of parallel sorting.
+     * Compares the costs of Radix sort and Dual-Pivot Quicksort
+     * estimated by the sample of elements.<p>
+     *
+     * The cost of Radix sort is the number of passes over the elements:
+     * one pass to count all digits, and one pass per digit, which is
+     * not the same for all elements. The digits above the highest bit,
+     * which differs in the sample, are skipped.<p>
+     *
+     * The cost of Dual-Pivot Quicksort is the number of partitioning
+     * levels, the logarithm of the number of distinct elements. It is
+     * estimated by the duplicates in the sample: few distinct values
+     * are all seen, otherwise c duplicates among s elements in the
+     * sample mean about s^2 / 2c values. Nearly sorted data with
+     * long runs is left to partitioning and merging sort.<p>
+     *
+     * The cost of one pass is relative to the cost of one level, it
+     * depends on the element type and may be calibrated on the machine.
+     *
+     * @param size the number of elements to be sorted
+     * @param bits the number of the lowest bits, which differ in the sample
+     * @param ascending the number of ascending pairs in the sample
+     * @param descending the number of descending pairs in the sample
+     * @param distinct the number of distinct elements in the sample
+     * @param passCost the relative cost of one pass of Radix sort
+     * @return {@code true} if Radix sort is expected to be cheaper
      */
-    private static final class Sorter<T> extends CountedCompleter<Void> {
-
-        private static final long serialVersionUID = 123456789L;
-
-        @SuppressWarnings("serial")
-        private final T a, b;
-        private final int low, size, offset, depth;
+    private static boolean isRadixSortCheaper(int size, int bits,
+            int ascending, int descending, int distinct, int passCost) {
 
-        @SuppressWarnings("unchecked")
-        private Sorter(T a, int parallelism, int low, int size) {
-            this.a = a;
-            this.low = low;
-            this.size = size;
-            this.offset = low;
-            this.b = (T) tryAllocate(a.getClass(), size);
-            this.depth = b == null ? 0 : ((parallelism >> 7) + 2) * (-2);
+        if (Math.max(ascending, descending) > RADIX_SAMPLE_SIZE * 3 / 4) {
+            return false;
         }
+        int duplicates = RADIX_SAMPLE_SIZE - distinct;
 
-        private Sorter(CountedCompleter<?> parent,
-                T a, T b, int low, int size, int offset, int depth) {
-            super(parent);
-            this.a = a;
-            this.b = b;
-            this.low = low;
-            this.size = size;
-            this.offset = offset;
-            this.depth = depth;
-        }
+        long values = distinct < RADIX_SAMPLE_SIZE / 2 ? distinct
+            : duplicates == 0 ? size
+            : Math.min(size, RADIX_SAMPLE_SIZE * RADIX_SAMPLE_SIZE / (duplicates << 1));
 
-        @Override
-        @SuppressWarnings("unchecked")
-        public void compute() {
-            if (depth < 0) {
-                setPendingCount(2);
-                int half = size >> 1;
-                new Sorter<>(this, b, a, low, half, offset, depth + 1).fork();
-                new Sorter<>(this, b, a, low + half, size - half, offset, depth + 1).compute();
-            } else {
-                switch(a) {
-                    case int[] ai -> sort((Sorter<int[]>) this, ai, depth, low, low + size);
-                    case long[] al -> sort((Sorter<long[]>) this, al, depth, low, low + size);
-                    case float[] af -> sort((Sorter<float[]>) this, af, depth, low, low + size);
-                    case double[] ad -> sort((Sorter<double[]>) this, ad, depth, low, low + size);
-                    default -> throw new IllegalArgumentException("Unknown array: " + a.getClass().getName());
-                }
-            }
-            tryComplete();
-        }
+        int levels = 63 - Long.numberOfLeadingZeros(values);
+        int passes = (bits + 11) / 11 + 1;
 
-        @Override
-        public void onCompletion(CountedCompleter<?> caller) {
-            if (depth < 0) {
-                int mi = low + (size >> 1);
-                boolean src = (depth & 1) == 0;
+        return passes * passCost < levels * PARTITION_LEVEL_COST;
+    }
 
-                new Merger<>(null,
-                    a,
-                    src ? low : low - offset,
-                    b,
-                    src ? low - offset : low,
-                    src ? mi - offset : mi,
-                    src ? mi - offset : mi,
-                    src ? low + size - offset : low + size
-                ).invoke();
+    /**
+     * Checks whether the parts have given the elements of the merged
+     * block in a regular pattern, which repeats with a short period,
+     * so that the branches of merging are predicted well.
+     *
+     * @param pattern the bits of the block, set for the elements
+     *        given by the second part, the last element is the lowest bit
+     * @return {@code true} if the pattern repeats within the block
+     */
+    private static boolean isRegular(int pattern) {
+        for (int period = 1; period <= MERGE_BLOCK_SIZE / 2; ++period) {
+            if ((pattern ^ pattern >>> period) << period == 0) {
+                return true;
             }
         }
-
-        private void fork(int depth, int low, int high) {
-            addToPendingCount(1);
-            new Sorter<>(this, a, b, low, high - low, offset, depth).fork();
-        }
+        return false;
     }
 
     /**
-     * Implementation of parallel merging.
+     * Returns the index of the first rank, which is not less
+     * than the given index, found by binary search.
+     *
+     * @param ranks the ranks in ascending order
+     * @param from the index of the first rank, inclusive, to be searched
+     * @param to the index of the last rank, exclusive, to be searched
+     * @param index the index of the element
+     * @return the index of the first rank not less than the given index
      */
-    private static final class Merger<T> extends CountedCompleter<Void> {
-
-        private static final long serialVersionUID = 123456789L;
+    private static int rankIndex(int[] ranks, int from, int to, int index) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
 
-        @SuppressWarnings("serial")
-        private final T dst, src;
-        private final int k, lo1, hi1, lo2, hi2;
-
-        private Merger(CountedCompleter<?> parent, T dst, int k,
-                T src, int lo1, int hi1, int lo2, int hi2) {
-            super(parent);
-            this.dst = dst;
-            this.k = k;
-            this.src = src;
-            this.lo1 = lo1;
-            this.hi1 = hi1;
-            this.lo2 = lo2;
-            this.hi2 = hi2;
-        }
-
-        @Override
-        @SuppressWarnings("unchecked")
-        public void compute() {
-            switch(dst) {
-                case int[] di -> mergeParts((Merger<int[]>) this, di, k, (int[]) src, lo1, hi1, lo2, hi2);
-                case long[] dl -> mergeParts((Merger<long[]>) this, dl, k, (long[]) src, lo1, hi1, lo2, hi2);
-                case float[] df -> mergeParts((Merger<float[]>) this, df, k, (float[]) src, lo1, hi1, lo2, hi2);
-                case double[] dd -> mergeParts((Merger<double[]>) this, dd, k, (double[]) src, lo1, hi1, lo2, hi2);
-                default -> throw new IllegalArgumentException("Unknown array: " + dst.getClass().getName());
+            if (ranks[middle] < index) {
+                from = middle + 1;
+            } else {
+                to = middle;
             }
-            propagateCompletion();
-        }
-
-        private void fork(int k, int lo1, int hi1, int lo2, int hi2) {
-            addToPendingCount(1);
-            new Merger<>(this, dst, k, src, lo1, hi1, lo2, hi2).fork();
         }
+        return from;
     }
 
     /**
@@ -235,6 +235,8 @@ public class JavaBenchmarkHarness {
             benchmark("Byte.r34     ", new Sorter() { public void sort(byte[] a) { DualPivotQuicksort_r34    .sort(a, 0, a.length); }});
             benchmark("Byte.r38_2   ", new Sorter() { public void sort(byte[] a) { DualPivotQuicksort_r38_2  .sort(a, 0, a.length); }});
             benchmark("Byte.r38_12  ", new Sorter() { public void sort(byte[] a) { DualPivotQuicksort_r38_12 .sort(a, 0, a.length); }});
+
+            benchmark("Byte.p_r38_12", new Sorter() { public void sort(byte[] a) { DualPivotQuicksort_r38_12 .sort(a, PARALLELISM, 0, a.length); }});
         }
 
         private enum Builder {
@@ -335,6 +337,8 @@ public class JavaBenchmarkHarness {
             benchmark("Char.r34     ", new Sorter() { public void sort(char[] a) { DualPivotQuicksort_r34    .sort(a, 0, a.length); }});
             benchmark("Char.r38_2   ", new Sorter() { public void sort(char[] a) { DualPivotQuicksort_r38_2  .sort(a, 0, a.length); }});
             benchmark("Char.r38_12  ", new Sorter() { public void sort(char[] a) { DualPivotQuicksort_r38_12 .sort(a, 0, a.length); }});
+
+            benchmark("Char.p_r38_12", new Sorter() { public void sort(char[] a) { DualPivotQuicksort_r38_12 .sort(a, PARALLELISM, 0, a.length); }});
         }
 
         private enum Builder {
@@ -435,6 +439,8 @@ public class JavaBenchmarkHarness {
             benchmark("Short.r34     ", new Sorter() { public void sort(short[] a) { DualPivotQuicksort_r34    .sort(a, 0, a.length); }});
             benchmark("Short.r38_2   ", new Sorter() { public void sort(short[] a) { DualPivotQuicksort_r38_2  .sort(a, 0, a.length); }});
             benchmark("Short.r38_12  ", new Sorter() { public void sort(short[] a) { DualPivotQuicksort_r38_12 .sort(a, 0, a.length); }});
+
+            benchmark("Short.p_r38_12", new Sorter() { public void sort(short[] a) { DualPivotQuicksort_r38_12 .sort(a, PARALLELISM, 0, a.length); }});
         }
 
         private enum Builder {